@@ -0,0 +1,12 @@
+package com.example.growth_hungry.api;
+
+/**
+ * The caller's deadline ({@code X-Request-Timeout-Ms}) passed before the AI answer was complete.
+ * Mapped to 504; the call is given up on our side, so it does not count against the provider.
+ */
+public class AiDeadlineExceededException extends RuntimeException {
+
+    public AiDeadlineExceededException(String message) {
+        super(message);
+    }
+}
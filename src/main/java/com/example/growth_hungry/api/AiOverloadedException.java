@@ -0,0 +1,12 @@
+package com.example.growth_hungry.api;
+
+/**
+ * The adaptive concurrency limit for AI calls is reached: the call is shed right away
+ * instead of queuing. Still a 503 with Retry-After, with its own error code.
+ */
+public class AiOverloadedException extends AiUnavailableException {
+
+    public AiOverloadedException(String message, long retryAfterMillis) {
+        super(message, retryAfterMillis);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.growth_hungry.api;
+
+/**
+ * The AI call was rejected before reaching the provider (circuit open, bulkhead full).
+ * Mapped to 503 with a Retry-After header.
+ */
+public class AiUnavailableException extends RuntimeException {
+
+    private final long retryAfterMillis;
+
+    public AiUnavailableException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
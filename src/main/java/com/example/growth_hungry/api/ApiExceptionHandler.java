@@ -2,6 +2,7 @@ package com.example.growth_hungry.api;
 
 
 import java.util.Map;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -67,6 +68,33 @@ public class ApiExceptionHandler {
                 .body(ErrorResponse.of(status.name(), ex.getMessage()));
     }
 
+    // 503 AI provider unavailable (circuit open / bulkhead full) — client should back off
+    @ExceptionHandler(AiUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleAiUnavailable(AiUnavailableException ex) {
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfterMillis() + 999) / 1000);
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(ErrorResponse.of("AI_UNAVAILABLE", ex.getMessage()));
+    }
+
+    // 503 adaptive AI concurrency limit reached — shed instead of queued
+    @ExceptionHandler(AiOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleAiOverloaded(AiOverloadedException ex) {
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfterMillis() + 999) / 1000);
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(ErrorResponse.of("AI_OVERLOADED", ex.getMessage()));
+    }
+
+    // 504 the client's X-Request-Timeout-Ms passed before the answer was ready
+    @ExceptionHandler(AiDeadlineExceededException.class)
+    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+    public ErrorResponse handleAiDeadline(AiDeadlineExceededException ex) {
+        return ErrorResponse.of("AI_DEADLINE_EXCEEDED", ex.getMessage());
+    }
+
     // ✅ ГЛАВНОЕ: ловим все остальные ошибки => вместо пустого 500 ты увидишь message и stacktrace в IntelliJ
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
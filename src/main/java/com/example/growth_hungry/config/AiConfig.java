@@ -1,20 +1,120 @@
 package com.example.growth_hungry.config;
 
+import com.example.growth_hungry.service.AiClient;
+import com.example.growth_hungry.service.GeminiClient;
+import com.example.growth_hungry.service.ai.AdaptiveLimitAiClient;
+import com.example.growth_hungry.service.ai.AdaptiveLimiter;
+import com.example.growth_hungry.service.ai.CoalescingAiClient;
+import com.example.growth_hungry.service.ai.HedgingAiClient;
+import com.example.growth_hungry.service.ai.RetryingAiClient;
+import com.example.growth_hungry.service.ai.SchedulingAiClient;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 @Configuration
 @EnableConfigurationProperties(AiProps.class)
 public class AiConfig {
+    /**
+     * HttpClient for Gemini. HTTP/2 when the server agrees (one multiplexed connection), callbacks
+     * on {@code aiHttpExecutor}. Pool size and keep-alive are JDK system properties read once when
+     * the HTTP client classes load, so they only apply if no HttpClient was used before this bean;
+     * values given with -D on the command line win.
+     */
     @Bean
-    public HttpClient httpClient(AiProps props){
-        return HttpClient.newBuilder()
-                .connectTimeout(Duration.ofMillis(props.getTimeoutMs()))
-                .build();
+    public HttpClient httpClient(AiProps props, @Qualifier("aiHttpExecutor") ExecutorService aiHttpExecutor) {
+        AiProps.Http http = props.getHttp() != null ? props.getHttp() : new AiProps.Http();
+        setIfAbsent("jdk.httpclient.connectionPoolSize", http.getConnectionPoolSize());
+        setIfAbsent("jdk.httpclient.keepalive.timeout", http.getKeepAliveSeconds());
+        setIfAbsent("jdk.httpclient.keepalive.timeout.h2", http.getKeepAliveSeconds());
+
+        int connectTimeoutMs = http.getConnectTimeoutMs() > 0 ? http.getConnectTimeoutMs() : props.getTimeoutMs();
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(http.isPreferHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs));
+        if (http.isVirtualThreads()) builder.executor(aiHttpExecutor);
+        return builder.build();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService aiHttpExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Opens the Gemini connections (TCP, TLS, HTTP/2 setup) at startup so the first user does not
+     * pay for them. Runners finish before the application reports readiness ACCEPTING_TRAFFIC.
+     */
+    @Bean
+    public ApplicationRunner aiConnectionWarmup(GeminiClient geminiClient, AiProps props) {
+        return args -> {
+            AiProps.Http http = props.getHttp();
+            if (http == null || !http.isWarmupEnabled()) return;
+            geminiClient.warmUp(Math.max(1, http.getWarmupConnections()), Duration.ofMillis(http.getWarmupTimeoutMs()));
+        };
+    }
+
+    /**
+     * The AiClient the services get: GeminiClient wrapped in the cross-cutting layers.
+     * Order (outermost first): coalescing -> hedging (when enabled) -> retry -> adaptive limit -> scheduling -> Gemini HTTP.
+     * Hedges sit below coalescing so one slow shared call is hedged once, not per waiter,
+     * and above scheduling so they queue like any other call (in the RETRY class).
+     * Retries sit above the adaptive limit so a backoff wait holds no slot and every attempt is admitted again.
+     * The adaptive limit sheds what is over the latency-derived limit before it can queue.
+     */
+    @Bean
+    @Primary
+    public AiClient aiClient(GeminiClient geminiClient, AiProps props, MeterRegistry meterRegistry) {
+        AiClient client = geminiClient;
+        if (props.getScheduler().isEnabled()) {
+            checkSchedulerFitsBulkhead(props);
+            client = new SchedulingAiClient(client, props.getScheduler(), meterRegistry);
+        }
+        if (props.getAdaptiveLimit().isEnabled()) {
+            client = new AdaptiveLimitAiClient(client, new AdaptiveLimiter(props.getAdaptiveLimit()), meterRegistry);
+        }
+        if (props.getRetry().isEnabled()) {
+            client = new RetryingAiClient(client, props.getRetry(), Duration.ofMillis(props.getTimeoutMs()), meterRegistry);
+        }
+        if (props.getHedging().isEnabled()) {
+            client = new HedgingAiClient(client, props.getHedging(), meterRegistry);
+        }
+        return new CoalescingAiClient(client, meterRegistry);
+    }
+
+    /**
+     * The scheduler is the place where calls wait; the bulkhead below it does not wait by default.
+     * If the scheduler sends more calls at once than the bulkhead admits per model, the extra ones
+     * fail with 503 instead of queuing by priority.
+     */
+    private static void checkSchedulerFitsBulkhead(AiProps props) {
+        int maxInFlight = props.getScheduler().getMaxInFlight();
+        int perModel = props.getResilience().getMaxConcurrentPerModel();
+        if (maxInFlight > perModel) {
+            throw new IllegalStateException("ai.scheduler.max-in-flight (" + maxInFlight
+                    + ") must not exceed ai.resilience.max-concurrent-per-model (" + perModel + ")");
+        }
     }
 
+    /**
+     * Runs long AI work (SSE streams) outside of Tomcat request threads.
+     * Virtual threads: a blocked stream costs almost nothing while it waits for the next chunk.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService aiExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    private static void setIfAbsent(String key, int value) {
+        if (System.getProperty(key) == null) System.setProperty(key, String.valueOf(value));
+    }
 }
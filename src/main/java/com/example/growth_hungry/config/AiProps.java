@@ -40,8 +40,943 @@ public class AiProps {
         this.timeoutMs = timeoutMs;
     }
 
+    public long getMaxResponseBytes() {
+        return maxResponseBytes;
+    }
+
+    public void setMaxResponseBytes(long maxResponseBytes) {
+        this.maxResponseBytes = maxResponseBytes;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public Resilience getResilience() {
+        return resilience;
+    }
+
+    public void setResilience(Resilience resilience) {
+        this.resilience = resilience;
+    }
+
+    public History getHistory() {
+        return history;
+    }
+
+    public void setHistory(History history) {
+        this.history = history;
+    }
+
+    public ContextCache getContextCache() {
+        return contextCache;
+    }
+
+    public void setContextCache(ContextCache contextCache) {
+        this.contextCache = contextCache;
+    }
+
+    public Hedging getHedging() {
+        return hedging;
+    }
+
+    public void setHedging(Hedging hedging) {
+        this.hedging = hedging;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public AdaptiveLimit getAdaptiveLimit() {
+        return adaptiveLimit;
+    }
+
+    public void setAdaptiveLimit(AdaptiveLimit adaptiveLimit) {
+        this.adaptiveLimit = adaptiveLimit;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public void setBatch(Batch batch) {
+        this.batch = batch;
+    }
+
+    public Http getHttp() {
+        return http;
+    }
+
+    public void setHttp(Http http) {
+        this.http = http;
+    }
+
+    public Retrieval getRetrieval() {
+        return retrieval;
+    }
+
+    public void setRetrieval(Retrieval retrieval) {
+        this.retrieval = retrieval;
+    }
+
+    public SemanticCache getSemanticCache() {
+        return semanticCache;
+    }
+
+    public void setSemanticCache(SemanticCache semanticCache) {
+        this.semanticCache = semanticCache;
+    }
+
+    public Retry getRetry() {
+        return retry;
+    }
+
+    public void setRetry(Retry retry) {
+        this.retry = retry;
+    }
+
+    public WriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(WriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
     private String baseUrl;
     private String apiKey;
     private String defaultModel = "gemini-1.5-flash";;
     private int timeoutMs = 10_000;
+    // larger generateContent bodies are cut off and fail (protects the heap from runaway answers); <= 0 = no limit
+    private long maxResponseBytes = 8L * 1024 * 1024;
+    private Cache cache = new Cache();
+    private Resilience resilience = new Resilience();
+    private History history = new History();
+    private ContextCache contextCache = new ContextCache();
+    private Hedging hedging = new Hedging();
+    private RateLimit rateLimit = new RateLimit();
+    private Scheduler scheduler = new Scheduler();
+    private AdaptiveLimit adaptiveLimit = new AdaptiveLimit();
+    private Batch batch = new Batch();
+    private Http http = new Http();
+    private Retrieval retrieval = new Retrieval();
+    private SemanticCache semanticCache = new SemanticCache();
+    private Retry retry = new Retry();
+    private WriteBehind writeBehind = new WriteBehind();
+
+    /** ai.cache.* — exact-match answer cache for section questions. */
+    public static class Cache {
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        private boolean enabled = true;
+        private int maxEntries = 10_000;
+        private long ttlSeconds = 3_600;
+    }
+
+    /** ai.resilience.* — per-model circuit breaker and bulkhead in GeminiClient. */
+    public static class Resilience {
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public void setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+        }
+
+        public long getOpenMs() {
+            return openMs;
+        }
+
+        public void setOpenMs(long openMs) {
+            this.openMs = openMs;
+        }
+
+        public int getHalfOpenProbes() {
+            return halfOpenProbes;
+        }
+
+        public void setHalfOpenProbes(int halfOpenProbes) {
+            this.halfOpenProbes = halfOpenProbes;
+        }
+
+        public int getMaxConcurrentPerModel() {
+            return maxConcurrentPerModel;
+        }
+
+        public void setMaxConcurrentPerModel(int maxConcurrentPerModel) {
+            this.maxConcurrentPerModel = maxConcurrentPerModel;
+        }
+
+        public long getBulkheadWaitMs() {
+            return bulkheadWaitMs;
+        }
+
+        public void setBulkheadWaitMs(long bulkheadWaitMs) {
+            this.bulkheadWaitMs = bulkheadWaitMs;
+        }
+
+        // consecutive upstream failures that open the circuit
+        private int failureThreshold = 5;
+        // how long an open circuit rejects before letting probes through
+        private long openMs = 30_000;
+        // concurrent probes in half-open; the same number of successes closes the circuit
+        private int halfOpenProbes = 1;
+        // at least ai.scheduler.max-in-flight (checked at startup)
+        private int maxConcurrentPerModel = 32;
+        // 0 = reject immediately when the bulkhead is full
+        private long bulkheadWaitMs = 0;
+    }
+
+    /**
+     * ai.history.* — how much of a general chat conversation is sent back to the model, and how
+     * much of a section chat is shown when it is opened.
+     */
+    public static class History {
+        public int getMaxTokens() {
+            return maxTokens;
+        }
+
+        public void setMaxTokens(int maxTokens) {
+            this.maxTokens = maxTokens;
+        }
+
+        public int getMaxMessages() {
+            return maxMessages;
+        }
+
+        public void setMaxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+        }
+
+        public int getSectionWindow() {
+            return sectionWindow;
+        }
+
+        public void setSectionWindow(int sectionWindow) {
+            this.sectionWindow = sectionWindow;
+        }
+
+        // estimated tokens for system prompt + history + new message (TokenEstimator)
+        private int maxTokens = 4_000;
+        // hard cap on rows read per turn, whatever their size
+        private int maxMessages = 100;
+        // last N messages returned by GET /api/chat/sections/{id}
+        private int sectionWindow = 50;
+    }
+
+    /** ai.context-cache.* — Gemini cachedContents for large section content. */
+    public static class ContextCache {
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMinTokens() {
+            return minTokens;
+        }
+
+        public void setMinTokens(int minTokens) {
+            this.minTokens = minTokens;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        public long getRefreshMarginSeconds() {
+            return refreshMarginSeconds;
+        }
+
+        public void setRefreshMarginSeconds(long refreshMarginSeconds) {
+            this.refreshMarginSeconds = refreshMarginSeconds;
+        }
+
+        public long getFailureBackoffSeconds() {
+            return failureBackoffSeconds;
+        }
+
+        public void setFailureBackoffSeconds(long failureBackoffSeconds) {
+            this.failureBackoffSeconds = failureBackoffSeconds;
+        }
+
+        private boolean enabled = true;
+        // Gemini rejects caches below the model's minimum (1024 tokens for 2.5 Flash); smaller content goes inline
+        private int minTokens = 1_024;
+        private long ttlSeconds = 3_600;
+        // an entry this close to expireTime is recreated instead of used
+        private long refreshMarginSeconds = 60;
+        // after a failed create, send inline for this long before trying again
+        private long failureBackoffSeconds = 300;
+    }
+
+    /** ai.hedging.* — second identical request when the first one is slower than usual. */
+    public static class Hedging {
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getPercentile() {
+            return percentile;
+        }
+
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+
+        public double getBudgetPercent() {
+            return budgetPercent;
+        }
+
+        public void setBudgetPercent(double budgetPercent) {
+            this.budgetPercent = budgetPercent;
+        }
+
+        public int getMaxBurst() {
+            return maxBurst;
+        }
+
+        public void setMaxBurst(int maxBurst) {
+            this.maxBurst = maxBurst;
+        }
+
+        public long getMinDelayMs() {
+            return minDelayMs;
+        }
+
+        public void setMinDelayMs(long minDelayMs) {
+            this.minDelayMs = minDelayMs;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMinSamples() {
+            return minSamples;
+        }
+
+        public void setMinSamples(int minSamples) {
+            this.minSamples = minSamples;
+        }
+
+        private boolean enabled = false;
+        // hedge once the first attempt is slower than this percentile of recent latencies (per model)
+        private double percentile = 95.0;
+        // extra requests allowed, as a share of primary requests
+        private double budgetPercent = 5.0;
+        // hedges that can fire back to back after a quiet period
+        private int maxBurst = 10;
+        // never hedge sooner than this, whatever the percentile says
+        private long minDelayMs = 50;
+        // recent successful latencies kept per model
+        private int windowSize = 1_000;
+        // no hedging until a model has this many samples
+        private int minSamples = 50;
+    }
+
+    /** ai.rate-limit.* — token buckets in AiRateLimitFilter; a rate <= 0 disables that bucket. */
+    public static class RateLimit {
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getUserPerMinute() {
+            return userPerMinute;
+        }
+
+        public void setUserPerMinute(int userPerMinute) {
+            this.userPerMinute = userPerMinute;
+        }
+
+        public int getUserBurst() {
+            return userBurst;
+        }
+
+        public void setUserBurst(int userBurst) {
+            this.userBurst = userBurst;
+        }
+
+        public int getModelPerMinute() {
+            return modelPerMinute;
+        }
+
+        public void setModelPerMinute(int modelPerMinute) {
+            this.modelPerMinute = modelPerMinute;
+        }
+
+        public int getModelBurst() {
+            return modelBurst;
+        }
+
+        public void setModelBurst(int modelBurst) {
+            this.modelBurst = modelBurst;
+        }
+
+        private boolean enabled = true;
+        // AI requests per user
+        private int userPerMinute = 20;
+        private int userBurst = 5;
+        // AI requests per model, all users together (keep below the Gemini project quota)
+        private int modelPerMinute = 600;
+        private int modelBurst = 50;
+    }
+
+    /** ai.scheduler.* — priority / fair-queuing layer in front of GeminiClient. */
+    public static class Scheduler {
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+
+        private boolean enabled = true;
+        // AI calls sent upstream at once, all models and classes together (streams included);
+        // at most ai.resilience.max-concurrent-per-model, or the bulkhead rejects what this dispatches
+        private int maxInFlight = 32;
+        // waiting calls per priority class; more are rejected with 503
+        private int maxQueued = 500;
+    }
+
+    /** ai.adaptive-limit.* — latency-driven concurrency limit in front of the scheduler (AdaptiveLimiter). */
+    public static class AdaptiveLimit {
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public double getTolerance() {
+            return tolerance;
+        }
+
+        public void setTolerance(double tolerance) {
+            this.tolerance = tolerance;
+        }
+
+        public double getSmoothing() {
+            return smoothing;
+        }
+
+        public void setSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+        }
+
+        public double getBackoffRatio() {
+            return backoffRatio;
+        }
+
+        public void setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+        }
+
+        public int getLongWindow() {
+            return longWindow;
+        }
+
+        public void setLongWindow(int longWindow) {
+            this.longWindow = longWindow;
+        }
+
+        private boolean enabled = true;
+        private int initialLimit = 20;
+        private int minLimit = 2;
+        // above ai.scheduler.max-in-flight the scheduler queues instead
+        private int maxLimit = 64;
+        // latency up to this multiple of the long-term average still counts as healthy
+        private double tolerance = 2.0;
+        // share of each new estimate taken into the limit
+        private double smoothing = 0.2;
+        // limit multiplier after a failed call
+        private double backoffRatio = 0.9;
+        // samples in the long-term latency average
+        private int longWindow = 600;
+    }
+
+    /** ai.batch.* — offline batch jobs (AiBatchService). */
+    public static class Batch {
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        public void setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getRetryBackoffMs() {
+            return retryBackoffMs;
+        }
+
+        public void setRetryBackoffMs(long retryBackoffMs) {
+            this.retryBackoffMs = retryBackoffMs;
+        }
+
+        public int getMaxRejections() {
+            return maxRejections;
+        }
+
+        public void setMaxRejections(int maxRejections) {
+            this.maxRejections = maxRejections;
+        }
+
+        public boolean isResumeOnStartup() {
+            return resumeOnStartup;
+        }
+
+        public void setResumeOnStartup(boolean resumeOnStartup) {
+            this.resumeOnStartup = resumeOnStartup;
+        }
+
+        // batch jobs need the database and spend provider quota: off unless asked for
+        private boolean enabled = false;
+        // default concurrent AI calls per job (a job can ask for its own, up to 256)
+        private int parallelism = 16;
+        // pending items read per query; progress is checkpointed after each page
+        private int pageSize = 200;
+        // failed calls per prompt before it is marked FAILED (rejections by our own limits don't count)
+        private int maxAttempts = 3;
+        // wait before the next attempt, doubled each time; every attempt already went through
+        // RetryingAiClient (ai.retry.*), so this spaces out whole rounds of upstream calls
+        private long retryBackoffMs = 5_000;
+        // rejections by our own limits one prompt may wait out before the run stops and the job is FAILED
+        private int maxRejections = 20;
+        // continue jobs that were RUNNING when the application stopped
+        private boolean resumeOnStartup = true;
+    }
+
+    /**
+     * ai.http.* — the HttpClient used for Gemini (AiConfig.httpClient) and the connection
+     * warm-up at startup.
+     */
+    public static class Http {
+        public boolean isPreferHttp2() {
+            return preferHttp2;
+        }
+
+        public void setPreferHttp2(boolean preferHttp2) {
+            this.preferHttp2 = preferHttp2;
+        }
+
+        public boolean isVirtualThreads() {
+            return virtualThreads;
+        }
+
+        public void setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+        }
+
+        public int getConnectTimeoutMs() {
+            return connectTimeoutMs;
+        }
+
+        public void setConnectTimeoutMs(int connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+        }
+
+        public int getConnectionPoolSize() {
+            return connectionPoolSize;
+        }
+
+        public void setConnectionPoolSize(int connectionPoolSize) {
+            this.connectionPoolSize = connectionPoolSize;
+        }
+
+        public int getKeepAliveSeconds() {
+            return keepAliveSeconds;
+        }
+
+        public void setKeepAliveSeconds(int keepAliveSeconds) {
+            this.keepAliveSeconds = keepAliveSeconds;
+        }
+
+        public boolean isWarmupEnabled() {
+            return warmupEnabled;
+        }
+
+        public void setWarmupEnabled(boolean warmupEnabled) {
+            this.warmupEnabled = warmupEnabled;
+        }
+
+        public int getWarmupConnections() {
+            return warmupConnections;
+        }
+
+        public void setWarmupConnections(int warmupConnections) {
+            this.warmupConnections = warmupConnections;
+        }
+
+        public int getWarmupTimeoutMs() {
+            return warmupTimeoutMs;
+        }
+
+        public void setWarmupTimeoutMs(int warmupTimeoutMs) {
+            this.warmupTimeoutMs = warmupTimeoutMs;
+        }
+
+        // HTTP/2 over TLS (ALPN): all calls multiplexed on one connection; falls back to HTTP/1.1
+        private boolean preferHttp2 = true;
+        // HttpClient callbacks and body parsing on virtual threads instead of a cached platform pool
+        private boolean virtualThreads = true;
+        // <= 0 = ai.timeout-ms
+        private int connectTimeoutMs = 5_000;
+        // idle HTTP/1.1 connections kept per JVM (jdk.httpclient.connectionPoolSize), 0 = no limit
+        private int connectionPoolSize = 0;
+        // idle connections are closed after this (jdk.httpclient.keepalive.timeout, also .h2)
+        private int keepAliveSeconds = 300;
+        // open the upstream connections before readiness reports UP
+        private boolean warmupEnabled = true;
+        // parallel warm-up calls: 1 is enough for HTTP/2, HTTP/1.1 opens one connection each
+        private int warmupConnections = 2;
+        // the application starts after this even if Gemini did not answer
+        private int warmupTimeoutMs = 5_000;
+    }
+
+    /** ai.retrieval.* — BM25 passage retrieval for long sections (SectionChunkIndex). */
+    public static class Retrieval {
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMinSectionTokens() {
+            return minSectionTokens;
+        }
+
+        public void setMinSectionTokens(int minSectionTokens) {
+            this.minSectionTokens = minSectionTokens;
+        }
+
+        public int getBudgetTokens() {
+            return budgetTokens;
+        }
+
+        public void setBudgetTokens(int budgetTokens) {
+            this.budgetTokens = budgetTokens;
+        }
+
+        public int getTopK() {
+            return topK;
+        }
+
+        public void setTopK(int topK) {
+            this.topK = topK;
+        }
+
+        public int getChunkTokens() {
+            return chunkTokens;
+        }
+
+        public void setChunkTokens(int chunkTokens) {
+            this.chunkTokens = chunkTokens;
+        }
+
+        public int getMaxSections() {
+            return maxSections;
+        }
+
+        public void setMaxSections(int maxSections) {
+            this.maxSections = maxSections;
+        }
+
+        private boolean enabled = true;
+        // shorter sections are sent whole (and can use the Gemini context cache)
+        private int minSectionTokens = 1_500;
+        // passages sent per question, at most this many tokens together
+        private int budgetTokens = 1_000;
+        private int topK = 6;
+        // target passage size; paragraphs are packed up to it, longer ones split by sentence
+        private int chunkTokens = 200;
+        // indexed sections kept in memory (LRU)
+        private int maxSections = 1_000;
+    }
+
+    /** ai.semantic-cache.* — paraphrase-tolerant answer cache for section questions (SemanticAnswerCache). */
+    public static class SemanticCache {
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(double threshold) {
+            this.threshold = threshold;
+        }
+
+        public int getMaxSections() {
+            return maxSections;
+        }
+
+        public void setMaxSections(int maxSections) {
+            this.maxSections = maxSections;
+        }
+
+        public int getMaxEntriesPerSection() {
+            return maxEntriesPerSection;
+        }
+
+        public void setMaxEntriesPerSection(int maxEntriesPerSection) {
+            this.maxEntriesPerSection = maxEntriesPerSection;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        // also needs an EmbeddingProvider bean; without one the cache stays off
+        private boolean enabled = false;
+        // cosine similarity needed to reuse an answer; lower = more hits, more wrong answers
+        private double threshold = 0.92;
+        private int maxSections = 1_000;
+        private int maxEntriesPerSection = 200;
+        private long ttlSeconds = 86_400;
+    }
+
+    /** ai.retry.* — retries of transient AI failures (RetryingAiClient); all attempts share ai.timeout-ms. */
+    public static class Retry {
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getBaseDelayMs() {
+            return baseDelayMs;
+        }
+
+        public void setBaseDelayMs(long baseDelayMs) {
+            this.baseDelayMs = baseDelayMs;
+        }
+
+        public long getMaxDelayMs() {
+            return maxDelayMs;
+        }
+
+        public void setMaxDelayMs(long maxDelayMs) {
+            this.maxDelayMs = maxDelayMs;
+        }
+
+        public long getMinAttemptMs() {
+            return minAttemptMs;
+        }
+
+        public void setMinAttemptMs(long minAttemptMs) {
+            this.minAttemptMs = minAttemptMs;
+        }
+
+        private boolean enabled = true;
+        // first attempt included
+        private int maxAttempts = 3;
+        // wait before the next attempt, doubled each time; every attempt already went through
+        // RetryingAiClient (ai.retry.*), so this spaces out whole rounds of upstream calls
+        private long retryBackoffMs = 5_000;
+        // full jitter: the n-th wait is random in [0, min(maxDelayMs, baseDelayMs * 2^(n-1))]
+        private long baseDelayMs = 250;
+        private long maxDelayMs = 4_000;
+        // no retry unless at least this much of the time budget is left for it after the wait
+        private long minAttemptMs = 1_000;
+    }
+
+    /**
+     * ai.write-behind.* — general chat messages go to a local journal first and reach Postgres
+     * in the background (ChatWriteBehind).
+     */
+    public static class WriteBehind {
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getCapacityBytes() {
+            return capacityBytes;
+        }
+
+        public void setCapacityBytes(int capacityBytes) {
+            this.capacityBytes = capacityBytes;
+        }
+
+        public long getDrainIntervalMs() {
+            return drainIntervalMs;
+        }
+
+        public void setDrainIntervalMs(long drainIntervalMs) {
+            this.drainIntervalMs = drainIntervalMs;
+        }
+
+        public int getDrainBatchSize() {
+            return drainBatchSize;
+        }
+
+        public void setDrainBatchSize(int drainBatchSize) {
+            this.drainBatchSize = drainBatchSize;
+        }
+
+        private boolean enabled = false;
+        // one journal file per instance; must survive a restart (not tmpfs)
+        private String directory = "data/chat-journal";
+        // mapped size of the journal; a turn that doesn't fit is drained first or written directly
+        private int capacityBytes = 64 * 1024 * 1024;
+        // pause between drains while nothing is pending; retried drains back off up to 30 s
+        private long drainIntervalMs = 200;
+        // journaled turns per Postgres transaction
+        private int drainBatchSize = 500;
+    }
 }
@@ -1,6 +1,8 @@
 package com.example.growth_hungry.config;
 
+import com.example.growth_hungry.security.AiRateLimitFilter;
 import com.example.growth_hungry.security.JwtAuthFilter;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 import java.net.http.HttpClient;
 import java.util.List;
@@ -24,9 +26,11 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 public class WebSecurityConfig {
 
     private final JwtAuthFilter jwtAuthFilter;
+    private final AiRateLimitFilter aiRateLimitFilter;
 
-    public WebSecurityConfig(JwtAuthFilter jwtAuthFilter) {
+    public WebSecurityConfig(JwtAuthFilter jwtAuthFilter, AiRateLimitFilter aiRateLimitFilter) {
         this.jwtAuthFilter = jwtAuthFilter;
+        this.aiRateLimitFilter = aiRateLimitFilter;
     }
 
     @Bean
@@ -36,6 +40,8 @@ public class WebSecurityConfig {
                 .cors(Customizer.withDefaults())
                 .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // async re-dispatch (SSE, CompletableFuture) of a request that was already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll() // preflight
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/courses/**").authenticated()
@@ -46,6 +52,8 @@ public class WebSecurityConfig {
                                 "/v3/api-docs/**",
                                 "/swagger-ui.html"
                         ).permitAll()
+                        // catalogue-wide AI jobs spend the shared Gemini quota
+                        .requestMatchers("/api/batch/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .exceptionHandling(ex -> ex
@@ -61,6 +69,8 @@ public class WebSecurityConfig {
                         })
                 )
                 .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                // needs the principal set by the JWT filter
+                .addFilterAfter(aiRateLimitFilter, JwtAuthFilter.class)
                 .build();
     }
 
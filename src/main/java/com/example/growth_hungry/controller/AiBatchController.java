@@ -0,0 +1,51 @@
+package com.example.growth_hungry.controller;
+
+import com.example.growth_hungry.service.AiBatchService;
+import com.example.growth_hungry.service.AiBatchService.JobStatus;
+import com.example.growth_hungry.service.AiBatchService.SectionTask;
+import java.util.Set;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Starts and watches offline AI batch jobs. Runs return at once (202); progress is polled with
+ * GET. Only present with {@code ai.batch.enabled=true}, like the service behind it, and only
+ * for ROLE_ADMIN (users listed in {@code security.admin-emails}, see WebSecurityConfig).
+ */
+@RestController
+@RequestMapping("/api/batch")
+@ConditionalOnProperty(prefix = "ai.batch", name = "enabled", havingValue = "true")
+public class AiBatchController {
+
+    private final AiBatchService batchService;
+
+    public AiBatchController(AiBatchService batchService) {
+        this.batchService = batchService;
+    }
+
+    /** Summary / quiz / FAQ for every section; no {@code tasks} = all of them. */
+    @PostMapping("/sections")
+    public ResponseEntity<JobStatus> generateForSections(@RequestParam(required = false) Set<SectionTask> tasks) {
+        Long jobId = batchService.createSectionJob(tasks);
+        return start(jobId);
+    }
+
+    // again after a FAILED run or a stop: only the prompts still pending are sent
+    @PostMapping("/jobs/{id}/run")
+    public ResponseEntity<JobStatus> run(@PathVariable Long id) {
+        return start(id);
+    }
+
+    @GetMapping("/jobs/{id}")
+    public JobStatus status(@PathVariable Long id) {
+        return batchService.status(id);
+    }
+
+    private ResponseEntity<JobStatus> start(Long jobId) {
+        batchService.status(jobId); // 404 for an unknown job, before anything runs
+        batchService.run(jobId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(batchService.status(jobId));
+    }
+}
@@ -1,57 +1,136 @@
 package com.example.growth_hungry.controller;
 
 import com.example.growth_hungry.dto.ChatMessageDto;
+import com.example.growth_hungry.api.AiDeadlineExceededException;
 import com.example.growth_hungry.dto.ChatRequest;
 import com.example.growth_hungry.dto.ChatResponse;
 import com.example.growth_hungry.dto.ChatSessionDto;
+import com.example.growth_hungry.dto.CursorPage;
 import com.example.growth_hungry.service.ChatService;
 import com.example.growth_hungry.service.GeneralChatService;
+import com.example.growth_hungry.service.ai.AbortSignal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.security.Principal;
-import java.util.List;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 @RestController
 @RequestMapping("/api/chat")
 @Slf4j
 public class ChatController {
 
+    // upper bound for one streamed answer; Gemini itself is cut off earlier by ai.timeout-ms per request
+    private static final long STREAM_TIMEOUT_MS = 120_000;
+
+    /**
+     * Optional: how many milliseconds the client is going to wait. The AI call gets no longer than
+     * that (HTTP timeout included) and the turn ends with 504 when it is over.
+     */
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    // page size of the session / message pages when the client pages with a cursor but no ?limit=
+    private static final int DEFAULT_PAGE = 50;
+
     private final ChatService chatService;
     private  final GeneralChatService generalChatService;
+    private final ExecutorService aiExecutor;
+    private final MeterRegistry meterRegistry;
 
-    public ChatController(ChatService chatService, GeneralChatService generalChatService) {
+    public ChatController(ChatService chatService, GeneralChatService generalChatService,
+                          @Qualifier("aiExecutor") ExecutorService aiExecutor, MeterRegistry meterRegistry) {
         this.chatService = chatService;
         this.generalChatService = generalChatService;
+        this.aiExecutor = aiExecutor;
+        this.meterRegistry = meterRegistry;
     }
 
+    // async: the servlet thread is released while Gemini is answering
     @PostMapping
-    public ResponseEntity<ChatResponse> chat(@Valid @RequestBody ChatRequest req,
-                                             Authentication auth) {
+    public DeferredResult<ResponseEntity<ChatResponse>> chat(@Valid @RequestBody ChatRequest req,
+                                                             @RequestHeader(value = TIMEOUT_HEADER, required = false) String timeoutMs,
+                                                             Authentication auth) {
+        if (auth == null || auth.getName() == null || auth.getName().isBlank()) {
+            return unauthorized();
+        }
+        AbortSignal abort = abortSignal(timeoutMs);
+        return deferred(abort, generalChatService.chatAsync(req, auth.getName(), abort));
+    }
+
+    /**
+     * SSE variant of {@link #chat}: selected with {@code Accept: text/event-stream}.
+     * Events: {@code token} ({"text": "..."}) per chunk, then {@code done} with the final ChatResponse,
+     * or {@code error} if the turn failed.
+     */
+    @PostMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> chatStream(@Valid @RequestBody ChatRequest req,
+                                                 @RequestHeader(value = TIMEOUT_HEADER, required = false) String timeoutMs,
+                                                 Authentication auth) {
         if (auth == null || auth.getName() == null || auth.getName().isBlank()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        return ResponseEntity.ok(generalChatService.chat(req, auth.getName()));
+        String email = auth.getName();
+        AbortSignal abort = abortSignal(timeoutMs);
+        return ResponseEntity.ok(stream(abort, onChunk -> generalChatService.chatStream(req, email, abort, onChunk)));
     }
 
+    /**
+     * The user's sessions, newest first: all of them as a list, unless a page is asked for.
+     * With {@code limit}, {@code before} or {@code after} the response is a keyset page
+     * ({@link CursorPage}) of {@code limit} sessions (default 50); {@code before} / {@code after}
+     * take a cursor from a previous page (its {@code before} / {@code after} field).
+     */
     @GetMapping("/sessions")
-    public ResponseEntity<List<ChatSessionDto>> getUserSessions(Authentication auth) {
+    public ResponseEntity<?> getUserSessions(@RequestParam(required = false) String before,
+                                             @RequestParam(required = false) String after,
+                                             @RequestParam(required = false) Integer limit,
+                                             Authentication auth) {
         if (auth == null || auth.getName() == null || auth.getName().isBlank()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        return ResponseEntity.ok(generalChatService.getUserSessions(auth.getName()));
+        if (before == null && after == null && limit == null) {
+            return ResponseEntity.ok(generalChatService.getUserSessions(auth.getName()));
+        }
+        return ResponseEntity.ok(generalChatService.getUserSessions(auth.getName(), before, after,
+                limit != null ? limit : DEFAULT_PAGE));
     }
 
+    /**
+     * The session's messages, oldest first: all of them, or a keyset page under the same rules as
+     * {@link #getUserSessions}. Each page lists its messages oldest first.
+     */
     @GetMapping("/sessions/{sessionId}/messages")
-    public ResponseEntity<List<ChatMessageDto>> getSessionMessages(@PathVariable Long sessionId,
-                                                                   Authentication auth) {
+    public ResponseEntity<?> getSessionMessages(@PathVariable Long sessionId,
+                                                @RequestParam(required = false) String before,
+                                                @RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit,
+                                                Authentication auth) {
         if (auth == null || auth.getName() == null || auth.getName().isBlank()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        return ResponseEntity.ok(generalChatService.getSessionMessages(sessionId, auth.getName()));
+        if (before == null && after == null && limit == null) {
+            return ResponseEntity.ok(generalChatService.getSessionMessages(sessionId, auth.getName()));
+        }
+        return ResponseEntity.ok(generalChatService.getSessionMessages(sessionId, auth.getName(), before, after,
+                limit != null ? limit : DEFAULT_PAGE));
     }
 
     @DeleteMapping("/sessions/{sessionId}")
@@ -74,13 +153,136 @@ public class ChatController {
     }
 
     @PostMapping("/sections/{sectionId}/messages")
-    public ResponseEntity<ChatResponse> chatInSection(@PathVariable Long sectionId,
-                                                      @Valid @RequestBody ChatRequest req,
-                                                      Authentication auth) {
+    public DeferredResult<ResponseEntity<ChatResponse>> chatInSection(@PathVariable Long sectionId,
+                                                                      @Valid @RequestBody ChatRequest req,
+                                                                      @RequestHeader(value = TIMEOUT_HEADER, required = false) String timeoutMs,
+                                                                      Authentication auth) {
+        if (auth == null || auth.getName() == null || auth.getName().isBlank()) {
+            return unauthorized();
+        }
+        AbortSignal abort = abortSignal(timeoutMs);
+        return deferred(abort, chatService.chatInSectionAsync(sectionId, req, auth.getName(), abort));
+    }
+
+    @PostMapping(value = "/sections/{sectionId}/messages", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> chatInSectionStream(@PathVariable Long sectionId,
+                                                          @Valid @RequestBody ChatRequest req,
+                                                          @RequestHeader(value = TIMEOUT_HEADER, required = false) String timeoutMs,
+                                                          Authentication auth) {
         if (auth == null || auth.getName() == null || auth.getName().isBlank()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        return ResponseEntity.ok(chatService.chatInSection(sectionId, req, auth.getName()));
+        String email = auth.getName();
+        AbortSignal abort = abortSignal(timeoutMs);
+        return ResponseEntity.ok(stream(abort, onChunk -> chatService.chatInSectionStream(sectionId, req, email, abort, onChunk)));
+    }
+
+    // no header -> no deadline; a value that isn't a positive number is the client's mistake
+    private static AbortSignal abortSignal(String timeoutMs) {
+        if (timeoutMs == null || timeoutMs.isBlank()) return AbortSignal.none();
+        long ms;
+        try {
+            ms = Long.parseLong(timeoutMs.trim());
+        } catch (NumberFormatException e) {
+            ms = -1;
+        }
+        if (ms <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, TIMEOUT_HEADER + " must be a positive number of milliseconds");
+        }
+        return AbortSignal.withDeadline(Instant.now().plusMillis(ms));
+    }
+
+    private static <T> DeferredResult<ResponseEntity<T>> unauthorized() {
+        DeferredResult<ResponseEntity<T>> result = new DeferredResult<>();
+        result.setResult(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        return result;
+    }
+
+    /**
+     * Async turn -> DeferredResult, so the container's callbacks reach the turn: a client that
+     * disconnects (onError) or outlives its deadline (onTimeout) aborts the AI call.
+     * Without a deadline the timeout is spring.mvc.async.request-timeout.
+     */
+    private <T> DeferredResult<ResponseEntity<T>> deferred(AbortSignal abort, CompletableFuture<T> turn) {
+        Long timeoutMs = abort.deadline() == null
+                ? null
+                : Math.max(1, Duration.between(Instant.now(), abort.deadline()).toMillis());
+        DeferredResult<ResponseEntity<T>> result = new DeferredResult<>(timeoutMs);
+
+        result.onError(e -> abandon(abort, "disconnect"));
+        result.onTimeout(() -> {
+            abandon(abort, "deadline");
+            result.setErrorResult(new AiDeadlineExceededException("AI answer was not ready before the request deadline"));
+        });
+        turn.whenComplete((resp, ex) -> {
+            if (ex == null) {
+                result.setResult(ResponseEntity.ok(resp));
+            } else {
+                result.setErrorResult(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            }
+        });
+        return result;
+    }
+
+    private void abandon(AbortSignal abort, String reason) {
+        if (abort.isAborted()) return;
+        abort.abort();
+        Counter.builder("chat.abandoned")
+                .description("Chat turns whose client went away or whose deadline passed before the answer")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private SseEmitter stream(AbortSignal abort, Function<Consumer<String>, ChatResponse> turn) {
+        long timeoutMs = abort.deadline() == null
+                ? STREAM_TIMEOUT_MS
+                : Math.max(1, Math.min(STREAM_TIMEOUT_MS, Duration.between(Instant.now(), abort.deadline()).toMillis()));
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        // before the first token nothing is written, so only these callbacks notice the client is gone
+        emitter.onError(e -> abandon(abort, "disconnect"));
+        emitter.onTimeout(() -> {
+            abandon(abort, "deadline");
+            try {
+                send(emitter, "error", Map.of("message", "AI answer was not ready before the request deadline"));
+                emitter.complete();
+            } catch (Exception sendFailed) {
+                emitter.completeWithError(sendFailed);
+            }
+        });
+
+        aiExecutor.execute(() -> {
+            try {
+                ChatResponse resp = turn.apply(chunk -> send(emitter, "token", Map.of("text", chunk)));
+                send(emitter, "done", resp);
+                emitter.complete();
+            } catch (Exception e) {
+                log.warn("Chat stream failed: {}", e.getMessage());
+                if (abort.isAborted()) {
+                    // nobody left to tell
+                    emitter.completeWithError(e);
+                    return;
+                }
+                try {
+                    String msg = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+                    send(emitter, "error", Map.of("message", msg));
+                    emitter.complete();
+                } catch (Exception sendFailed) {
+                    // client is gone, nothing left to tell it
+                    emitter.completeWithError(sendFailed);
+                }
+            }
+        });
+
+        return emitter;
+    }
+
+    private static void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
 
@@ -9,6 +9,15 @@ public class ChatMessageDto {
     private String content;
     private Instant createdAt;
 
+    public ChatMessageDto() {}
+
+    // JPQL constructor expression: history pages are read straight into DTOs
+    public ChatMessageDto(Long id, MessageRole role, String content, Instant createdAt) {
+        this.id = id;
+        this.role = role;
+        this.content = content;
+        this.createdAt = createdAt;
+    }
 
     public Long getId() {
         return id;
@@ -0,0 +1,57 @@
+package com.example.growth_hungry.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated list. {@code before} / {@code after} are opaque cursors:
+ * pass one back as the query parameter of the same name to get the page next to this one.
+ * Both are null for an empty page.
+ */
+public class CursorPage<T> {
+    private List<T> items;
+    private String before;
+    private String after;
+    // more items exist in the direction this page was requested in
+    private boolean hasMore;
+
+    public CursorPage() {}
+
+    public CursorPage(List<T> items, String before, String after, boolean hasMore) {
+        this.items = items;
+        this.before = before;
+        this.after = after;
+        this.hasMore = hasMore;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getBefore() {
+        return before;
+    }
+
+    public void setBefore(String before) {
+        this.before = before;
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    public void setAfter(String after) {
+        this.after = after;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.growth_hungry.model.batch;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * One prompt of a batch job and, once it ran, its result. Saved right after the call
+ * finishes — the item rows are the job's checkpoint.
+ */
+@Entity
+@Table(name = "ai_batch_items",
+        uniqueConstraints = @UniqueConstraint(name = "uk_ai_batch_items_job_key", columnNames = {"job_id", "item_key"}),
+        indexes = @Index(name = "idx_ai_batch_items_job_status", columnList = "job_id, status, id"))
+public class AiBatchItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "job_id", nullable = false)
+    @JsonIgnore
+    private AiBatchJob job;
+
+    // caller's id for the prompt, e.g. "section:42:summary"
+    @Column(name = "item_key", nullable = false, length = 200)
+    private String itemKey;
+
+    @Column(name = "prompt", nullable = false, columnDefinition = "text")
+    private String prompt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 10)
+    private AiBatchItemStatus status;
+
+    @Column(name = "result", columnDefinition = "text")
+    private String result;
+
+    @Column(name = "error", length = 1000)
+    private String error;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    public AiBatchItem() {}
+
+    public AiBatchItem(AiBatchJob job, String itemKey, String prompt) {
+        this.job = job;
+        this.itemKey = itemKey;
+        this.prompt = prompt;
+        this.status = AiBatchItemStatus.PENDING;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public AiBatchJob getJob() {
+        return job;
+    }
+
+    public void setJob(AiBatchJob job) {
+        this.job = job;
+    }
+
+    public String getItemKey() {
+        return itemKey;
+    }
+
+    public void setItemKey(String itemKey) {
+        this.itemKey = itemKey;
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    public void setPrompt(String prompt) {
+        this.prompt = prompt;
+    }
+
+    public AiBatchItemStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(AiBatchItemStatus status) {
+        this.status = status;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.growth_hungry.model.batch;
+
+public enum AiBatchItemStatus {
+    PENDING,
+    DONE,
+    FAILED
+}
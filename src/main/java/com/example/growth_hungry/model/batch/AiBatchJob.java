@@ -0,0 +1,168 @@
+package com.example.growth_hungry.model.batch;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * One batch of prompts run through the AI client (offline precomputation).
+ * Progress lives in the items; the counters here are refreshed from them while the job runs.
+ */
+@Entity
+@Table(name = "ai_batch_jobs")
+public class AiBatchJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "name", nullable = false, length = 200)
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private AiBatchStatus status;
+
+    @Column(name = "system_prompt", columnDefinition = "text")
+    private String systemPrompt;
+
+    @Column(name = "model", length = 100)
+    private String model;
+
+    @Column(name = "parallelism", nullable = false)
+    private int parallelism;
+
+    @Column(name = "total_items", nullable = false)
+    private int totalItems;
+
+    @Column(name = "done_items", nullable = false)
+    private int doneItems;
+
+    @Column(name = "failed_items", nullable = false)
+    private int failedItems;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    // current (or last) run: throughput = items finished since run start / run duration
+    @Column(name = "run_started_at")
+    private Instant runStartedAt;
+
+    @Column(name = "run_start_finished_items", nullable = false)
+    private int runStartFinishedItems;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    public AiBatchJob() {}
+
+    @PrePersist
+    public void prePersist() {
+        if (createdAt == null) createdAt = Instant.now();
+        if (status == null) status = AiBatchStatus.PENDING;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public AiBatchStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(AiBatchStatus status) {
+        this.status = status;
+    }
+
+    public String getSystemPrompt() {
+        return systemPrompt;
+    }
+
+    public void setSystemPrompt(String systemPrompt) {
+        this.systemPrompt = systemPrompt;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    public void setTotalItems(int totalItems) {
+        this.totalItems = totalItems;
+    }
+
+    public int getDoneItems() {
+        return doneItems;
+    }
+
+    public void setDoneItems(int doneItems) {
+        this.doneItems = doneItems;
+    }
+
+    public int getFailedItems() {
+        return failedItems;
+    }
+
+    public void setFailedItems(int failedItems) {
+        this.failedItems = failedItems;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getRunStartedAt() {
+        return runStartedAt;
+    }
+
+    public void setRunStartedAt(Instant runStartedAt) {
+        this.runStartedAt = runStartedAt;
+    }
+
+    public int getRunStartFinishedItems() {
+        return runStartFinishedItems;
+    }
+
+    public void setRunStartFinishedItems(int runStartFinishedItems) {
+        this.runStartFinishedItems = runStartFinishedItems;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
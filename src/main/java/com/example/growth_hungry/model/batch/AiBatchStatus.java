@@ -0,0 +1,9 @@
+package com.example.growth_hungry.model.batch;
+
+public enum AiBatchStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    // the run stopped because the AI stayed unavailable; its pending items are run by the next run
+    FAILED
+}
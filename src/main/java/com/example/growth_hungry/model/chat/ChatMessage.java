@@ -15,11 +15,15 @@ import java.time.Instant;
 // Instant -- точный момент времени (timestamp) в формате UTC.
 
 @Entity
-@Table(name = "chat_messages")
+// (session_id, created_at, id): every page of the messages API is one range scan
+@Table(name = "chat_messages", indexes = @Index(name = "idx_chat_messages_session_created",
+        columnList = "session_id, created_at, id"))
 public class ChatMessage {
 
+    // pooled sequence, not IDENTITY: ids are known before the insert, so Hibernate can batch them
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_messages_seq")
+    @SequenceGenerator(name = "chat_messages_seq", sequenceName = "chat_messages_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "content", nullable = false, columnDefinition = "text")
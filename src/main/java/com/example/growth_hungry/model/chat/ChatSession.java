@@ -12,11 +12,15 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 @Entity
-@Table(name = "chat_session")
+// (user_id, updated_at, id): every page of the sessions API is one range scan
+@Table(name = "chat_session", indexes = @Index(name = "idx_chat_session_user_updated",
+        columnList = "user_id, updated_at, id"))
 public class ChatSession {
 
+    // pooled sequence (see ChatMessage): a new session is inserted in the same flush as its first messages
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_session_seq")
+    @SequenceGenerator(name = "chat_session_seq", sequenceName = "chat_session_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "model", nullable = false)
@@ -38,7 +42,8 @@ public class ChatSession {
         this.sectionId = sectionId;
     }
 
-    @Column(name="section_id", nullable=false)
+    // null for general chat sessions, set for section chats
+    @Column(name="section_id")
     private Long sectionId;
 
     @Column(name = "created_at", nullable = false, updatable = false)
@@ -0,0 +1,32 @@
+package com.example.growth_hungry.repository;
+
+import com.example.growth_hungry.model.batch.AiBatchItem;
+import com.example.growth_hungry.model.batch.AiBatchItemStatus;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface AiBatchItemRepository extends JpaRepository<AiBatchItem, Long> {
+    // work queue of a job, one page at a time (keyset on id)
+    List<AiBatchItem> findByJob_IdAndStatusAndIdGreaterThanOrderByIdAsc(Long jobId, AiBatchItemStatus status,
+                                                                      Long afterId, Limit limit);
+
+    long countByJob_IdAndStatus(Long jobId, AiBatchItemStatus status);
+
+    List<AiBatchItem> findByJob_IdAndIdGreaterThanOrderByIdAsc(Long jobId, Long afterId, Limit limit);
+
+    // result is written as soon as the call finishes: one UPDATE, no entity load
+    @Modifying
+    @Query("update AiBatchItem i set i.status = :status, i.result = :result, i.error = :error, " +
+            "i.attempts = i.attempts + :attempts, i.updatedAt = :now where i.id = :id")
+    int complete(@Param("id") Long id,
+                 @Param("status") AiBatchItemStatus status,
+                 @Param("result") String result,
+                 @Param("error") String error,
+                 @Param("attempts") int attempts,
+                 @Param("now") Instant now);
+}
@@ -0,0 +1,18 @@
+package com.example.growth_hungry.repository;
+
+import com.example.growth_hungry.model.batch.AiBatchJob;
+import com.example.growth_hungry.model.batch.AiBatchStatus;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface AiBatchJobRepository extends JpaRepository<AiBatchJob, Long> {
+    List<AiBatchJob> findByStatus(AiBatchStatus status);
+
+    // progress checkpoint without loading the job
+    @Modifying
+    @Query("update AiBatchJob j set j.doneItems = :done, j.failedItems = :failed where j.id = :id")
+    int updateProgress(@Param("id") Long id, @Param("done") int done, @Param("failed") int failed);
+}
@@ -1,13 +1,36 @@
 package com.example.growth_hungry.repository;
 
+import com.example.growth_hungry.dto.ChatMessageDto;
 import com.example.growth_hungry.model.chat.ChatMessage;
+import java.time.Instant;
 import java.util.List;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
     List<ChatMessage> findBySession_IdOrderByCreatedAtAsc(Long sessionId);
     void deleteBySession_Id(Long sessionId);
-    List<ChatMessage> findTop50BySession_IdOrderByCreatedAtDesc(Long sessionId);
 
+    // last N of a session as DTOs, newest first: no entities, and only N rows of idx_chat_messages_session_created
+    @Query("select new com.example.growth_hungry.dto.ChatMessageDto(m.id, m.role, m.content, m.createdAt) "
+            + "from ChatMessage m where m.session.id = :sessionId order by m.createdAt desc, m.id desc")
+    List<ChatMessageDto> findLatestDtos(@Param("sessionId") Long sessionId, Limit limit);
+
+    // newest first, one page at a time (keyset on id) — for building prompt history
+    List<ChatMessage> findBySession_IdOrderByIdDesc(Long sessionId, Limit limit);
+    List<ChatMessage> findBySession_IdAndIdLessThanOrderByIdDesc(Long sessionId, Long beforeId, Limit limit);
+
+    // keyset pages on (created_at, id) for the messages API: range scans of idx_chat_messages_session_created
+    List<ChatMessage> findBySession_IdOrderByCreatedAtDescIdDesc(Long sessionId, Limit limit);
+
+    @Query("select m from ChatMessage m where m.session.id = :sessionId and (m.createdAt, m.id) < (:at, :id) "
+            + "order by m.createdAt desc, m.id desc")
+    List<ChatMessage> findPageBefore(@Param("sessionId") Long sessionId, @Param("at") Instant at, @Param("id") Long id, Limit limit);
+
+    @Query("select m from ChatMessage m where m.session.id = :sessionId and (m.createdAt, m.id) > (:at, :id) "
+            + "order by m.createdAt asc, m.id asc")
+    List<ChatMessage> findPageAfter(@Param("sessionId") Long sessionId, @Param("at") Instant at, @Param("id") Long id, Limit limit);
 
 }
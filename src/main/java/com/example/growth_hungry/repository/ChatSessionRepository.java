@@ -2,10 +2,15 @@ package com.example.growth_hungry.repository;
 
 import com.example.growth_hungry.model.chat.ChatMessage;
 import com.example.growth_hungry.model.chat.ChatSession;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import javax.swing.*;
 
@@ -15,8 +20,24 @@ public interface ChatSessionRepository extends JpaRepository<ChatSession, Long>
     // (на будущее) список сессий пользователя
         List<ChatSession> findAllByUser_IdOrderByUpdatedAtDesc(Long userId);
 
+    // keyset pages on (updated_at, id) for the sessions API: range scans of idx_chat_session_user_updated
+    List<ChatSession> findByUser_IdOrderByUpdatedAtDescIdDesc(Long userId, Limit limit);
+
+    @Query("select s from ChatSession s where s.user.id = :userId and (s.updatedAt, s.id) < (:at, :id) "
+            + "order by s.updatedAt desc, s.id desc")
+    List<ChatSession> findPageBefore(@Param("userId") Long userId, @Param("at") Instant at, @Param("id") Long id, Limit limit);
+
+    @Query("select s from ChatSession s where s.user.id = :userId and (s.updatedAt, s.id) > (:at, :id) "
+            + "order by s.updatedAt asc, s.id asc")
+    List<ChatSession> findPageAfter(@Param("userId") Long userId, @Param("at") Instant at, @Param("id") Long id, Limit limit);
+
     Optional<ChatSession> findByUser_IdAndSectionId(Long userId, Long sectionId);
 
+    // bumps updated_at without loading/merging the session (and its messages collection)
+    @Modifying
+    @Query("update ChatSession s set s.updatedAt = :updatedAt where s.id = :id")
+    int touch(@Param("id") Long id, @Param("updatedAt") Instant updatedAt);
+
 
 
 
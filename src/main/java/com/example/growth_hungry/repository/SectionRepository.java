@@ -2,8 +2,12 @@ package com.example.growth_hungry.repository;
 
 import com.example.growth_hungry.model.Section;
 import java.util.List;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 public interface SectionRepository extends JpaRepository<Section, Long> {
     List<Section> findByCourseId(Long courseId);
+
+    // all sections in id order, one page at a time (batch precomputation)
+    List<Section> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
 }
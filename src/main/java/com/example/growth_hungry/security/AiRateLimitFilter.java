@@ -0,0 +1,212 @@
+package com.example.growth_hungry.security;
+
+import com.example.growth_hungry.api.ErrorResponse;
+import com.example.growth_hungry.config.AiProps;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Rate limit for the endpoints that call the model (POST /api/chat, POST /api/chat/sections/{id}/messages).
+ * Runs right after {@link JwtAuthFilter}: every authenticated user has a token bucket, and every
+ * model has one global bucket shared by all users. Over the limit -> 429 with Retry-After.
+ *
+ * The model comes from the request body of general chat ({@code "model"}, default model when absent):
+ * the body is read once here, wherever "model" is in it, and the same bytes are handed to the
+ * controller. Section chat always uses the default model.
+ */
+@Component
+public class AiRateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(AiRateLimitFilter.class);
+
+    private static final Pattern SECTION_MESSAGES = Pattern.compile("^/api/chat/sections/[^/]+/messages$");
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final AiProps props;
+    private final ObjectMapper om;
+    private final MeterRegistry meterRegistry;
+    private final TokenBuckets users;
+    private final TokenBuckets models;
+
+    public AiRateLimitFilter(AiProps props, ObjectMapper om, MeterRegistry meterRegistry) {
+        this.props = props;
+        this.om = om;
+        this.meterRegistry = meterRegistry;
+        AiProps.RateLimit limits = props.getRateLimit();
+        this.users = new TokenBuckets(limits.getUserPerMinute(), limits.getUserBurst());
+        this.models = new TokenBuckets(limits.getModelPerMinute(), limits.getModelBurst());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!props.getRateLimit().isEnabled()) return true;
+        if (!"POST".equalsIgnoreCase(request.getMethod())) return true;
+
+        String path = request.getServletPath();
+        return !"/api/chat".equals(path) && !SECTION_MESSAGES.matcher(path).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        // unauthenticated requests are rejected by the security chain, not counted here
+        if (auth == null || !auth.isAuthenticated() || auth instanceof AnonymousAuthenticationToken) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest forwarded = request;
+        String model = props.getDefaultModel();
+        if ("/api/chat".equals(request.getServletPath())) {
+            // the controller reads the whole body anyway; a partial read would miss a "model" after a long message
+            byte[] body = request.getInputStream().readAllBytes();
+            forwarded = new BufferedBodyRequest(request, body);
+            String requested = peekModel(body);
+            if (requested != null && !requested.isBlank()) model = requested.trim();
+        }
+
+        String user = auth.getName();
+        long waitNanos = users.tryAcquire(user);
+        if (waitNanos > 0) {
+            reject(response, "user", waitNanos, "Too many AI requests, try again later");
+            return;
+        }
+        waitNanos = models.tryAcquire(model);
+        if (waitNanos > 0) {
+            users.refund(user);
+            reject(response, "model", waitNanos, "AI model is busy, try again later");
+            return;
+        }
+
+        filterChain.doFilter(forwarded, response);
+    }
+
+    private void reject(HttpServletResponse response, String scope, long waitNanos, String message) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        meterRegistry.counter("ai.ratelimit.rejected", "scope", scope).increment();
+        log.debug("AI rate limit ({}) hit, retry after {}s", scope, retryAfterSeconds);
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value()); // 429
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        om.writeValue(response.getWriter(), ErrorResponse.of("RATE_LIMITED", message));
+    }
+
+    // top-level "model" string of a JSON body; null when absent or unreadable
+    static String peekModel(byte[] body) {
+        try (JsonParser p = JSON.createParser(body)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return null;
+            JsonToken t;
+            while ((t = p.nextToken()) == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                t = p.nextToken();
+                if ("model".equals(field)) return t == JsonToken.VALUE_STRING ? p.getText() : null;
+                p.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            // not JSON: the controller answers 400
+            return null;
+        }
+    }
+
+    /** Hands the body read by the filter to the controller, for blocking and async (ReadListener) reads. */
+    private static final class BufferedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+        private ServletInputStream stream;
+
+        BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            if (stream == null) {
+                ByteArrayInputStream in = new ByteArrayInputStream(body);
+                stream = new ServletInputStream() {
+                    @Override
+                    public int read() {
+                        return in.read();
+                    }
+
+                    @Override
+                    public int read(byte[] buf, int off, int len) {
+                        return in.read(buf, off, len);
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return in.available() == 0;
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    // everything is in memory: the data is available right away, then it is all read
+                    @Override
+                    public void setReadListener(ReadListener listener) {
+                        try {
+                            if (!isFinished()) listener.onDataAvailable();
+                            if (isFinished()) listener.onAllDataRead();
+                        } catch (IOException e) {
+                            listener.onError(e);
+                        }
+                    }
+                };
+            }
+            return stream;
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
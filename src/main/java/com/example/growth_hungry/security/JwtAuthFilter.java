@@ -5,6 +5,7 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.AuthorityUtils;
@@ -16,6 +17,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Component
 
@@ -24,9 +28,15 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     private static final Logger log = LoggerFactory.getLogger(JwtAuthFilter.class);
 
     private final JwtUtil jwtUtil;
+    // users who also get ROLE_ADMIN (e.g. /api/batch); none by default
+    private final Set<String> adminEmails;
 
-    public JwtAuthFilter(JwtUtil jwtUtil) {
+    public JwtAuthFilter(JwtUtil jwtUtil, @Value("${security.admin-emails:}") Set<String> adminEmails) {
         this.jwtUtil = jwtUtil;
+        this.adminEmails = adminEmails.stream()
+                .map(e -> e.trim().toLowerCase(Locale.ROOT))
+                .filter(e -> !e.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
     }
 
     @Override
@@ -87,7 +97,9 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                     new UsernamePasswordAuthenticationToken(
                             email,
                             null,
-                            AuthorityUtils.createAuthorityList("ROLE_USER")
+                            adminEmails.contains(email.trim().toLowerCase(Locale.ROOT))
+                                    ? AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN")
+                                    : AuthorityUtils.createAuthorityList("ROLE_USER")
                     );
 
             auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -0,0 +1,85 @@
+package com.example.growth_hungry.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets keyed by string (user, model), implemented as GCRA: each key is one AtomicLong
+ * holding its "theoretical arrival time" and is updated with CAS, so there is no lock shared
+ * between keys — the map itself is a ConcurrentHashMap.
+ *
+ * A bucket that has refilled completely carries no state, so such entries are dropped by an
+ * occasional sweep; the map only holds keys that were active within the last {@code burst} intervals.
+ */
+public class TokenBuckets {
+
+    // on average one acquire in this many triggers a sweep; random, so no shared counter is needed
+    private static final int SWEEP_ONE_IN = 4_096;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final LongSupplier nanoClock;
+
+    /**
+     * @param perMinute sustained rate; {@code <= 0} disables the limit
+     * @param burst     requests allowed back to back on a full bucket
+     */
+    public TokenBuckets(int perMinute, int burst) {
+        this(perMinute, burst, System::nanoTime);
+    }
+
+    public TokenBuckets(int perMinute, int burst, LongSupplier nanoClock) {
+        this.intervalNanos = perMinute <= 0 ? 0 : 60_000_000_000L / perMinute;
+        this.toleranceNanos = intervalNanos * Math.max(1, burst);
+        long origin = nanoClock.getAsLong();
+        // nanoTime may be negative; keep "now" >= 0 so a fresh bucket (0) is full
+        this.nanoClock = () -> nanoClock.getAsLong() - origin;
+    }
+
+    /** Takes one token. @return 0 when admitted, otherwise nanos until a token is available */
+    public long tryAcquire(String key) {
+        if (intervalNanos == 0) return 0;
+
+        long now = nanoClock.getAsLong();
+        if (ThreadLocalRandom.current().nextInt(SWEEP_ONE_IN) == 0) sweep(now);
+
+        AtomicLong tat = buckets.get(key);
+        if (tat == null) tat = buckets.computeIfAbsent(key, k -> new AtomicLong());
+
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long over = next - now - toleranceNanos;
+            if (over > 0) return over;
+            if (tat.compareAndSet(current, next)) return 0;
+        }
+    }
+
+    /** Gives back a token taken by {@link #tryAcquire} (the request was rejected by another limit). */
+    public void refund(String key) {
+        AtomicLong tat = buckets.get(key);
+        if (tat != null) tat.addAndGet(-intervalNanos);
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * Drops full buckets. An acquire racing with the removal may land on the dropped bucket;
+     * that request is then not counted, which errs on the side of admitting.
+     */
+    void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) return;
+        try {
+            buckets.entrySet().removeIf(e -> e.getValue().get() <= now);
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.growth_hungry.service;
+
+import com.example.growth_hungry.model.batch.AiBatchStatus;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Offline AI generation: a job is a list of prompts that runs through {@link AiClient} with
+ * bounded parallelism in the BACKGROUND scheduling class. Every result is saved as soon as it
+ * arrives, so a job stopped half-way (restart, crash) continues with the prompts not yet done.
+ */
+public interface AiBatchService {
+
+    /**
+     * @param key    caller's id for the prompt, unique within the job (e.g. "section:42:summary")
+     * @param prompt the whole user prompt, must not be blank
+     */
+    record BatchPrompt(String key, String prompt) {
+    }
+
+    /**
+     * @param promptsPerSecond finished prompts per second of the current (or last) run
+     */
+    record JobStatus(Long id, String name, AiBatchStatus status, int total, int done, int failed,
+                     double promptsPerSecond) {
+    }
+
+    /** Per-section content generated by {@link #createSectionJob}. */
+    enum SectionTask {
+        SUMMARY("Summarize the following course section in at most 5 short bullet points."),
+        QUIZ("Write 5 multiple-choice questions (4 options each, mark the correct one) that check "
+                + "understanding of the following course section."),
+        FAQ("List the 5 questions a student is most likely to ask about the following course section, "
+                + "each with a short answer.");
+
+        private final String instruction;
+
+        SectionTask(String instruction) {
+            this.instruction = instruction;
+        }
+
+        public String instruction() {
+            return instruction;
+        }
+    }
+
+    /**
+     * Stores a job and its prompts; nothing is sent until {@link #run}.
+     *
+     * @param parallelism max concurrent AI calls, null = {@code ai.batch.parallelism}
+     * @return job id
+     */
+    Long createJob(String name, String systemPrompt, String model, Integer parallelism, List<BatchPrompt> prompts);
+
+    /** One prompt per section and task, for every section. */
+    Long createSectionJob(Set<SectionTask> tasks);
+
+    /**
+     * Runs the job's pending prompts on virtual threads. Returns at once; the future completes
+     * when the run is over. Running a job that is already running returns the same future.
+     * A run that keeps being rejected by the AI limits ({@code ai.batch.max-rejections}) stops and
+     * leaves the job FAILED, its remaining prompts pending for the next run.
+     */
+    CompletableFuture<JobStatus> run(Long jobId);
+
+    JobStatus status(Long jobId);
+}
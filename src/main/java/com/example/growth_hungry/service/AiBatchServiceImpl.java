@@ -0,0 +1,360 @@
+package com.example.growth_hungry.service;
+
+import com.example.growth_hungry.api.AiUnavailableException;
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.model.Section;
+import com.example.growth_hungry.model.batch.AiBatchItem;
+import com.example.growth_hungry.model.batch.AiBatchItemStatus;
+import com.example.growth_hungry.model.batch.AiBatchJob;
+import com.example.growth_hungry.model.batch.AiBatchStatus;
+import com.example.growth_hungry.repository.AiBatchItemRepository;
+import com.example.growth_hungry.repository.AiBatchJobRepository;
+import com.example.growth_hungry.repository.SectionRepository;
+import com.example.growth_hungry.service.ai.AiCaller;
+import com.example.growth_hungry.service.ai.AiMessage;
+import com.example.growth_hungry.service.ai.AiPriority;
+import com.example.growth_hungry.service.ai.AiRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+@Service
+@ConditionalOnProperty(prefix = "ai.batch", name = "enabled", havingValue = "true")
+public class AiBatchServiceImpl implements AiBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(AiBatchServiceImpl.class);
+    private static final String SECTION_SYSTEM_PROMPT =
+            "You are a helpful course assistant. Use only the section content.";
+    private static final int MAX_PARALLELISM = 256;
+    private static final int INSERT_CHUNK = 500;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final AiBatchJobRepository jobRepo;
+    private final AiBatchItemRepository itemRepo;
+    private final SectionRepository sectionRepository;
+    private final AiClient aiClient;
+    // every write is its own short transaction, no connection is held during an AI call
+    private final TransactionTemplate tx;
+    private final ExecutorService aiExecutor;
+    private final AiProps.Batch props;
+    private final Counter itemsDone;
+    private final Counter itemsFailed;
+    private final Counter itemsRetried;
+    private final Map<Long, Run> running = new ConcurrentHashMap<>();
+
+    public AiBatchServiceImpl(AiBatchJobRepository jobRepo,
+                              AiBatchItemRepository itemRepo,
+                              SectionRepository sectionRepository,
+                              AiClient aiClient,
+                              PlatformTransactionManager transactionManager,
+                              @Qualifier("aiExecutor") ExecutorService aiExecutor,
+                              AiProps aiProps,
+                              MeterRegistry meterRegistry) {
+        this.jobRepo = jobRepo;
+        this.itemRepo = itemRepo;
+        this.sectionRepository = sectionRepository;
+        this.aiClient = aiClient;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.aiExecutor = aiExecutor;
+        this.props = aiProps.getBatch() != null ? aiProps.getBatch() : new AiProps.Batch();
+        this.itemsDone = items(meterRegistry, "done");
+        this.itemsFailed = items(meterRegistry, "failed");
+        this.itemsRetried = items(meterRegistry, "retried");
+    }
+
+    @Override
+    public Long createJob(String name, String systemPrompt, String model, Integer parallelism,
+                          List<BatchPrompt> prompts) {
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("name must not be blank");
+        if (prompts == null || prompts.isEmpty()) throw new IllegalArgumentException("prompts must not be empty");
+        for (BatchPrompt p : prompts) {
+            if (p.key() == null || p.key().isBlank()) throw new IllegalArgumentException("prompt key must not be blank");
+            if (p.prompt() == null || p.prompt().isBlank()) {
+                throw new IllegalArgumentException("prompt must not be blank: " + p.key());
+            }
+        }
+
+        AiBatchJob job = newJob(name, systemPrompt, model, parallelism);
+        for (int from = 0; from < prompts.size(); from += INSERT_CHUNK) {
+            addItems(job, prompts.subList(from, Math.min(prompts.size(), from + INSERT_CHUNK)));
+        }
+        return job.getId();
+    }
+
+    @Override
+    public Long createSectionJob(Set<SectionTask> tasks) {
+        Set<SectionTask> todo = tasks == null || tasks.isEmpty() ? EnumSet.allOf(SectionTask.class) : tasks;
+        String name = "sections:" + todo.stream().map(t -> t.name().toLowerCase(Locale.ROOT)).sorted().toList();
+        AiBatchJob job = newJob(name, SECTION_SYSTEM_PROMPT, null, null);
+
+        // keyset over sections, so the whole catalogue is never loaded at once
+        long after = 0;
+        while (true) {
+            List<Section> page = sectionRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(props.getPageSize()));
+            if (page.isEmpty()) break;
+
+            List<BatchPrompt> prompts = new ArrayList<>();
+            for (Section section : page) {
+                if (section.getContent() == null || section.getContent().isBlank()) continue;
+                for (SectionTask task : todo) {
+                    prompts.add(new BatchPrompt(
+                            "section:" + section.getId() + ":" + task.name().toLowerCase(Locale.ROOT),
+                            task.instruction() + "\n\nSection content:\n" + section.getContent()));
+                }
+            }
+            if (!prompts.isEmpty()) addItems(job, prompts);
+            after = page.get(page.size() - 1).getId();
+        }
+        return job.getId();
+    }
+
+    @Override
+    public CompletableFuture<JobStatus> run(Long jobId) {
+        Run run = new Run();
+        Run existing = running.putIfAbsent(jobId, run);
+        if (existing != null) return existing.result;
+
+        try {
+            aiExecutor.execute(() -> {
+                try {
+                    run.result.complete(execute(jobId, run));
+                } catch (Throwable e) {
+                    log.error("Batch job {} stopped: {}", jobId, e.toString());
+                    run.result.completeExceptionally(e);
+                } finally {
+                    running.remove(jobId, run);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.remove(jobId, run);
+            throw e;
+        }
+        return run.result;
+    }
+
+    @Override
+    public JobStatus status(Long jobId) {
+        AiBatchJob job = jobRepo.findById(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Batch job not found: " + jobId));
+        Run run = running.get(jobId);
+        // DB counters are checkpointed once per page, the live ones are exact
+        int done = run != null ? run.done.get() : job.getDoneItems();
+        int failed = run != null ? run.failed.get() : job.getFailedItems();
+        return toStatus(job, done, failed);
+    }
+
+    /** Jobs that were RUNNING when the application stopped continue where their items left off. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        if (!props.isResumeOnStartup()) return;
+        for (AiBatchJob job : jobRepo.findByStatus(AiBatchStatus.RUNNING)) {
+            log.info("Resuming batch job {} ({})", job.getId(), job.getName());
+            run(job.getId());
+        }
+    }
+
+    private JobStatus execute(Long jobId, Run run) throws InterruptedException {
+        AiBatchJob job = tx.execute(status -> {
+            AiBatchJob j = jobRepo.findById(jobId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Batch job not found: " + jobId));
+            int done = (int) itemRepo.countByJob_IdAndStatus(jobId, AiBatchItemStatus.DONE);
+            int failed = (int) itemRepo.countByJob_IdAndStatus(jobId, AiBatchItemStatus.FAILED);
+            j.setStatus(AiBatchStatus.RUNNING);
+            j.setDoneItems(done);
+            j.setFailedItems(failed);
+            j.setRunStartedAt(Instant.now());
+            j.setRunStartFinishedItems(done + failed);
+            j.setFinishedAt(null);
+            return jobRepo.save(j);
+        });
+        run.done.set(job.getDoneItems());
+        run.failed.set(job.getFailedItems());
+
+        int parallelism = job.getParallelism();
+        Semaphore slots = new Semaphore(parallelism);
+        AiCaller caller = new AiCaller("batch:" + jobId, AiPriority.BACKGROUND);
+
+        long after = 0;
+        while (true) {
+            List<AiBatchItem> page = itemRepo.findByJob_IdAndStatusAndIdGreaterThanOrderByIdAsc(
+                    jobId, AiBatchItemStatus.PENDING, after, Limit.of(props.getPageSize()));
+            if (page.isEmpty()) break;
+
+            for (AiBatchItem item : page) {
+                slots.acquire();
+                if (run.stopReason != null) {
+                    slots.release();
+                    break;
+                }
+                try {
+                    aiExecutor.execute(() -> {
+                        try {
+                            process(job, item, caller, run);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    slots.release();
+                    throw e;
+                }
+            }
+            after = page.get(page.size() - 1).getId();
+            tx.executeWithoutResult(status -> jobRepo.updateProgress(jobId, run.done.get(), run.failed.get()));
+            if (run.stopReason != null) break;
+        }
+        // wait for the last page
+        slots.acquire(parallelism);
+
+        AiBatchJob finished = tx.execute(status -> {
+            AiBatchJob j = jobRepo.findById(jobId).orElseThrow();
+            j.setDoneItems((int) itemRepo.countByJob_IdAndStatus(jobId, AiBatchItemStatus.DONE));
+            j.setFailedItems((int) itemRepo.countByJob_IdAndStatus(jobId, AiBatchItemStatus.FAILED));
+            j.setStatus(run.stopReason != null ? AiBatchStatus.FAILED : AiBatchStatus.COMPLETED);
+            j.setFinishedAt(Instant.now());
+            return jobRepo.save(j);
+        });
+        JobStatus result = toStatus(finished, finished.getDoneItems(), finished.getFailedItems());
+        if (run.stopReason != null) log.warn("Batch job {} stopped: {}", jobId, run.stopReason);
+        log.info("Batch job {} finished: {} done, {} failed of {}, {} prompts/s",
+                jobId, result.done(), result.failed(), result.total(),
+                String.format(Locale.ROOT, "%.2f", result.promptsPerSecond()));
+        return result;
+    }
+
+    private void process(AiBatchJob job, AiBatchItem item, AiCaller caller, Run run) {
+        AiRequest request = new AiRequest(List.of(AiMessage.user(item.getPrompt())),
+                job.getSystemPrompt(), job.getModel(), null, caller);
+        int attempts = 0;
+        int rejections = 0;
+        while (true) {
+            try {
+                String text = aiClient.generateAsync(request).join();
+                save(item, AiBatchItemStatus.DONE, text, null, attempts + 1);
+                run.done.incrementAndGet();
+                itemsDone.increment();
+                return;
+            } catch (RuntimeException e) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof AiUnavailableException unavailable) {
+                    // shed / breaker open / queue full: our own limits, not the prompt's fault,
+                    // but an AI that stays unavailable stops the run instead of spinning on it
+                    if (++rejections >= props.getMaxRejections()) {
+                        run.stop("AI unavailable for " + rejections + " tries on item " + item.getItemKey()
+                                + ": " + cause.getMessage());
+                    }
+                    if (run.stopReason != null) return; // left PENDING for the next run
+                    itemsRetried.increment();
+                    if (!sleep(Math.max(100, unavailable.getRetryAfterMillis()))) return; // left PENDING
+                    continue;
+                }
+                if (++attempts < props.getMaxAttempts()) {
+                    itemsRetried.increment();
+                    long backoff = props.getRetryBackoffMs() << Math.min(attempts - 1, 10);
+                    if (!sleep(backoff)) return; // left PENDING
+                    continue;
+                }
+                log.warn("Batch job {} item {} failed after {} attempts: {}",
+                        job.getId(), item.getItemKey(), attempts, cause.toString());
+                save(item, AiBatchItemStatus.FAILED, null, truncate(String.valueOf(cause.getMessage())), attempts);
+                run.failed.incrementAndGet();
+                itemsFailed.increment();
+                return;
+            }
+        }
+    }
+
+    private void save(AiBatchItem item, AiBatchItemStatus status, String result, String error, int attempts) {
+        tx.executeWithoutResult(s -> itemRepo.complete(item.getId(), status, result, error, attempts, Instant.now()));
+    }
+
+    private AiBatchJob newJob(String name, String systemPrompt, String model, Integer parallelism) {
+        AiBatchJob job = new AiBatchJob();
+        job.setName(name.length() > 200 ? name.substring(0, 200) : name);
+        job.setSystemPrompt(systemPrompt);
+        job.setModel(model);
+        int p = parallelism != null ? parallelism : props.getParallelism();
+        job.setParallelism(Math.max(1, Math.min(MAX_PARALLELISM, p)));
+        return tx.execute(status -> jobRepo.save(job));
+    }
+
+    private void addItems(AiBatchJob job, List<BatchPrompt> prompts) {
+        tx.executeWithoutResult(status -> {
+            AiBatchJob managed = jobRepo.getReferenceById(job.getId());
+            List<AiBatchItem> items = new ArrayList<>(prompts.size());
+            for (BatchPrompt p : prompts) items.add(new AiBatchItem(managed, p.key(), p.prompt()));
+            itemRepo.saveAll(items);
+            job.setTotalItems(job.getTotalItems() + items.size());
+            managed.setTotalItems(job.getTotalItems());
+        });
+    }
+
+    private static JobStatus toStatus(AiBatchJob job, int done, int failed) {
+        double perSecond = 0;
+        if (job.getRunStartedAt() != null) {
+            Instant end = job.getFinishedAt() != null ? job.getFinishedAt() : Instant.now();
+            double seconds = Duration.between(job.getRunStartedAt(), end).toMillis() / 1000.0;
+            int finishedThisRun = done + failed - job.getRunStartFinishedItems();
+            if (seconds > 0) perSecond = finishedThisRun / seconds;
+        }
+        return new JobStatus(job.getId(), job.getName(), job.getStatus(), job.getTotalItems(), done, failed, perSecond);
+    }
+
+    private static Counter items(MeterRegistry registry, String outcome) {
+        return Counter.builder("ai.batch.items")
+                .description("Batch job prompts by outcome")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static final class Run {
+        final CompletableFuture<JobStatus> result = new CompletableFuture<>();
+        final AtomicInteger done = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        // set once: no more prompts are sent and the job ends FAILED
+        volatile String stopReason;
+
+        synchronized void stop(String reason) {
+            if (stopReason == null) stopReason = reason;
+        }
+    }
+}
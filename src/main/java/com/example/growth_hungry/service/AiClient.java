@@ -1,5 +1,9 @@
 package com.example.growth_hungry.service;
 
+import com.example.growth_hungry.service.ai.AiRequest;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 public interface AiClient {
 
     /**
@@ -12,4 +16,53 @@ public interface AiClient {
      * @throws IllegalArgumentException if message is null or blank
      */
     String generate(String message, String systemPrompt, String model);
+
+    /**
+     * Non-blocking variant of {@link #generate}: the calling thread is released right away,
+     * the future completes with the response text or with the failure.
+     *
+     * <p>Default implementation just runs {@link #generate} on the common pool;
+     * HTTP based clients should override it with real async I/O.
+     *
+     * @throws IllegalArgumentException if message is null or blank (thrown immediately)
+     */
+    default CompletableFuture<String> generateAsync(String message, String systemPrompt, String model) {
+        if (message == null || message.isBlank()) {
+            throw new IllegalArgumentException("message must not be blank");
+        }
+        return CompletableFuture.supplyAsync(() -> generate(message, systemPrompt, model));
+    }
+
+    /**
+     * Same as {@link #generate}, but hands every text chunk to {@code onChunk} as soon as
+     * the model produces it. Blocks until the stream is finished.
+     *
+     * <p>Default implementation has no real streaming: it emits the whole answer as one chunk.
+     *
+     * @param onChunk receives text deltas in order, never {@code null} or empty
+     * @return full (concatenated) response text
+     */
+    default String generateStream(String message, String systemPrompt, String model, Consumer<String> onChunk) {
+        String text = generate(message, systemPrompt, model);
+        if (text != null && !text.isEmpty()) {
+            onChunk.accept(text);
+        }
+        return text;
+    }
+
+    /**
+     * Multi-turn variant of {@link #generateAsync(String, String, String)}: the model sees the
+     * whole {@code request.contents()} conversation.
+     *
+     * <p>Default implementation flattens the conversation into one prompt
+     * ({@link AiRequest#transcript()}); clients with native multi-turn support override it.
+     */
+    default CompletableFuture<String> generateAsync(AiRequest request) {
+        return generateAsync(request.transcript(), request.systemPrompt(), request.model());
+    }
+
+    /** Multi-turn variant of {@link #generateStream(String, String, String, Consumer)}. */
+    default String generateStream(AiRequest request, Consumer<String> onChunk) {
+        return generateStream(request.transcript(), request.systemPrompt(), request.model(), onChunk);
+    }
 }
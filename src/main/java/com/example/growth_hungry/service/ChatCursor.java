@@ -0,0 +1,56 @@
+package com.example.growth_hungry.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Comparator;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Keyset position in a chat list: a timestamp (created_at or updated_at) plus the row id as the
+ * tie-breaker. Sent to clients as an opaque url-safe string.
+ *
+ * Kept at microsecond precision, like the timestamp columns: a cursor taken from a message
+ * that is still in memory must compare equal to the same message once it is stored.
+ */
+public record ChatCursor(Instant at, long id) implements Comparable<ChatCursor> {
+
+    private static final Comparator<ChatCursor> ORDER =
+            Comparator.comparing(ChatCursor::at).thenComparingLong(ChatCursor::id);
+
+    public ChatCursor {
+        at = at.truncatedTo(ChronoUnit.MICROS);
+    }
+
+    public static ChatCursor of(Instant at, Long id) {
+        return new ChatCursor(at, id);
+    }
+
+    public String encode() {
+        String raw = at.getEpochSecond() + "." + at.getNano() / 1_000 + "." + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** {@code null} for a missing parameter; 400 for anything this class did not produce. */
+    public static ChatCursor decode(String value, String param) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value.trim()), StandardCharsets.US_ASCII);
+            String[] parts = raw.split("\\.");
+            if (parts.length != 3) throw new IllegalArgumentException(raw);
+            long micros = Long.parseLong(parts[1]);
+            if (micros < 0 || micros >= 1_000_000) throw new IllegalArgumentException(raw);
+            return new ChatCursor(Instant.ofEpochSecond(Long.parseLong(parts[0]), micros * 1_000), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid " + param + " cursor");
+        }
+    }
+
+    @Override
+    public int compareTo(ChatCursor other) {
+        return ORDER.compare(this, other);
+    }
+}
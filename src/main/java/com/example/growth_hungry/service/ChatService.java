@@ -3,7 +3,10 @@ import com.example.growth_hungry.dto.ChatMessageDto;
 import com.example.growth_hungry.dto.ChatRequest;
 import com.example.growth_hungry.dto.ChatResponse;
 import com.example.growth_hungry.dto.ChatSessionDto;
+import com.example.growth_hungry.service.ai.AbortSignal;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface ChatService {
 
@@ -11,5 +14,35 @@ public interface ChatService {
 
     ChatResponse chatInSection(Long sectionId, ChatRequest req, String userEmail);
 
+    /**
+     * Non-blocking variant of {@link #chatInSection}. Validation and lookup errors are thrown
+     * immediately; the future completes once the assistant answer is saved.
+     */
+    default CompletableFuture<ChatResponse> chatInSectionAsync(Long sectionId, ChatRequest req, String userEmail) {
+        return chatInSectionAsync(sectionId, req, userEmail, AbortSignal.none());
+    }
+
+    /**
+     * {@link #chatInSectionAsync(Long, ChatRequest, String)} for a caller that may go away.
+     * The USER message is saved when the turn starts, whatever happens next. If {@code abort}
+     * fires (or its deadline passes) before the answer is complete, the AI call is cancelled and
+     * no assistant message is written; an answer that did complete is saved and cached even when
+     * nobody reads it any more.
+     */
+    CompletableFuture<ChatResponse> chatInSectionAsync(Long sectionId, ChatRequest req, String userEmail,
+                                                       AbortSignal abort);
+
+    /**
+     * Streaming variant of {@link #chatInSection}: answer tokens go to {@code onChunk} as they arrive,
+     * the assistant message is saved after the stream has completed.
+     */
+    default ChatResponse chatInSectionStream(Long sectionId, ChatRequest req, String userEmail, Consumer<String> onChunk) {
+        return chatInSectionStream(sectionId, req, userEmail, AbortSignal.none(), onChunk);
+    }
+
+    /** Streaming turn with the persistence rules of {@link #chatInSectionAsync(Long, ChatRequest, String, AbortSignal)}. */
+    ChatResponse chatInSectionStream(Long sectionId, ChatRequest req, String userEmail, AbortSignal abort,
+                                     Consumer<String> onChunk);
+
 
 }
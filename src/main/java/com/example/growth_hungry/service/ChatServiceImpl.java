@@ -1,9 +1,9 @@
 package com.example.growth_hungry.service;
 
+import com.example.growth_hungry.config.AiProps;
 import com.example.growth_hungry.dto.ChatMessageDto;
 import com.example.growth_hungry.dto.ChatRequest;
 import com.example.growth_hungry.dto.ChatResponse;
-import com.example.growth_hungry.dto.ChatSessionDto;
 import com.example.growth_hungry.model.Section;
 import com.example.growth_hungry.model.User;
 import com.example.growth_hungry.model.chat.ChatMessage;
@@ -13,51 +13,139 @@ import com.example.growth_hungry.repository.ChatMessageRepository;
 import com.example.growth_hungry.repository.ChatSessionRepository;
 import com.example.growth_hungry.repository.SectionRepository;
 import com.example.growth_hungry.repository.UserRepository;
+import com.example.growth_hungry.service.ai.AbortSignal;
+import com.example.growth_hungry.service.ai.AiCaller;
+import com.example.growth_hungry.service.ai.AiContext;
+import com.example.growth_hungry.service.ai.AiMessage;
+import com.example.growth_hungry.service.ai.AiRequest;
+import com.example.growth_hungry.service.ai.SectionAnswerCache;
+import com.example.growth_hungry.service.ai.SectionChunkIndex;
+import com.example.growth_hungry.service.ai.SemanticAnswerCache;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import java.time.LocalDateTime;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.security.access.AccessDeniedException;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
-
-import javax.swing.*;
-
 @Service
 public class ChatServiceImpl implements ChatService {
 
     private static final Logger log = LoggerFactory.getLogger(ChatServiceImpl.class);
-    private static final String DEFAULT_MODEL = "gemini-2.5-flash";
+    private static final String SECTION_SYSTEM_PROMPT =
+            "You are a helpful course assistant. Answer based on the section content.";
 
     private final ChatSessionRepository sessionRepo;
     private final ChatMessageRepository messageRepo;
     private final UserRepository userRepository;
     private final AiClient aiClient;
     private final SectionRepository sectionRepository;
+    // prompt and answer are saved in two short transactions, the AI call runs between them
+    private final TransactionTemplate tx;
+    private final SectionAnswerCache answerCache;
+    private final SectionChunkIndex chunkIndex;
+    private final SemanticAnswerCache semanticCache;
+    private final AiProps aiProps;
 
     public ChatServiceImpl(ChatSessionRepository sessionRepo,
                            ChatMessageRepository messageRepo,
                            UserRepository userRepository,
-                           AiClient aiClient, SectionRepository sectionRepository) {
+                           AiClient aiClient, SectionRepository sectionRepository,
+                           PlatformTransactionManager transactionManager,
+                           SectionAnswerCache answerCache,
+                           SectionChunkIndex chunkIndex,
+                           SemanticAnswerCache semanticCache,
+                           AiProps aiProps) {
         this.sessionRepo = sessionRepo;
         this.messageRepo = messageRepo;
         this.userRepository = userRepository;
         this.aiClient = aiClient;
         this.sectionRepository = sectionRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.answerCache = answerCache;
+        this.chunkIndex = chunkIndex;
+        this.semanticCache = semanticCache;
+        this.aiProps = aiProps;
     }
 
     @Override
     public ChatResponse chatInSection(Long sectionId, ChatRequest req, String userEmail) {
+        try {
+            return chatInSectionAsync(sectionId, req, userEmail).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatInSectionAsync(Long sectionId, ChatRequest req, String userEmail,
+                                                              AbortSignal abort) {
+        SectionTurn turn = startSectionTurn(sectionId, req, userEmail);
+
+        Optional<String> cached = cachedAnswer(turn);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(finishSectionTurn(turn, cached.get()));
+        }
+
+        CompletableFuture<String> call = aiClient.generateAsync(turn.request().withDeadline(abort.deadline()));
+        // client gone: cancel down the AiClient chain to the HTTP exchange; thenApply below never runs
+        abort.onAbort(() -> call.cancel(true));
+        return call.thenApply(answer -> {
+            rememberAnswer(turn, answer);
+            return finishSectionTurn(turn, answer);
+        });
+    }
+
+    @Override
+    public ChatResponse chatInSectionStream(Long sectionId, ChatRequest req, String userEmail, AbortSignal abort,
+                                            Consumer<String> onChunk) {
+        if (onChunk == null)
+            throw new IllegalArgumentException("onChunk is required");
+
+        SectionTurn turn = startSectionTurn(sectionId, req, userEmail);
+
+        Optional<String> cached = cachedAnswer(turn);
+        if (cached.isPresent()) {
+            onChunk.accept(cached.get());
+            return finishSectionTurn(turn, cached.get());
+        }
+
+        AiRequest request = turn.request().withDeadline(abort.deadline());
+        String answer = abort.interruptibly(() -> aiClient.generateStream(request, onChunk));
+        rememberAnswer(turn, answer);
+        return finishSectionTurn(turn, answer);
+    }
+
+    private record SectionTurn(ChatSession session, AiRequest request, SectionAnswerCache.Key cacheKey,
+                               SemanticAnswerCache.Probe probe) {
+    }
+
+    // same question first, then a paraphrase of an answered one
+    private Optional<String> cachedAnswer(SectionTurn turn) {
+        Optional<String> cached = answerCache.get(turn.cacheKey());
+        return cached.isPresent() ? cached : semanticCache.find(turn.probe());
+    }
+
+    private void rememberAnswer(SectionTurn turn, String answer) {
+        answerCache.put(turn.cacheKey(), answer);
+        semanticCache.put(turn.probe(), answer);
+    }
+
+    // validates, finds/creates the section session, saves USER message, builds the prompt
+    private SectionTurn startSectionTurn(Long sectionId, ChatRequest req, String userEmail) {
 
         if (userEmail == null || userEmail.isBlank())
             throw new IllegalStateException("User email is required");
@@ -70,30 +158,33 @@ public class ChatServiceImpl implements ChatService {
 
         String email = userEmail.trim().toLowerCase(Locale.ROOT);
 
-        //Find user
-        User user =  userRepository.findByEmail(email)
-                .orElseThrow(() ->
-                        new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
- // по секции и пользователя ищем чат если нет создаем новый
-        //find section
-        Section section = sectionRepository.findById(sectionId)
-                .orElseThrow(() ->
-                        new ResponseStatusException(HttpStatus.NOT_FOUND, "Section not found"));
-
-        //find session
-        ChatSession session = sessionRepo.findByUser_IdAndSectionId(user.getId(), sectionId)
-                .orElse(null);
-        String model = "gemini-2.5-flash";
-        if (session == null){
-            session = new ChatSession();
-            session.setUser(user);
-            session.setSectionId(sectionId);
-            session.setModel(model);
-            session = sessionRepo.save(session);
-
-        }
-
-        String userMessage = req.getMessage().trim();
+        return tx.execute(status -> {
+            //Find user
+            User user =  userRepository.findByEmail(email)
+                    .orElseThrow(() ->
+                            new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
+            // по секции и пользователя ищем чат если нет создаем новый
+            //find section
+            Section section = sectionRepository.findById(sectionId)
+                    .orElseThrow(() ->
+                            new ResponseStatusException(HttpStatus.NOT_FOUND, "Section not found"));
+
+            //find session
+            ChatSession session = sessionRepo.findByUser_IdAndSectionId(user.getId(), sectionId)
+                    .orElse(null);
+            // one model for the session row, the call and the cache key
+            String model = aiProps.getDefaultModel();
+            if (session == null){
+                session = new ChatSession();
+                session.setUser(user);
+                session.setSectionId(sectionId);
+                session.setModel(model);
+                session.setTitle("Section " + sectionId);
+                session = sessionRepo.save(session);
+
+            }
+
+            String userMessage = req.getMessage().trim();
             ChatMessage message = new ChatMessage();
             message.setSession(session);
             message.setRole(MessageRole.USER);
@@ -101,25 +192,46 @@ public class ChatServiceImpl implements ChatService {
             message.setCreatedAt(Instant.now());
             messageRepo.save(message);
 
+            // long section: only the passages that match the question, in front of it;
+            // otherwise the whole content goes as a context document (Gemini can keep it in
+            // cachedContents, inline it is the same "content, blank line, question" prompt)
             String sectionContent = section.getContent();
-            String prompt = sectionContent + "\n\nUser question: " + userMessage;
-            String assistantAnswer = aiClient.generate(prompt,
-                    "You are a helpful course assistant. Answer based on the section content.",
-                    null
-                    );
+            String question = "User question: " + userMessage;
+            Optional<String> excerpt = chunkIndex.excerpt(sectionId, sectionContent, userMessage);
+            AiRequest request = excerpt.isPresent()
+                    ? new AiRequest(
+                            List.of(AiMessage.user(excerpt.get() + "\n\n" + question)),
+                            SECTION_SYSTEM_PROMPT,
+                            model,
+                            null,
+                            AiCaller.interactive(user.getId()))
+                    : new AiRequest(
+                            List.of(AiMessage.user(question)),
+                            SECTION_SYSTEM_PROMPT,
+                            model,
+                            AiContext.section(sectionId, sectionContent),
+                            AiCaller.interactive(user.getId()));
+
+            SectionAnswerCache.Key cacheKey = answerCache.keyFor(sectionId, sectionContent, model, userMessage);
+
+            return new SectionTurn(session, request, cacheKey, semanticCache.probe(cacheKey));
+        });
+    }
+
+    private ChatResponse finishSectionTurn(SectionTurn turn, String assistantAnswer) {
+        tx.executeWithoutResult(status -> {
             ChatMessage assistantMsg = new ChatMessage();
-            assistantMsg.setSession(session);
+            assistantMsg.setSession(turn.session());
             assistantMsg.setRole(MessageRole.ASSISTANT);
             assistantMsg.setContent(assistantAnswer);
             assistantMsg.setCreatedAt(Instant.now());
             messageRepo.save(assistantMsg);
+        });
 
         ChatResponse resp = new ChatResponse();
-        resp.setChatSessionId(session.getId());
+        resp.setChatSessionId(turn.session().getId());
         resp.setReply(assistantAnswer);
         return resp;
-
-
     }
 
 
@@ -156,29 +268,12 @@ public class ChatServiceImpl implements ChatService {
             return resp;
         }
 
-        // 5️⃣ Load LIMITED history (last 50 messages)
-        List<ChatMessage> msgs = messageRepo
-                .findBySession_IdOrderByCreatedAtAsc(session.getId());
-
-// optional: limit last 50 (если надо)
-        if (msgs.size() > 50) {
-            msgs = msgs.subList(msgs.size() - 50, msgs.size());
-        }
-
-
-
-
-        // 6️⃣ Map to DTO
-        List<ChatMessageDto> dto = msgs.stream().map(m -> {
-            ChatMessageDto d = new ChatMessageDto();
-            d.setId(m.getId());
-            d.setRole(m.getRole());        // USER / ASSISTANT
-            d.setContent(m.getContent());
-            d.setCreatedAt(m.getCreatedAt());
-            return d;
-        }).toList();
+        // 5️⃣ Last N messages, read as DTOs and limited by the database (newest first), shown oldest first
+        List<ChatMessageDto> dto = new ArrayList<>(messageRepo.findLatestDtos(session.getId(),
+                Limit.of(Math.max(1, aiProps.getHistory().getSectionWindow()))));
+        Collections.reverse(dto);
 
-        // 7️⃣ Build response
+        // 6️⃣ Build response
         resp.setChatSessionId(session.getId());
         resp.setMessages(dto);
         return resp;
@@ -1,8 +1,23 @@
 package com.example.growth_hungry.service;
 
+import com.example.growth_hungry.api.AiDeadlineExceededException;
+import com.example.growth_hungry.api.AiUnavailableException;
 import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.model.chat.MessageRole;
+import com.example.growth_hungry.service.ai.AiContext;
+import com.example.growth_hungry.service.ai.AiHttpException;
+import com.example.growth_hungry.service.ai.AiMessage;
+import com.example.growth_hungry.service.ai.AiRequest;
+import com.example.growth_hungry.service.ai.CircuitBreaker;
+import com.example.growth_hungry.service.ai.GeminiContextCache;
+import com.example.growth_hungry.service.ai.GeminiTextBodySubscriber;
+import com.example.growth_hungry.service.ai.GeminiTextExtractor;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import lombok.RequiredArgsConstructor;
@@ -11,12 +26,35 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 /**
@@ -33,62 +71,571 @@ public class GeminiClient implements AiClient {
     // Версию API держим В ОДНОМ МЕСТЕ (в коде), а base-url в пропертис без /v1...
     private static final String API_VERSION_PATH = "/v1beta";
 
+    private static final String GENERATE_METHOD = "generateContent";
+    private static final String STREAM_METHOD = "streamGenerateContent";
+    private static final String SSE_DATA_PREFIX = "data:";
+    private static final String CACHED_CONTENTS_PATH = "/cachedContents";
+    private static final Pattern RETRY_DELAY = Pattern.compile("\"retryDelay\"\\s*:\\s*\"(\\d+(?:\\.\\d+)?)s\"");
+
     private final AiProps props;
     private final HttpClient http;
     private final ObjectMapper om;
+    private final MeterRegistry meterRegistry;
+
+    // per model name: a dead or saturated model must not take the others down with it
+    private final AiProps.Resilience resilience;
+    private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Semaphore> bulkheads = new ConcurrentHashMap<>();
+
+    private final GeminiContextCache contextCache;
+
+    // the first answered call after start shows what a cold connection costs (compare with and without warm-up)
+    private final AtomicBoolean firstCallPending = new AtomicBoolean(true);
+
+    /** Standalone client with its own context-cache registry (tests, tools). */
+    public GeminiClient(AiProps props, HttpClient http, ObjectMapper om, MeterRegistry meterRegistry) {
+        this(props, http, om, meterRegistry, new GeminiContextCache(props, meterRegistry));
+    }
 
-    public GeminiClient(AiProps props, HttpClient http, ObjectMapper om) {
+    @Autowired
+    public GeminiClient(AiProps props, HttpClient http, ObjectMapper om, MeterRegistry meterRegistry,
+                        GeminiContextCache contextCache) {
         this.props = props;
         this.http = http;
         this.om = om;
+        this.meterRegistry = meterRegistry;
+        this.resilience = props.getResilience() != null ? props.getResilience() : new AiProps.Resilience();
+        this.contextCache = contextCache;
+        contextCache.onEvict(this::deleteCachedContent);
     }
 
     @Override
     public String generate(String message, String systemPrompt, String model) {
         String msg = normalizeRequired(message, "message must not be blank");
 
-        String effectiveModel = normalize(model);
-        if (effectiveModel == null) effectiveModel = normalizeRequired(props.getDefaultModel(), "Missing ai.default-model");
+        String effectiveModel = resolveModel(model);
 
-        String url = buildUrl(effectiveModel);
+        String url = buildUrl(effectiveModel, GENERATE_METHOD);
 
-        String json = buildRequestJson(msg, systemPrompt);
-
-        HttpRequest req = HttpRequest.newBuilder(URI.create(url))
-                .timeout(Duration.ofMillis(props.getTimeoutMs()))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(json))
-                .build();
+        HttpRequest req = buildHttpRequest(url, buildRequestJson(AiRequest.of(msg, systemPrompt, effectiveModel), null), null);
 
         log.info("Gemini URL: {}", url);
 
-        HttpResponse<String> res;
+        Admission admission = admit(effectiveModel);
+        long startNanos = System.nanoTime();
+        try {
+            HttpResponse<String> res;
+            try {
+                res = http.send(req, textBodyHandler());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Gemini call interrupted", e);
+            } catch (Exception e) {
+                throw new RuntimeException("Gemini call failed", e);
+            }
+
+            recordFirstCall(startNanos);
+            String text = parseResponse(res);
+            admission.complete(null);
+            return text;
+        } catch (RuntimeException e) {
+            admission.complete(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Same request as {@link #generate}, sent with {@link HttpClient#sendAsync}: no thread waits
+     * for Gemini, the response is parsed on the HTTP client's executor.
+     */
+    @Override
+    public CompletableFuture<String> generateAsync(String message, String systemPrompt, String model) {
+        String msg = normalizeRequired(message, "message must not be blank");
+        return generateAsync(AiRequest.of(msg, systemPrompt, model));
+    }
+
+    /**
+     * Multi-turn: every {@link AiMessage} becomes one entry of {@code contents}.
+     * A large {@link AiContext} is sent as a {@code cachedContent} reference when one exists
+     * (or can be created), otherwise inline in front of the first message.
+     */
+    @Override
+    public CompletableFuture<String> generateAsync(AiRequest request) {
+        String effectiveModel = resolveModel(request.model());
+
+        if (!contextCache.isEligible(request.context())) {
+            return sendAsync(request, effectiveModel, null);
+        }
+
+        AtomicReference<CompletableFuture<String>> send = new AtomicReference<>();
+        CompletableFuture<String> result = resolveCachedContent(request, effectiveModel)
+                .thenCompose(cached -> {
+                    CompletableFuture<String> f = sendAsync(request, effectiveModel, cached.orElse(null));
+                    send.set(f);
+                    return f;
+                });
+        // thenCompose doesn't pass cancellation down to the HTTP exchange
+        result.whenComplete((text, ex) -> {
+            CompletableFuture<String> f = send.get();
+            if (result.isCancelled() && f != null) f.cancel(true);
+        });
+        return result;
+    }
+
+    private CompletableFuture<String> sendAsync(AiRequest request, String effectiveModel, String cachedContent) {
+        String url = buildUrl(effectiveModel, GENERATE_METHOD);
+
+        HttpRequest req = buildHttpRequest(url, buildRequestJson(request, cachedContent), request.deadline());
+
+        log.info("Gemini URL (async): {}", url);
+
+        Admission admission = admit(effectiveModel);
+        long startNanos = System.nanoTime();
+
+        CompletableFuture<HttpResponse<String>> exchange;
+        CompletableFuture<String> result;
+        try {
+            exchange = http.sendAsync(req, textBodyHandler());
+            result = exchange
+                    .handle((res, ex) -> {
+                        if (ex != null) {
+                            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                            if (isDeadlineTimeout(cause, request.deadline())) throw deadlineExceeded();
+                            throw new RuntimeException("Gemini call failed", cause);
+                        }
+                        recordFirstCall(startNanos);
+                        return parseResponse(res);
+                    });
+        } catch (RuntimeException e) {
+            admission.complete(e);
+            throw e;
+        }
+
+        // also fires when the caller cancels `result` (CancellationException -> outcome ignored);
+        // cancelling the exchange aborts the HTTP request, so a lost hedge stops using the connection
+        result.whenComplete((text, ex) -> {
+            if (result.isCancelled()) exchange.cancel(true);
+            admission.complete(ex);
+        });
+        return result;
+    }
+
+    /**
+     * Body of a 2xx response is already the answer text ({@link GeminiTextBodySubscriber} parses
+     * the stream as it arrives); any other status carries the raw error body.
+     */
+    private String parseResponse(HttpResponse<String> res) {
+        if (res.statusCode() < 200 || res.statusCode() >= 300) {
+            // Сюда попадают 400/401/403/404 и т.д.
+            throw new AiHttpException(res.statusCode(), "Gemini HTTP " + res.statusCode() + ": " + safeBody(res.body()),
+                    retryAfterMillis(res.headers(), res.body()));
+        }
+
+        String text = res.body();
+        return text == null ? "" : text.trim();
+    }
+
+    private HttpResponse.BodyHandler<String> textBodyHandler() {
+        long max = props.getMaxResponseBytes();
+        return GeminiTextBodySubscriber.handler(max > 0 ? max : Long.MAX_VALUE);
+    }
+
+    /**
+     * Streams the answer through {@code :streamGenerateContent?alt=sse}.
+     * Every SSE {@code data:} line is a complete GenerateContentResponse JSON holding the next text delta.
+     * Time-to-first-token and total duration are recorded as separate timers
+     * ({@code ai.stream.ttft} / {@code ai.stream.duration}).
+     */
+    @Override
+    public String generateStream(String message, String systemPrompt, String model, Consumer<String> onChunk) {
+        String msg = normalizeRequired(message, "message must not be blank");
+        return generateStream(AiRequest.of(msg, systemPrompt, model), onChunk);
+    }
+
+    @Override
+    public String generateStream(AiRequest request, Consumer<String> onChunk) {
+        if (onChunk == null) throw new IllegalArgumentException("onChunk must not be null");
+
+        String effectiveModel = resolveModel(request.model());
+
+        // stream callers run on their own (virtual) thread, waiting for the cache lookup is fine
+        String cachedContent = contextCache.isEligible(request.context())
+                ? resolveCachedContent(request, effectiveModel).join().orElse(null)
+                : null;
+
+        String url = buildUrl(effectiveModel, STREAM_METHOD);
+
+        HttpRequest req = buildHttpRequest(url, buildRequestJson(request, cachedContent), request.deadline());
+
+        log.info("Gemini stream URL: {}", url);
+
+        Admission admission = admit(effectiveModel);
+        // exceptions thrown by onChunk (client went away) say nothing about Gemini's health
+        AtomicBoolean consumerFailed = new AtomicBoolean();
+        Consumer<String> guardedOnChunk = chunk -> {
+            try {
+                onChunk.accept(chunk);
+            } catch (RuntimeException e) {
+                consumerFailed.set(true);
+                throw e;
+            }
+        };
+
+        try {
+            String text = doStream(req, effectiveModel, request.deadline(), guardedOnChunk);
+            admission.complete(null);
+            return text;
+        } catch (RuntimeException e) {
+            if (consumerFailed.get()) admission.ignore();
+            else admission.complete(e);
+            throw e;
+        }
+    }
+
+    private String doStream(HttpRequest req, String effectiveModel, Instant deadline, Consumer<String> onChunk) {
+        long startNanos = System.nanoTime();
+
+        HttpResponse<Stream<String>> res;
         try {
-            res = http.send(req, HttpResponse.BodyHandlers.ofString());
+            res = http.send(req, HttpResponse.BodyHandlers.ofLines());
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            throw new RuntimeException("Gemini call interrupted", e);
+            throw new RuntimeException("Gemini stream interrupted", e);
         } catch (Exception e) {
-            throw new RuntimeException("Gemini call failed", e);
+            if (isDeadlineTimeout(e, deadline)) throw deadlineExceeded();
+            throw new RuntimeException("Gemini stream failed", e);
         }
 
         if (res.statusCode() < 200 || res.statusCode() >= 300) {
-            // Сюда попадают 400/401/403/404 и т.д.
-            throw new RuntimeException("Gemini HTTP " + res.statusCode() + ": " + safeBody(res.body()));
+            String body;
+            try (Stream<String> lines = res.body()) {
+                body = lines.collect(Collectors.joining("\n"));
+            }
+            throw new AiHttpException(res.statusCode(), "Gemini HTTP " + res.statusCode() + ": " + safeBody(body),
+                    retryAfterMillis(res.headers(), body));
         }
 
-        JsonNode root;
+        StringBuilder full = new StringBuilder();
+        boolean firstChunkSeen = false;
+
+        try (Stream<String> lines = res.body()) {
+            Iterator<String> it = lines.iterator();
+            while (it.hasNext()) {
+                String line = it.next();
+                // the request timeout only covers the headers; past the deadline nobody reads the rest
+                if (deadline != null && !Instant.now().isBefore(deadline)) throw deadlineExceeded();
+                if (!line.startsWith(SSE_DATA_PREFIX)) continue; // blank separators, comments, "event:" lines
+
+                String payload = line.substring(SSE_DATA_PREFIX.length()).trim();
+                if (payload.isEmpty()) continue;
+
+                String chunk;
+                try {
+                    chunk = GeminiTextExtractor.extractText(payload);
+                } catch (Exception e) {
+                    throw new RuntimeException("Failed to parse Gemini stream chunk", e);
+                }
+                if (chunk == null || chunk.isEmpty()) continue;
+
+                if (!firstChunkSeen) {
+                    firstChunkSeen = true;
+                    streamTimer("ai.stream.ttft", effectiveModel)
+                            .record(Duration.ofNanos(System.nanoTime() - startNanos));
+                }
+
+                full.append(chunk);
+                onChunk.accept(chunk);
+            }
+        } finally {
+            streamTimer("ai.stream.duration", effectiveModel)
+                    .record(Duration.ofNanos(System.nanoTime() - startNanos));
+        }
+
+        return full.toString().trim();
+    }
+
+    // ---- cachedContents ----
+
+    private CompletableFuture<Optional<String>> resolveCachedContent(AiRequest request, String effectiveModel) {
+        GeminiContextCache.Key key = contextCache.keyFor(request.context(), request.systemPrompt(), effectiveModel);
+        return contextCache.resolve(key, k -> createCachedContent(request.context(), request.systemPrompt(), effectiveModel));
+    }
+
+    /** POST /cachedContents: the context as a user turn plus the system instruction, with a TTL. */
+    private CompletableFuture<GeminiContextCache.Entry> createCachedContent(AiContext context, String systemPrompt, String model) {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("model", "models/" + (model.startsWith("models/") ? model.substring("models/".length()) : model));
+        root.put("displayName", context.id());
+        root.put("contents", List.of(Map.of(
+                "role", "user",
+                "parts", List.of(Map.of("text", context.text()))
+        )));
+        String sp = normalize(systemPrompt);
+        if (sp != null) {
+            root.put("systemInstruction", Map.of("parts", List.of(Map.of("text", sp))));
+        }
+        root.put("ttl", contextCache.ttl().toSeconds() + "s");
+
+        String json;
         try {
-            root = om.readTree(res.body());
+            json = om.writeValueAsString(root);
         } catch (Exception e) {
-            throw new RuntimeException("Failed to parse Gemini response JSON", e);
+            throw new RuntimeException("Failed to serialize Gemini cachedContents request", e);
         }
 
-        String text = extractText(root);
-        return text == null ? "" : text.trim();
+        HttpRequest req = buildHttpRequest(buildCachedContentsUrl(CACHED_CONTENTS_PATH), json, null);
+
+        return http.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .thenApply(res -> {
+                    if (res.statusCode() < 200 || res.statusCode() >= 300) {
+                        log.warn("Gemini cachedContents create failed: HTTP {} {}", res.statusCode(), safeBody(res.body()));
+                        throw new AiHttpException(res.statusCode(), "Gemini HTTP " + res.statusCode() + ": " + safeBody(res.body()));
+                    }
+                    try {
+                        JsonNode node = om.readTree(res.body());
+                        String name = node.path("name").asText(null);
+                        if (name == null) throw new IllegalStateException("cachedContents response has no name");
+                        String expire = node.path("expireTime").asText(null);
+                        Instant expireTime = expire != null ? Instant.parse(expire) : Instant.now().plus(contextCache.ttl());
+                        log.info("Gemini cachedContents created: {} for {}", name, context.id());
+                        return new GeminiContextCache.Entry(name, expireTime);
+                    } catch (Exception e) {
+                        throw new RuntimeException("Failed to parse Gemini cachedContents response", e);
+                    }
+                });
+    }
+
+    /** Best-effort DELETE; an entry we fail to delete just expires with its TTL. */
+    private void deleteCachedContent(String name) {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(buildCachedContentsUrl("/" + name)))
+                .timeout(Duration.ofMillis(props.getTimeoutMs()))
+                .DELETE()
+                .build();
+
+        http.sendAsync(req, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((res, ex) -> {
+                    if (ex != null || res.statusCode() >= 300) {
+                        log.warn("Gemini cachedContents delete failed for {}: {}", name, ex != null ? ex.toString() : "HTTP " + res.statusCode());
+                    }
+                });
+    }
+
+    /**
+     * Opens {@code connections} upstream connections with a cheap models-list call, in parallel,
+     * so TCP, TLS and HTTP/2 setup happen now instead of in the first user request. Any HTTP
+     * answer counts (the connection is open); failures are only logged.
+     *
+     * @return connections that got an answer within {@code timeout}
+     */
+    public int warmUp(int connections, Duration timeout) {
+        if (normalize(props.getBaseUrl()) == null || normalize(props.getApiKey()) == null) {
+            log.info("Gemini connection warm-up skipped: ai.base-url / ai.api-key not set");
+            return 0;
+        }
+        HttpRequest req = HttpRequest.newBuilder(URI.create(buildCachedContentsUrl("/models") + "&pageSize=1"))
+                .timeout(timeout)
+                .GET()
+                .build();
+
+        long startNanos = System.nanoTime();
+        List<CompletableFuture<HttpResponse<Void>>> calls = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            calls.add(http.sendAsync(req, HttpResponse.BodyHandlers.discarding()));
+        }
+        int opened = 0;
+        for (CompletableFuture<HttpResponse<Void>> call : calls) {
+            try {
+                call.join();
+                opened++;
+            } catch (CompletionException | CancellationException e) {
+                log.warn("Gemini connection warm-up call failed: {}", e.getCause() != null ? e.getCause().toString() : e.toString());
+            }
+        }
+        long tookNanos = System.nanoTime() - startNanos;
+        Timer.builder("ai.http.warmup")
+                .description("Startup warm-up of the Gemini connections")
+                .register(meterRegistry)
+                .record(tookNanos, TimeUnit.NANOSECONDS);
+        log.info("Gemini connection warm-up: {}/{} connections in {} ms",
+                opened, connections, TimeUnit.NANOSECONDS.toMillis(tookNanos));
+        return opened;
+    }
+
+    private void recordFirstCall(long startNanos) {
+        if (!firstCallPending.compareAndSet(true, false)) return;
+        Timer.builder("ai.http.first_call")
+                .description("Latency of the first Gemini call after start (connection setup included when not warmed up)")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private String buildCachedContentsUrl(String path) {
+        String base = normalizeBaseUrl(normalizeRequired(props.getBaseUrl(), "Missing ai.base-url"));
+        String encodedKey = URLEncoder.encode(
+                normalizeRequired(props.getApiKey(), "Missing ai.api-key"),
+                StandardCharsets.UTF_8
+        );
+        return base + path + "?key=" + encodedKey;
+    }
+
+    // ---- circuit breaker + bulkhead ----
+
+    /**
+     * Lets the call through the model's circuit breaker and bulkhead, or fails fast with
+     * {@link AiUnavailableException} instead of waiting {@code ai.timeout-ms} on a dead upstream.
+     */
+    private Admission admit(String model) {
+        CircuitBreaker breaker = breaker(model);
+        CircuitBreaker.Permit permit = breaker.tryAcquire();
+        if (permit == null) {
+            rejected(model, "circuit_open");
+            throw new AiUnavailableException("AI model " + model + " is temporarily unavailable", breaker.retryAfterMillis());
+        }
+
+        Semaphore bulkhead = bulkhead(model);
+        boolean acquired;
+        try {
+            long waitMs = resilience.getBulkheadWaitMs();
+            acquired = waitMs > 0 ? bulkhead.tryAcquire(waitMs, TimeUnit.MILLISECONDS) : bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            permit.release();
+            rejected(model, "bulkhead_full");
+            throw new AiUnavailableException("Too many concurrent requests to AI model " + model, 1_000);
+        }
+
+        return new Admission(permit, bulkhead);
+    }
+
+    private CircuitBreaker breaker(String model) {
+        return breakers.computeIfAbsent(model, m -> {
+            CircuitBreaker breaker = new CircuitBreaker(
+                    resilience.getFailureThreshold(), resilience.getOpenMs(), resilience.getHalfOpenProbes());
+            // 0 = closed, 1 = half-open, 2 = open
+            Gauge.builder("ai.circuit.state", breaker, b -> switch (b.state()) {
+                        case CLOSED -> 0;
+                        case HALF_OPEN -> 1;
+                        case OPEN -> 2;
+                    })
+                    .tag("model", m)
+                    .description("Circuit breaker state per model: 0 closed, 1 half-open, 2 open")
+                    .register(meterRegistry);
+            return breaker;
+        });
+    }
+
+    private Semaphore bulkhead(String model) {
+        return bulkheads.computeIfAbsent(model, m -> {
+            Semaphore bulkhead = new Semaphore(Math.max(1, resilience.getMaxConcurrentPerModel()));
+            Gauge.builder("ai.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                    .tag("model", m)
+                    .register(meterRegistry);
+            return bulkhead;
+        });
+    }
+
+    private void rejected(String model, String reason) {
+        Counter.builder("ai.rejected")
+                .tag("model", model)
+                .tag("reason", reason)
+                .description("AI calls rejected before reaching Gemini")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /** One admitted call: reports its outcome to the breaker and frees the bulkhead slot exactly once. */
+    private static final class Admission {
+        private final CircuitBreaker.Permit permit;
+        private final Semaphore bulkhead;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Admission(CircuitBreaker.Permit permit, Semaphore bulkhead) {
+            this.permit = permit;
+            this.bulkhead = bulkhead;
+        }
+
+        /** error == null means success */
+        void complete(Throwable error) {
+            if (!done.compareAndSet(false, true)) return;
+            try {
+                if (error == null) permit.success();
+                else if (isCallerSide(error)) permit.release();
+                else if (isUpstreamFailure(error)) permit.failure();
+                else permit.success(); // Gemini answered with a 4xx: it is up
+            } finally {
+                bulkhead.release();
+            }
+        }
+
+        void ignore() {
+            if (!done.compareAndSet(false, true)) return;
+            permit.release();
+            bulkhead.release();
+        }
+    }
+
+    // 4xx from Gemini = Gemini is up and answered; transport errors, timeouts, bad JSON, 5xx, 429 = failure
+    private static boolean isUpstreamFailure(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof AiHttpException httpError) return httpError.isUpstreamFailure();
+        }
+        return true;
+    }
+
+    // our side gave up (interrupt / cancel / caller's deadline) — no information about upstream health
+    private static boolean isCallerSide(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof CancellationException
+                    || t instanceof AiDeadlineExceededException) return true;
+        }
+        return false;
+    }
+
+    // a timeout of a request whose caller's deadline has passed: the deadline cut it short, not Gemini
+    private static boolean isDeadlineTimeout(Throwable error, Instant deadline) {
+        if (deadline == null || Instant.now().isBefore(deadline)) return false;
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof HttpTimeoutException) return true;
+        }
+        return false;
+    }
+
+    private static AiDeadlineExceededException deadlineExceeded() {
+        return new AiDeadlineExceededException("AI answer was not ready before the request deadline");
+    }
+
+    private Timer streamTimer(String name, String model) {
+        return Timer.builder(name)
+                .tag("model", model)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private String resolveModel(String model) {
+        String effectiveModel = normalize(model);
+        if (effectiveModel == null) effectiveModel = normalizeRequired(props.getDefaultModel(), "Missing ai.default-model");
+        return effectiveModel;
+    }
+
+    /** {@code deadline} (may be null) shortens ai.timeout-ms; a deadline already passed fails without a call. */
+    private HttpRequest buildHttpRequest(String url, String json, Instant deadline) {
+        Duration timeout = Duration.ofMillis(props.getTimeoutMs());
+        if (deadline != null) {
+            Duration remaining = Duration.between(Instant.now(), deadline);
+            if (remaining.compareTo(Duration.ofMillis(1)) < 0) throw deadlineExceeded();
+            if (remaining.compareTo(timeout) < 0) timeout = remaining;
+        }
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
     }
 
-    private String buildUrl(String model) {
+    private String buildUrl(String model, String method) {
         String base = normalizeBaseUrl(normalizeRequired(props.getBaseUrl(), "Missing ai.base-url"));
 
         String encodedKey = URLEncoder.encode(
@@ -98,9 +645,13 @@ public class GeminiClient implements AiClient {
 
         String cleanModel = model.startsWith("models/") ? model.substring("models/".length()) : model;
 
+        String query = STREAM_METHOD.equals(method)
+                ? "?alt=sse&key=" + encodedKey
+                : "?key=" + encodedKey;
+
         return base
                 + "/models/" + cleanModel
-                + ":generateContent?key=" + encodedKey;
+                + ":" + method + query;
     }
 
     private static String normalizeBaseUrl(String baseUrl) {
@@ -115,17 +666,35 @@ public class GeminiClient implements AiClient {
         return b + API_VERSION_PATH;
     }
 
-    private String buildRequestJson(String message, String systemPrompt) {
-        Map<String, Object> user = Map.of(
-                "role", "user",
-                "parts", List.of(Map.of("text", message))
-        );
+    /**
+     * With {@code cachedContent} the context and the system instruction live in the cache
+     * (Gemini rejects systemInstruction next to cachedContent); without it the context text is
+     * put in front of the first message.
+     */
+    private String buildRequestJson(AiRequest request, String cachedContent) {
+        List<AiMessage> messages = request.contents();
+        AiContext context = request.context();
+
+        List<Map<String, Object>> contents = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            AiMessage m = messages.get(i);
+            String text = (i == 0 && context != null && cachedContent == null)
+                    ? context.text() + "\n\n" + m.text()
+                    : m.text();
+            contents.add(Map.of(
+                    // Gemini calls the assistant side "model"
+                    "role", m.role() == MessageRole.ASSISTANT ? "model" : "user",
+                    "parts", List.of(Map.of("text", text))
+            ));
+        }
 
         Map<String, Object> root = new LinkedHashMap<>();
-        root.put("contents", List.of(user));
+        root.put("contents", contents);
 
-        String sp = normalize(systemPrompt);
-        if (sp != null) {
+        String sp = normalize(request.systemPrompt());
+        if (cachedContent != null) {
+            root.put("cachedContent", cachedContent);
+        } else if (sp != null) {
             root.put("systemInstruction",
                     Map.of("parts", List.of(Map.of("text", sp))));
         }
@@ -137,21 +706,6 @@ public class GeminiClient implements AiClient {
         }
     }
 
-    private String extractText(JsonNode root) {
-        JsonNode parts = root.at("/candidates/0/content/parts");
-        if (parts.isArray()) {
-            StringBuilder sb = new StringBuilder();
-            for (JsonNode p : parts) {
-                JsonNode t = p.get("text");
-                if (t != null && t.isTextual()) sb.append(t.asText());
-            }
-            if (sb.length() > 0) return sb.toString();
-        }
-
-        JsonNode direct = root.at("/candidates/0/content/text");
-        return direct.isTextual() ? direct.asText() : null;
-    }
-
     private static String normalize(String s) {
         if (s == null) return null;
         String t = s.trim();
@@ -166,6 +720,32 @@ public class GeminiClient implements AiClient {
 
 
 
+    /**
+     * Retry-After as delta-seconds or HTTP-date; without the header, the retryDelay of Gemini's
+     * RetryInfo error detail ("17s", "0.5s"). {@code -1} when neither is there.
+     */
+    private static long retryAfterMillis(HttpHeaders headers, String body) {
+        String header = headers == null ? null : headers.firstValue("Retry-After").orElse(null);
+        if (header != null) {
+            String value = header.trim();
+            try {
+                return Math.max(0, Long.parseLong(value) * 1000);
+            } catch (NumberFormatException notSeconds) {
+                try {
+                    Instant at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                    return Math.max(0, Duration.between(Instant.now(), at).toMillis());
+                } catch (DateTimeParseException ignored) {
+                    // unusable header: fall back to the body
+                }
+            }
+        }
+        if (body != null) {
+            Matcher m = RETRY_DELAY.matcher(body);
+            if (m.find()) return Math.round(Double.parseDouble(m.group(1)) * 1000);
+        }
+        return -1;
+    }
+
     private static String safeBody(String body) {
         if (body == null) return "";
         // чтобы не засорять логи огромными JSON-ами
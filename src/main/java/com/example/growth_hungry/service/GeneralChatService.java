@@ -4,14 +4,58 @@ import com.example.growth_hungry.dto.ChatMessageDto;
 import com.example.growth_hungry.dto.ChatRequest;
 import com.example.growth_hungry.dto.ChatResponse;
 import com.example.growth_hungry.dto.ChatSessionDto;
+import com.example.growth_hungry.dto.CursorPage;
+import com.example.growth_hungry.service.ai.AbortSignal;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface GeneralChatService {
     ChatResponse chat(ChatRequest req, String userEmail);
 
+    /**
+     * Non-blocking variant of {@link #chat}: validation errors are thrown right away,
+     * the returned future completes when the answer has been saved.
+     */
+    default CompletableFuture<ChatResponse> chatAsync(ChatRequest req, String userEmail) {
+        return chatAsync(req, userEmail, AbortSignal.none());
+    }
+
+    /**
+     * {@link #chatAsync(ChatRequest, String)} for a caller that may go away: the USER message is
+     * saved at the start; if {@code abort} fires (or its deadline passes) first, the AI call is
+     * cancelled and neither an answer nor the apology fallback is written.
+     */
+    CompletableFuture<ChatResponse> chatAsync(ChatRequest req, String userEmail, AbortSignal abort);
+
+    /**
+     * Same turn as {@link #chat}, but the answer is pushed to {@code onChunk} token by token.
+     * The assistant message is persisted once the stream has completed.
+     */
+    default ChatResponse chatStream(ChatRequest req, String userEmail, Consumer<String> onChunk) {
+        return chatStream(req, userEmail, AbortSignal.none(), onChunk);
+    }
+
+    /** Streaming turn with the abort rules of {@link #chatAsync(ChatRequest, String, AbortSignal)}. */
+    ChatResponse chatStream(ChatRequest req, String userEmail, AbortSignal abort, Consumer<String> onChunk);
+
+    /** All of the user's sessions, most recently updated first. */
     List<ChatSessionDto> getUserSessions(String userEmail);
 
+    /** All messages of the session, oldest first. */
     List<ChatMessageDto> getSessionMessages(Long sessionId, String userEmail);
 
+    /**
+     * Keyset page of the user's sessions, most recently updated first. Without a cursor: the
+     * newest {@code limit}; with {@code before} / {@code after}: the ones older / newer than it.
+     */
+    CursorPage<ChatSessionDto> getUserSessions(String userEmail, String before, String after, int limit);
+
+    /**
+     * Keyset page of a session's messages, oldest first within the page. Without a cursor: the
+     * newest {@code limit}; with {@code before} / {@code after}: the ones older / newer than it.
+     */
+    CursorPage<ChatMessageDto> getSessionMessages(Long sessionId, String userEmail, String before, String after, int limit);
+
     void deleteSession(Long sessionId, String userEmail);
 }
@@ -1,9 +1,13 @@
 package com.example.growth_hungry.service;
 
+import com.example.growth_hungry.api.AiDeadlineExceededException;
+import com.example.growth_hungry.api.AiUnavailableException;
+import com.example.growth_hungry.config.AiProps;
 import com.example.growth_hungry.dto.ChatMessageDto;
 import com.example.growth_hungry.dto.ChatRequest;
 import com.example.growth_hungry.dto.ChatResponse;
 import com.example.growth_hungry.dto.ChatSessionDto;
+import com.example.growth_hungry.dto.CursorPage;
 import com.example.growth_hungry.model.User;
 import com.example.growth_hungry.model.chat.ChatMessage;
 import com.example.growth_hungry.model.chat.ChatSession;
@@ -11,37 +15,141 @@ import com.example.growth_hungry.model.chat.MessageRole;
 import com.example.growth_hungry.repository.ChatMessageRepository;
 import com.example.growth_hungry.repository.ChatSessionRepository;
 import com.example.growth_hungry.repository.UserRepository;
+import com.example.growth_hungry.service.ai.AbortSignal;
+import com.example.growth_hungry.service.ai.AiCaller;
+import com.example.growth_hungry.service.ai.AiMessage;
+import com.example.growth_hungry.service.ai.AiRequest;
+import com.example.growth_hungry.service.ai.TokenEstimator;
+import com.example.growth_hungry.service.journal.ChatWriteBehind;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 @Service
 public class GeneralChatServiceImpl implements GeneralChatService{
 //    private static final Logger log = LoggerFactory.getLogger(ChatServiceImpl.class);
    private static final String DEFAULT_MODEL = "gemini-2.5-flash";
+    private static final String FALLBACK_REPLY = "Sorry, I couldn't generate a response right now.";
+    // history is read newest-first in pages that double in size: short chats cost one small query
+    private static final int HISTORY_FIRST_PAGE = 8;
+    private static final int HISTORY_MAX_PAGE = 64;
+    // upper bound for the limit of one page of the sessions / messages API
+    private static final int MAX_PAGE = 200;
 
     private final ChatSessionRepository sessionRepo;
     private final ChatMessageRepository messageRepo;
     private final UserRepository userRepository;
     private final AiClient aiClient;
-
-    public GeneralChatServiceImpl(ChatSessionRepository sessionRepo, ChatMessageRepository messageRepo, UserRepository userRepository, AiClient aiClient) {
+    // chat turns use two short transactions around the AI call instead of one @Transactional method
+    private final TransactionTemplate tx;
+    private final AiProps aiProps;
+    // ai.write-behind: messages of a turn are journaled locally and reach the database later;
+    // null unless ai.write-behind.enabled
+    private final ChatWriteBehind writeBehind;
+
+    public GeneralChatServiceImpl(ChatSessionRepository sessionRepo, ChatMessageRepository messageRepo, UserRepository userRepository, AiClient aiClient,
+                                  PlatformTransactionManager transactionManager, AiProps aiProps, @Nullable ChatWriteBehind writeBehind) {
         this.sessionRepo = sessionRepo;
         this.messageRepo = messageRepo;
         this.userRepository = userRepository;
         this.aiClient = aiClient;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.aiProps = aiProps;
+        this.writeBehind = writeBehind;
     }
 
     @Override
-    @Transactional
     public ChatResponse chat(ChatRequest req, String userEmail) {
+        return join(chatAsync(req, userEmail));
+    }
+
+    /**
+     * A turn is three steps: tx #1 only reads (user, session, history), the model is called with
+     * no transaction and no JDBC connection held, tx #2 writes the whole turn in one flush.
+     * The model call itself runs on the HTTP client and does not occupy the caller's thread.
+     */
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(ChatRequest req, String userEmail, AbortSignal abort) {
+        Turn turn = startTurn(req, userEmail);
+
+        CompletableFuture<String> answer;
+        try {
+            answer = aiClient.generateAsync(turn.request().withDeadline(abort.deadline()));
+        } catch (Exception e) {
+            answer = CompletableFuture.failedFuture(e);
+        }
+        // client gone: cancel down the AiClient chain to the HTTP exchange
+        CompletableFuture<String> call = answer;
+        abort.onAbort(() -> call.cancel(true));
+
+        return answer
+                .exceptionally(GeneralChatServiceImpl::fallback) // fallback text is chosen in finishTurn
+                .thenApply(text -> finishTurn(turn, text));
+    }
+
+    @Override
+    public ChatResponse chatStream(ChatRequest req, String userEmail, AbortSignal abort, Consumer<String> onChunk) {
+        if (onChunk == null) {
+            throw new IllegalArgumentException("onChunk is required");
+        }
+        Turn turn = startTurn(req, userEmail);
+        AiRequest request = turn.request().withDeadline(abort.deadline());
+
+        String answer;
+        try {
+            answer = abort.interruptibly(() -> aiClient.generateStream(request, onChunk));
+        } catch (AiUnavailableException | AiDeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            if (abort.isAborted()) throw new CancellationException("Caller went away");
+            answer = null;
+        }
+        return finishTurn(turn, answer);
+    }
+
+    // AI failure -> null (apology text); fail-fast rejections go to the client as 503/504 instead
+    // and, like a caller that went away, leave nothing of the turn saved
+    private static String fallback(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof AiUnavailableException unavailable) throw unavailable;
+        if (cause instanceof AiDeadlineExceededException deadline) throw deadline;
+        if (cause instanceof CancellationException cancelled) throw cancelled;
+        return null;
+    }
+
+    /**
+     * Everything the AI call and the final save need from the first half of a turn.
+     * {@code session} has no id yet when the turn starts a new chat.
+     */
+    private record Turn(ChatSession session, User user, String message, Instant startedAt, AiRequest request,
+                        String model) {
+    }
+
+    // validates request, resolves user + session, builds the conversation; writes nothing
+    private Turn startTurn(ChatRequest req, String userEmail) {
         if (req == null) {
             throw new ResponseStatusException(
                     HttpStatus.BAD_REQUEST,
@@ -66,154 +174,391 @@ public class GeneralChatServiceImpl implements GeneralChatService{
 
         final String email = userEmail.trim().toLowerCase();
 
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.UNAUTHORIZED,
-                        "User not found"
-                ));
-
-        Instant now = Instant.now();
-
         String systemPrompt = (req.getSystemPrompt() == null || req.getSystemPrompt().isBlank())
                 ? null
                 : req.getSystemPrompt().trim();
 
-        String model = (req.getModel() == null || req.getModel().isBlank())
+        String requestedModel = (req.getModel() == null || req.getModel().isBlank())
                 ? DEFAULT_MODEL
                 : req.getModel().trim();
 
         Long requestedSessionId = req.getChatSessionId();
 
-        // 1) load/create session
-        ChatSession session;
-        if (requestedSessionId == null) {
-            session = new ChatSession();
-            session.setUser(user);
-            session.setModel(model);
-            session.setTitle(buildDefaultTitle(message));
-            session.setCreatedAt(now);
-            session.setUpdatedAt(now);
-
-            session = sessionRepo.save(session);
-        } else {
-            session = sessionRepo.findByIdAndUser_Id(requestedSessionId, user.getId())
+        return tx.execute(status -> {
+            User user = userRepository.findByEmail(email)
                     .orElseThrow(() -> new ResponseStatusException(
-                            HttpStatus.NOT_FOUND,
-                            "Session not found"
+                            HttpStatus.UNAUTHORIZED,
+                            "User not found"
                     ));
 
-            // keep existing session model
-            model = session.getModel();
+            Instant now = Instant.now();
+            String model = requestedModel;
+
+            // 1) load/create session
+            ChatSession session;
+            List<AiMessage> contents;
+            if (requestedSessionId == null) {
+                session = new ChatSession();
+                session.setUser(user);
+                session.setModel(model);
+                session.setTitle(buildDefaultTitle(message));
+                session.setCreatedAt(now);
+                session.setUpdatedAt(now);
+                // inserted with the messages in tx #2
+                contents = List.of(AiMessage.user(message));
+            } else {
+                session = sessionRepo.findByIdAndUser_Id(requestedSessionId, user.getId())
+                        .orElseThrow(() -> new ResponseStatusException(
+                                HttpStatus.NOT_FOUND,
+                                "Session not found"
+                        ));
+
+                // keep existing session model
+                model = session.getModel();
+
+                // the new USER row is saved in tx #2: history = everything already in the session
+                contents = buildContents(session.getId(), message, systemPrompt);
+            }
+
+            return new Turn(session, user, message, now,
+                    new AiRequest(contents, systemPrompt, model, null, AiCaller.interactive(user.getId())), model);
+        });
+    }
+
+    /**
+     * Conversation for the model, oldest first, ending with {@code message}.
+     * Rows are read newest-first with a keyset on id and added until the estimated token budget
+     * ({@code ai.history.max-tokens}, system prompt and new message included) or
+     * {@code ai.history.max-messages} is reached — the session is never loaded as a whole.
+     * The new message is always sent, even when it alone is over budget.
+     */
+    private List<AiMessage> buildContents(Long sessionId, String message, String systemPrompt) {
+        AiProps.History limits = aiProps.getHistory();
+        AiMessage current = AiMessage.user(message);
+        int budget = limits.getMaxTokens() - TokenEstimator.estimate(systemPrompt) - TokenEstimator.estimate(current);
+
+        Deque<AiMessage> history = new ArrayDeque<>();
+        Long beforeId = null;
+        int read = 0;
+        int pageSize = HISTORY_FIRST_PAGE;
+
+        // journaled turns not in the database yet are the newest; a row drained meanwhile is skipped below
+        List<ChatMessage> pending = pending(sessionId);
+        Set<Long> pendingIds = new HashSet<>();
+        for (int i = pending.size() - 1; i >= 0 && budget > 0 && read < limits.getMaxMessages(); i--) {
+            pendingIds.add(pending.get(i).getId());
+            budget = prepend(history, pending.get(i), budget);
+            read++;
         }
 
-        // 2) save USER message
-        ChatMessage userMsg = new ChatMessage();
-        userMsg.setSession(session);
-        userMsg.setUser(user);
-        userMsg.setRole(MessageRole.USER);
-        userMsg.setContent(message);
-        userMsg.setCreatedAt(now);
-        messageRepo.save(userMsg);
+        pages:
+        while (budget > 0 && read < limits.getMaxMessages()) {
+            int limit = Math.min(pageSize, limits.getMaxMessages() - read);
+            List<ChatMessage> page = beforeId == null
+                    ? messageRepo.findBySession_IdOrderByIdDesc(sessionId, Limit.of(limit))
+                    : messageRepo.findBySession_IdAndIdLessThanOrderByIdDesc(sessionId, beforeId, Limit.of(limit));
+
+            for (ChatMessage m : page) {
+                if (pendingIds.contains(m.getId())) continue;
+                budget = prepend(history, m, budget);
+                if (budget < 0) break pages;
+            }
 
-        // 3) call AI
-        String answer;
-        try {
-            answer = aiClient.generate(message, systemPrompt, model);
-            if (answer == null || answer.isBlank()) {
-                answer = "(Empty response)";
+            read += page.size();
+            if (page.size() < limit) break;
+            beforeId = page.get(page.size() - 1).getId();
+            pageSize = Math.min(pageSize * 2, HISTORY_MAX_PAGE);
+        }
+
+        // Gemini expects the conversation to start with the user
+        while (!history.isEmpty() && history.peekFirst().role() != MessageRole.USER) {
+            history.removeFirst();
+        }
+        history.addLast(current);
+
+        return mergeSameRole(history);
+    }
+
+    // puts m in front of the history; returns the budget left, -1 when m does not fit (stop reading)
+    private static int prepend(Deque<AiMessage> history, ChatMessage m, int budget) {
+        // our own apology is noise for the model
+        if (m.getRole() == MessageRole.ASSISTANT && FALLBACK_REPLY.equals(m.getContent())) return budget;
+
+        AiMessage turn = new AiMessage(m.getRole(), m.getContent());
+        int cost = TokenEstimator.estimate(turn);
+        if (cost > budget) return -1;
+        history.addFirst(turn);
+        return budget - cost;
+    }
+
+    // a failed turn leaves two USER rows in a row; the model wants alternating turns
+    private static List<AiMessage> mergeSameRole(Deque<AiMessage> messages) {
+        List<AiMessage> merged = new ArrayList<>(messages.size());
+        for (AiMessage m : messages) {
+            int last = merged.size() - 1;
+            if (last >= 0 && merged.get(last).role() == m.role()) {
+                merged.set(last, new AiMessage(m.role(), merged.get(last).text() + "\n\n" + m.text()));
+            } else {
+                merged.add(m);
             }
-        } catch (Exception e) {
-            answer = "Sorry, I couldn't generate a response right now.";
         }
+        return merged;
+    }
 
-        // 4) save AI message
-        ChatMessage aiMsg = new ChatMessage();
-        aiMsg.setSession(session);
-        aiMsg.setUser(user);
-        aiMsg.setRole(MessageRole.ASSISTANT);
-        aiMsg.setContent(answer);
-        aiMsg.setCreatedAt(Instant.now());
-        messageRepo.save(aiMsg);
+    // answer == null means the AI call failed
+    private ChatResponse finishTurn(Turn turn, String answer) {
+        if (answer == null) {
+            answer = FALLBACK_REPLY;
+        } else if (answer.isBlank()) {
+            answer = "(Empty response)";
+        }
 
-        // 5) update session timestamp
-        session.setUpdatedAt(Instant.now());
-        sessionRepo.save(session);
+        Instant now = Instant.now();
+        ChatSession session = turn.session();
+        if (writeBehind != null && writeBehind.isEnabled()) {
+            // journaled messages need their session in the database: a new one is written right away
+            if (session.getId() == null) {
+                session = tx.execute(status -> sessionRepo.save(turn.session()));
+            }
+            boolean journaled = writeBehind.append(session.getId(), turn.user().getId(), now, List.of(
+                    new ChatWriteBehind.Message(MessageRole.USER, turn.message(), turn.startedAt()),
+                    new ChatWriteBehind.Message(MessageRole.ASSISTANT, answer, now)));
+            if (!journaled) session = saveTurn(session, turn, answer, now);
+        } else {
+            session = saveTurn(session, turn, answer, now);
+        }
 
         ChatResponse resp = new ChatResponse(answer);
         resp.setChatSessionId(session.getId());
-        resp.setModel(model);
+        resp.setModel(turn.model());
 
         return resp;
     }
 
+    // ids come from the pooled sequences, so nothing is sent before the flush at commit:
+    // both messages go out as one JDBC batch, plus the session insert or updated_at bump
+    private ChatSession saveTurn(ChatSession session, Turn turn, String reply, Instant now) {
+        return tx.execute(status -> {
+            ChatSession s = session;
+            boolean created = s.getId() == null;
+            if (created) s = sessionRepo.save(s);
+
+            ChatMessage userMsg = new ChatMessage();
+            userMsg.setSession(s);
+            userMsg.setUser(turn.user());
+            userMsg.setRole(MessageRole.USER);
+            userMsg.setContent(turn.message());
+            userMsg.setCreatedAt(turn.startedAt());
+            messageRepo.save(userMsg);
+
+            ChatMessage aiMsg = new ChatMessage();
+            aiMsg.setSession(s);
+            aiMsg.setUser(turn.user());
+            aiMsg.setRole(MessageRole.ASSISTANT);
+            aiMsg.setContent(reply);
+            aiMsg.setCreatedAt(now);
+            messageRepo.save(aiMsg);
+
+            if (!created) {
+                // session is detached here, so no merge of its message list
+                sessionRepo.touch(s.getId(), now);
+                s.setUpdatedAt(now);
+            }
+            return s;
+        });
+    }
+
+    // sync callers get the original exception, not CompletionException
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
     private String buildDefaultTitle(String userMessage) {
         if (userMessage == null || userMessage.isBlank()) return "New chat";
         String t = userMessage.trim();
         return t.length() > 30 ? t.substring(0, 30) + "…" : t;
     }
 
+    // the whole lists are the keyset pages read back to back: the same queries and rules as the paged API
+
     @Override
     @Transactional(readOnly = true)
     public List<ChatSessionDto> getUserSessions(String userEmail) {
+        List<ChatSessionDto> sessions = new ArrayList<>();
+        CursorPage<ChatSessionDto> page = null;
+        do {
+            page = getUserSessions(userEmail, page == null ? null : page.getBefore(), null, MAX_PAGE);
+            sessions.addAll(page.getItems());
+        } while (page.isHasMore());
+        // a journaled turn can move a session ahead of the page it was read in
+        sessions.sort(Comparator.comparing(ChatSessionDto::getUpdatedAt).reversed());
+        return sessions;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ChatMessageDto> getSessionMessages(Long sessionId, String userEmail) {
+        // pages come newest first, each one oldest first
+        List<List<ChatMessageDto>> pages = new ArrayList<>();
+        CursorPage<ChatMessageDto> page = null;
+        do {
+            page = getSessionMessages(sessionId, userEmail, page == null ? null : page.getBefore(), null, MAX_PAGE);
+            pages.add(page.getItems());
+        } while (page.isHasMore());
+
+        List<ChatMessageDto> messages = new ArrayList<>();
+        for (int i = pages.size() - 1; i >= 0; i--) messages.addAll(pages.get(i));
+        return messages;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<ChatSessionDto> getUserSessions(String userEmail, String before, String after, int limit) {
         if (userEmail == null || userEmail.isBlank()) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User email is required");
         }
+        ChatCursor b = ChatCursor.decode(before, "before");
+        ChatCursor a = ChatCursor.decode(after, "after");
+        int n = pageSize(limit, b, a);
 
-        String email = userEmail.trim().toLowerCase();
-
-        User user = userRepository.findByEmail(email)
+        User user = userRepository.findByEmail(userEmail.trim().toLowerCase())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
 
-        return sessionRepo.findAllByUser_IdOrderByUpdatedAtDesc(user.getId())
-                .stream()
-                .map(s -> {
-                    ChatSessionDto dto = new ChatSessionDto();
-                    dto.setId(s.getId());
-                    dto.setTitle(s.getTitle());
-                    dto.setModel(s.getModel());
-                    dto.setCreatedAt(s.getCreatedAt());
-                    dto.setUpdatedAt(s.getUpdatedAt() != null ? s.getUpdatedAt() : s.getCreatedAt());
-                    return dto;
-                })
-                .toList();
+        // one row more than the page: tells whether there is another one
+        List<ChatSession> rows;
+        if (a != null) {
+            rows = new ArrayList<>(sessionRepo.findPageAfter(user.getId(), a.at(), a.id(), Limit.of(n + 1)));
+        } else if (b != null) {
+            rows = new ArrayList<>(sessionRepo.findPageBefore(user.getId(), b.at(), b.id(), Limit.of(n + 1)));
+        } else {
+            rows = new ArrayList<>(sessionRepo.findByUser_IdOrderByUpdatedAtDescIdDesc(user.getId(), Limit.of(n + 1)));
+        }
+        boolean hasMore = rows.size() > n;
+        if (hasMore) rows.remove(n);
+        // "after" pages are read oldest first; every page is returned newest first
+        if (a != null) Collections.reverse(rows);
+        if (rows.isEmpty()) return new CursorPage<>(List.of(), null, null, false);
+
+        // cursors come from the stored updated_at: the next query must continue from there,
+        // even when a journaled turn shows the session as more recent
+        String newer = cursor(rows.get(0)).encode();
+        String older = cursor(rows.get(rows.size() - 1)).encode();
+
+        List<ChatSessionDto> items = new ArrayList<>(rows.size());
+        boolean journaled = false;
+        for (ChatSession s : rows) {
+            ChatSessionDto dto = toDto(s);
+            journaled |= overlayPending(dto);
+            items.add(dto);
+        }
+        if (journaled) items.sort(Comparator.comparing(ChatSessionDto::getUpdatedAt).reversed());
+        return new CursorPage<>(items, older, newer, hasMore);
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<ChatMessageDto> getSessionMessages(Long sessionId, String userEmail) {
-
+    public CursorPage<ChatMessageDto> getSessionMessages(Long sessionId, String userEmail, String before, String after, int limit) {
         if (userEmail == null || userEmail.isBlank()) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User email is required");
         }
         if (sessionId == null) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Session id is required");
         }
+        ChatCursor b = ChatCursor.decode(before, "before");
+        ChatCursor a = ChatCursor.decode(after, "after");
+        int n = pageSize(limit, b, a);
 
-        String email = userEmail.trim().toLowerCase();
-
-        // 1) user must exist
-        User user = userRepository.findByEmail(email)
+        User user = userRepository.findByEmail(userEmail.trim().toLowerCase())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
-
-        // 2) session must belong to this user
         ChatSession session = sessionRepo.findByIdAndUser_Id(sessionId, user.getId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Session not found"));
 
-        // 3) load messages
-        List<ChatMessage> messages = messageRepo.findBySession_IdOrderByCreatedAtAsc(session.getId());
+        // one row more than the page: tells whether there is another one
+        List<ChatMessage> rows;
+        if (a != null) {
+            rows = messageRepo.findPageAfter(session.getId(), a.at(), a.id(), Limit.of(n + 1));
+        } else if (b != null) {
+            rows = messageRepo.findPageBefore(session.getId(), b.at(), b.id(), Limit.of(n + 1));
+        } else {
+            rows = messageRepo.findBySession_IdOrderByCreatedAtDescIdDesc(session.getId(), Limit.of(n + 1));
+        }
+
+        // messages still in the write-behind journal join the page when they are on its side of the cursor
+        Map<Long, ChatMessage> byId = new LinkedHashMap<>();
+        for (ChatMessage m : rows) byId.put(m.getId(), m);
+        for (ChatMessage m : pending(session.getId())) {
+            ChatCursor c = cursor(m);
+            if ((b == null || c.compareTo(b) < 0) && (a == null || c.compareTo(a) > 0)) byId.putIfAbsent(m.getId(), m);
+        }
+        Comparator<ChatMessage> order = Comparator.comparing(GeneralChatServiceImpl::cursor);
+        List<ChatMessage> page = new ArrayList<>(byId.values());
+        page.sort(a != null ? order : order.reversed());
+
+        boolean hasMore = page.size() > n;
+        if (hasMore) page = page.subList(0, n);
+        if (page.isEmpty()) return new CursorPage<>(List.of(), null, null, false);
+        // every page is returned oldest first, like the whole list used to be
+        if (a == null) Collections.reverse(page);
+
+        List<ChatMessageDto> items = new ArrayList<>(page.size());
+        for (ChatMessage m : page) items.add(toDto(m));
+        return new CursorPage<>(items, cursor(page.get(0)).encode(), cursor(page.get(page.size() - 1)).encode(), hasMore);
+    }
 
-        // 4) map to DTO
-        List<ChatMessageDto> result = new ArrayList<>(messages.size());
-        for (ChatMessage m : messages) {
-            ChatMessageDto dto = new ChatMessageDto();
-            dto.setId(m.getId());
-            dto.setRole(m.getRole());
-            dto.setContent(m.getContent());
-            dto.setCreatedAt(m.getCreatedAt());
-            result.add(dto);
+    private static int pageSize(int limit, ChatCursor before, ChatCursor after) {
+        if (before != null && after != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Use either before or after, not both");
+        }
+        if (limit < 1 || limit > MAX_PAGE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_PAGE);
         }
+        return limit;
+    }
+
+    private static ChatCursor cursor(ChatSession s) {
+        return ChatCursor.of(s.getUpdatedAt() != null ? s.getUpdatedAt() : s.getCreatedAt(), s.getId());
+    }
+
+    private static ChatCursor cursor(ChatMessage m) {
+        return ChatCursor.of(m.getCreatedAt(), m.getId());
+    }
+
+    private static ChatSessionDto toDto(ChatSession s) {
+        ChatSessionDto dto = new ChatSessionDto();
+        dto.setId(s.getId());
+        dto.setTitle(s.getTitle());
+        dto.setModel(s.getModel());
+        dto.setCreatedAt(s.getCreatedAt());
+        dto.setUpdatedAt(s.getUpdatedAt() != null ? s.getUpdatedAt() : s.getCreatedAt());
+        return dto;
+    }
+
+    private List<ChatMessage> pending(Long sessionId) {
+        return writeBehind == null ? List.of() : writeBehind.pending(sessionId);
+    }
+
+    // a turn still in the write-behind journal has not bumped updated_at in the database
+    private boolean overlayPending(ChatSessionDto dto) {
+        Instant pendingAt = writeBehind == null ? null : writeBehind.pendingUpdatedAt(dto.getId()).orElse(null);
+        if (pendingAt != null && (dto.getUpdatedAt() == null || pendingAt.isAfter(dto.getUpdatedAt()))) {
+            dto.setUpdatedAt(pendingAt);
+            return true;
+        }
+        return false;
+    }
 
-        return result;
+    private static ChatMessageDto toDto(ChatMessage m) {
+        ChatMessageDto dto = new ChatMessageDto();
+        dto.setId(m.getId());
+        dto.setRole(m.getRole());
+        dto.setContent(m.getContent());
+        dto.setCreatedAt(m.getCreatedAt());
+        return dto;
     }
 
     @Override
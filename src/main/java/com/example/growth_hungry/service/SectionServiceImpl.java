@@ -2,6 +2,11 @@ package com.example.growth_hungry.service;
 
 import com.example.growth_hungry.model.Section;
 import com.example.growth_hungry.repository.SectionRepository;
+import com.example.growth_hungry.service.ai.AiContext;
+import com.example.growth_hungry.service.ai.GeminiContextCache;
+import com.example.growth_hungry.service.ai.SectionAnswerCache;
+import com.example.growth_hungry.service.ai.SectionChunkIndex;
+import com.example.growth_hungry.service.ai.SemanticAnswerCache;
 import java.util.List;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -13,9 +18,19 @@ import org.springframework.web.server.ResponseStatusException;
 public class SectionServiceImpl implements SectionService {
 
     private final SectionRepository sectionRepository;
+    private final SectionAnswerCache answerCache;
+    private final GeminiContextCache contextCache;
+    private final SectionChunkIndex chunkIndex;
+    private final SemanticAnswerCache semanticCache;
 
-    public SectionServiceImpl(SectionRepository sectionRepository) {
+    public SectionServiceImpl(SectionRepository sectionRepository, SectionAnswerCache answerCache,
+                              GeminiContextCache contextCache, SectionChunkIndex chunkIndex,
+                              SemanticAnswerCache semanticCache) {
         this.sectionRepository = sectionRepository;
+        this.answerCache = answerCache;
+        this.contextCache = contextCache;
+        this.chunkIndex = chunkIndex;
+        this.semanticCache = semanticCache;
     }
 
     @Override
@@ -46,6 +61,12 @@ public class SectionServiceImpl implements SectionService {
         Section section = getById(sectionId);
         section.setContent(content);
         // dirty checking сделает UPDATE
+
+        // cached answers, the Gemini context cache and the passage index were built from the old content
+        answerCache.invalidateSection(sectionId);
+        contextCache.invalidate(AiContext.sectionId(sectionId));
+        chunkIndex.invalidate(sectionId);
+        semanticCache.invalidateSection(sectionId);
     }
 
     @Override
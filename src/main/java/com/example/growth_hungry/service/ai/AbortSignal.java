@@ -0,0 +1,92 @@
+package com.example.growth_hungry.service.ai;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+/**
+ * Tells a chat turn that nobody waits for it any more: the web layer calls {@link #abort()} when
+ * the client disconnects or its deadline passes, the service stops the AI call.
+ *
+ * Async turns register {@link #onAbort} (cancel the future); blocking streams run the AI call
+ * inside {@link #interruptibly}, which is the only window in which the thread gets interrupted —
+ * the JDBC work around it is never hit by the interrupt.
+ */
+public final class AbortSignal {
+
+    private final Instant deadline;
+    // guarded by this
+    private final List<Runnable> listeners = new ArrayList<>();
+    private Thread interruptible;
+    private boolean aborted;
+
+    private AbortSignal(Instant deadline) {
+        this.deadline = deadline;
+    }
+
+    /** No deadline; aborted only on disconnect. */
+    public static AbortSignal none() {
+        return new AbortSignal(null);
+    }
+
+    /** @param deadline may be {@code null} (no deadline) */
+    public static AbortSignal withDeadline(Instant deadline) {
+        return new AbortSignal(deadline);
+    }
+
+    /** When the caller stops waiting, or {@code null}. */
+    public Instant deadline() {
+        return deadline;
+    }
+
+    public void abort() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (aborted) return;
+            aborted = true;
+            if (interruptible != null) interruptible.interrupt();
+            toRun = List.copyOf(listeners);
+            listeners.clear();
+        }
+        toRun.forEach(Runnable::run);
+    }
+
+    public synchronized boolean isAborted() {
+        return aborted;
+    }
+
+    /** Runs {@code action} on abort, right away if already aborted. */
+    public void onAbort(Runnable action) {
+        synchronized (this) {
+            if (!aborted) {
+                listeners.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Runs a blocking call on the current thread; {@link #abort()} interrupts the thread while
+     * (and only while) the call runs.
+     *
+     * @throws CancellationException if already aborted
+     */
+    public <T> T interruptibly(Supplier<T> call) {
+        synchronized (this) {
+            if (aborted) throw new CancellationException("Caller went away");
+            interruptible = Thread.currentThread();
+        }
+        try {
+            return call.get();
+        } finally {
+            synchronized (this) {
+                interruptible = null;
+                // an abort that raced with the end of the call must not hit the next blocking step
+                if (aborted) Thread.interrupted();
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.growth_hungry.service.ai;
+
+import com.example.growth_hungry.api.AiDeadlineExceededException;
+import com.example.growth_hungry.api.AiOverloadedException;
+import com.example.growth_hungry.api.AiUnavailableException;
+import com.example.growth_hungry.service.AiClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Load-shedding layer of the AiClient chain: calls over the {@link AdaptiveLimiter} limit fail
+ * immediately with {@link AiOverloadedException} (503) instead of waiting in the scheduler queue.
+ *
+ * Successful calls feed their latency to the limiter, provider failures cut the limit. Streams
+ * count as in flight but give no latency sample — their duration is the answer length.
+ */
+public class AdaptiveLimitAiClient implements AiClient {
+
+    // a slot usually frees within one typical call
+    private static final long RETRY_AFTER_MS = 1_000;
+
+    private final AiClient delegate;
+    private final AdaptiveLimiter limiter;
+    private final Counter shed;
+
+    public AdaptiveLimitAiClient(AiClient delegate, AdaptiveLimiter limiter, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.shed = Counter.builder("ai.limit.shed")
+                .description("AI calls rejected because the adaptive concurrency limit was reached")
+                .register(meterRegistry);
+        Gauge.builder("ai.limit.current", limiter, AdaptiveLimiter::limit)
+                .description("Current adaptive concurrency limit for AI calls")
+                .register(meterRegistry);
+        Gauge.builder("ai.limit.in_flight", limiter, AdaptiveLimiter::inFlight)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String generate(String message, String systemPrompt, String model) {
+        try {
+            return generateAsync(message, systemPrompt, model).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> generateAsync(String message, String systemPrompt, String model) {
+        return generateAsync(AiRequest.of(message, systemPrompt, model));
+    }
+
+    @Override
+    public CompletableFuture<String> generateAsync(AiRequest request) {
+        AdaptiveLimiter.Listener listener = acquire();
+        long startNanos = System.nanoTime();
+
+        CompletableFuture<String> result;
+        try {
+            result = delegate.generateAsync(request);
+        } catch (RuntimeException e) {
+            report(listener, e, startNanos);
+            throw e;
+        }
+        result.whenComplete((text, ex) -> report(listener, ex, startNanos));
+        return result;
+    }
+
+    @Override
+    public String generateStream(String message, String systemPrompt, String model, Consumer<String> onChunk) {
+        return generateStream(AiRequest.of(message, systemPrompt, model), onChunk);
+    }
+
+    @Override
+    public String generateStream(AiRequest request, Consumer<String> onChunk) {
+        AdaptiveLimiter.Listener listener = acquire();
+        try {
+            String text = delegate.generateStream(request, onChunk);
+            listener.onIgnore();
+            return text;
+        } catch (RuntimeException e) {
+            if (isUpstreamFailure(e)) listener.onDropped();
+            else listener.onIgnore();
+            throw e;
+        }
+    }
+
+    public long shedCount() {
+        return (long) shed.count();
+    }
+
+    private AdaptiveLimiter.Listener acquire() {
+        AdaptiveLimiter.Listener listener = limiter.tryAcquire();
+        if (listener == null) {
+            shed.increment();
+            throw new AiOverloadedException("AI is at capacity, try again shortly", RETRY_AFTER_MS);
+        }
+        return listener;
+    }
+
+    private static void report(AdaptiveLimiter.Listener listener, Throwable error, long startNanos) {
+        if (error == null) listener.onSuccess(System.nanoTime() - startNanos);
+        else if (isUpstreamFailure(error)) listener.onDropped();
+        else listener.onIgnore();
+    }
+
+    // same split as GeminiClient's breaker: 5xx / 429 / timeouts = provider overloaded; cancel, our 4xx,
+    // the caller's deadline, and rejections by lower layers (breaker open, queue full) say nothing about latency
+    private static boolean isUpstreamFailure(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof CancellationException) return false;
+            if (t instanceof AiUnavailableException || t instanceof AiDeadlineExceededException) return false;
+            if (t instanceof AiHttpException httpError) return httpError.isUpstreamFailure();
+        }
+        return true;
+    }
+}
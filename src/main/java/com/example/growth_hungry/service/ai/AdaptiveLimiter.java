@@ -0,0 +1,119 @@
+package com.example.growth_hungry.service.ai;
+
+import com.example.growth_hungry.config.AiProps;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that follows the provider's latency (gradient algorithm, as in Netflix
+ * concurrency-limits' Gradient2).
+ *
+ * Every successful call is an RTT sample. A long-term average of the samples is the baseline;
+ * while samples stay within {@code tolerance} x baseline the limit grows by about sqrt(limit)
+ * per sample, once they get slower it shrinks in proportion (at most halving per sample).
+ * A failed call (5xx, 429, timeout) cuts the limit by {@code backoffRatio}. Changes are smoothed,
+ * and the limit only grows while at least half of it is actually in use.
+ *
+ * {@link #tryAcquire()} never waits: it returns {@code null} when the limit is reached.
+ */
+public class AdaptiveLimiter {
+
+    private final double minLimit;
+    private final double maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final double backoffRatio;
+    private final int longWindow;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // guarded by this
+    private double limit;
+    private double longRtt;
+
+    // read without the lock by tryAcquire
+    private volatile int currentLimit;
+
+    public AdaptiveLimiter(AiProps.AdaptiveLimit props) {
+        this.minLimit = Math.max(1, props.getMinLimit());
+        this.maxLimit = Math.max(minLimit, props.getMaxLimit());
+        this.tolerance = Math.max(1.0, props.getTolerance());
+        this.smoothing = Math.min(1.0, Math.max(0.01, props.getSmoothing()));
+        this.backoffRatio = Math.min(0.99, Math.max(0.1, props.getBackoffRatio()));
+        this.longWindow = Math.max(1, props.getLongWindow());
+        this.limit = clamp(props.getInitialLimit());
+        this.currentLimit = (int) limit;
+    }
+
+    /** @return a listener for the outcome, or {@code null} when the limit is reached */
+    public Listener tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= currentLimit) return null;
+            if (inFlight.compareAndSet(current, current + 1)) return new Listener(current + 1);
+        }
+    }
+
+    public int limit() {
+        return currentLimit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void onSample(long rttNanos, int inFlightAtStart) {
+        double rtt = Math.max(1, rttNanos);
+        longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) / longWindow;
+        // latency went down a lot (provider recovered): let the baseline follow quickly
+        if (longRtt / rtt > 2) longRtt *= 0.95;
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / rtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        // app-limited: a mostly idle limit says nothing about whether a higher one would be fine
+        if (target > limit && inFlightAtStart < limit / 2) return;
+
+        update(limit * (1 - smoothing) + target * smoothing);
+    }
+
+    private synchronized void onDropped() {
+        update(limit * backoffRatio);
+    }
+
+    private void update(double newLimit) {
+        limit = clamp(newLimit);
+        currentLimit = (int) limit;
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+
+    /** Outcome of one acquired call; only the first report counts. */
+    public final class Listener {
+        private final int inFlightAtStart;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Listener(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        public void onSuccess(long rttNanos) {
+            if (!done.compareAndSet(false, true)) return;
+            inFlight.decrementAndGet();
+            onSample(rttNanos, inFlightAtStart);
+        }
+
+        /** The provider failed or timed out: overload signal. */
+        public void onDropped() {
+            if (!done.compareAndSet(false, true)) return;
+            inFlight.decrementAndGet();
+            AdaptiveLimiter.this.onDropped();
+        }
+
+        /** No information about the provider (caller cancelled, our own bad request, stream). */
+        public void onIgnore() {
+            if (!done.compareAndSet(false, true)) return;
+            inFlight.decrementAndGet();
+        }
+    }
+}
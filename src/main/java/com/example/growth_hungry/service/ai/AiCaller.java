@@ -0,0 +1,24 @@
+package com.example.growth_hungry.service.ai;
+
+/**
+ * Who an AI call is made for: {@code id} is the fairness key of the scheduler
+ * (one heavy id cannot starve the others), {@code priority} its scheduling class.
+ */
+public record AiCaller(String id, AiPriority priority) {
+
+    /** Calls that don't say who they are for share one fairness slot. */
+    public static final AiCaller ANONYMOUS = new AiCaller("anonymous", AiPriority.INTERACTIVE);
+
+    public AiCaller {
+        if (id == null || id.isBlank()) id = "anonymous";
+        if (priority == null) priority = AiPriority.INTERACTIVE;
+    }
+
+    public static AiCaller interactive(Object userId) {
+        return new AiCaller("user:" + userId, AiPriority.INTERACTIVE);
+    }
+
+    public AiCaller withPriority(AiPriority priority) {
+        return new AiCaller(id, priority);
+    }
+}
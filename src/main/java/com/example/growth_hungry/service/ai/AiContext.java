@@ -0,0 +1,19 @@
+package com.example.growth_hungry.service.ai;
+
+/**
+ * Large, rarely changing prompt prefix (section content) sent before the conversation.
+ * Providers may keep it server-side (Gemini cachedContents); otherwise it is sent inline.
+ *
+ * @param id   stable identity of the document, used to drop cached copies when it changes
+ * @param text the document itself
+ */
+public record AiContext(String id, String text) {
+
+    public static AiContext section(Long sectionId, String content) {
+        return new AiContext(sectionId(sectionId), content == null ? "" : content);
+    }
+
+    public static String sectionId(Long sectionId) {
+        return "section:" + sectionId;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.growth_hungry.service.ai;
+
+/**
+ * Non-2xx answer from the AI provider. Keeps the status so the resilience layers can tell
+ * an upstream failure (5xx, 429, 408) from a bad request of ours (other 4xx), and the
+ * provider's Retry-After when it sent one.
+ */
+public class AiHttpException extends RuntimeException {
+
+    private final int status;
+    private final long retryAfterMillis;
+
+    public AiHttpException(int status, String message) {
+        this(status, message, -1);
+    }
+
+    public AiHttpException(int status, String message, long retryAfterMillis) {
+        super(message);
+        this.status = status;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /** How long the provider asked us to wait, {@code -1} when it did not say. */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    /** true when the provider itself is unhealthy or overloaded, not when our request was wrong */
+    public boolean isUpstreamFailure() {
+        return status >= 500 || status == 429 || status == 408;
+    }
+}
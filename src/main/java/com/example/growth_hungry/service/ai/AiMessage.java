@@ -0,0 +1,15 @@
+package com.example.growth_hungry.service.ai;
+
+import com.example.growth_hungry.model.chat.MessageRole;
+
+/** One turn of a conversation sent to the model. */
+public record AiMessage(MessageRole role, String text) {
+
+    public static AiMessage user(String text) {
+        return new AiMessage(MessageRole.USER, text);
+    }
+
+    public static AiMessage assistant(String text) {
+        return new AiMessage(MessageRole.ASSISTANT, text);
+    }
+}
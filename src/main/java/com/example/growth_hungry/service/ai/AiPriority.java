@@ -0,0 +1,14 @@
+package com.example.growth_hungry.service.ai;
+
+/**
+ * Scheduling class of an AI call, highest first. A queued call of a higher class is always
+ * dispatched before any call of a lower one.
+ */
+public enum AiPriority {
+    /** A user is waiting for the answer (chat turns). */
+    INTERACTIVE,
+    /** Second attempts: hedges, retries. */
+    RETRY,
+    /** Nobody is waiting: title generation, precomputation, batch jobs. */
+    BACKGROUND
+}
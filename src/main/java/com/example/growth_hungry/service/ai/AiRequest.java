@@ -0,0 +1,98 @@
+package com.example.growth_hungry.service.ai;
+
+import com.example.growth_hungry.model.chat.MessageRole;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Multi-turn request: {@code contents} is the conversation oldest first and ends with the
+ * user message to answer. Records compare by value, so identical requests are equal
+ * (the coalescing layer relies on that).
+ *
+ * {@code context} (optional) is a large document placed before the conversation — inline
+ * it is "context text, blank line, first message".
+ *
+ * {@code caller} only steers scheduling and is left out of equals/hashCode: the same prompt
+ * from two users is still one request. So is {@code deadline} (optional): when the caller stops
+ * waiting; GeminiClient shortens the HTTP timeout to it.
+ */
+public record AiRequest(List<AiMessage> contents, String systemPrompt, String model, AiContext context,
+                        AiCaller caller, Instant deadline) {
+
+    public AiRequest {
+        if (contents == null || contents.isEmpty()) {
+            throw new IllegalArgumentException("contents must not be empty");
+        }
+        contents = List.copyOf(contents);
+        AiMessage last = contents.get(contents.size() - 1);
+        if (last.role() != MessageRole.USER || last.text() == null || last.text().isBlank()) {
+            throw new IllegalArgumentException("message must not be blank");
+        }
+        if (caller == null) caller = AiCaller.ANONYMOUS;
+    }
+
+    public AiRequest(List<AiMessage> contents, String systemPrompt, String model, AiContext context,
+                     AiCaller caller) {
+        this(contents, systemPrompt, model, context, caller, null);
+    }
+
+    public AiRequest(List<AiMessage> contents, String systemPrompt, String model, AiContext context) {
+        this(contents, systemPrompt, model, context, null, null);
+    }
+
+    public AiRequest(List<AiMessage> contents, String systemPrompt, String model) {
+        this(contents, systemPrompt, model, null, null, null);
+    }
+
+    /** Single-turn request — what {@code AiClient.generate(message, ...)} sends. */
+    public static AiRequest of(String message, String systemPrompt, String model) {
+        if (message == null || message.isBlank()) {
+            throw new IllegalArgumentException("message must not be blank");
+        }
+        return new AiRequest(List.of(AiMessage.user(message.trim())), systemPrompt, model);
+    }
+
+    public AiRequest withCaller(AiCaller caller) {
+        return new AiRequest(contents, systemPrompt, model, context, caller, deadline);
+    }
+
+    public AiRequest withDeadline(Instant deadline) {
+        return new AiRequest(contents, systemPrompt, model, context, caller, deadline);
+    }
+
+    /** The message being answered. */
+    public String lastUserText() {
+        return contents.get(contents.size() - 1).text();
+    }
+
+    /**
+     * Whole conversation as one prompt, for clients without multi-turn support.
+     * A single-turn request is just its message.
+     */
+    public String transcript() {
+        String prefix = context == null ? "" : context.text() + "\n\n";
+        if (contents.size() == 1) return prefix + lastUserText();
+
+        StringBuilder sb = new StringBuilder(prefix);
+        for (AiMessage m : contents) {
+            if (sb.length() > prefix.length()) sb.append("\n\n");
+            sb.append(m.role() == MessageRole.USER ? "User: " : "Assistant: ").append(m.text());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof AiRequest r
+                && contents.equals(r.contents)
+                && Objects.equals(systemPrompt, r.systemPrompt)
+                && Objects.equals(model, r.model)
+                && Objects.equals(context, r.context);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(contents, systemPrompt, model, context);
+    }
+}
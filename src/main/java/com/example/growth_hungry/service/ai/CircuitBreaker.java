@@ -0,0 +1,136 @@
+package com.example.growth_hungry.service.ai;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Consecutive-failure circuit breaker with half-open probing.
+ *
+ * CLOSED: every call is allowed; {@code failureThreshold} failures in a row open the circuit.
+ * OPEN: calls are rejected until {@code openMillis} have passed.
+ * HALF_OPEN: at most {@code halfOpenProbes} calls go through; that many successes close the
+ * circuit, any failure opens it again.
+ *
+ * Every granted {@link Permit} must end with exactly one of success / failure / release.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final LongSupplier nanoClock;
+
+    // all guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private int probesInFlight;
+    private int probeSuccesses;
+    // bumped on every state change, so a permit granted in an earlier state can't skew the current one
+    private long generation;
+
+    public CircuitBreaker(int failureThreshold, long openMillis, int halfOpenProbes) {
+        this(failureThreshold, openMillis, halfOpenProbes, System::nanoTime);
+    }
+
+    public CircuitBreaker(int failureThreshold, long openMillis, int halfOpenProbes, LongSupplier nanoClock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, openMillis));
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.nanoClock = nanoClock;
+    }
+
+    /** @return a permit, or {@code null} when the call must be rejected */
+    public synchronized Permit tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return new Permit(generation, false);
+            case OPEN:
+                if (nanoClock.getAsLong() - openedAtNanos < openNanos) return null;
+                transition(State.HALF_OPEN);
+                // fall through: this call becomes the first probe
+            case HALF_OPEN:
+            default:
+                if (probesInFlight >= halfOpenProbes) return null;
+                probesInFlight++;
+                return new Permit(generation, true);
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /** How long an OPEN circuit keeps rejecting; 0 when calls are (or may soon be) allowed. */
+    public synchronized long retryAfterMillis() {
+        if (state != State.OPEN) return 0;
+        long left = openNanos - (nanoClock.getAsLong() - openedAtNanos);
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(left));
+    }
+
+    private synchronized void onSuccess(Permit p) {
+        if (p.generation != generation) return;
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+            if (++probeSuccesses >= halfOpenProbes) transition(State.CLOSED);
+        } else if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        }
+    }
+
+    private synchronized void onFailure(Permit p) {
+        if (p.generation != generation) return;
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        } else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            transition(State.OPEN);
+        }
+    }
+
+    private synchronized void onRelease(Permit p) {
+        if (p.generation != generation) return;
+        if (p.probe && state == State.HALF_OPEN) probesInFlight--;
+    }
+
+    private void transition(State next) {
+        state = next;
+        generation++;
+        consecutiveFailures = 0;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+        if (next == State.OPEN) openedAtNanos = nanoClock.getAsLong();
+    }
+
+    /** Outcome handle for one allowed call. Only the first outcome reported counts. */
+    public final class Permit {
+        private final long generation;
+        private final boolean probe;
+        private boolean done;
+
+        private Permit(long generation, boolean probe) {
+            this.generation = generation;
+            this.probe = probe;
+        }
+
+        public void success() {
+            if (finish()) onSuccess(this);
+        }
+
+        public void failure() {
+            if (finish()) onFailure(this);
+        }
+
+        /** The call never reached the upstream (or its outcome says nothing about upstream health). */
+        public void release() {
+            if (finish()) onRelease(this);
+        }
+
+        private synchronized boolean finish() {
+            if (done) return false;
+            done = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.growth_hungry.service.ai;
+
+import com.example.growth_hungry.service.AiClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Single-flight layer of the AiClient chain: concurrent calls with the same
+ * (contents, systemPrompt, model) share one upstream call and all receive its result.
+ *
+ * The in-flight entry is removed before the shared future completes, so a failure is delivered
+ * to the callers that were waiting for it and the next call starts a fresh upstream request.
+ * Streams are not coalesced — every stream has its own consumer.
+ *
+ * Every caller gets its own copy of the shared future: one caller cancelling (its client went
+ * away) does not affect the others, and the upstream call is cancelled once all of them have.
+ *
+ * The upstream request carries the deadline of the caller that started it, so a caller only
+ * joins a call that waits at least as long as it would itself (no deadline = the longest). A
+ * caller with a later deadline sends its own request, and later identical calls join that one.
+ */
+public class CoalescingAiClient implements AiClient {
+
+    private final AiClient delegate;
+    private final ConcurrentHashMap<AiRequest, Flight> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public CoalescingAiClient(AiClient delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.coalesced = Counter.builder("ai.coalesced")
+                .description("AI calls served by an identical call that was already in flight")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String generate(String message, String systemPrompt, String model) {
+        try {
+            return generateAsync(message, systemPrompt, model).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> generateAsync(String message, String systemPrompt, String model) {
+        return generateAsync(AiRequest.of(message, systemPrompt, model));
+    }
+
+    @Override
+    public CompletableFuture<String> generateAsync(AiRequest key) {
+
+        Flight flight = new Flight(key.deadline());
+        while (true) {
+            Flight existing = inFlight.putIfAbsent(key, flight);
+            if (existing == null) break;
+            if (!existing.outlasts(key.deadline())) {
+                // that call gives up before this caller would: it keeps its waiters, new ones join ours
+                if (inFlight.replace(key, existing, flight)) break;
+                continue;
+            }
+            if (existing.join()) {
+                coalesced.increment();
+                return subscribe(key, existing);
+            }
+            // every caller of that one has cancelled, it is on its way out
+            inFlight.remove(key, existing);
+        }
+
+        CompletableFuture<String> upstream;
+        try {
+            upstream = delegate.generateAsync(key);
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.shared.completeExceptionally(e);
+            throw e;
+        }
+        flight.upstream = upstream;
+
+        upstream.whenComplete((text, ex) -> {
+            inFlight.remove(key, flight);
+            if (ex != null) {
+                flight.shared.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else {
+                flight.shared.complete(text);
+            }
+        });
+
+        return subscribe(key, flight);
+    }
+
+    // copy: one caller cancelling its future must not affect the others
+    private CompletableFuture<String> subscribe(AiRequest key, Flight flight) {
+        CompletableFuture<String> mine = flight.shared.copy();
+        mine.whenComplete((text, ex) -> {
+            if (!mine.isCancelled() || !flight.leave()) return;
+            // nobody is waiting any more: stop the upstream call too
+            inFlight.remove(key, flight);
+            CompletableFuture<String> upstream = flight.upstream;
+            if (upstream != null) upstream.cancel(true);
+        });
+        return mine;
+    }
+
+    @Override
+    public String generateStream(String message, String systemPrompt, String model, Consumer<String> onChunk) {
+        return delegate.generateStream(message, systemPrompt, model, onChunk);
+    }
+
+    @Override
+    public String generateStream(AiRequest request, Consumer<String> onChunk) {
+        return delegate.generateStream(request, onChunk);
+    }
+
+    public long coalescedCount() {
+        return (long) coalesced.count();
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /** One upstream call and the number of callers still waiting for it. */
+    private static final class Flight {
+        final CompletableFuture<String> shared = new CompletableFuture<>();
+        volatile CompletableFuture<String> upstream;
+        // of the request sent upstream; null = none
+        private final Instant deadline;
+        // guarded by this; the first caller counts from the start
+        private int waiters = 1;
+
+        Flight(Instant deadline) {
+            this.deadline = deadline;
+        }
+
+        /** The upstream call is not given up on before {@code callerDeadline}. */
+        boolean outlasts(Instant callerDeadline) {
+            if (deadline == null) return true;
+            return callerDeadline != null && !callerDeadline.isAfter(deadline);
+        }
+
+        synchronized boolean join() {
+            if (waiters == 0) return false;
+            waiters++;
+            return true;
+        }
+
+        /** @return true for the last caller to leave */
+        synchronized boolean leave() {
+            return --waiters == 0;
+        }
+    }
+}
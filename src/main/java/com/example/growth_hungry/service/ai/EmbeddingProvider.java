@@ -0,0 +1,13 @@
+package com.example.growth_hungry.service.ai;
+
+/**
+ * Text -> embedding for the semantic answer cache. All vectors of one provider have the same
+ * length; they do not need to be normalized (the cache does that).
+ *
+ * There is no default: the semantic cache stays off until a model-backed provider is declared
+ * as an {@code EmbeddingProvider} bean (and {@code ai.semantic-cache.enabled=true}).
+ */
+public interface EmbeddingProvider {
+
+    float[] embed(String text);
+}
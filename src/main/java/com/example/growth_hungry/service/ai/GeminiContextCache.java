@@ -0,0 +1,136 @@
+package com.example.growth_hungry.service.ai;
+
+import com.example.growth_hungry.config.AiProps;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of Gemini {@code cachedContents} entries: one per (context id, content hash,
+ * system prompt, model). GeminiClient does the HTTP calls, this class decides when an entry
+ * can be reused, has to be (re)created, or must be dropped.
+ *
+ * Creation happens once per key even under concurrent requests (the in-flight future is shared).
+ * A failed creation is remembered for {@code ai.context-cache.failure-backoff-seconds}; during
+ * that time callers get an empty result and send the context inline.
+ */
+@Component
+public class GeminiContextCache {
+
+    public record Key(String contextId, String contentHash, String systemPromptHash, String model) {
+    }
+
+    /** {@code name == null} marks a failed create (negative entry until {@code expireTime}). */
+    public record Entry(String name, Instant expireTime) {
+    }
+
+    private final AiProps.ContextCache config;
+    private final ConcurrentHashMap<Key, CompletableFuture<Entry>> entries = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder creates = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public GeminiContextCache(AiProps props, MeterRegistry meterRegistry) {
+        this.config = props.getContextCache() != null ? props.getContextCache() : disabled();
+
+        FunctionCounter.builder("ai.context.cache.hits", hits, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("ai.context.cache.creates", creates, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("ai.context.cache.failures", failures, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("ai.context.cache.size", entries, Map::size).register(meterRegistry);
+    }
+
+    /** Caching only pays off (and Gemini only accepts it) above a minimum size. */
+    public boolean isEligible(AiContext context) {
+        return config.isEnabled()
+                && context != null
+                && TokenEstimator.estimate(context.text()) >= config.getMinTokens();
+    }
+
+    public Key keyFor(AiContext context, String systemPrompt, String model) {
+        String sp = systemPrompt == null || systemPrompt.isBlank() ? "" : systemPrompt.trim();
+        return new Key(context.id(), SectionAnswerCache.contentHash(context.text()),
+                SectionAnswerCache.contentHash(sp), model);
+    }
+
+    public Duration ttl() {
+        return Duration.ofSeconds(config.getTtlSeconds());
+    }
+
+    /**
+     * Name of a live cachedContents entry ({@code "cachedContents/..."}) for the key, calling
+     * {@code create} when there is none or it is about to expire. Never completes exceptionally:
+     * empty means "send the context inline".
+     */
+    public CompletableFuture<Optional<String>> resolve(Key key, Function<Key, CompletableFuture<Entry>> create) {
+        CompletableFuture<Entry> entry = entries.compute(key, (k, existing) -> {
+            if (existing != null && (!existing.isDone() || isUsable(existing))) {
+                hits.increment();
+                return existing;
+            }
+            creates.increment();
+            CompletableFuture<Entry> created;
+            try {
+                created = create.apply(k);
+            } catch (RuntimeException e) {
+                created = CompletableFuture.failedFuture(e);
+            }
+            return created.exceptionally(ex -> {
+                failures.increment();
+                return new Entry(null, Instant.now().plusSeconds(config.getFailureBackoffSeconds()));
+            });
+        });
+
+        return entry.thenApply(e -> Optional.ofNullable(e.name()));
+    }
+
+    /** Drops every entry of the context (its content changed) and deletes them upstream. */
+    public void invalidate(String contextId) {
+        if (contextId == null) return;
+
+        entries.entrySet().removeIf(e -> {
+            if (!contextId.equals(e.getKey().contextId())) return false;
+            e.getValue().thenAccept(entry -> {
+                if (entry.name() != null) evictionListeners.forEach(l -> l.accept(entry.name()));
+            });
+            return true;
+        });
+    }
+
+    /** GeminiClient registers the upstream DELETE here. */
+    public void onEvict(Consumer<String> listener) {
+        evictionListeners.add(listener);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // done, and either a negative entry still in backoff or a real one not too close to expiry
+    private boolean isUsable(CompletableFuture<Entry> future) {
+        Entry e = future.getNow(null);
+        if (e == null) return false;
+        Instant now = Instant.now();
+        if (e.name() == null) return now.isBefore(e.expireTime());
+        return now.plusSeconds(config.getRefreshMarginSeconds()).isBefore(e.expireTime());
+    }
+
+    private static AiProps.ContextCache disabled() {
+        AiProps.ContextCache c = new AiProps.ContextCache();
+        c.setEnabled(false);
+        return c;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.growth_hungry.service.ai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Body subscriber that turns a 2xx generateContent response straight into the answer text.
+ *
+ * The body buffers the HTTP client receives go into Jackson's non-blocking parser as they
+ * arrive. There is no full-body String, no byte[] copy and no JsonNode tree — only the text
+ * parts are materialized. Bodies over {@code maxBytes} are cancelled and fail with an IOException.
+ */
+public final class GeminiTextBodySubscriber implements HttpResponse.BodySubscriber<String> {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final long maxBytes;
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private final GeminiTextExtractor extractor = new GeminiTextExtractor();
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+
+    private Flow.Subscription subscription;
+    private long received;
+
+    public GeminiTextBodySubscriber(long maxBytes) {
+        this.maxBytes = maxBytes;
+        try {
+            this.parser = JSON.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /** 2xx responses are parsed by this subscriber, anything else is kept as a String for the error message. */
+    public static HttpResponse.BodyHandler<String> handler(long maxBytes) {
+        return info -> info.statusCode() >= 200 && info.statusCode() < 300
+                ? new GeminiTextBodySubscriber(maxBytes)
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        if (result.isDone()) return;
+        try {
+            for (ByteBuffer buffer : buffers) {
+                received += buffer.remaining();
+                if (received > maxBytes) {
+                    subscription.cancel();
+                    result.completeExceptionally(new TooLargeException("Gemini response exceeds " + maxBytes + " bytes"));
+                    return;
+                }
+                feeder.feedInput(buffer);
+                drain();
+            }
+        } catch (IOException | RuntimeException e) {
+            subscription.cancel();
+            result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (result.isDone()) return;
+        try {
+            feeder.endOfInput();
+            drain();
+            String text = extractor.text();
+            result.complete(text == null ? "" : text);
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public CompletionStage<String> getBody() {
+        return result;
+    }
+
+    /** Body over {@code maxBytes}: the same answer again would be just as large, so not worth a retry. */
+    public static final class TooLargeException extends IOException {
+        public TooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    // consumes every token available so far; the feeder only accepts new input once this is done
+    private void drain() throws IOException {
+        JsonToken t;
+        while ((t = parser.nextToken()) != null && t != JsonToken.NOT_AVAILABLE) {
+            extractor.onToken(parser, t);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.growth_hungry.service.ai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+
+/**
+ * Pulls the answer text out of a GenerateContentResponse token by token:
+ * {@code candidates[0].content.parts[*].text} concatenated, or {@code candidates[0].content.text}
+ * when there are no parts. No tree is built; only the matching string values are materialized.
+ *
+ * Feed it every token of one response via {@link #onToken}, then read {@link #text()}.
+ */
+public final class GeminiTextExtractor {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private StringBuilder parts;
+    private String direct;
+
+    public void onToken(JsonParser p, JsonToken token) throws IOException {
+        if (token != JsonToken.VALUE_STRING || !"text".equals(p.currentName())) return;
+
+        JsonStreamContext holder = p.getParsingContext();
+        JsonStreamContext parent = holder.getParent();
+        if (parent == null) return;
+
+        if (parent.inArray()) {
+            // holder = one part, parent = "parts" array, parent.getParent() = content object
+            JsonStreamContext content = parent.getParent();
+            if (content != null && "parts".equals(content.getCurrentName()) && isFirstCandidateContent(content)) {
+                if (parts == null) parts = new StringBuilder();
+                parts.append(p.getText());
+            }
+        } else if (direct == null && isFirstCandidateContent(holder)) {
+            direct = p.getText();
+        }
+    }
+
+    /** Extracted text, {@code null} when the response had none. */
+    public String text() {
+        if (parts != null) return parts.toString();
+        return direct;
+    }
+
+    /** One complete JSON document (an SSE {@code data:} payload). */
+    public static String extractText(String json) throws IOException {
+        GeminiTextExtractor extractor = new GeminiTextExtractor();
+        try (JsonParser p = JSON.createParser(json)) {
+            JsonToken t;
+            while ((t = p.nextToken()) != null) {
+                extractor.onToken(p, t);
+            }
+        }
+        return extractor.text();
+    }
+
+    // content object <- candidate object ("content") <- candidates array, index 0 <- root ("candidates")
+    private static boolean isFirstCandidateContent(JsonStreamContext content) {
+        if (!content.inObject()) return false;
+
+        JsonStreamContext candidate = content.getParent();
+        if (candidate == null || !candidate.inObject() || !"content".equals(candidate.getCurrentName())) return false;
+
+        JsonStreamContext candidates = candidate.getParent();
+        if (candidates == null || !candidates.inArray() || candidates.getCurrentIndex() != 0) return false;
+
+        JsonStreamContext root = candidates.getParent();
+        return root != null && root.inObject() && "candidates".equals(root.getCurrentName())
+                && root.getParent() != null && root.getParent().inRoot();
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.growth_hungry.service.ai;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.AiClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Hedging layer of the AiClient chain, against the slow tail of single stuck connections.
+ *
+ * When the first attempt has not answered after the configured percentile of recent latencies
+ * for its model, an identical second attempt is sent. The first successful answer wins and
+ * the other attempt is cancelled; the call fails only when every started attempt failed.
+ * Extra load is capped by a token budget: each request earns {@code budgetPercent / 100} of a
+ * hedge, so at most that share of requests is sent twice.
+ *
+ * Streams are not hedged — their chunks are already on the way to the client.
+ */
+public class HedgingAiClient implements AiClient {
+
+    // recomputing the percentile sorts the window, so only do it every this many samples
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final AiClient delegate;
+    private final AiProps.Hedging props;
+    private final ConcurrentHashMap<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+    private final HedgeBudget budget;
+    private final Counter fired;
+    private final Counter won;
+    private final Counter denied;
+
+    public HedgingAiClient(AiClient delegate, AiProps.Hedging props, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.props = props;
+        this.budget = new HedgeBudget(props.getBudgetPercent() / 100.0, props.getMaxBurst());
+        this.fired = Counter.builder("ai.hedge.fired")
+                .description("Second attempts sent because the first one was slow")
+                .register(meterRegistry);
+        this.won = Counter.builder("ai.hedge.won")
+                .description("Calls answered by the second attempt")
+                .register(meterRegistry);
+        this.denied = Counter.builder("ai.hedge.budget.exhausted")
+                .description("Slow calls that were not hedged because the budget was used up")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String generate(String message, String systemPrompt, String model) {
+        try {
+            return generateAsync(message, systemPrompt, model).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> generateAsync(String message, String systemPrompt, String model) {
+        return generateAsync(AiRequest.of(message, systemPrompt, model));
+    }
+
+    @Override
+    public CompletableFuture<String> generateAsync(AiRequest request) {
+        LatencyWindow window = windows.computeIfAbsent(
+                request.model() == null ? "" : request.model(),
+                m -> new LatencyWindow(props.getWindowSize()));
+        budget.earn();
+
+        long startNanos = System.nanoTime();
+        CompletableFuture<String> primary = delegate.generateAsync(request);
+
+        long delayNanos = window.percentileNanos(props.getPercentile(), props.getMinSamples());
+        if (delayNanos < 0) {
+            // not enough samples yet: plain call, just learn its latency
+            primary.whenComplete((text, ex) -> {
+                if (ex == null) window.record(System.nanoTime() - startNanos);
+            });
+            return primary;
+        }
+        delayNanos = Math.max(delayNanos, TimeUnit.MILLISECONDS.toNanos(props.getMinDelayMs()));
+
+        Race race = new Race(primary);
+        primary.whenComplete((text, ex) -> {
+            if (ex == null) {
+                window.record(System.nanoTime() - startNanos);
+                race.succeeded(text, false);
+            } else {
+                race.failed(ex);
+                // failed before the hedge timer: don't keep the caller waiting for it
+                if (race.claimHedgeSlot()) race.release();
+            }
+        });
+        CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS)
+                .execute(() -> hedge(race, request));
+
+        return race.result;
+    }
+
+    private void hedge(Race race, AiRequest request) {
+        if (!race.claimHedgeSlot()) return;
+        if (race.result.isDone() || race.primary.isDone()) {
+            race.release();
+            return;
+        }
+        if (!budget.trySpend()) {
+            denied.increment();
+            race.release();
+            return;
+        }
+
+        fired.increment();
+        CompletableFuture<String> second;
+        try {
+            // a hedge is extra load: it must not push chat turns of other users back
+            second = delegate.generateAsync(request.withCaller(request.caller().withPriority(AiPriority.RETRY)));
+        } catch (RuntimeException e) {
+            race.failed(e);
+            return;
+        }
+        race.hedge = second;
+        // the primary may have answered while the hedge was being sent
+        if (race.result.isDone()) second.cancel(true);
+
+        second.whenComplete((text, ex) -> {
+            if (ex == null) race.succeeded(text, true);
+            else race.failed(ex);
+        });
+    }
+
+    @Override
+    public String generateStream(String message, String systemPrompt, String model, Consumer<String> onChunk) {
+        return delegate.generateStream(message, systemPrompt, model, onChunk);
+    }
+
+    @Override
+    public String generateStream(AiRequest request, Consumer<String> onChunk) {
+        return delegate.generateStream(request, onChunk);
+    }
+
+    public long firedCount() {
+        return (long) fired.count();
+    }
+
+    public long wonCount() {
+        return (long) won.count();
+    }
+
+    /**
+     * One hedged call. {@code open} counts the primary plus the hedge slot. The slot is claimed
+     * once, by the timer or by an early primary failure, and released when no hedge is sent or
+     * when the hedge attempt fails.
+     */
+    private final class Race {
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final CompletableFuture<String> primary;
+        private final AtomicInteger open = new AtomicInteger(2);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicBoolean slotClaimed = new AtomicBoolean();
+        private volatile CompletableFuture<String> hedge;
+
+        Race(CompletableFuture<String> primary) {
+            this.primary = primary;
+            // caller gave up: stop both attempts
+            result.whenComplete((text, ex) -> {
+                if (result.isCancelled()) {
+                    primary.cancel(true);
+                    CompletableFuture<String> h = hedge;
+                    if (h != null) h.cancel(true);
+                }
+            });
+        }
+
+        boolean claimHedgeSlot() {
+            return slotClaimed.compareAndSet(false, true);
+        }
+
+        void succeeded(String text, boolean byHedge) {
+            if (!result.complete(text)) return;
+            if (byHedge) {
+                won.increment();
+                primary.cancel(true);
+            } else {
+                CompletableFuture<String> h = hedge;
+                if (h != null) h.cancel(true);
+            }
+        }
+
+        void failed(Throwable ex) {
+            failure.compareAndSet(null, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            release();
+        }
+
+        void release() {
+            if (open.decrementAndGet() == 0 && !result.isDone()) {
+                result.completeExceptionally(failure.get());
+            }
+        }
+    }
+
+    /** Ring of the latest successful latencies for one model; the percentile is cached between recomputes. */
+    static final class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+        private int sinceRecompute = RECOMPUTE_EVERY;
+        private double cachedPercentile = Double.NaN;
+        private long cachedNanos = -1;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[Math.max(1, capacity)];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            if (size < samples.length) size++;
+            sinceRecompute++;
+        }
+
+        /** {@code -1} while there are fewer than {@code minSamples} samples. */
+        synchronized long percentileNanos(double percentile, int minSamples) {
+            if (size == 0 || size < minSamples) return -1;
+            if (sinceRecompute >= RECOMPUTE_EVERY || percentile != cachedPercentile) {
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+                cachedNanos = sorted[Math.min(size - 1, Math.max(0, index))];
+                cachedPercentile = percentile;
+                sinceRecompute = 0;
+            }
+            return cachedNanos;
+        }
+    }
+
+    /** Token bucket: every request earns {@code ratio} of a hedge, a hedge costs one token. */
+    static final class HedgeBudget {
+        private final double ratio;
+        private final double max;
+        private double tokens;
+
+        HedgeBudget(double ratio, int maxBurst) {
+            this.ratio = Math.max(0, ratio);
+            this.max = Math.max(1, maxBurst);
+        }
+
+        synchronized void earn() {
+            tokens = Math.min(max, tokens + ratio);
+        }
+
+        synchronized boolean trySpend() {
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.growth_hungry.service.ai;
+
+import com.example.growth_hungry.api.AiDeadlineExceededException;
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.AiClient;
+import com.fasterxml.jackson.core.JacksonException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Retry layer of the AiClient chain, above the adaptive limit: a call that failed with a transient
+ * error — HTTP 429, 500, 502, 503, 504 or a transport IOException — is sent again, up to
+ * {@code maxAttempts} in total.
+ *
+ * Waits are full-jitter exponential backoff, random in [0, min(maxDelay, base * 2^(n-1))], so
+ * callers that failed together don't come back together; the provider's Retry-After is the floor.
+ * All attempts and waits fit in {@code ai.timeout-ms} from the first send and in the caller's
+ * deadline: a retry is only made when {@code minAttemptMs} would be left for it, and its HTTP
+ * timeout is cut to what is left. Retries queue in the RETRY class, behind fresh chat turns.
+ *
+ * Everything else (our 4xx, breaker open, queue full, the caller's deadline, cancel) fails right
+ * away. Streams are retried only until the first chunk has reached the consumer.
+ */
+public class RetryingAiClient implements AiClient {
+
+    private final AiClient delegate;
+    private final AiProps.Retry props;
+    private final Duration budget;
+    private final MeterRegistry meterRegistry;
+
+    public RetryingAiClient(AiClient delegate, AiProps.Retry props, Duration budget, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.props = props;
+        this.budget = budget;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String generate(String message, String systemPrompt, String model) {
+        try {
+            return generateAsync(message, systemPrompt, model).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> generateAsync(String message, String systemPrompt, String model) {
+        return generateAsync(AiRequest.of(message, systemPrompt, model));
+    }
+
+    @Override
+    public CompletableFuture<String> generateAsync(AiRequest request) {
+        Attempts attempts = new Attempts(request, budgetEnd(request));
+        // first attempt as is: rejections thrown by the layers below still reach the caller directly
+        attempts.track(delegate.generateAsync(request));
+        return attempts.result;
+    }
+
+    @Override
+    public String generateStream(String message, String systemPrompt, String model, Consumer<String> onChunk) {
+        return generateStream(AiRequest.of(message, systemPrompt, model), onChunk);
+    }
+
+    @Override
+    public String generateStream(AiRequest request, Consumer<String> onChunk) {
+        Instant budgetEnd = budgetEnd(request);
+        AtomicBoolean emitted = new AtomicBoolean();
+        Consumer<String> tracking = chunk -> {
+            emitted.set(true);
+            onChunk.accept(chunk);
+        };
+
+        AiRequest attempt = request;
+        RuntimeException lastTransient = null;
+        for (int n = 1; ; n++) {
+            try {
+                return delegate.generateStream(attempt, tracking);
+            } catch (RuntimeException e) {
+                RuntimeException error = (RuntimeException) reported(e, lastTransient, request);
+                // part of the answer is already on the client: a second answer can't be appended
+                if (emitted.get()) throw error;
+                long delayMs = retryDelayMs(error, n, budgetEnd);
+                if (delayMs < 0) throw error;
+                lastTransient = error;
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("AI stream abandoned while waiting to retry");
+                }
+                attempt = retryRequest(request, budgetEnd);
+            }
+        }
+    }
+
+    /** One logical call: the current attempt, and the result the caller holds. */
+    private final class Attempts {
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final AiRequest request;
+        private final Instant budgetEnd;
+        // attempts run one after the other, never at the same time
+        private int attempt;
+        private Throwable lastTransient;
+        private volatile CompletableFuture<String> current;
+
+        Attempts(AiRequest request, Instant budgetEnd) {
+            this.request = request;
+            this.budgetEnd = budgetEnd;
+            // caller gave up: stop the running attempt (a pending retry sees the result is done)
+            result.whenComplete((text, ex) -> {
+                CompletableFuture<String> c = current;
+                if (result.isCancelled() && c != null) c.cancel(true);
+            });
+        }
+
+        void track(CompletableFuture<String> call) {
+            attempt++;
+            current = call;
+            if (result.isCancelled()) call.cancel(true);
+            call.whenComplete((text, ex) -> {
+                if (ex == null) result.complete(text);
+                else failed(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            });
+        }
+
+        private void failed(Throwable ex) {
+            if (result.isDone()) return;
+            Throwable error = reported(ex, lastTransient, request);
+            long delayMs = retryDelayMs(error, attempt, budgetEnd);
+            if (delayMs < 0) {
+                result.completeExceptionally(error);
+                return;
+            }
+            lastTransient = error;
+            CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS).execute(this::retry);
+        }
+
+        private void retry() {
+            if (result.isDone()) return;
+            CompletableFuture<String> call;
+            try {
+                call = delegate.generateAsync(retryRequest(request, budgetEnd));
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            track(call);
+        }
+    }
+
+    /**
+     * How long to wait before attempt {@code attempt + 1}, or {@code -1} for no retry.
+     * Counts the retry ({@code ai.retry.attempts}) or the reason it was not made
+     * ({@code ai.retry.exhausted}).
+     */
+    private long retryDelayMs(Throwable error, int attempt, Instant budgetEnd) {
+        String status = transientStatus(error);
+        if (status == null) return -1;
+        if (attempt >= props.getMaxAttempts()) {
+            exhausted(status, "attempts");
+            return -1;
+        }
+
+        long ceiling = Math.min(props.getMaxDelayMs(), props.getBaseDelayMs() << Math.min(20, attempt - 1));
+        long delayMs = ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+        if (error instanceof AiHttpException httpError && httpError.getRetryAfterMillis() > delayMs) {
+            delayMs = httpError.getRetryAfterMillis();
+        }
+
+        long leftMs = Duration.between(Instant.now(), budgetEnd).toMillis();
+        if (delayMs + props.getMinAttemptMs() > leftMs) {
+            exhausted(status, "budget");
+            return -1;
+        }
+        Counter.builder("ai.retry.attempts")
+                .tag("status", status)
+                .description("AI calls sent again after a transient failure")
+                .register(meterRegistry)
+                .increment();
+        return delayMs;
+    }
+
+    private void exhausted(String status, String reason) {
+        Counter.builder("ai.retry.exhausted")
+                .tag("status", status)
+                .tag("reason", reason)
+                .description("Transient AI failures given up on: out of attempts or out of time")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // metric tag of a retryable failure ("429", "503", "io"), null when retrying can't help
+    private static String transientStatus(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof AiHttpException httpError) {
+                int s = httpError.getStatus();
+                return s == 429 || s == 500 || s == 502 || s == 503 || s == 504 ? String.valueOf(s) : null;
+            }
+            if (t instanceof CancellationException || t instanceof InterruptedException
+                    || t instanceof AiDeadlineExceededException) return null;
+            // the answer arrived but is unusable (too large, broken JSON): it would be again
+            if (t instanceof GeminiTextBodySubscriber.TooLargeException || t instanceof JacksonException) return null;
+            if (t instanceof IOException) return "io";
+        }
+        return null;
+    }
+
+    /**
+     * A retry that ran into the end of the time budget reports why it was retried, not the
+     * budget — unless the caller's own deadline has passed (that one is a 504).
+     */
+    private static Throwable reported(Throwable error, Throwable lastTransient, AiRequest request) {
+        if (!(error instanceof AiDeadlineExceededException) || lastTransient == null) return error;
+        Instant callerDeadline = request.deadline();
+        return callerDeadline != null && !Instant.now().isBefore(callerDeadline) ? error : lastTransient;
+    }
+
+    private Instant budgetEnd(AiRequest request) {
+        Instant end = Instant.now().plus(budget);
+        return request.deadline() != null && request.deadline().isBefore(end) ? request.deadline() : end;
+    }
+
+    private static AiRequest retryRequest(AiRequest request, Instant budgetEnd) {
+        AiCaller caller = request.caller();
+        // background work keeps its (lower) class
+        if (caller.priority() == AiPriority.INTERACTIVE) caller = caller.withPriority(AiPriority.RETRY);
+        return request.withCaller(caller).withDeadline(budgetEnd);
+    }
+}
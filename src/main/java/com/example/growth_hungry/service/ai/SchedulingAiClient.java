@@ -0,0 +1,313 @@
+package com.example.growth_hungry.service.ai;
+
+import com.example.growth_hungry.api.AiUnavailableException;
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.AiClient;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Scheduling layer of the AiClient chain, right above GeminiClient: at most {@code maxInFlight}
+ * calls are out at once, the rest wait here.
+ *
+ * Between classes ({@link AiPriority}) the order is strict: a waiting INTERACTIVE call goes before
+ * any RETRY or BACKGROUND one. Within a class, callers ({@link AiCaller#id()}) are served by
+ * start-time fair queuing weighted by prompt size: every caller gets the same share of prompt
+ * tokens, so one user with many (or huge) requests only delays their own.
+ *
+ * Streams take a slot for their whole duration. A full class queue rejects with
+ * {@link AiUnavailableException}.
+ */
+public class SchedulingAiClient implements AiClient {
+
+    private final AiClient delegate;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<AiPriority, ClassQueue> queues = new EnumMap<>(AiPriority.class);
+    private final Map<AiPriority, Timer> waitTimers = new EnumMap<>(AiPriority.class);
+    private final AtomicInteger dispatchRequests = new AtomicInteger();
+    private int inFlight;
+    private long sequence;
+
+    public SchedulingAiClient(AiClient delegate, AiProps.Scheduler props, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxInFlight = Math.max(1, props.getMaxInFlight());
+        this.maxQueued = Math.max(1, props.getMaxQueued());
+
+        for (AiPriority priority : AiPriority.values()) {
+            ClassQueue queue = new ClassQueue();
+            queues.put(priority, queue);
+            String tag = priority.name().toLowerCase(Locale.ROOT);
+            waitTimers.put(priority, Timer.builder("ai.scheduler.wait")
+                    .description("Time an AI call waited for a free slot")
+                    .tag("priority", tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+            Gauge.builder("ai.scheduler.queued", this, s -> s.queuedCount(priority))
+                    .description("AI calls waiting for a free slot")
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("ai.scheduler.in_flight", this, SchedulingAiClient::inFlightCount)
+                .description("AI calls currently sent upstream")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String generate(String message, String systemPrompt, String model) {
+        try {
+            return generateAsync(message, systemPrompt, model).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> generateAsync(String message, String systemPrompt, String model) {
+        return generateAsync(AiRequest.of(message, systemPrompt, model));
+    }
+
+    @Override
+    public CompletableFuture<String> generateAsync(AiRequest request) {
+        Task task = new Task(request, () -> delegate.generateAsync(request));
+        submit(task);
+        return task.result;
+    }
+
+    @Override
+    public String generateStream(String message, String systemPrompt, String model, Consumer<String> onChunk) {
+        return generateStream(AiRequest.of(message, systemPrompt, model), onChunk);
+    }
+
+    @Override
+    public String generateStream(AiRequest request, Consumer<String> onChunk) {
+        // the slot is held until `streamed` completes, i.e. until the blocking stream below returns
+        CompletableFuture<String> streamed = new CompletableFuture<>();
+        Task task = new Task(request, () -> streamed);
+        submit(task);
+
+        try {
+            task.started.get();
+        } catch (InterruptedException e) {
+            // stream abandoned while waiting for a slot (AbortSignal): leave the queue
+            Thread.currentThread().interrupt();
+            task.result.cancel(true);
+            throw new CancellationException("AI stream abandoned while queued");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new CompletionException(e.getCause());
+        }
+
+        try {
+            String text = delegate.generateStream(request, onChunk);
+            streamed.complete(text);
+            return text;
+        } catch (RuntimeException e) {
+            streamed.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public int inFlightCount() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queuedCount(AiPriority priority) {
+        lock.lock();
+        try {
+            return queues.get(priority).heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void submit(Task task) {
+        lock.lock();
+        try {
+            ClassQueue queue = queues.get(task.caller.priority());
+            if (queue.heap.size() >= maxQueued) {
+                throw new AiUnavailableException("AI request queue is full", 1_000);
+            }
+            queue.enqueue(task, sequence++);
+        } finally {
+            lock.unlock();
+        }
+        // caller gave up while queued: drop it now instead of when it reaches the head
+        task.result.whenComplete((text, ex) -> {
+            if (task.result.isCancelled()) cancel(task);
+        });
+        dispatch();
+    }
+
+    private void cancel(Task task) {
+        boolean removed;
+        lock.lock();
+        try {
+            removed = queues.get(task.caller.priority()).remove(task);
+        } finally {
+            lock.unlock();
+        }
+        if (!removed) {
+            CompletableFuture<String> upstream = task.upstream;
+            if (upstream != null) upstream.cancel(true);
+        }
+        task.started.completeExceptionally(new CancellationException());
+    }
+
+    /**
+     * Starts queued tasks while there are free slots; upstream calls are made outside the lock.
+     * One thread drains at a time — a call from inside a drain (an upstream future that completed
+     * synchronously) just asks the running drain for another pass instead of recursing.
+     */
+    private void dispatch() {
+        if (dispatchRequests.getAndIncrement() != 0) return;
+        int missed = 1;
+        do {
+            while (true) {
+                Task next = null;
+                lock.lock();
+                try {
+                    if (inFlight >= maxInFlight) break;
+                    for (ClassQueue queue : queues.values()) {
+                        next = queue.poll();
+                        if (next != null) break;
+                    }
+                    if (next == null) break;
+                    inFlight++;
+                } finally {
+                    lock.unlock();
+                }
+                start(next);
+            }
+            missed = dispatchRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void start(Task task) {
+        waitTimers.get(task.caller.priority()).record(System.nanoTime() - task.enqueuedNanos, TimeUnit.NANOSECONDS);
+
+        CompletableFuture<String> upstream;
+        try {
+            upstream = task.call.get();
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        task.upstream = upstream;
+        task.started.complete(null);
+        if (task.result.isCancelled()) upstream.cancel(true);
+
+        upstream.whenComplete((text, ex) -> {
+            lock.lock();
+            try {
+                inFlight--;
+            } finally {
+                lock.unlock();
+            }
+            if (ex != null) {
+                task.result.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else {
+                task.result.complete(text);
+            }
+            dispatch();
+        });
+    }
+
+    private static long cost(AiRequest request) {
+        long tokens = TokenEstimator.estimate(request.systemPrompt());
+        for (AiMessage m : request.contents()) tokens += TokenEstimator.estimate(m);
+        if (request.context() != null) tokens += TokenEstimator.estimate(request.context().text());
+        return Math.max(1, tokens);
+    }
+
+    private static final class Task {
+        final AiCaller caller;
+        final long cost;
+        final Supplier<CompletableFuture<String>> call;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        // completes when the task gets its slot (streams wait on it)
+        final CompletableFuture<Void> started = new CompletableFuture<>();
+        final long enqueuedNanos = System.nanoTime();
+        long startTag;
+        long seq;
+        volatile CompletableFuture<String> upstream;
+
+        Task(AiRequest request, Supplier<CompletableFuture<String>> call) {
+            this.caller = request.caller();
+            this.cost = cost(request);
+            this.call = call;
+        }
+    }
+
+    /**
+     * One priority class: tasks ordered by start tag. A caller's next task starts where their
+     * previous one finishes (in virtual time), so callers with a backlog fall behind the others.
+     * Guarded by the scheduler lock.
+     */
+    private static final class ClassQueue {
+        final PriorityQueue<Task> heap = new PriorityQueue<>((a, b) -> a.startTag != b.startTag
+                ? Long.compare(a.startTag, b.startTag)
+                : Long.compare(a.seq, b.seq));
+        // virtual finish time of each caller's last task, while it is still ahead of virtualTime
+        final Map<String, Long> lastFinish = new HashMap<>();
+        final Map<String, Integer> queuedPerCaller = new HashMap<>();
+        long virtualTime;
+
+        void enqueue(Task task, long seq) {
+            String id = task.caller.id();
+            long start = Math.max(virtualTime, lastFinish.getOrDefault(id, 0L));
+            task.startTag = start;
+            task.seq = seq;
+            lastFinish.put(id, start + task.cost);
+            queuedPerCaller.merge(id, 1, Integer::sum);
+            heap.add(task);
+        }
+
+        Task poll() {
+            Task task = heap.poll();
+            if (task == null) return null;
+            virtualTime = Math.max(virtualTime, task.startTag);
+            forget(task);
+            // nobody waits any more: nobody is ahead either
+            if (heap.isEmpty()) lastFinish.clear();
+            return task;
+        }
+
+        boolean remove(Task task) {
+            if (!heap.remove(task)) return false;
+            forget(task);
+            return true;
+        }
+
+        private void forget(Task task) {
+            String id = task.caller.id();
+            if (queuedPerCaller.merge(id, -1, Integer::sum) <= 0) {
+                queuedPerCaller.remove(id);
+                // a caller whose last task finishes after virtualTime keeps that debt
+                Long finish = lastFinish.get(id);
+                if (finish != null && finish <= virtualTime) lastFinish.remove(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.growth_hungry.service.ai;
+
+import com.example.growth_hungry.config.AiProps;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exact-match answer cache for section chat (LRU + TTL, bounded by {@code ai.cache.max-entries}).
+ *
+ * Key = section id + hash of the section content + model + normalized question.
+ * Because the content hash is part of the key, an edited section can never be answered from
+ * an old entry; {@link #invalidateSection} just frees the memory early.
+ */
+@Component
+public class SectionAnswerCache {
+
+    public record Key(Long sectionId, String contentHash, String model, String question) {
+    }
+
+    private record Entry(String answer, long expiresAtNanos) {
+    }
+
+    private final AiProps props;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    // access-order LinkedHashMap = LRU; guarded by its own monitor
+    private final LinkedHashMap<Key, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SectionAnswerCache(AiProps props, MeterRegistry meterRegistry) {
+        this.props = props;
+        this.enabled = props.getCache().isEnabled();
+        this.maxEntries = Math.max(1, props.getCache().getMaxEntries());
+        this.ttlNanos = props.getCache().getTtlSeconds() * 1_000_000_000L;
+
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        FunctionCounter.builder("ai.answer.cache.hits", hits, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("ai.answer.cache.misses", misses, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("ai.answer.cache.evictions", evictions, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("ai.answer.cache.size", this, SectionAnswerCache::size).register(meterRegistry);
+    }
+
+    public Key keyFor(Long sectionId, String sectionContent, String model, String question) {
+        String effectiveModel = (model == null || model.isBlank()) ? props.getDefaultModel() : model.trim();
+        return new Key(sectionId, contentHash(sectionContent), effectiveModel, normalizeQuestion(question));
+    }
+
+    public Optional<String> get(Key key) {
+        if (!enabled || key == null) return Optional.empty();
+
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            if (e == null) {
+                misses.increment();
+                return Optional.empty();
+            }
+            if (e.expiresAtNanos() - System.nanoTime() <= 0) {
+                entries.remove(key);
+                evictions.increment();
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.of(e.answer());
+        }
+    }
+
+    public void put(Key key, String answer) {
+        if (!enabled || key == null || answer == null || answer.isBlank()) return;
+
+        Entry e = new Entry(answer, System.nanoTime() + ttlNanos);
+        synchronized (entries) {
+            entries.put(key, e);
+        }
+    }
+
+    /** Drops every entry of the section (called when its content changes). */
+    public void invalidateSection(Long sectionId) {
+        if (sectionId == null) return;
+        synchronized (entries) {
+            entries.keySet().removeIf(k -> sectionId.equals(k.sectionId()));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /** lower case, single spaces, no trailing "?!." — "What is a closure ?" == "what is a closure" */
+    static String normalizeQuestion(String question) {
+        if (question == null) return "";
+        String q = question.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        int end = q.length();
+        while (end > 0 && "?!. ".indexOf(q.charAt(end - 1)) >= 0) end--;
+        return q.substring(0, end);
+    }
+
+    static String contentHash(String content) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            byte[] digest = sha.digest((content == null ? "" : content).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
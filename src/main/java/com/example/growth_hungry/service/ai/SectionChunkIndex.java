@@ -0,0 +1,319 @@
+package com.example.growth_hungry.service.ai;
+
+import com.example.growth_hungry.config.AiProps;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-section BM25 index over passages of the section markdown: a question about a long section
+ * sends the best matching passages (top-k, within {@code ai.retrieval.budget-tokens}) instead of
+ * the whole text.
+ *
+ * Passages are paragraphs packed up to {@code chunk-tokens}; a heading always starts a new
+ * passage and is repeated in front of the passages below it. A fenced code block stays in one
+ * passage when it fits; a longer one is cut between lines and every piece gets its own opening
+ * and closing fence, so each passage is still valid markdown.
+ * The index is built on the first question about a section and kept per section id (LRU).
+ * Each lookup checks the content it was built from, so an edited section is re-indexed even if
+ * {@link #invalidate} was not called.
+ */
+@Component
+public class SectionChunkIndex {
+
+    public record Passage(int position, String text, int tokens) {
+    }
+
+    // standard BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final Pattern HEADING = Pattern.compile("#{1,6}\\s");
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?])\\s+");
+
+    private final AiProps.Retrieval config;
+    private final Counter builds;
+
+    // access-order LinkedHashMap = LRU; guarded by its own monitor
+    private final LinkedHashMap<Long, Index> indexes;
+
+    public SectionChunkIndex(AiProps props, MeterRegistry meterRegistry) {
+        this.config = props.getRetrieval() != null ? props.getRetrieval() : new AiProps.Retrieval();
+        int maxSections = Math.max(1, config.getMaxSections());
+        this.indexes = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Index> eldest) {
+                return size() > maxSections;
+            }
+        };
+        this.builds = Counter.builder("ai.retrieval.index.builds")
+                .description("Section chunk indexes built (first question or changed content)")
+                .register(meterRegistry);
+        Gauge.builder("ai.retrieval.index.size", this, SectionChunkIndex::size).register(meterRegistry);
+    }
+
+    /**
+     * The passages to send instead of the whole section, joined in document order;
+     * empty when the section is short enough to send whole (or retrieval is off).
+     */
+    public Optional<String> excerpt(Long sectionId, String content, String question) {
+        if (!config.isEnabled() || content == null
+                || TokenEstimator.estimate(content) <= config.getMinSectionTokens()) {
+            return Optional.empty();
+        }
+        List<Passage> passages = select(sectionId, content, question);
+        StringBuilder sb = new StringBuilder();
+        int previous = -1;
+        for (Passage p : passages) {
+            if (sb.length() > 0) sb.append(p.position() == previous + 1 ? "\n\n" : "\n\n[...]\n\n");
+            sb.append(p.text());
+            previous = p.position();
+        }
+        return Optional.of(sb.toString());
+    }
+
+    /**
+     * Top-k passages by BM25 score that fit the token budget, in document order. A question that
+     * matches nothing gets the beginning of the section (usually what it is about).
+     */
+    public List<Passage> select(Long sectionId, String content, String question) {
+        Index index = index(sectionId, content);
+        List<Passage> candidates = index.rank(Terms.of(question), Math.max(1, config.getTopK()));
+        if (candidates.isEmpty()) candidates = index.passages;
+
+        int budget = Math.max(1, config.getBudgetTokens());
+        List<Passage> picked = new ArrayList<>();
+        int used = 0;
+        for (Passage p : candidates) {
+            if (used + p.tokens() > budget) continue;
+            picked.add(p);
+            used += p.tokens();
+        }
+        // the best passage alone is over the budget: still better than nothing
+        if (picked.isEmpty()) picked.add(candidates.get(0));
+
+        picked.sort(Comparator.comparingInt(Passage::position));
+        return picked;
+    }
+
+    /** Drops the section's index; the next question rebuilds it from the current content. */
+    public void invalidate(Long sectionId) {
+        synchronized (indexes) {
+            indexes.remove(sectionId);
+        }
+    }
+
+    public int size() {
+        synchronized (indexes) {
+            return indexes.size();
+        }
+    }
+
+    private Index index(Long sectionId, String content) {
+        synchronized (indexes) {
+            Index index = indexes.get(sectionId);
+            if (index != null && index.isFor(content)) return index;
+        }
+        // built outside the lock; two first questions at once may both build, the last one stays
+        Index index = new Index(content, split(content, Math.max(20, config.getChunkTokens())));
+        builds.increment();
+        synchronized (indexes) {
+            indexes.put(sectionId, index);
+        }
+        return index;
+    }
+
+    // ---- chunking ----
+
+    /** Markdown -> passages of about {@code chunkTokens} tokens. */
+    public static List<Passage> split(String markdown, int chunkTokens) {
+        List<Passage> passages = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        String heading = null;
+
+        for (String block : blocks(markdown)) {
+            if (HEADING.matcher(block).lookingAt()) {
+                // heading right after heading: the first one has no text of its own
+                if (heading != null && current.toString().equals(heading)) current.setLength(0);
+                flush(passages, current);
+                heading = block;
+                current.append(block);
+                continue;
+            }
+            for (String piece : pieces(block, chunkTokens)) {
+                String text = current.toString();
+                if (!text.isEmpty() && !text.equals(heading)
+                        && TokenEstimator.estimate(text) + TokenEstimator.estimate(piece) > chunkTokens) {
+                    flush(passages, current);
+                }
+                if (current.length() == 0 && heading != null) current.append(heading);
+                if (current.length() > 0) current.append("\n\n");
+                current.append(piece);
+            }
+        }
+        flush(passages, current);
+        return passages;
+    }
+
+    // paragraphs and headings; a fenced code block is one block however many blank lines it has
+    private static List<String> blocks(String markdown) {
+        List<String> blocks = new ArrayList<>();
+        StringBuilder block = new StringBuilder();
+        boolean inFence = false;
+        for (String line : markdown.split("\r?\n", -1)) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("```")) inFence = !inFence;
+
+            if (!inFence && trimmed.isEmpty()) {
+                addBlock(blocks, block);
+            } else if (!inFence && HEADING.matcher(trimmed).lookingAt()) {
+                addBlock(blocks, block);
+                blocks.add(trimmed);
+            } else {
+                if (block.length() > 0) block.append('\n');
+                block.append(line);
+            }
+        }
+        addBlock(blocks, block);
+        return blocks;
+    }
+
+    private static void addBlock(List<String> blocks, StringBuilder block) {
+        String text = block.toString().strip();
+        if (!text.isEmpty()) blocks.add(text);
+        block.setLength(0);
+    }
+
+    // an over-long paragraph is split at sentence ends, run-on text is cut by length
+    private static List<String> pieces(String block, int chunkTokens) {
+        if (TokenEstimator.estimate(block) <= chunkTokens) return List.of(block);
+        if (block.startsWith("```")) return codePieces(block, chunkTokens);
+
+        List<String> pieces = new ArrayList<>();
+        StringBuilder piece = new StringBuilder();
+        for (String sentence : SENTENCE_END.split(block)) {
+            for (String cut : cutToLength(sentence, chunkTokens * 4)) {
+                if (piece.length() > 0 && TokenEstimator.estimate(piece + " " + cut) > chunkTokens) {
+                    pieces.add(piece.toString());
+                    piece.setLength(0);
+                }
+                if (piece.length() > 0) piece.append(' ');
+                piece.append(cut);
+            }
+        }
+        if (piece.length() > 0) pieces.add(piece.toString());
+        return pieces;
+    }
+
+    // an over-long code block is cut between lines; each piece is fenced again ("```kotlin" ... "```")
+    private static List<String> codePieces(String block, int chunkTokens) {
+        List<String> lines = new ArrayList<>(List.of(block.split("\n")));
+        String open = lines.remove(0).strip();
+        String close = open.substring(0, open.length() - open.replaceFirst("^`+", "").length());
+        if (!lines.isEmpty() && lines.get(lines.size() - 1).strip().startsWith(close)) lines.remove(lines.size() - 1);
+        int budget = Math.max(1, chunkTokens - TokenEstimator.estimate(open + "\n\n" + close));
+
+        List<String> pieces = new ArrayList<>();
+        StringBuilder body = new StringBuilder();
+        for (String line : lines) {
+            for (String cut : cutToLength(line, budget * 4)) {
+                if (body.length() > 0 && TokenEstimator.estimate(body + "\n" + cut) > budget) {
+                    pieces.add(open + "\n" + body + "\n" + close);
+                    body.setLength(0);
+                }
+                if (body.length() > 0) body.append('\n');
+                body.append(cut);
+            }
+        }
+        if (body.length() > 0) pieces.add(open + "\n" + body + "\n" + close);
+        return pieces;
+    }
+
+    private static List<String> cutToLength(String text, int maxChars) {
+        if (text.length() <= maxChars) return List.of(text);
+        List<String> cuts = new ArrayList<>();
+        for (int from = 0; from < text.length(); from += maxChars) {
+            cuts.add(text.substring(from, Math.min(text.length(), from + maxChars)));
+        }
+        return cuts;
+    }
+
+    private static void flush(List<Passage> passages, StringBuilder current) {
+        String text = current.toString().strip();
+        current.setLength(0);
+        if (text.isEmpty()) return;
+        passages.add(new Passage(passages.size(), text, TokenEstimator.estimate(text)));
+    }
+
+    // ---- scoring ----
+
+    private static final class Index {
+        private final int contentLength;
+        private final int contentHash;
+        private final List<Passage> passages;
+        private final List<Map<String, Integer>> termFrequencies;
+        private final int[] lengths;
+        private final double averageLength;
+        private final Map<String, Integer> documentFrequency = new HashMap<>();
+
+        Index(String content, List<Passage> passages) {
+            this.contentLength = content.length();
+            this.contentHash = content.hashCode();
+            this.passages = passages;
+            this.termFrequencies = new ArrayList<>(passages.size());
+            this.lengths = new int[passages.size()];
+
+            long total = 0;
+            for (int i = 0; i < passages.size(); i++) {
+                List<String> terms = Terms.of(passages.get(i).text());
+                Map<String, Integer> tf = new HashMap<>();
+                for (String t : terms) tf.merge(t, 1, Integer::sum);
+                for (String t : tf.keySet()) documentFrequency.merge(t, 1, Integer::sum);
+                termFrequencies.add(tf);
+                lengths[i] = terms.size();
+                total += terms.size();
+            }
+            this.averageLength = passages.isEmpty() ? 1 : Math.max(1, (double) total / passages.size());
+        }
+
+        boolean isFor(String content) {
+            return content.length() == contentLength && content.hashCode() == contentHash;
+        }
+
+        // passages with a positive score, best first
+        List<Passage> rank(List<String> query, int topK) {
+            Set<String> terms = new LinkedHashSet<>(query);
+            int n = passages.size();
+            double[] scores = new double[n];
+            for (String term : terms) {
+                Integer df = documentFrequency.get(term);
+                if (df == null) continue;
+                double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+                for (int i = 0; i < n; i++) {
+                    Integer tf = termFrequencies.get(i).get(term);
+                    if (tf == null) continue;
+                    double norm = K1 * (1 - B + B * lengths[i] / averageLength);
+                    scores[i] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+
+            List<Integer> ranked = new ArrayList<>();
+            for (int i = 0; i < n; i++) if (scores[i] > 0) ranked.add(i);
+            ranked.sort((a, b) -> Double.compare(scores[b], scores[a]));
+
+            List<Passage> top = new ArrayList<>(Math.min(topK, ranked.size()));
+            for (int i = 0; i < ranked.size() && i < topK; i++) top.add(passages.get(ranked.get(i)));
+            return top;
+        }
+    }
+}
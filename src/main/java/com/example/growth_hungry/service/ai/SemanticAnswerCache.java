@@ -0,0 +1,133 @@
+package com.example.growth_hungry.service.ai;
+
+import com.example.growth_hungry.config.AiProps;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Second-level answer cache for section chat that also matches paraphrases: "what is a closure"
+ * finds the answer to "explain closures". Asked after {@link SectionAnswerCache} misses.
+ *
+ * Questions are embedded ({@link EmbeddingProvider}) and kept in one {@link VectorIndex} per
+ * section + content hash + model, so an answer never crosses sections or outlives an edit.
+ * A cached answer is served when the cosine similarity is at least {@code ai.semantic-cache.threshold}.
+ * Bounded twice: sections (LRU) and entries per section (LRU inside the index).
+ *
+ * Off unless {@code ai.semantic-cache.enabled=true} and an {@link EmbeddingProvider} bean exists.
+ */
+@Component
+public class SemanticAnswerCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticAnswerCache.class);
+
+    /** Embedded question of one turn: looked up before the AI call, stored with its answer after. */
+    public record Probe(Scope scope, float[] vector) {
+    }
+
+    public record Scope(Long sectionId, String contentHash, String model) {
+    }
+
+    private record Entry(String answer, long expiresAtNanos) {
+    }
+
+    private final EmbeddingProvider embeddings;
+    private final boolean enabled;
+    private final float threshold;
+    private final int maxEntriesPerSection;
+    private final long ttlNanos;
+
+    // access-order LinkedHashMap = LRU over sections; guarded by its own monitor (indexes too)
+    private final LinkedHashMap<Scope, VectorIndex<Entry>> sections;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SemanticAnswerCache(AiProps props, @Nullable EmbeddingProvider embeddings, MeterRegistry meterRegistry) {
+        AiProps.SemanticCache config = props.getSemanticCache() != null ? props.getSemanticCache() : new AiProps.SemanticCache();
+        if (config.isEnabled() && embeddings == null) {
+            log.warn("ai.semantic-cache.enabled is set but there is no EmbeddingProvider bean; semantic cache stays off");
+        }
+        this.embeddings = embeddings;
+        this.enabled = config.isEnabled() && embeddings != null;
+        this.threshold = (float) config.getThreshold();
+        this.maxEntriesPerSection = Math.max(1, config.getMaxEntriesPerSection());
+        this.ttlNanos = config.getTtlSeconds() * 1_000_000_000L;
+        int maxSections = Math.max(1, config.getMaxSections());
+        this.sections = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Scope, VectorIndex<Entry>> eldest) {
+                return size() > maxSections;
+            }
+        };
+
+        FunctionCounter.builder("ai.semantic.cache.hits", hits, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("ai.semantic.cache.misses", misses, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("ai.semantic.cache.size", this, SemanticAnswerCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Embeds the question of an exact-cache key once per turn.
+     *
+     * @return {@code null} when the cache is off
+     */
+    public Probe probe(SectionAnswerCache.Key key) {
+        if (!enabled || key == null) return null;
+        return new Probe(new Scope(key.sectionId(), key.contentHash(), key.model()), embeddings.embed(key.question()));
+    }
+
+    public Optional<String> find(Probe probe) {
+        if (probe == null) return Optional.empty();
+
+        synchronized (sections) {
+            VectorIndex<Entry> index = sections.get(probe.scope());
+            VectorIndex.Match<Entry> match = index == null ? null : index.nearest(probe.vector());
+            if (match == null || match.similarity() < threshold
+                    || match.value().expiresAtNanos() - System.nanoTime() <= 0) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.of(match.value().answer());
+        }
+    }
+
+    public void put(Probe probe, String answer) {
+        if (probe == null || answer == null || answer.isBlank()) return;
+
+        Entry entry = new Entry(answer, System.nanoTime() + ttlNanos);
+        synchronized (sections) {
+            sections.computeIfAbsent(probe.scope(), s -> new VectorIndex<>(probe.vector().length, maxEntriesPerSection))
+                    .add(probe.vector(), entry);
+        }
+    }
+
+    /** Drops every entry of the section (called when its content changes). */
+    public void invalidateSection(Long sectionId) {
+        if (sectionId == null) return;
+        synchronized (sections) {
+            sections.keySet().removeIf(s -> sectionId.equals(s.sectionId()));
+        }
+    }
+
+    /** Cached answers over all sections. */
+    public int size() {
+        synchronized (sections) {
+            int size = 0;
+            for (VectorIndex<Entry> index : sections.values()) size += index.size();
+            return size;
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.growth_hungry.service.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Text -> search terms: lower-cased words, stop words dropped, plural "s" stripped.
+ * Shared by the passage index (BM25) and the local embedding provider, so both treat
+ * "closures" and "closure" as the same word.
+ */
+public final class Terms {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "an", "and", "or", "of", "to", "in", "on", "for", "is", "are", "was", "be", "it", "this",
+            "that", "with", "as", "by", "at", "from", "what", "how", "why", "when", "which", "do", "does",
+            "can", "me", "my", "you", "your", "about", "explain", "please");
+
+    private Terms() {
+    }
+
+    public static List<String> of(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) return terms;
+        for (String raw : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if (raw.length() < 2 || STOP_WORDS.contains(raw)) continue;
+            terms.add(stem(raw));
+        }
+        return terms;
+    }
+
+    // plural "s" only: "closures" finds "closure"; anything smarter is not worth it at this size
+    private static String stem(String term) {
+        if (term.length() > 3 && term.endsWith("s") && !term.endsWith("ss")) {
+            return term.substring(0, term.length() - 1);
+        }
+        return term;
+    }
+}
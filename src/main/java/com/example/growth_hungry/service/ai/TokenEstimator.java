@@ -0,0 +1,23 @@
+package com.example.growth_hungry.service.ai;
+
+/**
+ * Cheap local token estimate (~4 characters per token for English/code, rounded up) — good
+ * enough to cap prompt size without calling the provider's countTokens endpoint.
+ */
+public final class TokenEstimator {
+
+    // role marker + turn separators Gemini adds around every content entry
+    static final int PER_MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        return (text.length() + 3) / 4;
+    }
+
+    public static int estimate(AiMessage message) {
+        return estimate(message.text()) + PER_MESSAGE_OVERHEAD;
+    }
+}
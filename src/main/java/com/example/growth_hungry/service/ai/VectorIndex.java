@@ -0,0 +1,104 @@
+package com.example.growth_hungry.service.ai;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity set of unit vectors with a value each, searched by cosine similarity.
+ *
+ * Vectors are normalized on insert, so cosine is a plain dot product, and all of them sit in one
+ * flat {@code float[]}: a search walks memory linearly. The scan is scalar: C2 does not
+ * vectorize a float sum (it may not reorder the additions), and the JDK Vector API is still an
+ * incubator module. The four independent accumulators only break the dependency chain between
+ * additions. At a few hundred entries per section the scan is microseconds either way.
+ *
+ * When full, the entry used least recently (added or returned by {@link #nearest}) is replaced.
+ * Not thread-safe.
+ */
+public final class VectorIndex<T> {
+
+    public record Match<T>(T value, float similarity) {
+    }
+
+    private final int dimensions;
+    private final float[] vectors;
+    private final Object[] values;
+    private final long[] lastUsed;
+    private int size;
+    private long clock;
+
+    public VectorIndex(int dimensions, int capacity) {
+        if (dimensions <= 0 || capacity <= 0) throw new IllegalArgumentException("dimensions and capacity must be positive");
+        this.dimensions = dimensions;
+        this.vectors = new float[dimensions * capacity];
+        this.values = new Object[capacity];
+        this.lastUsed = new long[capacity];
+    }
+
+    /** Most similar entry, or {@code null} when empty or the query is a zero vector. */
+    @SuppressWarnings("unchecked")
+    public Match<T> nearest(float[] query) {
+        float[] unit = normalized(query);
+        if (unit == null || size == 0) return null;
+
+        int best = -1;
+        float bestSimilarity = -2;
+        for (int i = 0; i < size; i++) {
+            float similarity = dot(vectors, i * dimensions, unit);
+            if (similarity > bestSimilarity) {
+                bestSimilarity = similarity;
+                best = i;
+            }
+        }
+        lastUsed[best] = ++clock;
+        return new Match<>((T) values[best], bestSimilarity);
+    }
+
+    /** Zero vectors are ignored (nothing could ever match them). */
+    public void add(float[] vector, T value) {
+        float[] unit = normalized(vector);
+        if (unit == null) return;
+
+        int slot = size < values.length ? size++ : leastRecentlyUsed();
+        System.arraycopy(unit, 0, vectors, slot * dimensions, dimensions);
+        values[slot] = value;
+        lastUsed[slot] = ++clock;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int leastRecentlyUsed() {
+        int oldest = 0;
+        for (int i = 1; i < size; i++) {
+            if (lastUsed[i] < lastUsed[oldest]) oldest = i;
+        }
+        return oldest;
+    }
+
+    private float[] normalized(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        float norm = (float) Math.sqrt(dot(vector, 0, vector));
+        if (norm == 0 || Float.isNaN(norm)) return null;
+        float[] unit = Arrays.copyOf(vector, dimensions);
+        for (int i = 0; i < dimensions; i++) unit[i] /= norm;
+        return unit;
+    }
+
+    // four accumulators: the adds of one step do not wait for each other
+    static float dot(float[] a, int offset, float[] b) {
+        int n = b.length;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i <= n - 4; i += 4) {
+            s0 += a[offset + i] * b[i];
+            s1 += a[offset + i + 1] * b[i + 1];
+            s2 += a[offset + i + 2] * b[i + 2];
+            s3 += a[offset + i + 3] * b[i + 3];
+        }
+        for (; i < n; i++) s0 += a[offset + i] * b[i];
+        return (s0 + s1) + (s2 + s3);
+    }
+}
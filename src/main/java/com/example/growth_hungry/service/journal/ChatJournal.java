@@ -0,0 +1,211 @@
+package com.example.growth_hungry.service.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal in one memory-mapped file.
+ *
+ * Layout: a header {@code [magic][epoch][drainedUpTo]}, then records {@code [length][epoch][crc][payload]}.
+ * {@link #append} returns once the record is on disk. Appenders that arrive while a force is
+ * running wait for the next one, so concurrent appends share an fsync (group commit).
+ * {@link #write} + {@link #awaitForced} is the same in two steps, for callers that need to
+ * record the write position under their own lock.
+ *
+ * Records before {@code drainedUpTo} are already in the database. {@link #reset} starts over
+ * at the beginning of the file with the next epoch. A replay stops at the zero length written
+ * after the last record, at a record of an older epoch or at a torn record (bad crc).
+ */
+public class ChatJournal implements AutoCloseable {
+
+    /** A record that is on disk but not drained yet; {@code end} is the offset after it. */
+    public record Entry(byte[] payload, long end) {
+    }
+
+    private static final int MAGIC = 0x43484a31; // "CHJ1"
+    private static final int HEADER = 16;
+    private static final int RECORD_HEADER = 12;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final List<Entry> recovered;
+
+    // guarded by this: record bytes, writePos, epoch, header
+    private int writePos;
+    private int epoch;
+    private int drainedUpTo;
+
+    // one force at a time; forcedPos only grows within an epoch
+    private final Object forceLock = new Object();
+    private volatile long forcedPos;
+    private volatile long forces;
+
+    public ChatJournal(Path file, int capacity) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // an existing journal keeps its size: records beyond a smaller capacity would be lost
+        this.capacity = (int) Math.max(capacity, channel.size());
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+        this.recovered = open();
+    }
+
+    /** Records written before the last stop (or crash) and not drained since, oldest first. */
+    public List<Entry> recovered() {
+        return recovered;
+    }
+
+    /**
+     * Writes the record and waits until it is forced to disk.
+     *
+     * @return offset after the record, {@code -1} when it does not fit (nothing written)
+     */
+    public long append(byte[] payload) {
+        long end = write(payload);
+        if (end >= 0) awaitForced(end);
+        return end;
+    }
+
+    /**
+     * Writes the record into the mapping without waiting for the disk; {@link #awaitForced}
+     * before acknowledging it.
+     *
+     * @return offset after the record, {@code -1} when it does not fit (nothing written)
+     */
+    public synchronized long write(byte[] payload) {
+        int size = RECORD_HEADER + payload.length;
+        if (writePos + size > capacity) return -1;
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        buffer.putInt(writePos, payload.length);
+        buffer.putInt(writePos + 4, epoch);
+        buffer.putInt(writePos + 8, (int) crc.getValue());
+        buffer.put(writePos + RECORD_HEADER, payload);
+        writePos += size;
+        terminate();
+        return writePos;
+    }
+
+    /** Everything up to {@code end} is in the database; a restart will not replay it. */
+    public synchronized void markDrained(long end) {
+        if (end <= drainedUpTo || end > writePos) return;
+        drainedUpTo = (int) end;
+        writeHeader();
+    }
+
+    /**
+     * Starts over at the beginning of the file when everything written has been drained.
+     *
+     * @return {@code false} when records were appended meanwhile
+     */
+    public boolean reset() {
+        synchronized (forceLock) {
+            synchronized (this) {
+                if (drainedUpTo != writePos) return false;
+                if (writePos == HEADER) return true;
+                epoch++;
+                writePos = HEADER;
+                drainedUpTo = HEADER;
+                terminate();
+                writeHeader();
+                forcedPos = HEADER;
+                return true;
+            }
+        }
+    }
+
+    /** Bytes of records not drained yet. */
+    public synchronized long pendingBytes() {
+        return writePos - drainedUpTo;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** fsyncs so far; fewer than appends when appends overlap. */
+    public long forceCount() {
+        return forces;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (forceLock) {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns once everything up to {@code end} is on disk. Group commit: whoever holds the lock
+     * forces everything written so far, for all waiters.
+     */
+    public void awaitForced(long end) {
+        if (forcedPos >= end) return;
+        synchronized (forceLock) {
+            if (forcedPos >= end) return;
+            int from = (int) forcedPos;
+            int upTo;
+            synchronized (this) {
+                upTo = writePos;
+            }
+            // the terminator after the last record is forced with it
+            buffer.force(from, Math.min(capacity, upTo + 4) - from);
+            forces++;
+            forcedPos = upTo;
+        }
+    }
+
+    // zero length after the last record: a replay stops there, even over bytes of older records
+    private void terminate() {
+        if (writePos + 4 <= capacity) buffer.putInt(writePos, 0);
+    }
+
+    private synchronized void writeHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, epoch);
+        buffer.putInt(8, drainedUpTo);
+        buffer.force(0, HEADER);
+    }
+
+    private synchronized List<Entry> open() {
+        List<Entry> entries = new ArrayList<>();
+        if (buffer.getInt(0) != MAGIC) {
+            epoch = 1;
+            drainedUpTo = HEADER;
+            writePos = HEADER;
+            terminate();
+            writeHeader();
+            forcedPos = HEADER;
+            return entries;
+        }
+
+        epoch = buffer.getInt(4);
+        drainedUpTo = buffer.getInt(8);
+        int pos = drainedUpTo;
+        while (pos + RECORD_HEADER <= capacity) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || pos + RECORD_HEADER + length > capacity || buffer.getInt(pos + 4) != epoch) break;
+            byte[] payload = new byte[length];
+            buffer.get(pos + RECORD_HEADER, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(pos + 8)) break;
+            pos += RECORD_HEADER + length;
+            entries.add(new Entry(payload, pos));
+        }
+        // a torn record (crash during append) was never acknowledged: the next append overwrites it
+        writePos = pos;
+        terminate();
+        buffer.force();
+        forcedPos = pos;
+        return List.copyOf(entries);
+    }
+}
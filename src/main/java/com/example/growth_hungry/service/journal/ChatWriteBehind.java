@@ -0,0 +1,502 @@
+package com.example.growth_hungry.service.journal;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.model.chat.ChatMessage;
+import com.example.growth_hungry.model.chat.MessageRole;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Write-behind for general chat messages ({@code ai.write-behind.enabled}): a turn is appended
+ * to the local {@link ChatJournal} and acknowledged as soon as it is on disk; a background
+ * drainer batch-inserts journaled turns into Postgres and then lets the journal start over.
+ * A Postgres hiccup delays the drain, not the chat answer.
+ *
+ * Message ids are taken up front from {@code chat_messages_seq} in blocks read exactly the way
+ * Hibernate's pooled optimizer reads them, so a message has its final id before it reaches the
+ * database and never one Hibernate hands out too: reads merge {@link #pending} with what the
+ * database returns and drop duplicates by id. Turns left in the journal by a crash are replayed
+ * at startup; rows of a replayed turn that are already in are skipped, any other row with one
+ * of our ids fails the drain.
+ *
+ * Session rows are not journaled: a new session is still inserted directly. The bean only
+ * exists with {@code ai.write-behind.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "ai.write-behind", name = "enabled", havingValue = "true")
+public class ChatWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatWriteBehind.class);
+    // must match allocationSize of ChatMessage's @SequenceGenerator
+    private static final int ID_BLOCK = 50;
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    /** One message of a turn, before it has an id. */
+    public record Message(MessageRole role, String content, Instant createdAt) {
+    }
+
+    private record Row(long id, MessageRole role, String content, Instant createdAt) {
+    }
+
+    private record Turn(long sessionId, Long userId, Instant updatedAt, List<Row> rows, long journalEnd) {
+    }
+
+    private final AiProps.WriteBehind props;
+    private final JdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate named;
+    private final TransactionTemplate tx;
+    private final Counter drained;
+    private final Counter drainFailures;
+
+    private ChatJournal journal;
+    private Thread drainer;
+    private volatile boolean running;
+
+    // guarded by this: turns in journal order, and the same turns' messages per session
+    private final Deque<Turn> queue = new ArrayDeque<>();
+    private final Map<Long, List<Turn>> bySession = new HashMap<>();
+    // one drain at a time (drainer thread, or an appender making room); never held with this
+    private final Object drainLock = new Object();
+    // guarded by idLock: ids [nextId, blockEnd] are ours, spareBlockEnd is the next block (0 = none)
+    private final Object idLock = new Object();
+    private long nextId;
+    private long blockEnd = -1;
+    private long spareBlockEnd;
+
+    public ChatWriteBehind(AiProps aiProps, JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry) {
+        this.props = aiProps.getWriteBehind() != null ? aiProps.getWriteBehind() : new AiProps.WriteBehind();
+        this.jdbc = jdbc;
+        this.named = new NamedParameterJdbcTemplate(jdbc);
+        this.tx = new TransactionTemplate(transactionManager);
+        this.drained = Counter.builder("chat.writebehind.drained")
+                .description("Journaled chat turns inserted into the database")
+                .register(meterRegistry);
+        this.drainFailures = Counter.builder("chat.writebehind.drain.failures")
+                .description("Drains that failed and will be retried")
+                .register(meterRegistry);
+        Gauge.builder("chat.writebehind.pending", this, ChatWriteBehind::pendingTurns).register(meterRegistry);
+        FunctionCounter.builder("chat.writebehind.fsyncs", this, w -> w.journal == null ? 0 : w.journal.forceCount())
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return props.isEnabled() && running;
+    }
+
+    /** Opens the journal, queues what a crash left in it and starts the drainer. */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!props.isEnabled() || running) return;
+        if (!sequenceMatches()) return;
+        try {
+            journal = new ChatJournal(Path.of(props.getDirectory(), "chat.journal"), props.getCapacityBytes());
+        } catch (IOException e) {
+            // chat keeps working, only without write-behind
+            log.error("Chat journal could not be opened, messages are written directly", e);
+            return;
+        }
+        for (ChatJournal.Entry entry : journal.recovered()) {
+            enqueue(decode(entry.payload(), entry.end()));
+        }
+        if (!queue.isEmpty()) log.info("Replaying {} journaled chat turns", queue.size());
+
+        running = true;
+        drainer = Thread.ofPlatform().name("chat-journal-drainer").daemon().start(this::drainLoop);
+    }
+
+    /**
+     * Journals the messages of one turn (and the session's new {@code updatedAt}); returns once
+     * they are on disk.
+     *
+     * @return {@code false} when the turn could not be journaled (write-behind off, journal
+     *         full, no ids): the caller writes it directly
+     */
+    public boolean append(long sessionId, Long userId, Instant updatedAt, List<Message> messages) {
+        if (!isEnabled()) return false;
+
+        List<Row> rows = new ArrayList<>(messages.size());
+        for (Message m : messages) {
+            Long id = nextId();
+            if (id == null) return false;
+            rows.add(new Row(id, m.role(), m.content(), m.createdAt()));
+        }
+        byte[] payload = encode(sessionId, userId, updatedAt, rows);
+
+        long end = write(sessionId, userId, updatedAt, rows, payload);
+        if (end < 0) {
+            // full: make room by draining here, a direct write would overtake the queued turns
+            try {
+                drainAll();
+            } catch (RuntimeException e) {
+                return false;
+            }
+            end = write(sessionId, userId, updatedAt, rows, payload);
+            if (end < 0) return false;
+        }
+        // the drainer may insert the turn before this returns: then it is durable either way
+        journal.awaitForced(end);
+        return true;
+    }
+
+    // journal write and queue in one step: queue order = journal order, which markDrained relies on
+    private synchronized long write(long sessionId, Long userId, Instant updatedAt, List<Row> rows, byte[] payload) {
+        long end = journal.write(payload);
+        if (end >= 0) {
+            enqueue(new Turn(sessionId, userId, updatedAt, rows, end));
+            notifyAll();
+        }
+        return end;
+    }
+
+    /** Messages of the session that are journaled but not in the database yet, oldest first. */
+    public synchronized List<ChatMessage> pending(Long sessionId) {
+        List<Turn> turns = sessionId == null ? null : bySession.get(sessionId);
+        if (turns == null) return List.of();
+        List<ChatMessage> messages = new ArrayList<>();
+        for (Turn t : turns) {
+            for (Row r : t.rows()) {
+                ChatMessage m = new ChatMessage();
+                m.setId(r.id());
+                m.setRole(r.role());
+                m.setContent(r.content());
+                m.setCreatedAt(r.createdAt());
+                messages.add(m);
+            }
+        }
+        return messages;
+    }
+
+    /** Latest {@code updatedAt} of the session's journaled turns. */
+    public synchronized Optional<Instant> pendingUpdatedAt(Long sessionId) {
+        List<Turn> turns = sessionId == null ? null : bySession.get(sessionId);
+        return turns == null ? Optional.empty() : Optional.of(turns.get(turns.size() - 1).updatedAt());
+    }
+
+    public synchronized int pendingTurns() {
+        return queue.size();
+    }
+
+    /** Inserts everything journaled so far, in the caller's thread. */
+    public void drainAll() {
+        while (pendingTurns() > 0) drainOnce();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            notifyAll();
+            t = drainer;
+        }
+        try {
+            t.join(10_000);
+            // whatever could not be drained stays in the journal for the next start
+            journal.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Chat journal could not be closed cleanly", e);
+        }
+    }
+
+    // ---- drain ----
+
+    private void drainLoop() {
+        long delayMs = props.getDrainIntervalMs();
+        while (running) {
+            try {
+                synchronized (this) {
+                    if (queue.isEmpty()) wait(props.getDrainIntervalMs());
+                }
+                prefetchIds();
+                if (pendingTurns() == 0) continue;
+                drainOnce();
+                delayMs = props.getDrainIntervalMs();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                drainFailures.increment();
+                log.warn("Chat journal drain failed, retrying in {} ms: {}", delayMs, e.toString());
+                sleepQuietly(delayMs);
+                delayMs = Math.min(MAX_RETRY_DELAY_MS, Math.max(1, delayMs) * 2);
+            }
+        }
+        // last drain on shutdown; failures are replayed on the next start
+        try {
+            drainAll();
+        } catch (RuntimeException e) {
+            log.warn("Chat journal not fully drained on shutdown: {}", e.toString());
+        }
+    }
+
+    // one transaction: messages of up to drainBatchSize turns, then the session timestamps.
+    // The database work runs without the monitor: appends and reads go on during a slow drain.
+    private void drainOnce() {
+        synchronized (drainLock) {
+            List<Turn> batch = new ArrayList<>();
+            synchronized (this) {
+                for (Turn t : queue) {
+                    if (batch.size() >= Math.max(1, props.getDrainBatchSize())) break;
+                    batch.add(t);
+                }
+            }
+            if (batch.isEmpty()) return;
+
+            tx.executeWithoutResult(status -> insert(batch));
+
+            synchronized (this) {
+                // only drains remove, so the batch is still the head of the queue
+                for (Turn t : batch) {
+                    queue.removeFirst();
+                    List<Turn> turns = bySession.get(t.sessionId());
+                    turns.remove(t);
+                    if (turns.isEmpty()) bySession.remove(t.sessionId());
+                }
+            }
+            drained.increment(batch.size());
+            journal.markDrained(batch.get(batch.size() - 1).journalEnd());
+            if (pendingTurns() == 0) journal.reset();
+        }
+    }
+
+    private void insert(List<Turn> batch) {
+        Set<Long> sessionIds = new HashSet<>();
+        for (Turn t : batch) sessionIds.add(t.sessionId());
+        // sessions deleted while their turns were journaled: those messages are dropped
+        Set<Long> existing = new HashSet<>(named.queryForList(
+                "select id from chat_session where id in (:ids)",
+                new MapSqlParameterSource("ids", sessionIds), Long.class));
+
+        Map<Long, Turn> turnOf = new HashMap<>();
+        for (Turn t : batch) {
+            if (!existing.contains(t.sessionId())) continue;
+            for (Row r : t.rows()) turnOf.put(r.id(), t);
+        }
+        Map<Long, StoredRow> stored = turnOf.isEmpty() ? Map.of() : stored(turnOf.keySet());
+
+        List<Object[]> messages = new ArrayList<>();
+        Map<Long, Instant> touched = new HashMap<>();
+        for (Turn t : batch) {
+            if (!existing.contains(t.sessionId())) continue;
+            for (Row r : t.rows()) {
+                StoredRow in = stored.get(r.id());
+                if (in != null) {
+                    // a replayed turn drained before the crash: the row is ours, skip it.
+                    // Anything else means two writers got the same id: stop instead of losing a message.
+                    if (!in.matches(t.sessionId(), r)) {
+                        String msg = "chat message id " + r.id() + " of session " + t.sessionId()
+                                + " is already used by a message of session " + in.sessionId();
+                        log.error("Chat journal drain stopped: {}", msg);
+                        throw new IllegalStateException(msg);
+                    }
+                    continue;
+                }
+                messages.add(new Object[]{r.id(), t.sessionId(), t.userId(), r.role().name(), r.content(),
+                        Timestamp.from(r.createdAt())});
+            }
+            touched.merge(t.sessionId(), t.updatedAt(), (a, b) -> a.isAfter(b) ? a : b);
+        }
+
+        jdbc.batchUpdate("insert into chat_messages (id, session_id, user_id, role, content, created_at) "
+                + "values (?, ?, ?, ?, ?, ?)", messages);
+
+        List<Object[]> updates = new ArrayList<>(touched.size());
+        touched.forEach((id, at) -> updates.add(new Object[]{Timestamp.from(at), id, Timestamp.from(at)}));
+        jdbc.batchUpdate("update chat_session set updated_at = ? where id = ? and updated_at < ?", updates);
+    }
+
+    private Map<Long, StoredRow> stored(Set<Long> ids) {
+        Map<Long, StoredRow> rows = new HashMap<>();
+        named.query("select id, session_id, role, created_at from chat_messages where id in (:ids)",
+                new MapSqlParameterSource("ids", ids),
+                rs -> {
+                    rows.put(rs.getLong("id"), new StoredRow(rs.getLong("session_id"), rs.getString("role"),
+                            rs.getTimestamp("created_at").toInstant()));
+                });
+        return rows;
+    }
+
+    private record StoredRow(long sessionId, String role, Instant createdAt) {
+        boolean matches(long sessionId, Row row) {
+            // the column keeps microseconds
+            return this.sessionId == sessionId && role.equals(row.role().name())
+                    && createdAt.equals(row.createdAt().truncatedTo(ChronoUnit.MICROS));
+        }
+    }
+
+    // ---- ids ----
+
+    // ids are read the way Hibernate reads them only while both use blocks of the same size
+    private boolean sequenceMatches() {
+        Long increment;
+        try {
+            increment = jdbc.queryForObject("select increment_by from pg_sequences "
+                    + "where schemaname = current_schema() and sequencename = 'chat_messages_seq'", Long.class);
+        } catch (RuntimeException e) {
+            log.error("chat_messages_seq could not be read, messages are written directly: {}", e.toString());
+            return false;
+        }
+        if (increment == null || increment != ID_BLOCK) {
+            log.error("chat_messages_seq increments by {}, the chat journal needs {}; messages are written directly",
+                    increment, ID_BLOCK);
+            return false;
+        }
+        return true;
+    }
+
+    // next id of the current block, else of the spare block the drainer fetched ahead;
+    // only when both are used up does a turn wait for nextval (null if the database is unreachable)
+    private Long nextId() {
+        synchronized (idLock) {
+            if (nextId > blockEnd && spareBlockEnd > 0) {
+                useBlock(spareBlockEnd);
+                spareBlockEnd = 0;
+            }
+            if (nextId > blockEnd) {
+                try {
+                    useBlock(fetchBlock());
+                } catch (RuntimeException e) {
+                    log.warn("No message ids for the chat journal: {}", e.toString());
+                    return null;
+                }
+            }
+            return nextId++;
+        }
+    }
+
+    // drainer thread: the next block is fetched while half of the current one is left
+    private void prefetchIds() {
+        synchronized (idLock) {
+            if (spareBlockEnd > 0 || blockEnd - nextId >= ID_BLOCK / 2) return;
+        }
+        long hi;
+        try {
+            hi = fetchBlock();
+        } catch (RuntimeException e) {
+            return; // the next append will try again
+        }
+        synchronized (idLock) {
+            if (spareBlockEnd == 0) spareBlockEnd = hi;
+        }
+    }
+
+    // pooled: nextval returns the last id of a block of ID_BLOCK
+    private long fetchBlock() {
+        Long hi = jdbc.queryForObject("select nextval('chat_messages_seq')", Long.class);
+        if (hi == null) throw new IllegalStateException("nextval returned null");
+        return hi;
+    }
+
+    // caller holds idLock. Hibernate's PooledOptimizer takes value v as the ids (v - 49 .. v),
+    // except the sequence's first value 1, which is the single id 1: never below 1 here either
+    private void useBlock(long hi) {
+        nextId = Math.max(1, hi - ID_BLOCK + 1);
+        blockEnd = hi;
+    }
+
+    // ---- queue + encoding ----
+
+    // caller holds the monitor (or is start())
+    private void enqueue(Turn turn) {
+        queue.addLast(turn);
+        bySession.computeIfAbsent(turn.sessionId(), id -> new ArrayList<>()).add(turn);
+    }
+
+    private static byte[] encode(long sessionId, Long userId, Instant updatedAt, List<Row> rows) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(sessionId);
+            out.writeLong(userId == null ? -1 : userId);
+            writeInstant(out, updatedAt);
+            out.writeInt(rows.size());
+            for (Row r : rows) {
+                out.writeLong(r.id());
+                out.writeUTF(r.role().name());
+                writeInstant(out, r.createdAt());
+                byte[] content = r.content().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(content.length);
+                out.write(content);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Turn decode(byte[] payload, long journalEnd) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            long sessionId = in.readLong();
+            long userId = in.readLong();
+            Instant updatedAt = readInstant(in);
+            int count = in.readInt();
+            List<Row> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                MessageRole role = MessageRole.valueOf(in.readUTF());
+                Instant createdAt = readInstant(in);
+                byte[] content = new byte[in.readInt()];
+                in.readFully(content);
+                rows.add(new Row(id, role, new String(content, StandardCharsets.UTF_8), createdAt));
+            }
+            return new Turn(sessionId, userId < 0 ? null : userId, updatedAt, rows, journalEnd);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant at) throws IOException {
+        out.writeLong(at.getEpochSecond());
+        out.writeInt(at.getNano());
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return Instant.ofEpochSecond(in.readLong(), in.readInt());
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
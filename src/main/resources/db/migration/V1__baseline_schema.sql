@@ -0,0 +1,84 @@
+-- Schema as the entities map it (checked at startup by ddl-auto=validate).
+-- "if not exists" throughout: databases created by ddl-auto=update before the migrations
+-- already have these tables and are taken over as they are (baseline-on-migrate, version 0).
+
+create table if not exists users (
+    id       bigint generated by default as identity primary key,
+    username varchar(255) not null unique,
+    email    varchar(255),
+    password varchar(255) not null
+);
+
+create table if not exists courses (
+    id          bigint generated by default as identity primary key,
+    title       varchar(255) not null,
+    description varchar(2000),
+    created_at  timestamp(6) with time zone not null,
+    updated_at  timestamp(6) with time zone not null
+);
+
+create table if not exists user_course (
+    user_id   bigint not null references users (id),
+    course_id bigint not null references courses (id),
+    primary key (user_id, course_id)
+);
+
+create table if not exists section (
+    id        bigint generated by default as identity primary key,
+    content   text   not null,
+    course_id bigint not null references courses (id)
+);
+
+-- chat ids come from pooled sequences (allocationSize 50 in the entities)
+create sequence if not exists chat_session_seq start with 1 increment by 50;
+create sequence if not exists chat_messages_seq start with 1 increment by 50;
+
+create table if not exists chat_session (
+    id         bigint primary key,
+    model      varchar(255) not null,
+    title      varchar(255) not null,
+    user_id    bigint       not null references users (id),
+    section_id bigint,
+    created_at timestamp(6) with time zone not null,
+    updated_at timestamp(6) with time zone not null
+);
+
+create table if not exists chat_messages (
+    id         bigint primary key,
+    content    text        not null,
+    role       varchar(10) not null check (role in ('USER', 'ASSISTANT')),
+    created_at timestamp(6) with time zone not null,
+    session_id bigint      not null references chat_session (id),
+    user_id    bigint references users (id)
+);
+
+create table if not exists ai_batch_jobs (
+    id                       bigint generated by default as identity primary key,
+    name                     varchar(200) not null,
+    status                   varchar(20)  not null check (status in ('PENDING', 'RUNNING', 'COMPLETED')),
+    system_prompt            text,
+    model                    varchar(100),
+    parallelism              integer      not null,
+    total_items              integer      not null,
+    done_items               integer      not null,
+    failed_items             integer      not null,
+    created_at               timestamp(6) with time zone not null,
+    run_started_at           timestamp(6) with time zone,
+    run_start_finished_items integer      not null,
+    finished_at              timestamp(6) with time zone
+);
+
+create table if not exists ai_batch_items (
+    id         bigint generated by default as identity primary key,
+    job_id     bigint       not null references ai_batch_jobs (id),
+    item_key   varchar(200) not null,
+    prompt     text         not null,
+    status     varchar(10)  not null check (status in ('PENDING', 'DONE', 'FAILED')),
+    result     text,
+    error      varchar(1000),
+    attempts   integer      not null,
+    updated_at timestamp(6) with time zone,
+    constraint uk_ai_batch_items_job_key unique (job_id, item_key)
+);
+
+create index if not exists idx_ai_batch_items_job_status on ai_batch_items (job_id, status, id);
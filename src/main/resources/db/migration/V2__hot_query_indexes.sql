@@ -0,0 +1,17 @@
+-- One index per hot lookup of the chat and course services; HotQueryIndexTest fails when a
+-- repository query on these paths stops using one.
+
+-- login, and the user lookup at the start of every chat request (emails are stored lower-cased)
+create unique index if not exists uk_users_email on users (email);
+
+-- section chat: the one session of a user for a section
+create index if not exists idx_chat_session_user_section on chat_session (user_id, section_id);
+
+-- session list, newest first, keyset on (updated_at, id)
+create index if not exists idx_chat_session_user_updated on chat_session (user_id, updated_at, id);
+
+-- history and message pages of a session, keyset on (created_at, id)
+create index if not exists idx_chat_messages_session_created on chat_messages (session_id, created_at, id);
+
+-- sections of a course
+create index if not exists idx_section_course on section (course_id);
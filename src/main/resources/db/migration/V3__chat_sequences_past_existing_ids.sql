@@ -0,0 +1,9 @@
+-- Chat ids used to come from IDENTITY columns. The pooled sequences that replaced them start
+-- at 1, so a database with older rows gets each sequence moved past its table
+-- (max id + allocation size: Hibernate hands out the block just below the value it reads).
+-- Does nothing on an empty table or when the sequence is already ahead.
+select setval('chat_session_seq', (select max(id) + 50 from chat_session))
+where (select max(id) + 50 from chat_session) > (select last_value from chat_session_seq);
+
+select setval('chat_messages_seq', (select max(id) + 50 from chat_messages))
+where (select max(id) + 50 from chat_messages) > (select last_value from chat_messages_seq);
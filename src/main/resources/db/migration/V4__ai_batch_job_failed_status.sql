@@ -0,0 +1,5 @@
+-- Batch jobs whose run gave up on an unavailable AI end as FAILED.
+-- The baseline (and ddl-auto before it) declared the check inline, so Postgres named it <table>_<column>_check.
+alter table ai_batch_jobs drop constraint if exists ai_batch_jobs_status_check;
+alter table ai_batch_jobs add constraint ai_batch_jobs_status_check
+    check (status in ('PENDING', 'RUNNING', 'COMPLETED', 'FAILED'));
@@ -0,0 +1,59 @@
+package UsersTest;
+
+import com.example.growth_hungry.service.ai.AbortSignal;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AbortSignalTest {
+
+    @Test
+    void abort_interruptsBlockingCall_onlyWhileItRuns() throws Exception {
+        AbortSignal abort = AbortSignal.none();
+        CountDownLatch inside = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        AtomicBoolean flagAfter = new AtomicBoolean(true);
+
+        Thread worker = Thread.ofVirtual().start(() -> {
+            abort.interruptibly(() -> {
+                inside.countDown();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+            flagAfter.set(Thread.currentThread().isInterrupted());
+        });
+
+        assertThat(inside.await(5, TimeUnit.SECONDS)).isTrue();
+        abort.abort();
+        worker.join(5_000);
+
+        assertThat(interrupted).isTrue();
+        // the step after the AI call (saving the turn) runs without a pending interrupt
+        assertThat(flagAfter).isFalse();
+        assertThatThrownBy(() -> abort.interruptibly(() -> "late")).isInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    void onAbort_runsOnce_andRightAwayWhenAlreadyAborted() {
+        AbortSignal abort = AbortSignal.none();
+        int[] runs = new int[2];
+        abort.onAbort(() -> runs[0]++);
+
+        abort.abort();
+        abort.abort();
+        abort.onAbort(() -> runs[1]++);
+
+        assertThat(runs).containsExactly(1, 1);
+        assertThat(abort.isAborted()).isTrue();
+    }
+}
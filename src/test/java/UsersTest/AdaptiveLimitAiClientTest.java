@@ -0,0 +1,96 @@
+package UsersTest;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.GeminiClient;
+import com.example.growth_hungry.service.ai.AdaptiveLimitAiClient;
+import com.example.growth_hungry.service.ai.AdaptiveLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * The adaptive limit in front of a real GeminiClient and the local stub, whose latency steps
+ * 20 ms -> 500 ms -> 20 ms. Driven in rounds: every round sends what the limit allows and waits
+ * for all of it, so the outcome does not depend on how many cores the build machine has.
+ * (The free-running version with noisy latency: bench/AdaptiveLimitSimulationBenchmark.)
+ */
+class AdaptiveLimitAiClientTest {
+
+    GeminiStubServer stub;
+    AtomicLong latencyMs = new AtomicLong(20);
+    AdaptiveLimiter limiter;
+    AdaptiveLimitAiClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new GeminiStubServer();
+        stub.latency(latencyMs::get);
+
+        AiProps props = new AiProps();
+        props.setBaseUrl(stub.baseUrl());
+        props.setApiKey("test-key");
+        props.setDefaultModel("gemini-2.5-flash");
+        props.getResilience().setMaxConcurrentPerModel(1_000);
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        GeminiClient gemini = new GeminiClient(props, http, new ObjectMapper(), new SimpleMeterRegistry());
+        // connection set-up and class loading stay out of the latency samples
+        gemini.generate("warm-up", null, null);
+
+        AiProps.AdaptiveLimit limitProps = new AiProps.AdaptiveLimit();
+        limitProps.setInitialLimit(10);
+        limitProps.setMinLimit(2);
+        limitProps.setMaxLimit(40);
+        limitProps.setLongWindow(200);
+        limiter = new AdaptiveLimiter(limitProps);
+        client = new AdaptiveLimitAiClient(gemini, limiter, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void limit_dropsWhenStubSlowsDown_andRecovers() {
+        rounds(15);
+        int fastLimit = limiter.limit();
+        assertThat(fastLimit).as("grows while the provider is fast").isGreaterThan(10);
+
+        latencyMs.set(500);
+        int slowMin = rounds(3);
+        assertThat(slowMin).as("drops when the provider slows down").isLessThan(fastLimit / 2);
+
+        latencyMs.set(20);
+        rounds(15);
+        assertThat(limiter.limit()).as("recovers").isGreaterThan(slowMin);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    /** @return the lowest limit seen during the rounds */
+    private int rounds(int rounds) {
+        AtomicInteger min = new AtomicInteger(Integer.MAX_VALUE);
+        for (int r = 0; r < rounds; r++) {
+            // as many calls as the limit allows when the round starts, answered or not
+            int allowed = limiter.limit();
+            List<CompletableFuture<String>> calls = new ArrayList<>();
+            for (int i = 0; i < allowed; i++) {
+                calls.add(client.generateAsync("q", null, null)
+                        .whenComplete((text, ex) -> min.accumulateAndGet(limiter.limit(), Math::min)));
+            }
+            CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).orTimeout(10, TimeUnit.SECONDS).join();
+        }
+        return min.get();
+    }
+}
@@ -0,0 +1,94 @@
+package UsersTest;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.ai.AdaptiveLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AdaptiveLimiterTest {
+
+    @Test
+    void limitIsNeverExceeded_andDropsCutIt() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(props(4));
+
+        AdaptiveLimiter.Listener[] held = new AdaptiveLimiter.Listener[4];
+        for (int i = 0; i < 4; i++) held[i] = limiter.tryAcquire();
+        assertThat(held).doesNotContainNull();
+        assertThat(limiter.tryAcquire()).isNull();
+
+        held[0].onDropped();
+        held[0].onSuccess(1); // second report is ignored
+        assertThat(limiter.limit()).isEqualTo(3);
+        assertThat(limiter.inFlight()).isEqualTo(3);
+        assertThat(limiter.tryAcquire()).as("3 in flight, limit 3").isNull();
+    }
+
+    /**
+     * Closed loop with synthetic samples: every round the callers take all the limit allows and
+     * the provider answers them with the round's latency, 20 ms -> 200 ms -> 20 ms. The limit has
+     * to grow while the provider is fast, collapse when it slows down, and grow again after it
+     * recovers. (The same against the HTTP stub: AdaptiveLimitAiClientTest.)
+     */
+    @Test
+    void limit_followsProviderLatency() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(props(10));
+
+        rounds(limiter, 20, 30);
+        int fastLimit = limiter.limit();
+        assertThat(fastLimit).as("grows while the provider is fast").isGreaterThan(10);
+
+        int slowMin = rounds(limiter, 200, 30);
+        assertThat(slowMin).as("collapses when the provider slows down").isLessThan(fastLimit / 2);
+
+        rounds(limiter, 20, 30);
+        assertThat(limiter.limit()).as("recovers").isGreaterThan(slowMin);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    void idleLimit_doesNotGrow() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(props(10));
+
+        // fast answers, but never more than 2 calls in flight
+        for (int i = 0; i < 200; i++) {
+            AdaptiveLimiter.Listener a = limiter.tryAcquire();
+            AdaptiveLimiter.Listener b = limiter.tryAcquire();
+            a.onSuccess(millis(20));
+            b.onSuccess(millis(20));
+        }
+        assertThat(limiter.limit()).isEqualTo(10);
+    }
+
+    /** @return the lowest limit seen during the rounds */
+    private static int rounds(AdaptiveLimiter limiter, long rttMillis, int rounds) {
+        int min = Integer.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            List<AdaptiveLimiter.Listener> calls = new ArrayList<>();
+            AdaptiveLimiter.Listener call;
+            while ((call = limiter.tryAcquire()) != null) calls.add(call);
+            for (AdaptiveLimiter.Listener c : calls) {
+                c.onSuccess(millis(rttMillis));
+                min = Math.min(min, limiter.limit());
+            }
+        }
+        return min;
+    }
+
+    private static long millis(long ms) {
+        return TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+
+    private static AiProps.AdaptiveLimit props(int initialLimit) {
+        AiProps.AdaptiveLimit props = new AiProps.AdaptiveLimit();
+        props.setInitialLimit(initialLimit);
+        props.setMinLimit(2);
+        props.setMaxLimit(100);
+        props.setLongWindow(50);
+        return props;
+    }
+}
@@ -0,0 +1,192 @@
+package UsersTest;
+
+import com.example.growth_hungry.api.AiOverloadedException;
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.model.batch.AiBatchItem;
+import com.example.growth_hungry.model.batch.AiBatchItemStatus;
+import com.example.growth_hungry.model.batch.AiBatchJob;
+import com.example.growth_hungry.model.batch.AiBatchStatus;
+import com.example.growth_hungry.repository.AiBatchItemRepository;
+import com.example.growth_hungry.repository.AiBatchJobRepository;
+import com.example.growth_hungry.repository.SectionRepository;
+import com.example.growth_hungry.service.AiBatchService.JobStatus;
+import com.example.growth_hungry.service.AiBatchServiceImpl;
+import com.example.growth_hungry.service.AiClient;
+import com.example.growth_hungry.service.ai.AiPriority;
+import com.example.growth_hungry.service.ai.AiRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AiBatchServiceImplTest {
+
+    AiBatchJobRepository jobRepo = mock(AiBatchJobRepository.class);
+    AiBatchItemRepository itemRepo = mock(AiBatchItemRepository.class);
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    AiBatchJob job;
+    // item id -> final status written by the service
+    Map<Long, AiBatchItemStatus> written = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        job = new AiBatchJob();
+        job.setId(7L);
+        job.setName("test");
+        job.setParallelism(2);
+        job.setTotalItems(3);
+        job.setStatus(AiBatchStatus.PENDING);
+
+        when(jobRepo.findById(7L)).thenReturn(Optional.of(job));
+        when(jobRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(itemRepo.complete(anyLong(), any(), any(), any(), anyInt(), any(Instant.class))).thenAnswer(inv -> {
+            written.put(inv.getArgument(0), inv.getArgument(1));
+            return 1;
+        });
+        when(itemRepo.countByJob_IdAndStatus(eq(7L), any())).thenAnswer(inv ->
+                written.values().stream().filter(s -> s == inv.getArgument(1)).count());
+        when(itemRepo.findByJob_IdAndStatusAndIdGreaterThanOrderByIdAsc(eq(7L), eq(AiBatchItemStatus.PENDING), anyLong(), any()))
+                .thenAnswer(inv -> {
+                    long after = inv.getArgument(2);
+                    return after == 0 ? List.of(item(1, "a"), item(2, "bad"), item(3, "c")) : List.of();
+                });
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void run_writesEveryResult_andCompletesJob() throws Exception {
+        AtomicInteger overloaded = new AtomicInteger();
+        AtomicInteger badAttempts = new AtomicInteger();
+        FakeAiClient ai = new FakeAiClient(request -> {
+            assertThat(request.caller().priority()).isEqualTo(AiPriority.BACKGROUND);
+            assertThat(request.caller().id()).isEqualTo("batch:7");
+        });
+        ai.answer = request -> switch (request.lastUserText()) {
+            // our own limit rejects once: waited out, not counted as an attempt
+            case "a" -> overloaded.getAndIncrement() == 0
+                    ? CompletableFuture.failedFuture(new AiOverloadedException("full", 1))
+                    : CompletableFuture.completedFuture("answer a");
+            case "bad" -> {
+                badAttempts.incrementAndGet();
+                yield CompletableFuture.failedFuture(new IllegalStateException("provider error"));
+            }
+            default -> CompletableFuture.completedFuture("answer " + request.lastUserText());
+        };
+
+        JobStatus status = service(ai).run(7L).get(10, TimeUnit.SECONDS);
+
+        assertThat(written).containsEntry(1L, AiBatchItemStatus.DONE)
+                .containsEntry(2L, AiBatchItemStatus.FAILED)
+                .containsEntry(3L, AiBatchItemStatus.DONE);
+        assertThat(badAttempts.get()).isEqualTo(2);
+        assertThat(ai.sentAt("bad")).hasSize(2);
+        assertThat(ai.sentAt("bad").get(1) - ai.sentAt("bad").get(0))
+                .as("the second attempt waits for the backoff")
+                .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+        verify(itemRepo).complete(eq(1L), eq(AiBatchItemStatus.DONE), eq("answer a"), isNull(), eq(1), any(Instant.class));
+        verify(itemRepo).complete(eq(2L), eq(AiBatchItemStatus.FAILED), isNull(), eq("provider error"), eq(2), any(Instant.class));
+
+        assertThat(status.status()).isEqualTo(AiBatchStatus.COMPLETED);
+        assertThat(status.done()).isEqualTo(2);
+        assertThat(status.failed()).isEqualTo(1);
+        assertThat(job.getFinishedAt()).isNotNull();
+        assertThat(registry.find("ai.batch.items").tag("outcome", "done").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void run_whileRunning_returnsSameFuture() throws Exception {
+        CompletableFuture<String> blocked = new CompletableFuture<>();
+        FakeAiClient ai = new FakeAiClient(request -> { });
+        ai.answer = request -> blocked;
+        AiBatchServiceImpl service = service(ai);
+
+        CompletableFuture<JobStatus> first = service.run(7L);
+        assertThat(service.run(7L)).isSameAs(first);
+
+        blocked.complete("ok");
+        assertThat(first.get(10, TimeUnit.SECONDS).done()).isEqualTo(3);
+    }
+
+    @Test
+    void run_whenAiStaysUnavailable_stopsAndFailsJob_leavingItemsPending() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        FakeAiClient ai = new FakeAiClient(request -> calls.incrementAndGet());
+        ai.answer = request -> CompletableFuture.failedFuture(new AiOverloadedException("full", 1));
+
+        JobStatus status = service(ai).run(7L).get(10, TimeUnit.SECONDS);
+
+        assertThat(status.status()).isEqualTo(AiBatchStatus.FAILED);
+        assertThat(job.getFinishedAt()).isNotNull();
+        // nothing is written: the prompts stay PENDING for the next run
+        assertThat(written).isEmpty();
+        // parallelism 2, 3 rejections each: the third item is never sent
+        assertThat(calls.get()).isLessThanOrEqualTo(2 * 3);
+    }
+
+    private AiBatchServiceImpl service(AiClient ai) {
+        AiProps props = new AiProps();
+        props.getBatch().setMaxAttempts(2);
+        props.getBatch().setMaxRejections(3);
+        props.getBatch().setRetryBackoffMs(50);
+        return new AiBatchServiceImpl(jobRepo, itemRepo, mock(SectionRepository.class), ai,
+                mock(PlatformTransactionManager.class), executor, props, registry);
+    }
+
+    private AiBatchItem item(long id, String prompt) {
+        AiBatchItem item = new AiBatchItem(job, "k" + id, prompt);
+        item.setId(id);
+        return item;
+    }
+
+    static class FakeAiClient implements AiClient {
+        final Consumer<AiRequest> check;
+        volatile Function<AiRequest, CompletableFuture<String>> answer;
+        // prompt -> System.nanoTime() of each call
+        final Map<String, List<Long>> sent = new ConcurrentHashMap<>();
+
+        FakeAiClient(Consumer<AiRequest> check) {
+            this.check = check;
+        }
+
+        @Override
+        public String generate(String message, String systemPrompt, String model) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<String> generateAsync(AiRequest request) {
+            check.accept(request);
+            sent.computeIfAbsent(request.lastUserText(), p -> new CopyOnWriteArrayList<>()).add(System.nanoTime());
+            return answer.apply(request);
+        }
+
+        List<Long> sentAt(String prompt) {
+            return sent.getOrDefault(prompt, List.of());
+        }
+    }
+}
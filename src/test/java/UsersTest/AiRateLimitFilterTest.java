@@ -0,0 +1,183 @@
+package UsersTest;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.security.AiRateLimitFilter;
+import com.example.growth_hungry.security.TokenBuckets;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AiRateLimitFilterTest {
+
+    final AtomicLong now = new AtomicLong();
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void buckets_allowBurst_thenRefillAtRate() {
+        TokenBuckets buckets = new TokenBuckets(60, 3, now::get); // one token per second
+
+        assertThat(buckets.tryAcquire("u")).isZero();
+        assertThat(buckets.tryAcquire("u")).isZero();
+        assertThat(buckets.tryAcquire("u")).isZero();
+        assertThat(buckets.tryAcquire("u")).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+        assertThat(buckets.tryAcquire("other")).as("keys are independent").isZero();
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(buckets.tryAcquire("u")).isZero();
+        assertThat(buckets.tryAcquire("u")).isPositive();
+    }
+
+    @Test
+    void buckets_refundGivesTokenBack() {
+        TokenBuckets buckets = new TokenBuckets(60, 1, now::get);
+
+        assertThat(buckets.tryAcquire("u")).isZero();
+        buckets.refund("u");
+        assertThat(buckets.tryAcquire("u")).isZero();
+    }
+
+    @Test
+    void userOverLimit_gets429WithRetryAfter() throws Exception {
+        AiRateLimitFilter filter = filter(2, 1, 600, 50);
+        authenticate("alice@example.com");
+
+        assertThat(chat(filter, "{\"message\":\"hi\"}").getStatus()).isEqualTo(200);
+        MockHttpServletResponse rejected = chat(filter, "{\"message\":\"hi\"}");
+
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("30");
+        assertThat(rejected.getContentAsString()).contains("RATE_LIMITED");
+
+        authenticate("bob@example.com");
+        assertThat(chat(filter, "{\"message\":\"hi\"}").getStatus()).as("other users unaffected").isEqualTo(200);
+    }
+
+    @Test
+    void modelBucket_isSharedByAllUsers_andBodyIsReplayed() throws Exception {
+        AiRateLimitFilter filter = filter(600, 50, 1, 1);
+
+        authenticate("alice@example.com");
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(chatRequest("{\"model\":\"gemini-2.5-pro\",\"message\":\"hi\"}"), new MockHttpServletResponse(), chain);
+        assertThat(new String(chain.getRequest().getInputStream().readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("{\"model\":\"gemini-2.5-pro\",\"message\":\"hi\"}");
+
+        authenticate("bob@example.com");
+        assertThat(chat(filter, "{\"model\":\"gemini-2.5-pro\",\"message\":\"hi\"}").getStatus()).isEqualTo(429);
+        assertThat(chat(filter, "{\"model\":\"gemini-2.5-flash\",\"message\":\"hi\"}").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void modelAfterALongMessage_isStillCharged() throws Exception {
+        AiRateLimitFilter filter = filter(600, 50, 1, 1);
+        authenticate("alice@example.com");
+        String body = "{\"message\":\"" + "x".repeat(20_000) + "\",\"model\":\"gemini-2.5-pro\"}";
+
+        assertThat(chat(filter, body).getStatus()).isEqualTo(200);
+        assertThat(chat(filter, body).getStatus()).as("pro bucket is empty").isEqualTo(429);
+        assertThat(chat(filter, "{\"message\":\"hi\"}").getStatus()).as("default model unaffected").isEqualTo(200);
+    }
+
+    @Test
+    void forwardedBody_supportsAsyncReads() throws Exception {
+        AiRateLimitFilter filter = filter(600, 50, 600, 50);
+        authenticate("alice@example.com");
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(chatRequest("{\"message\":\"hi\"}"), new MockHttpServletResponse(), chain);
+
+        ServletInputStream in = chain.getRequest().getInputStream();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        AtomicBoolean allRead = new AtomicBoolean();
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                byte[] buf = new byte[4];
+                int n;
+                while (in.isReady() && (n = in.read(buf)) >= 0) read.write(buf, 0, n);
+            }
+
+            @Override
+            public void onAllDataRead() {
+                allRead.set(true);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                fail("unexpected", t);
+            }
+        });
+
+        assertThat(allRead).isTrue();
+        assertThat(read.toString(StandardCharsets.UTF_8)).isEqualTo("{\"message\":\"hi\"}");
+        assertThat(in.isFinished()).isTrue();
+    }
+
+    @Test
+    void nonAiEndpoints_andAnonymousRequests_areNotLimited() throws Exception {
+        AiRateLimitFilter filter = filter(1, 1, 1, 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(chat(filter, "{\"message\":\"hi\"}").getStatus()).isEqualTo(200);
+        }
+
+        authenticate("alice@example.com");
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest sessions = new MockHttpServletRequest("GET", "/api/chat/sessions");
+            sessions.setServletPath("/api/chat/sessions");
+            MockHttpServletResponse res = new MockHttpServletResponse();
+            filter.doFilter(sessions, res, new MockFilterChain());
+            assertThat(res.getStatus()).isEqualTo(200);
+        }
+    }
+
+    private AiRateLimitFilter filter(int userPerMinute, int userBurst, int modelPerMinute, int modelBurst) {
+        AiProps props = new AiProps();
+        props.setDefaultModel("gemini-2.5-flash");
+        props.getRateLimit().setUserPerMinute(userPerMinute);
+        props.getRateLimit().setUserBurst(userBurst);
+        props.getRateLimit().setModelPerMinute(modelPerMinute);
+        props.getRateLimit().setModelBurst(modelBurst);
+        return new AiRateLimitFilter(props, new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    private static void authenticate(String email) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(email, null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+
+    private static MockHttpServletResponse chat(AiRateLimitFilter filter, String body) throws Exception {
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        filter.doFilter(chatRequest(body), res, new MockFilterChain());
+        return res;
+    }
+
+    private static MockHttpServletRequest chatRequest(String body) {
+        MockHttpServletRequest req = new MockHttpServletRequest("POST", "/api/chat");
+        req.setServletPath("/api/chat");
+        req.setContentType("application/json");
+        req.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return req;
+    }
+}
@@ -0,0 +1,129 @@
+package UsersTest;
+
+import com.example.growth_hungry.service.journal.ChatJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ChatJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopen_replaysWhatWasNotDrained() throws Exception {
+        Path file = dir.resolve("chat.journal");
+        try (ChatJournal journal = new ChatJournal(file, 4096)) {
+            long first = journal.append(bytes("turn 1"));
+            journal.append(bytes("turn 2"));
+            journal.append(bytes("turn 3"));
+            journal.markDrained(first);
+        }
+
+        try (ChatJournal journal = new ChatJournal(file, 4096)) {
+            assertThat(texts(journal.recovered())).containsExactly("turn 2", "turn 3");
+            // appends continue after the replayed records
+            journal.append(bytes("turn 4"));
+        }
+        try (ChatJournal journal = new ChatJournal(file, 4096)) {
+            assertThat(texts(journal.recovered())).containsExactly("turn 2", "turn 3", "turn 4");
+        }
+    }
+
+    @Test
+    void reset_startsOver_olderRecordsAreNotReplayed() throws Exception {
+        Path file = dir.resolve("chat.journal");
+        try (ChatJournal journal = new ChatJournal(file, 4096)) {
+            journal.append(bytes("old 1"));
+            long end = journal.append(bytes("old 2"));
+            assertThat(journal.reset()).isFalse();
+
+            journal.markDrained(end);
+            assertThat(journal.reset()).isTrue();
+            assertThat(journal.pendingBytes()).isZero();
+            // same length as "old 1": without the epoch / terminator "old 2" would follow it
+            journal.append(bytes("new 1"));
+        }
+
+        try (ChatJournal journal = new ChatJournal(file, 4096)) {
+            assertThat(texts(journal.recovered())).containsExactly("new 1");
+        }
+    }
+
+    @Test
+    void tornRecord_endsTheReplay_andIsOverwritten() throws Exception {
+        Path file = dir.resolve("chat.journal");
+        long tornAt;
+        try (ChatJournal journal = new ChatJournal(file, 4096)) {
+            tornAt = journal.append(bytes("complete"));
+            journal.append(bytes("torn by a crash"));
+        }
+        // flip a payload byte of the second record, as if the crash hit it half-written
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(tornAt + 12 + 3);
+            raw.write('X');
+        }
+
+        try (ChatJournal journal = new ChatJournal(file, 4096)) {
+            assertThat(texts(journal.recovered())).containsExactly("complete");
+            journal.append(bytes("after restart"));
+        }
+        try (ChatJournal journal = new ChatJournal(file, 4096)) {
+            assertThat(texts(journal.recovered())).containsExactly("complete", "after restart");
+        }
+    }
+
+    @Test
+    void full_appendIsRefused() throws Exception {
+        try (ChatJournal journal = new ChatJournal(dir.resolve("chat.journal"), 64)) {
+            assertThat(journal.append(new byte[20])).isPositive();
+            assertThat(journal.append(new byte[20])).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void concurrentAppends_shareForces() throws Exception {
+        int appends = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try (ChatJournal journal = new ChatJournal(dir.resolve("chat.journal"), 1 << 20)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Long>> ends = new ArrayList<>();
+            for (int i = 0; i < appends; i++) {
+                byte[] payload = bytes("turn " + i);
+                ends.add(pool.submit(() -> {
+                    start.await();
+                    return journal.append(payload);
+                }));
+            }
+            start.countDown();
+            for (Future<Long> end : ends) assertThat(end.get()).isPositive();
+
+            assertThat(journal.forceCount()).isBetween(1L, (long) appends);
+            assertThat(journal.pendingBytes()).isPositive();
+        } finally {
+            pool.shutdownNow();
+        }
+        try (ChatJournal journal = new ChatJournal(dir.resolve("chat.journal"), 1 << 20)) {
+            assertThat(journal.recovered()).hasSize(appends);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> texts(List<ChatJournal.Entry> entries) {
+        return entries.stream().map(e -> new String(e.payload(), StandardCharsets.UTF_8)).toList();
+    }
+}
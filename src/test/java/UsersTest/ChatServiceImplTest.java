@@ -1,9 +1,11 @@
 package UsersTest;
 
+import com.example.growth_hungry.config.AiProps;
 import com.example.growth_hungry.dto.ChatMessageDto;
 import com.example.growth_hungry.dto.ChatRequest;
 import com.example.growth_hungry.dto.ChatResponse;
 import com.example.growth_hungry.dto.ChatSessionDto;
+import com.example.growth_hungry.dto.CursorPage;
 
 import com.example.growth_hungry.model.Section;
 import com.example.growth_hungry.model.User;
@@ -16,20 +18,31 @@ import com.example.growth_hungry.repository.ChatSessionRepository;
 import com.example.growth_hungry.repository.SectionRepository;
 import com.example.growth_hungry.repository.UserRepository;
 import com.example.growth_hungry.service.AiClient;
+import com.example.growth_hungry.service.ChatCursor;
 import com.example.growth_hungry.service.ChatServiceImpl;
 import com.example.growth_hungry.service.GeneralChatServiceImpl;
+import com.example.growth_hungry.service.ai.AbortSignal;
+import com.example.growth_hungry.service.ai.AiMessage;
+import com.example.growth_hungry.service.ai.AiRequest;
+import com.example.growth_hungry.service.ai.SectionAnswerCache;
+import com.example.growth_hungry.service.ai.SectionChunkIndex;
+import com.example.growth_hungry.service.ai.SemanticAnswerCache;
+import com.example.growth_hungry.service.journal.ChatWriteBehind;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -50,6 +63,20 @@ class ChatServiceImplTest {
     AiClient aiClient;
     @Mock
     SectionRepository sectionRepository;
+    // TransactionTemplate on top of a mock manager just runs the callback
+    @Mock
+    PlatformTransactionManager transactionManager;
+    @Mock
+    SectionAnswerCache answerCache;
+    @Mock
+    SectionChunkIndex chunkIndex;
+    @Mock
+    SemanticAnswerCache semanticCache;
+    // disabled unless a test says otherwise: turns are written directly
+    @Mock
+    ChatWriteBehind writeBehind;
+    @Spy
+    AiProps aiProps = new AiProps();
 
     @InjectMocks
     ChatServiceImpl service;
@@ -65,6 +92,14 @@ class ChatServiceImplTest {
         SecurityContextHolder.getContext().setAuthentication(auth);
     }
 
+    private static ChatMessage message(long id, MessageRole role, String content) {
+        ChatMessage m = new ChatMessage();
+        m.setId(id);
+        m.setRole(role);
+        m.setContent(content);
+        return m;
+    }
+
     private static User user(long id, String email) {
         User u = new User();
         u.setId(id);
@@ -97,8 +132,8 @@ class ChatServiceImplTest {
             return s;
         });
 
-        when(aiClient.generate(eq("Hello AI"), eq("You are helpful"), eq("gemini-2.5-flash")))
-                .thenReturn("Hi! How can I help?");
+        when(aiClient.generateAsync(AiRequest.of("Hello AI", "You are helpful", "gemini-2.5-flash")))
+                .thenReturn(CompletableFuture.completedFuture("Hi! How can I help?"));
 
         // when
         ChatResponse resp = generalChatService.chat(req, "TEST@Email.com");
@@ -131,7 +166,7 @@ class ChatServiceImplTest {
         assertEquals("Hi! How can I help?", saved.get(1).getContent());
         assertEquals(100L, saved.get(1).getSession().getId());
 
-        verify(aiClient).generate("Hello AI", "You are helpful", "gemini-2.5-flash");
+        verify(aiClient).generateAsync(AiRequest.of("Hello AI", "You are helpful", "gemini-2.5-flash"));
     }
 
     @Test
@@ -153,7 +188,8 @@ class ChatServiceImplTest {
 
         when(userRepository.findByEmail("x@y.com")).thenReturn(Optional.of(user));
         when(sessionRepo.findByIdAndUser_Id(555L, 10L)).thenReturn(Optional.of(session));
-        when(aiClient.generate(anyString(), any(), anyString())).thenReturn("Answer!");
+        when(aiClient.generateAsync(any(AiRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture("Answer!"));
 
         ChatResponse resp = generalChatService.chat(req, "x@y.com");
 
@@ -161,6 +197,122 @@ class ChatServiceImplTest {
         assertEquals(555L, resp.getChatSessionId());
     }
 
+    @Test
+    void chat_withExistingSession_sendsHistoryOldestFirst() {
+        ChatRequest req = new ChatRequest();
+        req.setMessage("Question?");
+        req.setChatSessionId(555L);
+
+        User user = user(10L, "x@y.com");
+        ChatSession session = new ChatSession();
+        session.setId(555L);
+        session.setUser(user);
+        session.setModel("gemini-pro");
+
+        when(userRepository.findByEmail("x@y.com")).thenReturn(Optional.of(user));
+        when(sessionRepo.findByIdAndUser_Id(555L, 10L)).thenReturn(Optional.of(session));
+        // newest first, as the repository returns them
+        when(messageRepo.findBySession_IdOrderByIdDesc(eq(555L), any(Limit.class))).thenReturn(List.of(
+                message(4L, MessageRole.ASSISTANT, "a2"),
+                message(3L, MessageRole.USER, "q2"),
+                message(2L, MessageRole.ASSISTANT, "a1"),
+                message(1L, MessageRole.USER, "q1")));
+        when(aiClient.generateAsync(any(AiRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture("Answer!"));
+
+        generalChatService.chat(req, "x@y.com");
+
+        ArgumentCaptor<AiRequest> sent = ArgumentCaptor.forClass(AiRequest.class);
+        verify(aiClient).generateAsync(sent.capture());
+        assertEquals(List.of(
+                AiMessage.user("q1"), AiMessage.assistant("a1"),
+                AiMessage.user("q2"), AiMessage.assistant("a2"),
+                AiMessage.user("Question?")), sent.getValue().contents());
+        assertEquals("gemini-pro", sent.getValue().model());
+        // fewer rows than the first page -> no second query
+        verify(messageRepo, never()).findBySession_IdAndIdLessThanOrderByIdDesc(anyLong(), anyLong(), any(Limit.class));
+    }
+
+    @Test
+    void chat_history_stopsAtTokenBudget() {
+        // "Question?" = 3 + 4 overhead, each 2-char history row = 1 + 4 -> room for two rows
+        aiProps.getHistory().setMaxTokens(17);
+
+        ChatRequest req = new ChatRequest();
+        req.setMessage("Question?");
+        req.setChatSessionId(555L);
+
+        User user = user(10L, "x@y.com");
+        ChatSession session = new ChatSession();
+        session.setId(555L);
+        session.setUser(user);
+        session.setModel("gemini-pro");
+
+        when(userRepository.findByEmail("x@y.com")).thenReturn(Optional.of(user));
+        when(sessionRepo.findByIdAndUser_Id(555L, 10L)).thenReturn(Optional.of(session));
+        when(messageRepo.findBySession_IdOrderByIdDesc(eq(555L), any(Limit.class))).thenReturn(List.of(
+                message(4L, MessageRole.ASSISTANT, "a2"),
+                message(3L, MessageRole.USER, "q2"),
+                message(2L, MessageRole.ASSISTANT, "a1"),
+                message(1L, MessageRole.USER, "q1")));
+        when(aiClient.generateAsync(any(AiRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture("Answer!"));
+
+        generalChatService.chat(req, "x@y.com");
+
+        ArgumentCaptor<AiRequest> sent = ArgumentCaptor.forClass(AiRequest.class);
+        verify(aiClient).generateAsync(sent.capture());
+        assertEquals(List.of(AiMessage.user("q2"), AiMessage.assistant("a2"), AiMessage.user("Question?")),
+                sent.getValue().contents());
+    }
+
+    @Test
+    void chat_writeBehind_historyIncludesJournaledTurn_andTurnIsJournaled() {
+        ChatRequest req = new ChatRequest();
+        req.setMessage("Question?");
+        req.setChatSessionId(555L);
+
+        User user = user(10L, "x@y.com");
+        ChatSession session = new ChatSession();
+        session.setId(555L);
+        session.setUser(user);
+        session.setModel("gemini-pro");
+
+        when(userRepository.findByEmail("x@y.com")).thenReturn(Optional.of(user));
+        when(sessionRepo.findByIdAndUser_Id(555L, 10L)).thenReturn(Optional.of(session));
+        // q2/a2 are journaled; a2 was drained meanwhile, so the database returns it as well
+        when(writeBehind.isEnabled()).thenReturn(true);
+        when(writeBehind.pending(555L)).thenReturn(List.of(
+                message(3L, MessageRole.USER, "q2"),
+                message(4L, MessageRole.ASSISTANT, "a2")));
+        when(messageRepo.findBySession_IdOrderByIdDesc(eq(555L), any(Limit.class))).thenReturn(List.of(
+                message(4L, MessageRole.ASSISTANT, "a2"),
+                message(2L, MessageRole.ASSISTANT, "a1"),
+                message(1L, MessageRole.USER, "q1")));
+        when(writeBehind.append(eq(555L), eq(10L), any(Instant.class), anyList())).thenReturn(true);
+        when(aiClient.generateAsync(any(AiRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture("Answer!"));
+
+        ChatResponse resp = generalChatService.chat(req, "x@y.com");
+
+        ArgumentCaptor<AiRequest> sent = ArgumentCaptor.forClass(AiRequest.class);
+        verify(aiClient).generateAsync(sent.capture());
+        assertEquals(List.of(
+                AiMessage.user("q1"), AiMessage.assistant("a1"),
+                AiMessage.user("q2"), AiMessage.assistant("a2"),
+                AiMessage.user("Question?")), sent.getValue().contents());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ChatWriteBehind.Message>> journaled = ArgumentCaptor.forClass(List.class);
+        verify(writeBehind).append(eq(555L), eq(10L), any(Instant.class), journaled.capture());
+        assertEquals(List.of(MessageRole.USER, MessageRole.ASSISTANT),
+                journaled.getValue().stream().map(ChatWriteBehind.Message::role).toList());
+        assertEquals("Answer!", journaled.getValue().get(1).content());
+        assertEquals(555L, resp.getChatSessionId());
+        verify(messageRepo, never()).save(any(ChatMessage.class));
+        verify(sessionRepo, never()).touch(anyLong(), any(Instant.class));
+    }
+
     @Test
     void chat_blankMessage_throwsIllegalArgumentException() {
         setAuthEmail("a@b.com");
@@ -205,7 +357,8 @@ class ChatServiceImplTest {
             return s;
         });
 
-        when(aiClient.generate(eq("hi"), isNull(), eq("gemini-2.5-flash"))).thenReturn("   ");
+        when(aiClient.generateAsync(AiRequest.of("hi", null, "gemini-2.5-flash")))
+                .thenReturn(CompletableFuture.completedFuture("   "));
 
         ChatResponse resp = generalChatService.chat(req, "u@u.com");
         assertEquals("(Empty response)", resp.getReply());
@@ -237,7 +390,7 @@ class ChatServiceImplTest {
         s2.setCreatedAt(Instant.parse("2025-01-02T00:00:00Z"));
         s2.setUpdatedAt(Instant.parse("2025-01-03T00:00:00Z"));
 
-        when(sessionRepo.findAllByUser_IdOrderByUpdatedAtDesc(5L)).thenReturn(List.of(s2, s1));
+        when(sessionRepo.findByUser_IdOrderByUpdatedAtDescIdDesc(eq(5L), limit(201))).thenReturn(List.of(s2, s1));
 
         List<ChatSessionDto> res = generalChatService.getUserSessions("  X@Y.COM  ");
 
@@ -286,7 +439,7 @@ class ChatServiceImplTest {
         m2.setContent("hello");
         m2.setCreatedAt(Instant.parse("2025-01-01T00:00:01Z"));
 
-        when(messageRepo.findBySession_IdOrderByCreatedAtAsc(77L)).thenReturn(List.of(m1, m2));
+        when(messageRepo.findBySession_IdOrderByCreatedAtDescIdDesc(eq(77L), limit(201))).thenReturn(List.of(m2, m1));
 
         List<ChatMessageDto> res = generalChatService.getSessionMessages(77L, " A@A.COM ");
 
@@ -300,6 +453,24 @@ class ChatServiceImplTest {
         assertEquals("hello", res.get(1).getContent());
     }
 
+    @Test
+    void getSessionMessages_longerThanOnePage_readsEveryPage_oldestFirst() {
+        ownedSession(9L, 77L);
+        Instant t0 = Instant.parse("2025-01-01T00:00:00Z");
+        // 250 messages, one second apart; pages of 200 are read newest first with one row more
+        List<ChatMessage> newest = new ArrayList<>();
+        for (long id = 250; id >= 50; id--) newest.add(message(id, t0.plusSeconds(id).toString()));
+        List<ChatMessage> older = new ArrayList<>();
+        for (long id = 50; id >= 1; id--) older.add(message(id, t0.plusSeconds(id).toString()));
+        when(messageRepo.findBySession_IdOrderByCreatedAtDescIdDesc(eq(77L), limit(201))).thenReturn(newest);
+        when(messageRepo.findPageBefore(eq(77L), eq(t0.plusSeconds(51)), eq(51L), limit(201))).thenReturn(older);
+
+        List<ChatMessageDto> res = generalChatService.getSessionMessages(77L, "a@a.com");
+
+        assertEquals(250, res.size());
+        for (int i = 0; i < 250; i++) assertEquals(i + 1L, res.get(i).getId());
+    }
+
     @Test
     void getSessionMessages_nullSessionId_throws400() {
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
@@ -318,6 +489,105 @@ class ChatServiceImplTest {
         assertEquals(404, ex.getStatusCode().value());
     }
 
+    // =========================
+    // paged getSessionMessages() / getUserSessions()
+    // =========================
+
+    private static ChatMessage message(long id, String createdAt) {
+        ChatMessage m = message(id, MessageRole.USER, "m" + id);
+        m.setCreatedAt(Instant.parse(createdAt));
+        return m;
+    }
+
+    // pages are read with one row more than the limit
+    private static Limit limit(int max) {
+        return argThat(l -> l != null && l.max() == max);
+    }
+
+    private ChatSession ownedSession(long userId, long sessionId) {
+        User u = user(userId, "a@a.com");
+        when(userRepository.findByEmail("a@a.com")).thenReturn(Optional.of(u));
+        ChatSession session = new ChatSession();
+        session.setId(sessionId);
+        session.setUser(u);
+        when(sessionRepo.findByIdAndUser_Id(sessionId, userId)).thenReturn(Optional.of(session));
+        return session;
+    }
+
+    @Test
+    void getSessionMessagesPage_newestPage_isReturnedOldestFirst_withCursorsBothWays() {
+        ownedSession(9L, 77L);
+        // newest first, one more than the limit
+        when(messageRepo.findBySession_IdOrderByCreatedAtDescIdDesc(eq(77L), limit(3))).thenReturn(List.of(
+                message(5L, "2025-01-01T00:00:05Z"),
+                message(4L, "2025-01-01T00:00:04Z"),
+                message(3L, "2025-01-01T00:00:03Z")));
+
+        CursorPage<ChatMessageDto> page = generalChatService.getSessionMessages(77L, "a@a.com", null, null, 2);
+
+        assertEquals(List.of(4L, 5L), page.getItems().stream().map(ChatMessageDto::getId).toList());
+        assertTrue(page.isHasMore());
+
+        // the "before" cursor continues right below message 4
+        when(messageRepo.findPageBefore(eq(77L), eq(Instant.parse("2025-01-01T00:00:04Z")), eq(4L), limit(3)))
+                .thenReturn(List.of(message(3L, "2025-01-01T00:00:03Z")));
+        CursorPage<ChatMessageDto> older = generalChatService.getSessionMessages(77L, "a@a.com", page.getBefore(), null, 2);
+
+        assertEquals(List.of(3L), older.getItems().stream().map(ChatMessageDto::getId).toList());
+        assertFalse(older.isHasMore());
+        verify(messageRepo, never()).findBySession_IdOrderByCreatedAtAsc(any());
+    }
+
+    @Test
+    void getSessionMessagesPage_afterCursor_includesJournaledMessagesOnce() {
+        ownedSession(9L, 77L);
+        ChatMessage stored = message(6L, "2025-01-01T00:00:06Z");
+        when(messageRepo.findPageAfter(eq(77L), eq(Instant.parse("2025-01-01T00:00:05Z")), eq(5L), limit(51)))
+                .thenReturn(List.of(stored));
+        // 6 was drained meanwhile; 7 is still only in the journal; 4 is before the cursor
+        when(writeBehind.pending(77L)).thenReturn(List.of(
+                message(4L, "2025-01-01T00:00:04Z"), message(6L, "2025-01-01T00:00:06Z"), message(7L, "2025-01-01T00:00:07Z")));
+        String after = ChatCursor.of(Instant.parse("2025-01-01T00:00:05Z"), 5L).encode();
+
+        CursorPage<ChatMessageDto> page = generalChatService.getSessionMessages(77L, "a@a.com", null, after, 50);
+
+        assertEquals(List.of(6L, 7L), page.getItems().stream().map(ChatMessageDto::getId).toList());
+        assertEquals(ChatCursor.of(Instant.parse("2025-01-01T00:00:07Z"), 7L).encode(), page.getAfter());
+        assertFalse(page.isHasMore());
+    }
+
+    @Test
+    void getSessionMessagesPage_badCursorOrLimit_throws400() {
+        assertEquals(400, assertThrows(ResponseStatusException.class,
+                () -> generalChatService.getSessionMessages(77L, "a@a.com", "not-a-cursor", null, 50)).getStatusCode().value());
+        assertEquals(400, assertThrows(ResponseStatusException.class,
+                () -> generalChatService.getSessionMessages(77L, "a@a.com", null, null, 0)).getStatusCode().value());
+        String c = ChatCursor.of(Instant.now(), 1L).encode();
+        assertEquals(400, assertThrows(ResponseStatusException.class,
+                () -> generalChatService.getSessionMessages(77L, "a@a.com", c, c, 50)).getStatusCode().value());
+        verifyNoInteractions(userRepository, messageRepo);
+    }
+
+    @Test
+    void getUserSessionsPage_afterCursor_isReturnedNewestFirst() {
+        when(userRepository.findByEmail("x@y.com")).thenReturn(Optional.of(user(5L, "x@y.com")));
+        ChatSession s3 = new ChatSession();
+        s3.setId(3L);
+        s3.setUpdatedAt(Instant.parse("2025-01-03T00:00:00Z"));
+        ChatSession s4 = new ChatSession();
+        s4.setId(4L);
+        s4.setUpdatedAt(Instant.parse("2025-01-04T00:00:00Z"));
+        ChatCursor from = ChatCursor.of(Instant.parse("2025-01-02T00:00:00Z"), 2L);
+        // read oldest first from the cursor
+        when(sessionRepo.findPageAfter(eq(5L), eq(from.at()), eq(2L), limit(51))).thenReturn(List.of(s3, s4));
+
+        CursorPage<ChatSessionDto> page = generalChatService.getUserSessions("x@y.com", null, from.encode(), 50);
+
+        assertEquals(List.of(4L, 3L), page.getItems().stream().map(ChatSessionDto::getId).toList());
+        assertEquals(ChatCursor.of(s4.getUpdatedAt(), 4L).encode(), page.getAfter());
+        assertEquals(ChatCursor.of(s3.getUpdatedAt(), 3L).encode(), page.getBefore());
+    }
+
     @Test
     void chatInSection_sectionIdNull_shouldThrow() {
         ChatRequest req = new ChatRequest();
@@ -361,13 +631,141 @@ class ChatServiceImplTest {
         when(userRepository.findByEmail("a@test.com")).thenReturn(Optional.of(user));
         when(sectionRepository.findById(10L)).thenReturn(Optional.of(section));
         when(sessionRepo.findByUser_IdAndSectionId(1L, 10L)).thenReturn(Optional.of(session));
-        when(aiClient.generate(anyString(), anyString(), isNull())).thenReturn("AI answer");
+        when(aiClient.generateAsync(any(AiRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture("AI answer"));
 
         ChatResponse resp = service.chatInSection(10L, req, "a@test.com");
 
         assertNotNull(resp);
         assertEquals(99L, resp.getChatSessionId());
         assertEquals("AI answer", resp.getReply());
+
+        // section content travels as a context document; inline it is still "content + question"
+        ArgumentCaptor<AiRequest> sent = ArgumentCaptor.forClass(AiRequest.class);
+        verify(aiClient).generateAsync(sent.capture());
+        assertEquals("section:10", sent.getValue().context().id());
+        assertEquals("content\n\nUser question: hello", sent.getValue().transcript());
+    }
+
+    @Test
+    void chatInSection_longSection_sendsRetrievedPassagesOnly() {
+        ChatRequest req = new ChatRequest();
+        req.setMessage("what is a closure?");
+        User user = user(1L, "a@test.com");
+
+        Section section = new Section();
+        section.setId(10L);
+        section.setContent("long content");
+
+        ChatSession session = new ChatSession();
+        session.setId(99L);
+
+        when(userRepository.findByEmail("a@test.com")).thenReturn(Optional.of(user));
+        when(sectionRepository.findById(10L)).thenReturn(Optional.of(section));
+        when(sessionRepo.findByUser_IdAndSectionId(1L, 10L)).thenReturn(Optional.of(session));
+        when(chunkIndex.excerpt(10L, "long content", "what is a closure?"))
+                .thenReturn(Optional.of("## Closures\n\nA closure captures variables."));
+        when(aiClient.generateAsync(any(AiRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture("AI answer"));
+
+        service.chatInSection(10L, req, "a@test.com");
+
+        ArgumentCaptor<AiRequest> sent = ArgumentCaptor.forClass(AiRequest.class);
+        verify(aiClient).generateAsync(sent.capture());
+        assertNull(sent.getValue().context());
+        assertEquals("## Closures\n\nA closure captures variables.\n\nUser question: what is a closure?",
+                sent.getValue().transcript());
+    }
+
+    @Test
+    void chatInSection_cachedAnswer_skipsAiClient() {
+        ChatRequest req = new ChatRequest();
+        req.setMessage("hello");
+        User user = user(1L, "a@test.com");
+
+        Section section = new Section();
+        section.setId(10L);
+        section.setContent("content");
+
+        ChatSession session = new ChatSession();
+        session.setId(99L);
+
+        SectionAnswerCache.Key key = new SectionAnswerCache.Key(10L, "h", "m", "hello");
+        when(userRepository.findByEmail("a@test.com")).thenReturn(Optional.of(user));
+        when(sectionRepository.findById(10L)).thenReturn(Optional.of(section));
+        when(sessionRepo.findByUser_IdAndSectionId(1L, 10L)).thenReturn(Optional.of(session));
+        when(answerCache.keyFor(10L, "content", aiProps.getDefaultModel(), "hello")).thenReturn(key);
+        when(answerCache.get(key)).thenReturn(Optional.of("cached answer"));
+
+        ChatResponse resp = service.chatInSection(10L, req, "a@test.com");
+
+        assertEquals("cached answer", resp.getReply());
+        verifyNoInteractions(aiClient);
+        verify(messageRepo, times(2)).save(any(ChatMessage.class));
+    }
+
+    @Test
+    void chatInSection_paraphraseOfAnsweredQuestion_skipsAiClient() {
+        ChatRequest req = new ChatRequest();
+        req.setMessage("explain closures");
+        User user = user(1L, "a@test.com");
+
+        Section section = new Section();
+        section.setId(10L);
+        section.setContent("content");
+
+        ChatSession session = new ChatSession();
+        session.setId(99L);
+
+        SectionAnswerCache.Key key = new SectionAnswerCache.Key(10L, "h", "m", "explain closures");
+        SemanticAnswerCache.Probe probe = new SemanticAnswerCache.Probe(
+                new SemanticAnswerCache.Scope(10L, "h", "m"), new float[]{1f});
+        when(userRepository.findByEmail("a@test.com")).thenReturn(Optional.of(user));
+        when(sectionRepository.findById(10L)).thenReturn(Optional.of(section));
+        when(sessionRepo.findByUser_IdAndSectionId(1L, 10L)).thenReturn(Optional.of(session));
+        when(answerCache.keyFor(10L, "content", aiProps.getDefaultModel(), "explain closures")).thenReturn(key);
+        when(semanticCache.probe(key)).thenReturn(probe);
+        when(semanticCache.find(probe)).thenReturn(Optional.of("answer about closures"));
+
+        ChatResponse resp = service.chatInSection(10L, req, "a@test.com");
+
+        assertEquals("answer about closures", resp.getReply());
+        verify(answerCache).get(key);
+        verifyNoInteractions(aiClient);
+    }
+
+    @Test
+    void chatInSectionAsync_clientGone_cancelsAiCall_keepsOnlyUserMessage() {
+        ChatRequest req = new ChatRequest();
+        req.setMessage("hello");
+        User user = user(1L, "a@test.com");
+
+        Section section = new Section();
+        section.setId(10L);
+        section.setContent("content");
+
+        ChatSession session = new ChatSession();
+        session.setId(99L);
+
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        when(userRepository.findByEmail("a@test.com")).thenReturn(Optional.of(user));
+        when(sectionRepository.findById(10L)).thenReturn(Optional.of(section));
+        when(sessionRepo.findByUser_IdAndSectionId(1L, 10L)).thenReturn(Optional.of(session));
+        when(aiClient.generateAsync(any(AiRequest.class))).thenReturn(upstream);
+
+        Instant deadline = Instant.now().plusSeconds(30);
+        AbortSignal abort = AbortSignal.withDeadline(deadline);
+        CompletableFuture<ChatResponse> turn = service.chatInSectionAsync(10L, req, "a@test.com", abort);
+        abort.abort();
+
+        assertTrue(upstream.isCancelled());
+        assertTrue(turn.isCompletedExceptionally());
+        ArgumentCaptor<AiRequest> sent = ArgumentCaptor.forClass(AiRequest.class);
+        verify(aiClient).generateAsync(sent.capture());
+        assertEquals(deadline, sent.getValue().deadline());
+        // the USER message only: no assistant row, nothing cached
+        verify(messageRepo, times(1)).save(any(ChatMessage.class));
+        verify(answerCache, never()).put(any(), any());
     }
 
     // -------------------- getSectionChat --------------------
@@ -447,8 +845,10 @@ class ChatServiceImplTest {
         // Настраиваем поведение моков
         when(userRepository.findByEmail("a@test.com")).thenReturn(Optional.of(user));
         when(sessionRepo.findByUser_IdAndSectionId(1L, 3L)).thenReturn(Optional.of(session));
-        when(messageRepo.findBySession_IdOrderByCreatedAtAsc(555L))
-                .thenReturn(List.of(m1, m2));
+        // newest first from the database, limited to ai.history.section-window
+        when(messageRepo.findLatestDtos(eq(555L), limit(50))).thenReturn(List.of(
+                new ChatMessageDto(m2.getId(), m2.getRole(), m2.getContent(), m2.getCreatedAt()),
+                new ChatMessageDto(m1.getId(), m1.getRole(), m1.getContent(), m1.getCreatedAt())));
 
         // Действие
         ChatResponse resp = service.getSectionChat(3L, "A@test.com");
@@ -464,5 +864,20 @@ class ChatServiceImplTest {
         assertEquals(m1.getCreatedAt(), d1.getCreatedAt());
     }
 
+    @Test
+    void getSectionChat_readsOnlyTheConfiguredWindow() {
+        User user = user(1L, "a@test.com");
+        ChatSession session = new ChatSession();
+        session.setId(555L);
+        aiProps.getHistory().setSectionWindow(20);
+        when(userRepository.findByEmail("a@test.com")).thenReturn(Optional.of(user));
+        when(sessionRepo.findByUser_IdAndSectionId(1L, 3L)).thenReturn(Optional.of(session));
+
+        service.getSectionChat(3L, "a@test.com");
+
+        verify(messageRepo).findLatestDtos(eq(555L), limit(20));
+        verify(messageRepo, never()).findBySession_IdOrderByCreatedAtAsc(any());
+    }
+
 
 }
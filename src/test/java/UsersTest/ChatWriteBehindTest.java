@@ -0,0 +1,138 @@
+package UsersTest;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.model.chat.MessageRole;
+import com.example.growth_hungry.service.journal.ChatWriteBehind;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ChatWriteBehindTest {
+
+    @TempDir
+    Path dir;
+
+    JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    // chat_messages_seq as the migration creates it: start with 1 increment by 50
+    AtomicLong sequence = new AtomicLong(1 - 50);
+    ChatWriteBehind writeBehind;
+    // rows of the chat_messages inserts
+    List<Object[]> inserted = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        if (writeBehind != null) writeBehind.stop();
+    }
+
+    @Test
+    void ids_onAFreshSequence_areThoseHibernatesPooledOptimizerWouldNotHandOut() {
+        start(50L);
+
+        for (int i = 0; i < 30; i++) {
+            assertThat(writeBehind.append(1L, 2L, Instant.now(), List.of(
+                    new ChatWriteBehind.Message(MessageRole.USER, "q" + i, Instant.now()),
+                    new ChatWriteBehind.Message(MessageRole.ASSISTANT, "a" + i, Instant.now())))).isTrue();
+        }
+
+        writeBehind.drainAll();
+
+        List<Long> ids = inserted.stream().map(row -> (Long) row[0]).sorted().toList();
+        assertThat(ids).hasSize(60).doesNotHaveDuplicates();
+        // the first value (1) is the single id 1, every later value v is the block (v - 49 .. v)
+        assertThat(ids).startsWith(1L, 2L).allMatch(id -> id >= 1);
+    }
+
+    @Test
+    void drain_idAlreadyUsedByAnotherSession_failsInsteadOfSkippingTheMessage() {
+        start(50L);
+        storedRow(1L, 99L, "USER", Instant.now());
+
+        assertThat(writeBehind.append(1L, 2L, Instant.now(), List.of(
+                new ChatWriteBehind.Message(MessageRole.USER, "q", Instant.now())))).isTrue();
+
+        assertThatThrownBy(() -> writeBehind.drainAll())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("chat message id 1 ");
+        assertThat(writeBehind.pendingTurns()).isEqualTo(1);
+        assertThat(inserted).isEmpty();
+    }
+
+    @Test
+    void drain_replayedTurnAlreadyInserted_skipsItsRows() {
+        start(50L);
+        Instant at = Instant.parse("2025-01-01T10:00:00.123456789Z");
+        // the column keeps microseconds
+        storedRow(1L, 1L, "USER", at.truncatedTo(ChronoUnit.MICROS));
+
+        assertThat(writeBehind.append(1L, 2L, at, List.of(
+                new ChatWriteBehind.Message(MessageRole.USER, "q", at),
+                new ChatWriteBehind.Message(MessageRole.ASSISTANT, "a", at)))).isTrue();
+        writeBehind.drainAll();
+
+        assertThat(inserted).extracting(row -> row[0]).containsExactly(2L);
+    }
+
+    @Test
+    void sequenceWithAnotherIncrement_writeBehindStaysOff() {
+        start(1L);
+
+        assertThat(writeBehind.isEnabled()).isFalse();
+        assertThat(writeBehind.append(1L, 2L, Instant.now(), List.of(
+                new ChatWriteBehind.Message(MessageRole.USER, "q", Instant.now())))).isFalse();
+        verify(jdbc, never()).queryForObject(contains("nextval"), eq(Long.class));
+    }
+
+    private void start(long increment) {
+        AiProps props = new AiProps();
+        props.getWriteBehind().setEnabled(true);
+        props.getWriteBehind().setDirectory(dir.toString());
+        props.getWriteBehind().setCapacityBytes(64 * 1024);
+        // nothing drains here (no database): keep the drainer's retries short
+        props.getWriteBehind().setDrainIntervalMs(10);
+        when(jdbc.queryForObject(contains("pg_sequences"), eq(Long.class))).thenReturn(increment);
+        when(jdbc.queryForObject(contains("nextval"), eq(Long.class))).thenAnswer(inv -> sequence.addAndGet(50));
+        // every session exists
+        when(jdbc.query(any(PreparedStatementCreator.class), ArgumentMatchers.<RowMapper<Long>>any())).thenReturn(List.of(1L));
+        when(jdbc.batchUpdate(startsWith("insert into chat_messages"), anyList())).thenAnswer(inv -> {
+            List<Object[]> rows = inv.getArgument(1);
+            inserted.addAll(rows);
+            return new int[rows.size()];
+        });
+
+        writeBehind = new ChatWriteBehind(props, jdbc, mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+        writeBehind.start();
+    }
+
+    // what "select ... from chat_messages where id in (...)" finds
+    private void storedRow(long id, long sessionId, String role, Instant createdAt) {
+        doAnswer(inv -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong("id")).thenReturn(id);
+            when(rs.getLong("session_id")).thenReturn(sessionId);
+            when(rs.getString("role")).thenReturn(role);
+            when(rs.getTimestamp("created_at")).thenReturn(Timestamp.from(createdAt));
+            inv.<RowCallbackHandler>getArgument(1).processRow(rs);
+            return null;
+        }).when(jdbc).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+}
@@ -0,0 +1,86 @@
+package UsersTest;
+
+import com.example.growth_hungry.service.ai.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    final AtomicLong now = new AtomicLong();
+    final CircuitBreaker breaker = new CircuitBreaker(3, 1_000, 1, now::get);
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        fail(2);
+        breaker.tryAcquire().success(); // resets the streak
+        fail(2);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        fail(1);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+        assertThat(breaker.retryAfterMillis()).isEqualTo(1_000);
+    }
+
+    @Test
+    void halfOpen_allowsOneProbe_successCloses() {
+        fail(3);
+        advance(1_000);
+
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertThat(probe).isNotNull();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).as("second concurrent probe").isNull();
+
+        probe.success();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isNotNull();
+    }
+
+    @Test
+    void halfOpen_probeFailure_reopens() {
+        fail(3);
+        advance(1_000);
+
+        breaker.tryAcquire().failure();
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+    }
+
+    @Test
+    void releasedProbe_letsNextProbeThrough() {
+        fail(3);
+        advance(1_000);
+
+        breaker.tryAcquire().release();
+
+        assertThat(breaker.tryAcquire()).isNotNull();
+    }
+
+    @Test
+    void lateOutcomeFromEarlierState_isIgnored() {
+        CircuitBreaker.Permit slow = breaker.tryAcquire();
+        fail(3);
+        advance(1_000);
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+
+        slow.failure(); // granted while CLOSED, must not reopen the half-open circuit
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        probe.success();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) breaker.tryAcquire().failure();
+    }
+
+    private void advance(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,163 @@
+package UsersTest;
+
+import com.example.growth_hungry.api.AiDeadlineExceededException;
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.GeminiClient;
+import com.example.growth_hungry.service.ai.AiRequest;
+import com.example.growth_hungry.service.ai.CoalescingAiClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Real GeminiClient against a local stub server, so "one upstream call" is counted as HTTP requests.
+ */
+class CoalescingAiClientTest {
+
+    private static final int CALLERS = 20;
+
+    GeminiStubServer stub;
+    CoalescingAiClient client;
+    ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new GeminiStubServer();
+
+        AiProps props = new AiProps();
+        props.setBaseUrl(stub.baseUrl());
+        props.setApiKey("test-key");
+        props.setDefaultModel("gemini-2.5-flash");
+        props.setTimeoutMs(10_000);
+
+        GeminiClient gemini = new GeminiClient(props, HttpClient.newHttpClient(), new ObjectMapper(), new SimpleMeterRegistry());
+        client = new CoalescingAiClient(gemini, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        stub.close();
+    }
+
+    @Test
+    void identicalConcurrentCalls_shareOneUpstreamRequest() throws Exception {
+        stub.holdResponses();
+
+        List<CompletableFuture<String>> results = startCallers("What is a closure?");
+        awaitWaiters();
+        stub.release();
+
+        for (CompletableFuture<String> r : results) {
+            assertThat(r.get(10, TimeUnit.SECONDS)).isEqualTo("stub answer");
+        }
+        assertThat(stub.requestCount()).isEqualTo(1);
+        assertThat(client.inFlightCount()).isZero();
+    }
+
+    @Test
+    void differentPrompts_areNotCoalesced() {
+        client.generateAsync("first", null, null).join();
+        client.generateAsync("second", null, null).join();
+        client.generateAsync("first", "other system prompt", null).join();
+
+        assertThat(stub.requestCount()).isEqualTo(3);
+        assertThat(client.coalescedCount()).isZero();
+    }
+
+    @Test
+    void failure_reachesEveryWaiter_andDoesNotPoisonNextCall() throws Exception {
+        stub.respondWith(500, "");
+        stub.holdResponses();
+
+        List<CompletableFuture<String>> results = startCallers("boom");
+        awaitWaiters();
+        stub.release();
+
+        for (CompletableFuture<String> r : results) {
+            assertThatThrownBy(() -> r.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasMessageContaining("Gemini HTTP 500");
+        }
+        assertThat(stub.requestCount()).isEqualTo(1);
+
+        stub.respondWith(200, "recovered");
+        assertThat(client.generate("boom", null, null)).isEqualTo("recovered");
+        assertThat(stub.requestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void cancelledCaller_doesNotCancelOthers_lastOneCancelsUpstream() throws Exception {
+        stub.holdResponses();
+
+        CompletableFuture<String> gone = client.generateAsync("What is a closure?", null, null);
+        CompletableFuture<String> waiting = client.generateAsync("What is a closure?", null, null);
+        gone.cancel(true);
+        assertThat(client.inFlightCount()).isEqualTo(1);
+
+        waiting.cancel(true);
+        // nobody waits any more: the next identical call is a new upstream request
+        assertThat(client.inFlightCount()).isZero();
+        stub.release();
+        assertThat(client.generateAsync("What is a closure?", null, null).get(10, TimeUnit.SECONDS))
+                .isEqualTo("stub answer");
+        assertThat(client.coalescedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void callerWithLaterDeadline_doesNotShareTheShorterCall() throws Exception {
+        stub.holdResponses();
+        AiRequest request = AiRequest.of("What is a closure?", null, null);
+        Instant now = Instant.now();
+
+        CompletableFuture<String> impatient = client.generateAsync(request.withDeadline(now.plusMillis(300)));
+        // would fail with the first one's deadline: gets its own call
+        CompletableFuture<String> patient = client.generateAsync(request.withDeadline(now.plusSeconds(10)));
+        // fits in the patient call
+        CompletableFuture<String> joining = client.generateAsync(request.withDeadline(now.plusSeconds(5)));
+
+        assertThatThrownBy(() -> impatient.get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(AiDeadlineExceededException.class);
+        assertThat(patient).isNotDone();
+        assertThat(joining).isNotDone();
+
+        stub.release();
+        assertThat(patient.get(10, TimeUnit.SECONDS)).isEqualTo("stub answer");
+        assertThat(joining.get(10, TimeUnit.SECONDS)).isEqualTo("stub answer");
+        assertThat(stub.requestCount()).isEqualTo(2);
+        assertThat(client.coalescedCount()).isEqualTo(1);
+        assertThat(client.inFlightCount()).isZero();
+    }
+
+    private List<CompletableFuture<String>> startCallers(String prompt) {
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(CompletableFuture.supplyAsync(() -> client.generate(prompt, "system", null), callers));
+        }
+        return results;
+    }
+
+    /** Waits until every caller except the leader has joined the in-flight call. */
+    private void awaitWaiters() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (client.coalescedCount() < CALLERS - 1) {
+            if (System.nanoTime() > deadline) fail("only " + client.coalescedCount() + " callers coalesced");
+            Thread.sleep(5);
+        }
+    }
+}
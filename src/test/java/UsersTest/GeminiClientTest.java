@@ -1,23 +1,37 @@
 package UsersTest;
 
+import com.example.growth_hungry.api.AiDeadlineExceededException;
+import com.example.growth_hungry.api.AiUnavailableException;
 import com.example.growth_hungry.config.AiProps;
 import com.example.growth_hungry.service.GeminiClient;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.growth_hungry.service.ai.AiMessage;
+import com.example.growth_hungry.service.ai.AiRequest;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.mockito.stubbing.Answer;
 
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -42,16 +56,15 @@ class GeminiClientTest {
         when(props.getDefaultModel()).thenReturn("gemini-2.5-flash");
         when(props.getTimeoutMs()).thenReturn(5_000);
 
-        client = new GeminiClient(props, http, om);
+        client = new GeminiClient(props, http, om, new SimpleMeterRegistry());
     }
 
     @Test
     @DisplayName("Success: builds URL/body correctly and returns text from parts[0].text")
     void generate_success_basic() throws Exception {
-        ObjectMapper real = new ObjectMapper();
-        JsonNode okNode = real.readTree("""
+        String okJson = """
             {"candidates":[{"content":{"parts":[{"text":"Hello, Aidar!"}]}}]}
-        """);
+        """;
 
         // Захватываем body, который GeminiClient сериализует через om.writeValueAsString(...)
         @SuppressWarnings("unchecked")
@@ -60,13 +73,8 @@ class GeminiClientTest {
 
         // Захватываем HTTP request
         ArgumentCaptor<HttpRequest> reqCap = ArgumentCaptor.forClass(HttpRequest.class);
-        when(http.send(reqCap.capture(), any(HttpResponse.BodyHandler.class))).thenReturn(httpResponse);
+        when(http.send(reqCap.capture(), any(HttpResponse.BodyHandler.class))).thenAnswer(respond(200, okJson));
 
-        when(httpResponse.statusCode()).thenReturn(200);
-        when(httpResponse.body()).thenReturn("{}");
-
-        // Парсинг ответа
-        when(om.readTree(anyString())).thenReturn(okNode);
 
         String out = client.generate("Hi", "You are helpful.", "gemini-2.5-flash");
         assertThat(out).isEqualTo("Hello, Aidar!");
@@ -93,19 +101,14 @@ class GeminiClientTest {
     @Test
     @DisplayName("Uses default model when model arg is null or blank")
     void generate_usesDefaultModel() throws Exception {
-        ObjectMapper real = new ObjectMapper();
-        JsonNode okNode = real.readTree("""
+        String okJson = """
             {"candidates":[{"content":{"parts":[{"text":"OK"}]}}]}
-        """);
+        """;
 
         when(om.writeValueAsString(any())).thenReturn("{}");
 
         ArgumentCaptor<HttpRequest> reqCap = ArgumentCaptor.forClass(HttpRequest.class);
-        when(http.send(reqCap.capture(), any(HttpResponse.BodyHandler.class))).thenReturn(httpResponse);
-
-        when(httpResponse.statusCode()).thenReturn(200);
-        when(httpResponse.body()).thenReturn("{}");
-        when(om.readTree(anyString())).thenReturn(okNode);
+        when(http.send(reqCap.capture(), any(HttpResponse.BodyHandler.class))).thenAnswer(respond(200, okJson));
 
         String out = client.generate("Hi", null, null);
 
@@ -119,19 +122,14 @@ class GeminiClientTest {
     void generate_stripsTrailingSlash() throws Exception {
         when(props.getBaseUrl()).thenReturn("https://generativelanguage.googleapis.com/v1beta/");
 
-        ObjectMapper real = new ObjectMapper();
-        JsonNode okNode = real.readTree("""
+        String okJson = """
             {"candidates":[{"content":{"parts":[{"text":"OK"}]}}]}
-        """);
+        """;
 
         when(om.writeValueAsString(any())).thenReturn("{}");
 
         ArgumentCaptor<HttpRequest> reqCap = ArgumentCaptor.forClass(HttpRequest.class);
-        when(http.send(reqCap.capture(), any(HttpResponse.BodyHandler.class))).thenReturn(httpResponse);
-
-        when(httpResponse.statusCode()).thenReturn(200);
-        when(httpResponse.body()).thenReturn("{}");
-        when(om.readTree(anyString())).thenReturn(okNode);
+        when(http.send(reqCap.capture(), any(HttpResponse.BodyHandler.class))).thenAnswer(respond(200, okJson));
 
         String out = client.generate("Hi", null, null);
 
@@ -144,10 +142,8 @@ class GeminiClientTest {
     @DisplayName("Non-2xx HTTP status → throws RuntimeException with status and body")
     void generate_non2xx_throws() throws Exception {
         when(om.writeValueAsString(any())).thenReturn("{}");
-        when(http.send(any(), any(HttpResponse.BodyHandler.class))).thenReturn(httpResponse);
-
-        when(httpResponse.statusCode()).thenReturn(503);
-        when(httpResponse.body()).thenReturn("{\"error\":\"unavailable\"}");
+        when(http.send(any(), any(HttpResponse.BodyHandler.class)))
+                .thenAnswer(respond(503, "{\"error\":\"unavailable\"}"));
 
         assertThatThrownBy(() -> client.generate("Hi", null, "m"))
                 .isInstanceOf(RuntimeException.class)
@@ -168,19 +164,216 @@ class GeminiClientTest {
     @Test
     @DisplayName("Parses multi-part response by concatenating parts[*].text")
     void generate_parsesMultiParts() throws Exception {
-        ObjectMapper real = new ObjectMapper();
-        JsonNode okNode = real.readTree("""
+        String okJson = """
             {"candidates":[{"content":{"parts":[{"text":"Hello, "},{"text":"world!"}]}}]}
-        """);
+        """;
+
+        when(om.writeValueAsString(any())).thenReturn("{}");
+        when(http.send(any(), any(HttpResponse.BodyHandler.class))).thenAnswer(respond(200, okJson));
+
+        String out = client.generate("Hi", null, "m");
+        assertThat(out).isEqualTo("Hello, world!");
+    }
+
+    @Test
+    @DisplayName("Stream: calls streamGenerateContent?alt=sse and forwards every SSE chunk in order")
+    void generateStream_forwardsChunks() throws Exception {
+        when(om.writeValueAsString(any())).thenReturn("{}");
+
+        @SuppressWarnings("unchecked")
+        HttpResponse<Stream<String>> streamResponse = mock(HttpResponse.class);
+        when(streamResponse.statusCode()).thenReturn(200);
+        when(streamResponse.body()).thenReturn(Stream.of(
+                "data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Hel\"}]}}]}",
+                "",
+                "data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"lo\"}]}}]}",
+                ""
+        ));
+
+        ArgumentCaptor<HttpRequest> reqCap = ArgumentCaptor.forClass(HttpRequest.class);
+        when(http.send(reqCap.capture(), any(HttpResponse.BodyHandler.class))).thenReturn(streamResponse);
+
+        List<String> chunks = new ArrayList<>();
+        String out = client.generateStream("Hi", null, "gemini-2.5-flash", chunks::add);
+
+        assertThat(chunks).containsExactly("Hel", "lo");
+        assertThat(out).isEqualTo("Hello");
+        assertThat(reqCap.getValue().uri().toString())
+                .isEqualTo("https://generativelanguage.googleapis.com/v1beta/models/gemini-2.5-flash:streamGenerateContent?alt=sse&key=API_KEY");
+    }
+
+    @Test
+    @DisplayName("Async: uses sendAsync, never blocks on send, parses the same response")
+    void generateAsync_usesSendAsync() throws Exception {
+        String okJson = """
+            {"candidates":[{"content":{"parts":[{"text":"Async OK"}]}}]}
+        """;
+
+        when(om.writeValueAsString(any())).thenReturn("{}");
+        when(http.sendAsync(any(), any(HttpResponse.BodyHandler.class)))
+                .thenAnswer(inv -> CompletableFuture.completedFuture(respond(200, okJson).answer(inv)));
+
+        String out = client.generateAsync("Hi", null, "m").join();
+
+        assertThat(out).isEqualTo("Async OK");
+        verify(http, never()).send(any(), any());
+    }
+
+    @Test
+    @DisplayName("Circuit breaker: after N upstream failures the next call fails fast without HTTP")
+    void generate_openCircuit_failsFast() throws Exception {
+        AiProps.Resilience resilience = new AiProps.Resilience();
+        resilience.setFailureThreshold(2);
+        when(props.getResilience()).thenReturn(resilience);
+        client = new GeminiClient(props, http, om, new SimpleMeterRegistry());
 
         when(om.writeValueAsString(any())).thenReturn("{}");
         when(http.send(any(), any(HttpResponse.BodyHandler.class))).thenReturn(httpResponse);
+        when(httpResponse.statusCode()).thenReturn(503);
+        when(httpResponse.body()).thenReturn("{}");
 
+        assertThatThrownBy(() -> client.generate("Hi", null, "m")).hasMessageContaining("Gemini HTTP 503");
+        assertThatThrownBy(() -> client.generate("Hi", null, "m")).hasMessageContaining("Gemini HTTP 503");
+
+        assertThatThrownBy(() -> client.generate("Hi", null, "m"))
+                .isInstanceOf(AiUnavailableException.class);
+        verify(http, times(2)).send(any(), any());
+
+        // breakers are per model
+        when(httpResponse.statusCode()).thenReturn(400);
+        assertThatThrownBy(() -> client.generate("Hi", null, "other-model")).hasMessageContaining("Gemini HTTP 400");
+        verify(http, times(3)).send(any(), any());
+    }
+
+    @Test
+    @DisplayName("Bulkhead: calls over the per-model limit are rejected, slots are freed on completion")
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void generateAsync_bulkheadFull_rejects() throws Exception {
+        AiProps.Resilience resilience = new AiProps.Resilience();
+        resilience.setMaxConcurrentPerModel(1);
+        when(props.getResilience()).thenReturn(resilience);
+        client = new GeminiClient(props, http, om, new SimpleMeterRegistry());
+
+        CompletableFuture<HttpResponse<String>> pending = new CompletableFuture<>();
+        when(om.writeValueAsString(any())).thenReturn("{}");
+        when(http.sendAsync(any(), any(HttpResponse.BodyHandler.class))).thenReturn((CompletableFuture) pending);
         when(httpResponse.statusCode()).thenReturn(200);
-        when(httpResponse.body()).thenReturn("{}");
-        when(om.readTree(anyString())).thenReturn(okNode);
+        // body handler output: already the extracted text
+        when(httpResponse.body()).thenReturn("OK");
 
-        String out = client.generate("Hi", null, "m");
-        assertThat(out).isEqualTo("Hello, world!");
+        CompletableFuture<String> first = client.generateAsync("Hi", null, "m");
+        assertThatThrownBy(() -> client.generateAsync("Hi", null, "m"))
+                .isInstanceOf(AiUnavailableException.class);
+
+        pending.complete(httpResponse);
+        assertThat(first.join()).isEqualTo("OK");
+
+        when(http.sendAsync(any(), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(httpResponse));
+        assertThat(client.generateAsync("Hi", null, "m").join()).isEqualTo("OK");
+    }
+
+    @Test
+    @DisplayName("Multi-turn: every message becomes a contents entry, assistant turns use role 'model'")
+    void generateAsync_multiTurn_buildsContents() throws Exception {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> bodyCap = ArgumentCaptor.forClass(Map.class);
+        when(om.writeValueAsString(bodyCap.capture())).thenReturn("{}");
+        when(http.sendAsync(any(), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(httpResponse));
+        when(httpResponse.statusCode()).thenReturn(200);
+        // body handler output: already the extracted text
+        when(httpResponse.body()).thenReturn("OK");
+
+        AiRequest request = new AiRequest(
+                List.of(AiMessage.user("q1"), AiMessage.assistant("a1"), AiMessage.user("q2")), null, "m");
+        assertThat(client.generateAsync(request).join()).isEqualTo("OK");
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> contents = (List<Map<String, Object>>) bodyCap.getValue().get("contents");
+        assertThat(contents).extracting(c -> c.get("role")).containsExactly("user", "model", "user");
+    }
+
+    @Test
+    @DisplayName("Deadline: shortens the HTTP timeout; a passed deadline fails with 504 and no HTTP call")
+    void generateAsync_deadline_limitsTimeout() throws Exception {
+        when(om.writeValueAsString(any())).thenReturn("{}");
+        ArgumentCaptor<HttpRequest> reqCap = ArgumentCaptor.forClass(HttpRequest.class);
+        when(http.sendAsync(reqCap.capture(), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(httpResponse));
+        when(httpResponse.statusCode()).thenReturn(200);
+        when(httpResponse.body()).thenReturn("OK");
+
+        AiRequest request = AiRequest.of("Hi", null, "m");
+        assertThat(client.generateAsync(request.withDeadline(Instant.now().plusSeconds(1))).join()).isEqualTo("OK");
+        assertThat(reqCap.getValue().timeout()).get().satisfies(t -> assertThat(t).isLessThanOrEqualTo(Duration.ofSeconds(1)));
+
+        assertThatThrownBy(() -> client.generateAsync(request.withDeadline(Instant.now().minusMillis(1))))
+                .isInstanceOf(AiDeadlineExceededException.class);
+        verify(http, times(1)).sendAsync(any(), any());
+    }
+
+    @Test
+    @DisplayName("Cancelling the returned future cancels the HTTP exchange")
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void generateAsync_cancel_cancelsExchange() throws Exception {
+        CompletableFuture<HttpResponse<String>> exchange = new CompletableFuture<>();
+        when(om.writeValueAsString(any())).thenReturn("{}");
+        when(http.sendAsync(any(), any(HttpResponse.BodyHandler.class))).thenReturn((CompletableFuture) exchange);
+
+        client.generateAsync("Hi", null, "m").cancel(true);
+
+        assertThat(exchange).isCancelled();
+    }
+
+    @Test
+    @DisplayName("Response over ai.max-response-bytes is rejected")
+    void generate_responseTooLarge_fails() throws Exception {
+        when(props.getMaxResponseBytes()).thenReturn(64L);
+        when(om.writeValueAsString(any())).thenReturn("{}");
+        when(http.send(any(), any(HttpResponse.BodyHandler.class))).thenAnswer(respond(200,
+                "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + "x".repeat(200) + "\"}]}}]}"));
+
+        assertThatThrownBy(() -> client.generate("Hi", null, "m"))
+                .hasRootCauseMessage("Gemini response exceeds 64 bytes");
+    }
+
+    /**
+     * Runs the BodyHandler GeminiClient passed to the (mocked) HttpClient on {@code json},
+     * delivered in small buffers like a real connection, and returns the resulting response.
+     */
+    private static Answer<HttpResponse<String>> respond(int status, String json) {
+        return inv -> {
+            HttpResponse.BodyHandler<String> handler = inv.getArgument(1);
+            HttpResponse.ResponseInfo info = new HttpResponse.ResponseInfo() {
+                public int statusCode() { return status; }
+                public HttpHeaders headers() { return HttpHeaders.of(Map.of(), (a, b) -> true); }
+                public HttpClient.Version version() { return HttpClient.Version.HTTP_1_1; }
+            };
+            HttpResponse.BodySubscriber<String> subscriber = handler.apply(info);
+
+            subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) { }
+                public void cancel() { }
+            });
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            for (int off = 0; off < bytes.length; off += 16) {
+                subscriber.onNext(List.of(ByteBuffer.wrap(bytes, off, Math.min(16, bytes.length - off))));
+            }
+            subscriber.onComplete();
+
+            String body;
+            try {
+                body = subscriber.getBody().toCompletableFuture().join();
+            } catch (CompletionException e) {
+                throw (Exception) e.getCause();
+            }
+
+            @SuppressWarnings("unchecked")
+            HttpResponse<String> res = mock(HttpResponse.class);
+            when(res.statusCode()).thenReturn(status);
+            when(res.body()).thenReturn(body);
+            return res;
+        };
     }
 }
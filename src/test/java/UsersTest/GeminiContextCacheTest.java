@@ -0,0 +1,121 @@
+package UsersTest;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.GeminiClient;
+import com.example.growth_hungry.service.ai.AiContext;
+import com.example.growth_hungry.service.ai.AiMessage;
+import com.example.growth_hungry.service.ai.AiRequest;
+import com.example.growth_hungry.service.ai.GeminiContextCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Real GeminiClient + GeminiContextCache against the local stub's cachedContents endpoint.
+ */
+class GeminiContextCacheTest {
+
+    // ~2000 estimated tokens, above the 1024 default minimum
+    private static final String BIG_SECTION = "Closures capture variables. ".repeat(300);
+
+    GeminiStubServer stub;
+    GeminiContextCache contextCache;
+    GeminiClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new GeminiStubServer();
+
+        AiProps props = new AiProps();
+        props.setBaseUrl(stub.baseUrl());
+        props.setApiKey("test-key");
+        props.setDefaultModel("gemini-2.5-flash");
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        contextCache = new GeminiContextCache(props, registry);
+        client = new GeminiClient(props, HttpClient.newHttpClient(), new ObjectMapper(), registry, contextCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void largeContext_isSentAsCacheReference_andCreatedOnce() {
+        client.generateAsync(sectionRequest(1L, BIG_SECTION, "what is a closure?")).join();
+        client.generateAsync(sectionRequest(1L, BIG_SECTION, "and a lambda?")).join();
+
+        assertThat(stub.cacheCreateCount()).isEqualTo(1);
+        assertThat(stub.requestCount()).isEqualTo(2);
+        assertThat(stub.lastGenerateBody())
+                .contains("\"cachedContent\":\"cachedContents/stub-1\"")
+                .contains("and a lambda?")
+                .doesNotContain("Closures capture variables")
+                .doesNotContain("systemInstruction");
+    }
+
+    @Test
+    void changedContent_getsNewCacheEntry() {
+        client.generateAsync(sectionRequest(1L, BIG_SECTION, "q")).join();
+        client.generateAsync(sectionRequest(1L, BIG_SECTION + " Edited.", "q")).join();
+
+        assertThat(stub.cacheCreateCount()).isEqualTo(2);
+        assertThat(stub.lastGenerateBody()).contains("cachedContents/stub-2");
+    }
+
+    @Test
+    void invalidate_deletesUpstreamEntry() throws Exception {
+        client.generateAsync(sectionRequest(1L, BIG_SECTION, "q")).join();
+
+        contextCache.invalidate(AiContext.sectionId(1L));
+
+        assertThat(contextCache.size()).isZero();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (stub.cacheDeleteCount() == 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        assertThat(stub.cacheDeleteCount()).isEqualTo(1);
+
+        client.generateAsync(sectionRequest(1L, BIG_SECTION, "q")).join();
+        assertThat(stub.cacheCreateCount()).isEqualTo(2);
+    }
+
+    @Test
+    void smallContext_isSentInline() {
+        client.generateAsync(sectionRequest(1L, "Short section.", "q")).join();
+
+        assertThat(stub.cacheCreateCount()).isZero();
+        assertThat(stub.lastGenerateBody())
+                .contains("Short section.\\n\\nUser question: q")
+                .contains("systemInstruction")
+                .doesNotContain("cachedContent");
+    }
+
+    @Test
+    void failedCreate_fallsBackInline_andIsNotRetriedImmediately() {
+        stub.failCacheCreates(400);
+
+        assertThat(client.generateAsync(sectionRequest(1L, BIG_SECTION, "q")).join()).isEqualTo("stub answer");
+        client.generateAsync(sectionRequest(1L, BIG_SECTION, "q2")).join();
+
+        assertThat(stub.cacheCreateCount()).isEqualTo(1);
+        assertThat(stub.lastGenerateBody())
+                .contains("Closures capture variables")
+                .doesNotContain("cachedContent");
+    }
+
+    private static AiRequest sectionRequest(Long sectionId, String content, String question) {
+        return new AiRequest(
+                List.of(AiMessage.user("User question: " + question)),
+                "You are a helpful course assistant.",
+                null,
+                AiContext.section(sectionId, content));
+    }
+}
@@ -0,0 +1,292 @@
+package UsersTest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Local stand-in for the Gemini REST API: generateContent, streamGenerateContent (SSE),
+ * cachedContents (create / delete) and the models list used by the connection warm-up.
+ * Counts requests and connections, and can hold generate responses until {@link #release()}
+ * so tests control timing.
+ *
+ * For load tests the provider's behaviour is configurable per request: latency drawn from a
+ * distribution ({@link #latency}, see {@link #uniform} / {@link #logNormal}), a random share of
+ * failures ({@link #errorRate}) and the answer size ({@link #responseSize}).
+ * {@link #failNext} fails an exact number of upcoming requests, optionally with Retry-After.
+ */
+public class GeminiStubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    // one virtual thread per exchange: thousands of sleeping "slow provider" requests are cheap
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger streamRequests = new AtomicInteger();
+    private final AtomicInteger injectedErrors = new AtomicInteger();
+    private final AtomicInteger cacheCreates = new AtomicInteger();
+    private final AtomicInteger cacheDeletes = new AtomicInteger();
+    private final AtomicInteger modelLists = new AtomicInteger();
+    private final Set<InetSocketAddress> clientConnections = ConcurrentHashMap.newKeySet();
+    private volatile String lastGenerateBody;
+    private volatile int cacheCreateStatus = 200;
+
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private volatile int status = 200;
+    private volatile String text = "stub answer";
+    private volatile LongSupplier latencyMs = () -> 0;
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+    private volatile IntSupplier responseChars;
+    private volatile int streamChunks = 8;
+    private volatile long chunkDelayMs;
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile int failStatus = 503;
+    private volatile long failRetryAfterSeconds = -1;
+
+    public GeminiStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /** Value for {@code ai.base-url}. */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1beta";
+    }
+
+    /** generateContent requests only. */
+    public int requestCount() {
+        return requests.get();
+    }
+
+    /** GET models (the connection warm-up call). */
+    public int modelListCount() {
+        return modelLists.get();
+    }
+
+    /** Distinct client connections (remote address + port) seen so far. */
+    public int connectionCount() {
+        return clientConnections.size();
+    }
+
+    public int cacheCreateCount() {
+        return cacheCreates.get();
+    }
+
+    public int cacheDeleteCount() {
+        return cacheDeletes.get();
+    }
+
+    public String lastGenerateBody() {
+        return lastGenerateBody;
+    }
+
+    public void failCacheCreates(int status) {
+        this.cacheCreateStatus = status;
+    }
+
+    /** Responses wait until {@link #release()} is called. */
+    public void holdResponses() {
+        gate = new CountDownLatch(1);
+    }
+
+    public void release() {
+        gate.countDown();
+    }
+
+    /** Each generate response is delayed by a fresh value from {@code latencyMs}. */
+    public void latency(LongSupplier latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    public void respondWith(int status, String text) {
+        this.status = status;
+        this.text = text;
+    }
+
+    /** streamGenerateContent requests. */
+    public int streamRequestCount() {
+        return streamRequests.get();
+    }
+
+    /** Requests answered with an error because of {@link #errorRate}. */
+    public int injectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    /** A random {@code rate} (0..1) of generate and stream requests fails with {@code status}. */
+    public void errorRate(double rate, int status) {
+        this.errorRate = rate;
+        this.errorStatus = status;
+    }
+
+    /**
+     * The next {@code count} generate and stream requests fail with {@code status}, sending
+     * {@code Retry-After: retryAfterSeconds} (none when negative); later ones are answered normally.
+     */
+    public void failNext(int count, int status, long retryAfterSeconds) {
+        this.failStatus = status;
+        this.failRetryAfterSeconds = retryAfterSeconds;
+        failuresLeft.set(count);
+    }
+
+    /** Answers are {@code chars.getAsInt()} characters of filler text instead of the fixed text. */
+    public void responseSize(IntSupplier chars) {
+        this.responseChars = chars;
+    }
+
+    /**
+     * Streams are sent as {@code chunks} SSE events, {@code chunkDelayMs} apart; the latency
+     * applies before the first one (time to first token).
+     */
+    public void streaming(int chunks, long chunkDelayMs) {
+        this.streamChunks = Math.max(1, chunks);
+        this.chunkDelayMs = chunkDelayMs;
+    }
+
+    public static LongSupplier fixed(long ms) {
+        return () -> ms;
+    }
+
+    public static LongSupplier uniform(long minMs, long maxMs) {
+        return () -> ThreadLocalRandom.current().nextLong(minMs, maxMs + 1);
+    }
+
+    /**
+     * Right-skewed like real model latency: half of the requests are faster than {@code medianMs},
+     * one in a hundred slower than {@code p99Ms}.
+     */
+    public static LongSupplier logNormal(long medianMs, long p99Ms) {
+        double mu = Math.log(medianMs);
+        double sigma = (Math.log(p99Ms) - mu) / 2.326; // z(0.99)
+        return () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        clientConnections.add(exchange.getRemoteAddress());
+
+        if (path.endsWith("/models") && "GET".equals(exchange.getRequestMethod())) {
+            modelLists.incrementAndGet();
+            respond(exchange, 200, "{\"models\":[{\"name\":\"models/gemini-2.5-flash\"}]}");
+            return;
+        }
+
+        if (path.endsWith("/cachedContents") && "POST".equals(exchange.getRequestMethod())) {
+            int n = cacheCreates.incrementAndGet();
+            int code = cacheCreateStatus;
+            respond(exchange, code, code == 200
+                    ? "{\"name\":\"cachedContents/stub-" + n + "\",\"expireTime\":\"" + Instant.now().plusSeconds(3600) + "\"}"
+                    : "{\"error\":{\"code\":" + code + "}}");
+            return;
+        }
+        if (path.contains("/cachedContents/") && "DELETE".equals(exchange.getRequestMethod())) {
+            cacheDeletes.incrementAndGet();
+            respond(exchange, 200, "{}");
+            return;
+        }
+
+        boolean stream = path.endsWith(":streamGenerateContent");
+        (stream ? streamRequests : requests).incrementAndGet();
+        lastGenerateBody = body;
+        try {
+            gate.await(10, TimeUnit.SECONDS);
+            sleep(latencyMs.getAsLong());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (failuresLeft.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            if (failRetryAfterSeconds >= 0) {
+                exchange.getResponseHeaders().add("Retry-After", String.valueOf(failRetryAfterSeconds));
+            }
+            respond(exchange, failStatus, "{\"error\":{\"code\":" + failStatus + ",\"message\":\"stub failure\"}}");
+            return;
+        }
+
+        int code = status;
+        if (code == 200 && errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            injectedErrors.incrementAndGet();
+            code = errorStatus;
+        }
+        if (code != 200) {
+            respond(exchange, code, "{\"error\":{\"code\":" + code + ",\"message\":\"stub failure\"}}");
+            return;
+        }
+
+        String answer = answerText();
+        if (stream) {
+            stream(exchange, answer);
+        } else {
+            respond(exchange, 200, candidate(answer));
+        }
+    }
+
+    private void stream(HttpExchange exchange, String answer) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0); // chunked
+        int step = Math.max(1, (answer.length() + streamChunks - 1) / streamChunks);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int from = 0; from < answer.length(); from += step) {
+                if (from > 0) sleep(chunkDelayMs);
+                String delta = answer.substring(from, Math.min(answer.length(), from + step));
+                out.write(("data: " + candidate(delta) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String answerText() {
+        IntSupplier size = responseChars;
+        if (size == null) return text;
+        int chars = Math.max(1, size.getAsInt());
+        StringBuilder sb = new StringBuilder(chars);
+        while (sb.length() < chars) sb.append("lorem ipsum dolor sit amet ");
+        sb.setLength(chars);
+        return sb.toString();
+    }
+
+    private static String candidate(String text) {
+        return "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + text + "\"}]}}]}";
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) Thread.sleep(millis);
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
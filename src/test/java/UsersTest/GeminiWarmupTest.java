@@ -0,0 +1,77 @@
+package UsersTest;
+
+import com.example.growth_hungry.config.AiConfig;
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.GeminiClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * The HttpClient built by AiConfig against the local stub: after the warm-up the first real
+ * call reuses the open connection.
+ */
+class GeminiWarmupTest {
+
+    GeminiStubServer stub;
+    ExecutorService httpExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    AiProps props = new AiProps();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new GeminiStubServer();
+        props.setBaseUrl(stub.baseUrl());
+        props.setApiKey("test-key");
+        props.setDefaultModel("gemini-2.5-flash");
+        // the stub speaks plain HTTP/1.1, no h2c upgrade
+        props.getHttp().setPreferHttp2(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+        httpExecutor.shutdownNow();
+    }
+
+    @Test
+    void firstCall_afterWarmUp_reusesConnection() {
+        GeminiClient client = client();
+
+        assertThat(client.warmUp(1, Duration.ofSeconds(5))).isEqualTo(1);
+        assertThat(stub.modelListCount()).isEqualTo(1);
+
+        assertThat(client.generate("hello", null, null)).isEqualTo("stub answer");
+        assertThat(stub.connectionCount()).isEqualTo(1);
+        assertThat(registry.find("ai.http.warmup").timer().count()).isEqualTo(1);
+        assertThat(registry.find("ai.http.first_call").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void warmUp_unreachableUpstream_doesNotThrow() {
+        props.setBaseUrl("http://127.0.0.1:1");
+        GeminiClient client = client();
+
+        assertThat(client.warmUp(2, Duration.ofSeconds(2))).isZero();
+    }
+
+    @Test
+    void warmUp_withoutBaseUrl_isSkipped() {
+        props.setBaseUrl(null);
+
+        assertThat(client().warmUp(2, Duration.ofSeconds(2))).isZero();
+        assertThat(stub.modelListCount()).isZero();
+    }
+
+    private GeminiClient client() {
+        return new GeminiClient(props, new AiConfig().httpClient(props, httpExecutor), new ObjectMapper(), registry);
+    }
+}
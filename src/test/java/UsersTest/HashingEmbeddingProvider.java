@@ -0,0 +1,42 @@
+package UsersTest;
+
+import com.example.growth_hungry.service.ai.EmbeddingProvider;
+import com.example.growth_hungry.service.ai.Terms;
+
+/**
+ * Test embedding without a model: every term ({@link Terms}) is hashed to one of
+ * {@code dimensions} buckets with a hashed sign (feature hashing). Same text, same vector, on any
+ * JVM — which is what tests need.
+ *
+ * A bag of words, so not for production: word order is lost ("convert int to string" and
+ * "convert string to int" are the same vector) and so are the stop words Terms drops.
+ */
+class HashingEmbeddingProvider implements EmbeddingProvider {
+
+    private final int dimensions;
+
+    HashingEmbeddingProvider(int dimensions) {
+        if (dimensions <= 0) throw new IllegalArgumentException("dimensions must be positive");
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        for (String term : Terms.of(text)) {
+            int h = mix(term.hashCode());
+            vector[Math.floorMod(h, dimensions)] += (h & 0x8000_0000) == 0 ? 1f : -1f;
+        }
+        return vector;
+    }
+
+    // murmur3 finalizer: String.hashCode alone puts similar words into neighbouring buckets
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85eb_ca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2_ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,170 @@
+package UsersTest;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.AiClient;
+import com.example.growth_hungry.service.ai.AiRequest;
+import com.example.growth_hungry.service.ai.HedgingAiClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Hedging against a fake delegate whose attempts the test completes by hand.
+ */
+class HedgingAiClientTest {
+
+    private static final AiRequest REQUEST = AiRequest.of("What is a closure?", null, "m");
+
+    FakeAiClient delegate;
+    AiProps.Hedging props;
+    HedgingAiClient client;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new FakeAiClient();
+        props = new AiProps.Hedging();
+        props.setEnabled(true);
+        props.setMinSamples(5);
+        props.setMinDelayMs(20);
+        props.setBudgetPercent(100);
+        client = new HedgingAiClient(delegate, props, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void slowPrimary_isHedged_andHedgeWins() throws Exception {
+        warmUp();
+
+        CompletableFuture<String> result = client.generateAsync(REQUEST);
+        CompletableFuture<String> second = awaitAttempt(1);
+
+        second.complete("hedge answer");
+
+        assertThat(result.get(1, TimeUnit.SECONDS)).isEqualTo("hedge answer");
+        assertThat(delegate.attempts.get(0).isCancelled()).isTrue();
+        assertThat(client.firedCount()).isEqualTo(1);
+        assertThat(client.wonCount()).isEqualTo(1);
+    }
+
+    @Test
+    void primaryAnswersAfterHedge_cancelsHedge() throws Exception {
+        warmUp();
+
+        CompletableFuture<String> result = client.generateAsync(REQUEST);
+        CompletableFuture<String> second = awaitAttempt(1);
+
+        delegate.attempts.get(0).complete("primary answer");
+
+        assertThat(result.get(1, TimeUnit.SECONDS)).isEqualTo("primary answer");
+        assertThat(second.isCancelled()).isTrue();
+        assertThat(client.wonCount()).isZero();
+    }
+
+    @Test
+    void oneAttemptFails_otherStillAnswers() throws Exception {
+        warmUp();
+
+        CompletableFuture<String> result = client.generateAsync(REQUEST);
+        CompletableFuture<String> second = awaitAttempt(1);
+
+        delegate.attempts.get(0).completeExceptionally(new IllegalStateException("stuck connection reset"));
+        assertThat(result).isNotDone();
+
+        second.complete("hedge answer");
+        assertThat(result.get(1, TimeUnit.SECONDS)).isEqualTo("hedge answer");
+    }
+
+    @Test
+    void primaryFailsBeforeHedgeDelay_failsWithoutHedge() throws Exception {
+        props.setMinDelayMs(5_000);
+        warmUp();
+
+        CompletableFuture<String> result = client.generateAsync(REQUEST);
+        delegate.attempts.get(0).completeExceptionally(new IllegalStateException("boom"));
+
+        assertThatThrownBy(() -> result.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(delegate.attempts).hasSize(1);
+        assertThat(client.firedCount()).isZero();
+    }
+
+    @Test
+    void budgetExhausted_noHedge() throws Exception {
+        props.setBudgetPercent(0);
+        client = new HedgingAiClient(delegate, props, new SimpleMeterRegistry());
+        warmUp();
+
+        CompletableFuture<String> result = client.generateAsync(REQUEST);
+        Thread.sleep(200);
+
+        assertThat(delegate.attempts).hasSize(1);
+        delegate.attempts.get(0).complete("late answer");
+        assertThat(result.get(1, TimeUnit.SECONDS)).isEqualTo("late answer");
+        assertThat(client.firedCount()).isZero();
+    }
+
+    @Test
+    void callerCancel_cancelsBothAttempts() throws Exception {
+        warmUp();
+
+        CompletableFuture<String> result = client.generateAsync(REQUEST);
+        CompletableFuture<String> second = awaitAttempt(1);
+
+        result.cancel(true);
+
+        assertThat(delegate.attempts.get(0).isCancelled()).isTrue();
+        assertThat(second.isCancelled()).isTrue();
+    }
+
+    @Test
+    void notEnoughSamples_noHedge() throws Exception {
+        CompletableFuture<String> result = client.generateAsync(REQUEST);
+        Thread.sleep(200);
+
+        assertThat(delegate.attempts).hasSize(1);
+        delegate.attempts.get(0).complete("answer");
+        assertThat(result.get(1, TimeUnit.SECONDS)).isEqualTo("answer");
+    }
+
+    // fast answers fill the latency window, so the hedge delay becomes the 20 ms minimum
+    private void warmUp() throws Exception {
+        for (int i = 0; i < props.getMinSamples(); i++) {
+            CompletableFuture<String> result = client.generateAsync(REQUEST);
+            delegate.attempts.get(delegate.attempts.size() - 1).complete("warm");
+            result.get(1, TimeUnit.SECONDS);
+        }
+        delegate.attempts.clear();
+    }
+
+    private CompletableFuture<String> awaitAttempt(int index) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (delegate.attempts.size() <= index && System.nanoTime() < deadline) Thread.sleep(5);
+        assertThat(delegate.attempts).hasSizeGreaterThan(index);
+        return delegate.attempts.get(index);
+    }
+
+    /** Every attempt is a fresh, pending future the test completes itself. */
+    static class FakeAiClient implements AiClient {
+        final List<CompletableFuture<String>> attempts = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String generate(String message, String systemPrompt, String model) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<String> generateAsync(AiRequest request) {
+            CompletableFuture<String> attempt = new CompletableFuture<>();
+            attempts.add(attempt);
+            return attempt;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package UsersTest;
+
+import com.example.growth_hungry.security.JwtAuthFilter;
+import com.example.growth_hungry.security.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtAuthFilterTest {
+
+    JwtUtil jwtUtil = mock(JwtUtil.class);
+    JwtAuthFilter filter = new JwtAuthFilter(jwtUtil, Set.of(" Admin@Test.com "));
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void listedEmail_getsAdminRole_othersOnlyUser() throws Exception {
+        assertThat(authorities("admin@test.com")).containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN");
+
+        SecurityContextHolder.clearContext();
+        assertThat(authorities("student@test.com")).containsExactly("ROLE_USER");
+    }
+
+    private Set<String> authorities(String email) throws Exception {
+        when(jwtUtil.isValid("token")).thenReturn(true);
+        when(jwtUtil.getSubject("token")).thenReturn(email);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/batch/sections");
+        request.setServletPath("/api/batch/sections");
+        request.addHeader("Authorization", "Bearer token");
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(auth.getName()).isEqualTo(email);
+        return auth.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,131 @@
+package UsersTest;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.GeminiClient;
+import com.example.growth_hungry.service.ai.AiHttpException;
+import com.example.growth_hungry.service.ai.AiRequest;
+import com.example.growth_hungry.service.ai.RetryingAiClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Real GeminiClient against the stub server, so attempts are HTTP requests and waits are wall-clock time.
+ */
+class RetryingAiClientTest {
+
+    GeminiStubServer stub;
+    GeminiClient gemini;
+    AiProps props = new AiProps();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new GeminiStubServer();
+        props.setBaseUrl(stub.baseUrl());
+        props.setApiKey("test-key");
+        props.setDefaultModel("gemini-2.5-flash");
+        props.setTimeoutMs(5_000);
+        gemini = new GeminiClient(props, HttpClient.newHttpClient(), new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void unavailable_withRetryAfter_isRetriedNoSoonerThanAsked() {
+        stub.failNext(1, 503, 1);
+
+        long start = System.nanoTime();
+        String answer = client(Duration.ofSeconds(5)).generate("hi", null, null);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(answer).isEqualTo("stub answer");
+        assertThat(stub.requestCount()).isEqualTo(2);
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(1_000);
+        assertThat(retries("503")).isEqualTo(1);
+    }
+
+    @Test
+    void retryAfter_beyondTheBudget_failsRightAway() {
+        stub.failNext(1, 503, 30);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> client(Duration.ofSeconds(5)).generate("hi", null, null))
+                .isInstanceOf(AiHttpException.class)
+                .extracting(e -> ((AiHttpException) e).getStatus()).isEqualTo(503);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(stub.requestCount()).isEqualTo(1);
+        assertThat(elapsedMs).isLessThan(1_000);
+        assertThat(exhausted("503", "budget")).isEqualTo(1);
+    }
+
+    @Test
+    void tooManyRequests_backsOffWithinTheJitterCeiling_andStopsAtMaxAttempts() {
+        stub.failNext(10, 429, -1);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> client(Duration.ofSeconds(5)).generate("hi", null, null))
+                .isInstanceOf(AiHttpException.class);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // 3 attempts, waits of at most 250 + 500 ms
+        assertThat(stub.requestCount()).isEqualTo(3);
+        assertThat(elapsedMs).isLessThan(750 + 1_000);
+        assertThat(retries("429")).isEqualTo(2);
+        assertThat(exhausted("429", "attempts")).isEqualTo(1);
+    }
+
+    @Test
+    void callerDeadline_limitsRetriesToo() {
+        stub.failNext(1, 503, 1);
+        List<String> chunks = new ArrayList<>();
+
+        // a 1.5s deadline leaves no full attempt after the 1s Retry-After
+        assertThatThrownBy(() -> client(Duration.ofSeconds(5)).generateStream(
+                AiRequest.of("hi", null, null).withDeadline(Instant.now().plusMillis(1_500)), chunks::add))
+                .isInstanceOf(AiHttpException.class);
+
+        assertThat(stub.streamRequestCount()).isEqualTo(1);
+        assertThat(chunks).isEmpty();
+    }
+
+    @Test
+    void clientError_isNotRetried() {
+        stub.respondWith(400, "bad request");
+
+        assertThatThrownBy(() -> client(Duration.ofSeconds(5)).generate("hi", null, null))
+                .isInstanceOf(AiHttpException.class);
+
+        assertThat(stub.requestCount()).isEqualTo(1);
+        assertThat(registry.find("ai.retry.attempts").counters()).isEmpty();
+    }
+
+    private RetryingAiClient client(Duration budget) {
+        return new RetryingAiClient(gemini, props.getRetry(), budget, registry);
+    }
+
+    private double retries(String status) {
+        Counter c = registry.find("ai.retry.attempts").tag("status", status).counter();
+        return c == null ? 0 : c.count();
+    }
+
+    private double exhausted(String status, String reason) {
+        Counter c = registry.find("ai.retry.exhausted").tag("status", status).tag("reason", reason).counter();
+        return c == null ? 0 : c.count();
+    }
+}
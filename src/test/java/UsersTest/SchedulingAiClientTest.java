@@ -0,0 +1,186 @@
+package UsersTest;
+
+import com.example.growth_hungry.api.AiUnavailableException;
+import com.example.growth_hungry.config.AiConfig;
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.AiClient;
+import com.example.growth_hungry.service.GeminiClient;
+import com.example.growth_hungry.service.ai.AiCaller;
+import com.example.growth_hungry.service.ai.AiPriority;
+import com.example.growth_hungry.service.ai.AiRequest;
+import com.example.growth_hungry.service.ai.SchedulingAiClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * One slot (max-in-flight 1) against a fake delegate, so the dispatch order is observable.
+ */
+class SchedulingAiClientTest {
+
+    SimpleMeterRegistry registry;
+    FakeAiClient delegate;
+    SchedulingAiClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = client(3);
+    }
+
+    private SchedulingAiClient client(int maxQueued) {
+        AiProps.Scheduler props = new AiProps.Scheduler();
+        props.setMaxInFlight(1);
+        props.setMaxQueued(maxQueued);
+
+        registry = new SimpleMeterRegistry();
+        delegate = new FakeAiClient();
+        return new SchedulingAiClient(delegate, props, registry);
+    }
+
+    @Test
+    void heavyUser_doesNotStarveOthers() {
+        // four interactive calls wait behind "busy"
+        client = client(4);
+        client.generateAsync(request("busy", "u0", AiPriority.INTERACTIVE));
+
+        client.generateAsync(request("a1", "heavy", AiPriority.INTERACTIVE));
+        client.generateAsync(request("a2", "heavy", AiPriority.INTERACTIVE));
+        client.generateAsync(request("a3", "heavy", AiPriority.INTERACTIVE));
+        client.generateAsync(request("b1", "light", AiPriority.BACKGROUND));
+        // different class, own queue
+        client.generateAsync(request("c1", "light", AiPriority.INTERACTIVE));
+
+        drain();
+
+        assertThat(delegate.messages()).containsExactly("busy", "a1", "c1", "a2", "a3", "b1");
+    }
+
+    @Test
+    void interactive_goesBeforeEarlierBackground() {
+        client.generateAsync(request("busy", "u0", AiPriority.INTERACTIVE));
+        client.generateAsync(request("job", "system", AiPriority.BACKGROUND));
+        client.generateAsync(request("retry", "u1", AiPriority.RETRY));
+        client.generateAsync(request("chat", "u2", AiPriority.INTERACTIVE));
+
+        drain();
+
+        assertThat(delegate.messages()).containsExactly("busy", "chat", "retry", "job");
+        assertThat(registry.find("ai.scheduler.wait").tag("priority", "background").timer().count()).isEqualTo(1);
+        assertThat(registry.find("ai.scheduler.wait").tag("priority", "interactive").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void resultAndFailure_arePassedThrough() {
+        CompletableFuture<String> ok = client.generateAsync(request("one", "u1", AiPriority.INTERACTIVE));
+        CompletableFuture<String> failed = client.generateAsync(request("two", "u1", AiPriority.INTERACTIVE));
+
+        delegate.attempts.get(0).complete("answer");
+        delegate.attempts.get(1).completeExceptionally(new IllegalStateException("boom"));
+
+        assertThat(ok).isCompletedWithValue("answer");
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(client.inFlightCount()).isZero();
+    }
+
+    @Test
+    void fullQueue_rejects() {
+        client.generateAsync(request("busy", "u0", AiPriority.INTERACTIVE));
+        for (int i = 0; i < 3; i++) client.generateAsync(request("q" + i, "u1", AiPriority.INTERACTIVE));
+
+        assertThatThrownBy(() -> client.generateAsync(request("q3", "u1", AiPriority.INTERACTIVE)))
+                .isInstanceOf(AiUnavailableException.class);
+        // other classes have their own limit
+        assertThatCode(() -> client.generateAsync(request("job", "system", AiPriority.BACKGROUND)))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    void cancelledWhileQueued_isNeverSent() {
+        client.generateAsync(request("busy", "u0", AiPriority.INTERACTIVE));
+        CompletableFuture<String> gaveUp = client.generateAsync(request("gave up", "u1", AiPriority.INTERACTIVE));
+        client.generateAsync(request("next", "u2", AiPriority.INTERACTIVE));
+
+        gaveUp.cancel(true);
+        assertThat(client.queuedCount(AiPriority.INTERACTIVE)).isEqualTo(1);
+
+        drain();
+        assertThat(delegate.messages()).containsExactly("busy", "next");
+    }
+
+    @Test
+    void stream_holdsSlotUntilFinished() {
+        delegate.onStream = () -> {
+            CompletableFuture<String> queued = client.generateAsync(request("after stream", "u2", AiPriority.INTERACTIVE));
+            assertThat(queued).isNotDone();
+            assertThat(delegate.attempts).isEmpty();
+        };
+
+        String text = client.generateStream(request("stream", "u1", AiPriority.INTERACTIVE), chunk -> { });
+
+        assertThat(text).isEqualTo("streamed");
+        assertThat(delegate.messages()).containsExactly("after stream");
+    }
+
+    @Test
+    void moreInFlightThanTheBulkheadAdmits_failsAtStartup() {
+        AiProps props = new AiProps();
+        props.getScheduler().setMaxInFlight(64);
+        props.getResilience().setMaxConcurrentPerModel(32);
+
+        assertThatThrownBy(() -> new AiConfig().aiClient(mock(GeminiClient.class), props, registry))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("ai.scheduler.max-in-flight (64)");
+
+        AiProps defaults = new AiProps();
+        assertThat(defaults.getScheduler().getMaxInFlight())
+                .isLessThanOrEqualTo(defaults.getResilience().getMaxConcurrentPerModel());
+    }
+
+    // completes in-flight attempts one by one until nothing is left
+    private void drain() {
+        for (int i = 0; i < delegate.attempts.size(); i++) {
+            delegate.attempts.get(i).complete("ok");
+        }
+    }
+
+    private static AiRequest request(String message, String user, AiPriority priority) {
+        return AiRequest.of(message, null, null).withCaller(new AiCaller(user, priority));
+    }
+
+    static class FakeAiClient implements AiClient {
+        final List<CompletableFuture<String>> attempts = new CopyOnWriteArrayList<>();
+        final List<AiRequest> requests = new CopyOnWriteArrayList<>();
+        Runnable onStream = () -> { };
+
+        @Override
+        public String generate(String message, String systemPrompt, String model) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<String> generateAsync(AiRequest request) {
+            CompletableFuture<String> attempt = new CompletableFuture<>();
+            requests.add(request);
+            attempts.add(attempt);
+            return attempt;
+        }
+
+        @Override
+        public String generateStream(AiRequest request, Consumer<String> onChunk) {
+            onStream.run();
+            return "streamed";
+        }
+
+        List<String> messages() {
+            return requests.stream().map(AiRequest::lastUserText).toList();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package UsersTest;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.ai.SectionAnswerCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SectionAnswerCacheTest {
+
+    private static SectionAnswerCache cache(int maxEntries, long ttlSeconds) {
+        AiProps props = new AiProps();
+        props.setDefaultModel("gemini-2.5-flash");
+        props.getCache().setMaxEntries(maxEntries);
+        props.getCache().setTtlSeconds(ttlSeconds);
+        return new SectionAnswerCache(props, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void normalizedQuestion_sameContent_hits() {
+        SectionAnswerCache cache = cache(10, 60);
+
+        cache.put(cache.keyFor(1L, "content", null, "What is a closure?"), "A function + its scope");
+
+        assertEquals("A function + its scope",
+                cache.get(cache.keyFor(1L, "content", null, "  what   is a CLOSURE ")).orElseThrow());
+        assertEquals(1, cache.hitCount());
+        assertEquals(0, cache.missCount());
+    }
+
+    @Test
+    void changedContent_misses() {
+        SectionAnswerCache cache = cache(10, 60);
+        cache.put(cache.keyFor(1L, "old content", null, "q"), "a");
+
+        assertTrue(cache.get(cache.keyFor(1L, "new content", null, "q")).isEmpty());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void lru_evictsLeastRecentlyUsed() {
+        SectionAnswerCache cache = cache(2, 60);
+        SectionAnswerCache.Key a = cache.keyFor(1L, "c", null, "a");
+        SectionAnswerCache.Key b = cache.keyFor(1L, "c", null, "b");
+        SectionAnswerCache.Key c = cache.keyFor(1L, "c", null, "c");
+
+        cache.put(a, "A");
+        cache.put(b, "B");
+        cache.get(a);          // a is now most recent
+        cache.put(c, "C");     // evicts b
+
+        assertTrue(cache.get(a).isPresent());
+        assertTrue(cache.get(b).isEmpty());
+        assertTrue(cache.get(c).isPresent());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    void ttlZero_entriesExpireImmediately() {
+        SectionAnswerCache cache = cache(10, 0);
+        SectionAnswerCache.Key k = cache.keyFor(1L, "c", null, "q");
+        cache.put(k, "A");
+
+        assertTrue(cache.get(k).isEmpty());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    void invalidateSection_dropsOnlyThatSection() {
+        SectionAnswerCache cache = cache(10, 60);
+        cache.put(cache.keyFor(1L, "c", null, "q"), "A");
+        cache.put(cache.keyFor(2L, "c", null, "q"), "B");
+
+        cache.invalidateSection(1L);
+
+        assertTrue(cache.get(cache.keyFor(1L, "c", null, "q")).isEmpty());
+        assertEquals("B", cache.get(cache.keyFor(2L, "c", null, "q")).orElseThrow());
+    }
+}
@@ -0,0 +1,110 @@
+package UsersTest;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.ai.SectionChunkIndex;
+import com.example.growth_hungry.service.ai.SectionChunkIndex.Passage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SectionChunkIndexTest {
+
+    static final String SECTION = """
+            # Functions
+
+            Functions are declared with the fun keyword. Parameters have types and a function may return a value.
+
+            ## Closures
+
+            A closure captures variables from the enclosing scope and keeps them alive after the scope ends.
+
+            ```kotlin
+            val counter = run {
+
+                var count = 0
+                { count++ }
+            }
+            ```
+
+            ## Recursion
+
+            A recursive function calls itself. Every recursion needs a base case, otherwise the stack overflows.
+            """;
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void split_keepsHeadingsAndCodeFences() {
+        List<Passage> passages = SectionChunkIndex.split(SECTION, 60);
+
+        assertThat(passages).extracting(Passage::text)
+                .anySatisfy(t -> assertThat(t).startsWith("## Closures").contains("```kotlin").contains("{ count++ }"))
+                .allSatisfy(t -> assertThat(t).doesNotStartWith("```"))
+                .noneSatisfy(t -> assertThat(t).isEqualTo("# Functions"));
+        assertThat(passages).extracting(Passage::position).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void split_codeBlockLongerThanAPassage_everyPieceIsFenced() {
+        StringBuilder code = new StringBuilder("## Loops\n\n```java\n");
+        for (int i = 0; i < 40; i++) code.append("System.out.println(\"line ").append(i).append("\");\n");
+        code.append("```\n");
+
+        List<Passage> passages = SectionChunkIndex.split(code.toString(), 60);
+
+        assertThat(passages).hasSizeGreaterThan(1).allSatisfy(p -> assertThat(p.text())
+                .startsWith("## Loops\n\n```java\n")
+                .endsWith("\n```")
+                .satisfies(t -> assertThat(t.split("```", -1)).hasSize(3)));
+        assertThat(String.join("\n", passages.stream().map(Passage::text).toList()))
+                .contains("\"line 0\"", "\"line 39\"");
+    }
+
+    @Test
+    void select_ranksMatchingPassageFirst_withinBudget() {
+        SectionChunkIndex index = index(60, 50);
+
+        List<Passage> picked = index.select(1L, SECTION, "what do closures capture?");
+
+        assertThat(picked).hasSize(1);
+        assertThat(picked.get(0).text()).startsWith("## Closures");
+    }
+
+    @Test
+    void select_noMatch_fallsBackToBeginning() {
+        SectionChunkIndex index = index(60, 40);
+
+        List<Passage> picked = index.select(1L, SECTION, "zebra");
+
+        assertThat(picked.get(0).position()).isZero();
+    }
+
+    @Test
+    void excerpt_shortSection_isEmpty_changedContent_isReindexed() {
+        AiProps props = props(60, 1_000);
+        props.getRetrieval().setMinSectionTokens(10_000);
+        assertThat(new SectionChunkIndex(props, registry).excerpt(1L, SECTION, "closures")).isEmpty();
+
+        SectionChunkIndex index = index(60, 1_000);
+        assertThat(index.excerpt(1L, SECTION, "recursion")).get().asString().contains("base case");
+
+        String edited = SECTION.replace("base case", "stop condition");
+        assertThat(index.excerpt(1L, edited, "recursion")).get().asString().contains("stop condition");
+        assertThat(registry.find("ai.retrieval.index.builds").counter().count()).isEqualTo(2);
+    }
+
+    private SectionChunkIndex index(int chunkTokens, int budgetTokens) {
+        return new SectionChunkIndex(props(chunkTokens, budgetTokens), registry);
+    }
+
+    private static AiProps props(int chunkTokens, int budgetTokens) {
+        AiProps props = new AiProps();
+        props.getRetrieval().setChunkTokens(chunkTokens);
+        props.getRetrieval().setBudgetTokens(budgetTokens);
+        props.getRetrieval().setMinSectionTokens(0);
+        return props;
+    }
+}
@@ -0,0 +1,90 @@
+package UsersTest;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.ai.SectionAnswerCache;
+import com.example.growth_hungry.service.ai.SemanticAnswerCache;
+import com.example.growth_hungry.service.ai.VectorIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SemanticAnswerCacheTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    AiProps props = new AiProps();
+
+    @BeforeEach
+    void setUp() {
+        props.getSemanticCache().setEnabled(true);
+    }
+
+    @Test
+    void paraphrase_hits_differentTopic_misses() {
+        SemanticAnswerCache cache = cache();
+        cache.put(cache.probe(key(1L, "What is a closure?")), "closure answer");
+        cache.put(cache.probe(key(1L, "closures in Java")), "java answer");
+
+        assertThat(cache.find(cache.probe(key(1L, "explain closures")))).contains("closure answer");
+        assertThat(cache.find(cache.probe(key(1L, "closures in Kotlin")))).isEmpty();
+        assertThat(registry.find("ai.semantic.cache.hits").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.find("ai.semantic.cache.misses").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void answers_doNotCrossSections_andAreDroppedOnInvalidate() {
+        SemanticAnswerCache cache = cache();
+        cache.put(cache.probe(key(1L, "what is a closure")), "closure answer");
+
+        assertThat(cache.find(cache.probe(key(2L, "what is a closure")))).isEmpty();
+
+        cache.invalidateSection(1L);
+        assertThat(cache.find(cache.probe(key(1L, "what is a closure")))).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void disabled_probeIsNull_andNothingIsStored() {
+        props.getSemanticCache().setEnabled(false);
+        SemanticAnswerCache cache = cache();
+
+        SemanticAnswerCache.Probe probe = cache.probe(key(1L, "what is a closure"));
+        cache.put(probe, "answer");
+
+        assertThat(probe).isNull();
+        assertThat(cache.find(probe)).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void enabled_withoutEmbeddingProvider_staysOff() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(props, null, registry);
+
+        assertThat(cache.probe(key(1L, "what is a closure"))).isNull();
+    }
+
+    @Test
+    void vectorIndex_full_replacesLeastRecentlyUsed() {
+        VectorIndex<String> index = new VectorIndex<>(3, 2);
+        index.add(new float[]{1, 0, 0}, "x");
+        index.add(new float[]{0, 1, 0}, "y");
+        assertThat(index.nearest(new float[]{2, 0, 0}).value()).isEqualTo("x");
+
+        index.add(new float[]{0, 0, 1}, "z");
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.nearest(new float[]{0, 1, 0}).similarity()).isLessThan(0.5f);
+        VectorIndex.Match<String> match = index.nearest(new float[]{1, 0, 0});
+        assertThat(match.value()).isEqualTo("x");
+        assertThat(match.similarity()).isCloseTo(1f, within(1e-6f));
+    }
+
+    private SemanticAnswerCache cache() {
+        return new SemanticAnswerCache(props, new HashingEmbeddingProvider(512), registry);
+    }
+
+    private static SectionAnswerCache.Key key(Long sectionId, String question) {
+        return new SectionAnswerCache.Key(sectionId, "hash", "gemini-2.5-flash", question);
+    }
+}
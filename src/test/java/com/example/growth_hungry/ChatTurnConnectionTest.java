@@ -0,0 +1,123 @@
+package com.example.growth_hungry;
+
+import com.example.growth_hungry.dto.ChatRequest;
+import com.example.growth_hungry.dto.ChatResponse;
+import com.example.growth_hungry.model.Course;
+import com.example.growth_hungry.model.Section;
+import com.example.growth_hungry.model.User;
+import com.example.growth_hungry.repository.ChatSessionRepository;
+import com.example.growth_hungry.repository.CourseRepository;
+import com.example.growth_hungry.repository.SectionRepository;
+import com.example.growth_hungry.repository.UserRepository;
+import com.example.growth_hungry.service.AiClient;
+import com.example.growth_hungry.service.ChatService;
+import com.example.growth_hungry.service.GeneralChatService;
+import com.example.growth_hungry.service.ai.AiRequest;
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * A chat turn must not hold a JDBC connection (or a transaction) while the model is answering.
+ * The mocked AI call looks at the Hikari pool at the moment it is invoked.
+ *
+ * NOT @Transactional on purpose: a test transaction would itself keep a connection checked out.
+ */
+@SpringBootTest
+class ChatTurnConnectionTest {
+
+    @Autowired GeneralChatService generalChatService;
+    @Autowired ChatService chatService;
+    @Autowired UserRepository userRepository;
+    @Autowired CourseRepository courseRepository;
+    @Autowired SectionRepository sectionRepository;
+    @Autowired ChatSessionRepository sessionRepo;
+    @Autowired DataSource dataSource;
+
+    @MockitoBean AiClient aiClient;
+
+    private User user;
+    private Course course;
+    private Section section;
+
+    // -1 = AI was not called
+    private final AtomicInteger activeConnectionsDuringCall = new AtomicInteger(-1);
+    private final AtomicReference<Boolean> txActiveDuringCall = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        User u = new User();
+        u.setUsername("conn-" + UUID.randomUUID());
+        u.setEmail(u.getUsername() + "@test.com");
+        u.setPassword("secret");
+        user = userRepository.save(u);
+
+        course = courseRepository.save(new Course(null, "Course", "for connection test", new HashSet<>()));
+        section = sectionRepository.save(new Section("Closures capture variables.", course));
+
+        // section chat sends a single prompt, general chat the whole conversation
+        when(aiClient.generateAsync(anyString(), any(), any())).thenAnswer(inv -> recordCall());
+        when(aiClient.generateAsync(any(AiRequest.class))).thenAnswer(inv -> recordCall());
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionRepo.findAllByUser_IdOrderByUpdatedAtDesc(user.getId()).forEach(sessionRepo::delete);
+        sectionRepository.delete(section);
+        courseRepository.delete(course);
+        userRepository.delete(user);
+    }
+
+    @Test
+    void generalChat_noConnectionCheckedOutDuringAiCall() {
+        ChatRequest req = new ChatRequest();
+        req.setMessage("hello");
+
+        ChatResponse resp = generalChatService.chat(req, user.getEmail());
+
+        assertEquals("answer", resp.getReply());
+        assertEquals(0, activeConnectionsDuringCall.get());
+        assertFalse(txActiveDuringCall.get());
+    }
+
+    @Test
+    void sectionChat_noConnectionCheckedOutDuringAiCall() {
+        ChatRequest req = new ChatRequest();
+        req.setMessage("what is a closure?");
+
+        ChatResponse resp = chatService.chatInSection(section.getId(), req, user.getEmail());
+
+        assertEquals("answer", resp.getReply());
+        assertEquals(0, activeConnectionsDuringCall.get());
+        assertFalse(txActiveDuringCall.get());
+    }
+
+    private CompletableFuture<String> recordCall() {
+        activeConnectionsDuringCall.set(activeConnections());
+        txActiveDuringCall.set(TransactionSynchronizationManager.isActualTransactionActive());
+        return CompletableFuture.completedFuture("answer");
+    }
+
+    private int activeConnections() {
+        try {
+            return dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean().getActiveConnections();
+        } catch (Exception e) {
+            throw new IllegalStateException("Hikari pool is not available", e);
+        }
+    }
+}
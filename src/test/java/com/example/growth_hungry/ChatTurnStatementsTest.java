@@ -0,0 +1,182 @@
+package com.example.growth_hungry;
+
+import com.example.growth_hungry.dto.ChatRequest;
+import com.example.growth_hungry.dto.ChatResponse;
+import com.example.growth_hungry.model.User;
+import com.example.growth_hungry.repository.ChatSessionRepository;
+import com.example.growth_hungry.repository.UserRepository;
+import com.example.growth_hungry.service.AiClient;
+import com.example.growth_hungry.service.GeneralChatService;
+import com.example.growth_hungry.service.ai.AiRequest;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Locks in the JDBC round trips of a general chat turn. Every execute / executeBatch on the test
+ * thread is recorded as "verb table" ("x2" for a batch of two), so a lost batch or an extra
+ * query shows up as a different list.
+ */
+@SpringBootTest
+class ChatTurnStatementsTest {
+
+    private static final Pattern TABLE = Pattern.compile("\\b(?:into|update|from)\\s+(?:\\w+\\.)?(\\w+)");
+    private static final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    private static volatile Thread recording;
+
+    @TestConfiguration
+    static class CountingDataSourceConfig {
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource ds ? proxy(DataSource.class, ds, null) : bean;
+                }
+            };
+        }
+    }
+
+    @Autowired GeneralChatService generalChatService;
+    @Autowired UserRepository userRepository;
+    @Autowired ChatSessionRepository sessionRepo;
+
+    @MockitoBean AiClient aiClient;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        User u = new User();
+        u.setUsername("stmt-" + UUID.randomUUID());
+        u.setEmail(u.getUsername() + "@test.com");
+        u.setPassword("secret");
+        user = userRepository.save(u);
+
+        when(aiClient.generateAsync(any(AiRequest.class))).thenReturn(CompletableFuture.completedFuture("answer"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        recording = null;
+        sessionRepo.findAllByUser_IdOrderByUpdatedAtDesc(user.getId()).forEach(sessionRepo::delete);
+        userRepository.delete(user);
+    }
+
+    @Test
+    void newSession_turnWritesSessionAndBothMessagesInOneFlush() {
+        // sequences fetch their first blocks here, not in the measured turn
+        turn(null);
+
+        List<String> statements = record(() -> turn(null));
+
+        assertThat(statements).containsExactly(
+                "select users",
+                "insert chat_session",
+                "insert chat_messages x2");
+    }
+
+    @Test
+    void existingSession_turnIsThreeReadsAndTwoWrites() {
+        Long sessionId = turn(null).getChatSessionId();
+
+        List<String> statements = record(() -> turn(sessionId));
+
+        // user, session, one history page; then both messages in one batch and the updated_at bump
+        assertThat(statements.subList(0, 3)).containsExactly(
+                "select users",
+                "select chat_session",
+                "select chat_messages");
+        assertThat(statements.subList(3, statements.size())).containsExactlyInAnyOrder(
+                "insert chat_messages x2",
+                "update chat_session");
+    }
+
+    private ChatResponse turn(Long sessionId) {
+        ChatRequest req = new ChatRequest();
+        req.setMessage("hello");
+        req.setChatSessionId(sessionId);
+        return generalChatService.chat(req, user.getEmail());
+    }
+
+    private static List<String> record(Runnable action) {
+        executed.clear();
+        recording = Thread.currentThread();
+        try {
+            action.run();
+        } finally {
+            recording = null;
+        }
+        return List.copyOf(executed);
+    }
+
+    // ---- JDBC proxies ----
+
+    /** Wraps {@code target}; connections and statements it hands out are wrapped too. */
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, String sql) {
+        int[] batched = new int[1];
+        InvocationHandler handler = (p, method, args) -> {
+            String name = method.getName();
+            if (name.equals("addBatch") && sql != null) batched[0]++;
+            if (name.startsWith("execute") && Thread.currentThread() == recording) {
+                String statementSql = sql != null ? sql : (args != null && args.length > 0 ? (String) args[0] : "");
+                executed.add(describe(statementSql, name.contains("Batch") ? batched[0] : 1));
+            }
+            if (name.equals("executeBatch") || name.equals("executeLargeBatch") || name.equals("clearBatch")) {
+                batched[0] = 0;
+            }
+
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof PreparedStatement ps && method.getReturnType() == PreparedStatement.class) {
+                return proxy(PreparedStatement.class, ps, (String) args[0]);
+            }
+            if (result instanceof Statement st && method.getReturnType() == Statement.class) {
+                return proxy(Statement.class, st, null);
+            }
+            if (result instanceof Connection c && method.getReturnType() == Connection.class) {
+                return proxy(Connection.class, c, null);
+            }
+            return result;
+        };
+        return (T) Proxy.newProxyInstance(ChatTurnStatementsTest.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static String describe(String sql, int count) {
+        String s = sql.trim().toLowerCase(Locale.ROOT);
+        String verb = s.split("\\s+", 2)[0];
+        Matcher m = TABLE.matcher(s);
+        String table = m.find() ? " " + m.group(1) : "";
+        return verb + table + (count > 1 ? " x" + count : "");
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.growth_hungry;
+
+import com.example.growth_hungry.model.batch.AiBatchItemStatus;
+import com.example.growth_hungry.repository.AiBatchItemRepository;
+import com.example.growth_hungry.repository.ChatMessageRepository;
+import com.example.growth_hungry.repository.ChatSessionRepository;
+import com.example.growth_hungry.repository.SectionRepository;
+import com.example.growth_hungry.repository.UserRepository;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * EXPLAINs the SQL that the repository queries of the hot paths really send (captured with their
+ * bind values) and fails when one of them is planned without an index. Plans are taken with
+ * enable_seqscan off: the test tables are tiny, and there a sequential scan would win even with
+ * a perfect index, but a query that has no usable index still gets one.
+ */
+@SpringBootTest
+class HotQueryIndexTest {
+
+    private static final List<Captured> captured = Collections.synchronizedList(new ArrayList<>());
+    private static volatile Thread capturing;
+
+    @TestConfiguration
+    static class CapturingDataSourceConfig {
+        @Bean
+        static BeanPostProcessor capturingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource ds ? proxy(DataSource.class, ds, null) : bean;
+                }
+            };
+        }
+    }
+
+    @Autowired UserRepository userRepository;
+    @Autowired ChatSessionRepository sessionRepo;
+    @Autowired ChatMessageRepository messageRepo;
+    @Autowired SectionRepository sectionRepository;
+    @Autowired AiBatchItemRepository itemRepo;
+    @Autowired DataSource dataSource;
+
+    @TestFactory
+    Stream<DynamicTest> hotQueriesUseAnIndex() {
+        Instant at = Instant.parse("2025-01-01T00:00:00Z");
+        return Stream.of(
+                // every authenticated request starts with the user lookup
+                hot("users.findByEmail", "uk_users_email", () -> userRepository.findByEmail("a@test.com")),
+                hot("users.existsByEmail", "uk_users_email", () -> userRepository.existsByEmail("a@test.com")),
+                hot("users.findByUsername", null, () -> userRepository.findByUsername("a")),
+
+                hot("chat_session.findByIdAndUser_Id", null, () -> sessionRepo.findByIdAndUser_Id(1L, 1L)),
+                hot("chat_session.findByUser_IdAndSectionId", "idx_chat_session_user_section",
+                        () -> sessionRepo.findByUser_IdAndSectionId(1L, 1L)),
+                hot("chat_session.findAllByUser_IdOrderByUpdatedAtDesc", null,
+                        () -> sessionRepo.findAllByUser_IdOrderByUpdatedAtDesc(1L)),
+                hot("chat_session.findByUser_IdOrderByUpdatedAtDescIdDesc", "idx_chat_session_user_updated",
+                        () -> sessionRepo.findByUser_IdOrderByUpdatedAtDescIdDesc(1L, Limit.of(51))),
+                hot("chat_session.findPageBefore", "idx_chat_session_user_updated",
+                        () -> sessionRepo.findPageBefore(1L, at, 1L, Limit.of(51))),
+                hot("chat_session.findPageAfter", "idx_chat_session_user_updated",
+                        () -> sessionRepo.findPageAfter(1L, at, 1L, Limit.of(51))),
+
+                hot("chat_messages.findLatestDtos", "idx_chat_messages_session_created",
+                        () -> messageRepo.findLatestDtos(1L, Limit.of(50))),
+                hot("chat_messages.findBySession_IdOrderByCreatedAtDescIdDesc", "idx_chat_messages_session_created",
+                        () -> messageRepo.findBySession_IdOrderByCreatedAtDescIdDesc(1L, Limit.of(51))),
+                hot("chat_messages.findPageBefore", "idx_chat_messages_session_created",
+                        () -> messageRepo.findPageBefore(1L, at, 1L, Limit.of(51))),
+                hot("chat_messages.findPageAfter", "idx_chat_messages_session_created",
+                        () -> messageRepo.findPageAfter(1L, at, 1L, Limit.of(51))),
+                hot("chat_messages.findBySession_IdOrderByCreatedAtAsc", "idx_chat_messages_session_created",
+                        () -> messageRepo.findBySession_IdOrderByCreatedAtAsc(1L)),
+                // prompt history pages
+                hot("chat_messages.findBySession_IdOrderByIdDesc", null,
+                        () -> messageRepo.findBySession_IdOrderByIdDesc(1L, Limit.of(8))),
+                hot("chat_messages.findBySession_IdAndIdLessThanOrderByIdDesc", null,
+                        () -> messageRepo.findBySession_IdAndIdLessThanOrderByIdDesc(1L, 100L, Limit.of(16))),
+
+                hot("section.findByCourseId", "idx_section_course", () -> sectionRepository.findByCourseId(1L)),
+                hot("section.findByIdGreaterThanOrderByIdAsc", null,
+                        () -> sectionRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(100))),
+
+                hot("ai_batch_items.findByJob_IdAndStatusAndIdGreaterThanOrderByIdAsc", "idx_ai_batch_items_job_status",
+                        () -> itemRepo.findByJob_IdAndStatusAndIdGreaterThanOrderByIdAsc(1L, AiBatchItemStatus.PENDING, 0L, Limit.of(100))),
+                hot("ai_batch_items.countByJob_IdAndStatus", "idx_ai_batch_items_job_status",
+                        () -> itemRepo.countByJob_IdAndStatus(1L, AiBatchItemStatus.DONE)));
+    }
+
+    /** {@code index}: the index the plan has to name; {@code null} when any index will do. */
+    private DynamicTest hot(String name, String index, Runnable query) {
+        return DynamicTest.dynamicTest(name, () -> {
+            List<Captured> selects = capture(query).stream()
+                    .filter(c -> c.sql().trim().toLowerCase(Locale.ROOT).startsWith("select"))
+                    .toList();
+            assertThat(selects).as("queries sent by %s", name).isNotEmpty();
+
+            for (Captured select : selects) {
+                String plan = explain(select);
+                assertThat(plan).as("plan of %s:%n%s", select.sql(), plan)
+                        .doesNotContain("Seq Scan")
+                        .containsPattern("Index (Only )?Scan|Bitmap Index Scan");
+                if (index != null) assertThat(plan).as("plan of %s", select.sql()).contains(index);
+            }
+        });
+    }
+
+    private static List<Captured> capture(Runnable query) {
+        captured.clear();
+        capturing = Thread.currentThread();
+        try {
+            query.run();
+        } finally {
+            capturing = null;
+        }
+        return List.copyOf(captured);
+    }
+
+    private String explain(Captured query) throws Exception {
+        try (Connection c = dataSource.getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try {
+                try (Statement st = c.createStatement()) {
+                    st.execute("set local enable_seqscan = off");
+                }
+                StringBuilder plan = new StringBuilder();
+                try (PreparedStatement ps = c.prepareStatement("explain " + query.sql())) {
+                    for (Bind bind : query.binds()) bind.method().invoke(ps, bind.args());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) plan.append(rs.getString(1)).append('\n');
+                    }
+                }
+                return plan.toString();
+            } finally {
+                c.rollback();
+                c.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private record Bind(Method method, Object[] args) {
+    }
+
+    private record Captured(String sql, List<Bind> binds) {
+    }
+
+    // ---- JDBC proxies ----
+
+    /** Wraps {@code target}; connections and prepared statements it hands out are wrapped too. */
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, String sql) {
+        List<Bind> binds = new ArrayList<>();
+        InvocationHandler handler = (p, method, args) -> {
+            String name = method.getName();
+            if (sql != null && name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                binds.add(new Bind(method, args.clone()));
+            }
+            if (sql != null && name.equals("clearParameters")) binds.clear();
+            if (sql != null && name.startsWith("execute") && Thread.currentThread() == capturing) {
+                captured.add(new Captured(sql, List.copyOf(binds)));
+            }
+
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof PreparedStatement ps && method.getReturnType() == PreparedStatement.class) {
+                return proxy(PreparedStatement.class, ps, (String) args[0]);
+            }
+            if (result instanceof Connection c && method.getReturnType() == Connection.class) {
+                return proxy(Connection.class, c, null);
+            }
+            return result;
+        };
+        return (T) Proxy.newProxyInstance(HotQueryIndexTest.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.growth_hungry.bench;
+
+import UsersTest.GeminiStubServer;
+import com.example.growth_hungry.api.AiOverloadedException;
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.GeminiClient;
+import com.example.growth_hungry.service.ai.AdaptiveLimitAiClient;
+import com.example.growth_hungry.service.ai.AdaptiveLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Closed-loop simulation of the adaptive limit against a real HTTP stub: 60 callers hammer a
+ * stub whose latency goes 20 ms -> 200 ms -> 20 ms. The limit has to grow while the provider is
+ * fast, collapse (and shed) when it slows down, and grow again after it recovers.
+ *
+ * Free-running and wall-clock driven, so it needs a few free cores; AdaptiveLimitAiClientTest
+ * checks the same against the stub in fixed rounds. Opt-in:
+ * {@code mvn test -Dtest=AdaptiveLimitSimulationBenchmark -Dbenchmarks=true}
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class AdaptiveLimitSimulationBenchmark {
+
+    private static final int WORKERS = 60;
+
+    GeminiStubServer stub;
+    ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    volatile boolean running = true;
+
+    @AfterEach
+    void tearDown() {
+        running = false;
+        workers.shutdownNow();
+        if (stub != null) stub.close();
+    }
+
+    @Test
+    void simulation_followsProviderLatency() throws Exception {
+        stub = new GeminiStubServer();
+        AtomicLong baseLatency = new AtomicLong(20);
+        stub.latency(() -> baseLatency.get() + ThreadLocalRandom.current().nextLong(5));
+
+        AiProps props = new AiProps();
+        props.setBaseUrl(stub.baseUrl());
+        props.setApiKey("test-key");
+        props.setDefaultModel("gemini-2.5-flash");
+        props.getResilience().setMaxConcurrentPerModel(1_000);
+
+        AiProps.AdaptiveLimit limitProps = new AiProps.AdaptiveLimit();
+        limitProps.setInitialLimit(10);
+        limitProps.setMinLimit(2);
+        limitProps.setMaxLimit(100);
+        limitProps.setLongWindow(50);
+        AdaptiveLimiter limiter = new AdaptiveLimiter(limitProps);
+        AdaptiveLimitAiClient client = new AdaptiveLimitAiClient(
+                new GeminiClient(props, HttpClient.newHttpClient(), new ObjectMapper(), new SimpleMeterRegistry()),
+                limiter,
+                new SimpleMeterRegistry());
+
+        AtomicInteger errors = new AtomicInteger();
+        for (int i = 0; i < WORKERS; i++) {
+            workers.submit(() -> {
+                while (running) {
+                    try {
+                        client.generate("q", null, null);
+                    } catch (AiOverloadedException e) {
+                        sleep(5);
+                    } catch (RuntimeException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        sleep(1_500);
+        int fastLimit = limiter.limit();
+        System.out.printf("%nlimit while fast: %d%n", fastLimit);
+        assertThat(fastLimit).as("grows while the provider is fast").isGreaterThan(10);
+
+        long shedBefore = client.shedCount();
+        baseLatency.set(200);
+        int slowMin = minLimitDuring(1_500, limiter);
+        System.out.printf("lowest limit while slow: %d, shed: %d%n", slowMin, client.shedCount() - shedBefore);
+        assertThat(slowMin).as("collapses when the provider slows down").isLessThan(fastLimit / 2);
+        assertThat(client.shedCount()).as("sheds instead of queuing").isGreaterThan(shedBefore);
+
+        baseLatency.set(20);
+        sleep(1_500);
+        System.out.printf("limit after recovery: %d%n", limiter.limit());
+        assertThat(limiter.limit()).as("recovers").isGreaterThan(slowMin);
+        assertThat(errors.get()).isZero();
+    }
+
+    private static int minLimitDuring(long millis, AdaptiveLimiter limiter) {
+        int min = Integer.MAX_VALUE;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (System.nanoTime() < deadline) {
+            min = Math.min(min, limiter.limit());
+            sleep(10);
+        }
+        return min;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
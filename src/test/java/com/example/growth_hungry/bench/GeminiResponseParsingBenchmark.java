@@ -0,0 +1,107 @@
+package com.example.growth_hungry.bench;
+
+import com.example.growth_hungry.service.ai.GeminiTextBodySubscriber;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation per parsed generateContent response: the old path (ofString + readTree)
+ * against {@link GeminiTextBodySubscriber}. Both get the same body in 16 KB buffers,
+ * like the HTTP client delivers it. Compare {@code gc.alloc.rate.norm} (bytes/op).
+ *
+ * Opt-in: {@code mvn test -Dtest=GeminiResponseParsingBenchmark -Dbenchmarks=true}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeminiResponseParsingBenchmark {
+
+    private static final int CHUNK = 16 * 1024;
+    private static final Flow.Subscription NO_OP = new Flow.Subscription() {
+        public void request(long n) { }
+        public void cancel() { }
+    };
+
+    @Param({"4096", "65536"})
+    public int answerChars;
+
+    private final ObjectMapper om = new ObjectMapper();
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        StringBuilder answer = new StringBuilder(answerChars);
+        while (answer.length() < answerChars) answer.append("Closures capture variables from scope. ");
+        answer.setLength(answerChars);
+
+        // two parts + usage metadata, roughly what the API returns
+        int half = answerChars / 2;
+        String json = "{\"candidates\":[{\"content\":{\"role\":\"model\",\"parts\":["
+                + "{\"text\":\"" + answer.substring(0, half) + "\"},"
+                + "{\"text\":\"" + answer.substring(half) + "\"}]},"
+                + "\"finishReason\":\"STOP\",\"index\":0}],"
+                + "\"usageMetadata\":{\"promptTokenCount\":812,\"candidatesTokenCount\":" + answerChars / 4 + "},"
+                + "\"modelVersion\":\"gemini-2.5-flash\"}";
+        body = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String stringAndTree() throws Exception {
+        String raw = feed(HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8));
+        JsonNode parts = om.readTree(raw).at("/candidates/0/content/parts");
+        StringBuilder sb = new StringBuilder();
+        for (JsonNode p : parts) sb.append(p.path("text").asText(""));
+        return sb.toString().trim();
+    }
+
+    @Benchmark
+    public String streaming() throws Exception {
+        return feed(new GeminiTextBodySubscriber(Long.MAX_VALUE)).trim();
+    }
+
+    private String feed(HttpResponse.BodySubscriber<String> subscriber) throws Exception {
+        subscriber.onSubscribe(NO_OP);
+        for (int off = 0; off < body.length; off += CHUNK) {
+            subscriber.onNext(List.of(ByteBuffer.wrap(body, off, Math.min(CHUNK, body.length - off))));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().get();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void run() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(GeminiResponseParsingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
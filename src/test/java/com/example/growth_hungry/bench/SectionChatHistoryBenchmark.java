@@ -0,0 +1,145 @@
+package com.example.growth_hungry.bench;
+
+import com.example.growth_hungry.dto.ChatResponse;
+import com.example.growth_hungry.model.User;
+import com.example.growth_hungry.model.chat.ChatSession;
+import com.example.growth_hungry.repository.ChatMessageRepository;
+import com.example.growth_hungry.repository.ChatSessionRepository;
+import com.example.growth_hungry.repository.UserRepository;
+import com.example.growth_hungry.service.ChatService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Section chat history (GET /api/chat/sections/{id}) against sessions of 100, 10k and 100k
+ * messages in the real database. The last-N query reads N index entries whatever the session
+ * size, so its latency has to stay flat; the whole-history read it replaced is timed next to
+ * it for comparison.
+ *
+ * Seeds its sessions with one generate_series insert each and deletes them afterwards. Needs the
+ * database of the other {@code @SpringBootTest} classes. Opt-in:
+ * {@code mvn test -Dtest=SectionChatHistoryBenchmark -Dbenchmarks=true}
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class SectionChatHistoryBenchmark {
+
+    private static final int[] SIZES = {100, 10_000, 100_000};
+    private static final int WARMUP = 200;
+    private static final int ROUNDS = 1_000;
+
+    @Autowired ChatService chatService;
+    @Autowired ChatMessageRepository messageRepo;
+    @Autowired ChatSessionRepository sessionRepo;
+    @Autowired UserRepository userRepository;
+    @Autowired JdbcTemplate jdbc;
+
+    private User user;
+    // messages in the session -> session id
+    private final Map<Integer, Long> sessions = new LinkedHashMap<>();
+
+    @DynamicPropertySource
+    static void quiet(DynamicPropertyRegistry registry) {
+        // SQL logging would dominate the numbers
+        registry.add("spring.jpa.show-sql", () -> "false");
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Long id : sessions.values()) {
+            jdbc.update("delete from chat_messages where session_id = ?", id);
+            jdbc.update("delete from chat_session where id = ?", id);
+        }
+        if (user != null) userRepository.delete(user);
+    }
+
+    @Test
+    void lastN_staysFlatAsTheSessionGrows() {
+        User u = new User();
+        u.setUsername("bench-" + UUID.randomUUID());
+        u.setEmail(u.getUsername() + "@test.com");
+        u.setPassword("secret");
+        user = userRepository.save(u);
+
+        for (int size : SIZES) seed(size);
+        // fresh statistics, or the planner may not pick the index for the biggest session
+        jdbc.execute("analyze chat_messages");
+
+        String plan = String.join("\n", jdbc.queryForList(
+                "explain select id, role, content, created_at from chat_messages where session_id = ? "
+                        + "order by created_at desc, id desc limit 50", String.class, sessions.get(100_000)));
+        System.out.printf("%nPlan for the last-50 query on the 100k session:%n%s%n", plan);
+
+        System.out.printf("%n%-10s %12s %12s %16s%n", "messages", "p50 us", "p99 us", "whole read us");
+        Map<Integer, Long> medians = new LinkedHashMap<>();
+        for (int size : SIZES) {
+            long[] micros = time(() -> chatService.getSectionChat(sectionId(size), user.getEmail()));
+            long sessionId = sessions.get(size);
+            // the old path: every row as an entity, then the tail of the list
+            long whole = timeOnce(() -> messageRepo.findBySession_IdOrderByCreatedAtAsc(sessionId).size());
+            medians.put(size, micros[micros.length / 2]);
+            System.out.printf("%-10d %12d %12d %16d%n", size, micros[micros.length / 2],
+                    micros[micros.length * 99 / 100], whole);
+        }
+
+        ChatResponse resp = chatService.getSectionChat(sectionId(100_000), user.getEmail());
+        assertThat(resp.getMessages()).hasSize(50);
+        assertThat(resp.getMessages().get(49).getContent()).startsWith("message 100000 ");
+        assertThat(plan).contains("idx_chat_messages_session_created");
+        // flat: 1000x the rows may not cost more than a few times the smallest session
+        assertThat(medians.get(100_000)).isLessThan(medians.get(100) * 3 + 1_000);
+    }
+
+    private static long sectionId(int size) {
+        return 900_000_000L + size;
+    }
+
+    private void seed(int size) {
+        ChatSession session = new ChatSession("bench " + size, user, "gemini-2.5-flash");
+        session.setSectionId(sectionId(size));
+        session = sessionRepo.save(session);
+        sessions.put(size, session.getId());
+
+        // one row per generated number, one second apart, alternating roles, ~200 chars each
+        jdbc.update("""
+                insert into chat_messages (id, session_id, user_id, role, content, created_at)
+                select nextval('chat_messages_seq'), ?, ?,
+                       case when g % 2 = 1 then 'USER' else 'ASSISTANT' end,
+                       repeat('message ' || g || ' ', 20),
+                       now() - make_interval(secs => ? - g)
+                from generate_series(1, ?) g
+                """, session.getId(), user.getId(), size, size);
+    }
+
+    private static long[] time(Runnable call) {
+        for (int i = 0; i < WARMUP; i++) call.run();
+        long[] micros = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            call.run();
+            micros[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(micros);
+        return micros;
+    }
+
+    private static long timeOnce(Runnable call) {
+        call.run();
+        long start = System.nanoTime();
+        call.run();
+        return (System.nanoTime() - start) / 1_000;
+    }
+}
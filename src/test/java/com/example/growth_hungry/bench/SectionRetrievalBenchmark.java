@@ -0,0 +1,130 @@
+package com.example.growth_hungry.bench;
+
+import com.example.growth_hungry.config.AiProps;
+import com.example.growth_hungry.service.ai.SectionChunkIndex;
+import com.example.growth_hungry.service.ai.TokenEstimator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Section chat prompt: whole section against the BM25-retrieved passages.
+ *
+ * The test first prints prompt bytes and estimated tokens per question (what the model has to
+ * read, which is what its latency follows), then JMH measures what retrieval itself costs:
+ * building a section's index once and answering a question from a built one.
+ * Model latency needs the real provider: compare {@code ai.stream.ttft} or ChatLoadTest runs
+ * with {@code ai.retrieval.enabled} true and false.
+ *
+ * Opt-in: {@code mvn test -Dtest=SectionRetrievalBenchmark -Dbenchmarks=true}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SectionRetrievalBenchmark {
+
+    private static final List<String> QUESTIONS = List.of(
+            "what does a closure capture?",
+            "when should I use a sealed class?",
+            "how do coroutines suspend?",
+            "what is tail recursion?");
+
+    @Param({"16", "64"})
+    public int sectionKb;
+
+    private String section;
+    private SectionChunkIndex index;
+    private long sectionId;
+
+    @Setup
+    public void setUp() {
+        section = section(sectionKb * 1024);
+        index = new SectionChunkIndex(new AiProps(), new SimpleMeterRegistry());
+        index.select(1L, section, QUESTIONS.get(0));
+    }
+
+    @Benchmark
+    public String wholeSectionPrompt() {
+        return section + "\n\nUser question: " + QUESTIONS.get(0);
+    }
+
+    @Benchmark
+    public String retrievedPrompt() {
+        return index.excerpt(1L, section, QUESTIONS.get(0)).orElseThrow() + "\n\nUser question: " + QUESTIONS.get(0);
+    }
+
+    // first question about a section (or after an edit): split + index
+    @Benchmark
+    public int indexBuild() {
+        return index.select(++sectionId + 1_000, section, QUESTIONS.get(0)).size();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void run() throws Exception {
+        SectionChunkIndex promptIndex = new SectionChunkIndex(new AiProps(), new SimpleMeterRegistry());
+        for (int kb : new int[]{16, 64}) {
+            String content = section(kb * 1024);
+            System.out.printf("%nSection %d KB%n%-36s %12s %12s %10s %10s%n",
+                    kb, "question", "whole bytes", "retr. bytes", "whole tok", "retr. tok");
+            for (String q : QUESTIONS) {
+                String whole = content + "\n\nUser question: " + q;
+                String retrieved = promptIndex.excerpt((long) kb, content, q).orElseThrow() + "\n\nUser question: " + q;
+                System.out.printf("%-36s %12d %12d %10d %10d%n", q,
+                        whole.getBytes(StandardCharsets.UTF_8).length, retrieved.getBytes(StandardCharsets.UTF_8).length,
+                        TokenEstimator.estimate(whole), TokenEstimator.estimate(retrieved));
+            }
+        }
+
+        Options options = new OptionsBuilder()
+                .include(SectionRetrievalBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    // course-like markdown: headings, prose and code on a handful of topics
+    private static String section(int chars) {
+        String[] topics = {"Closures", "Sealed classes", "Coroutines", "Recursion", "Generics", "Collections"};
+        String[] prose = {
+                "A closure captures variables from the enclosing scope and keeps them alive.",
+                "A sealed class restricts which subclasses exist, so a when expression can be exhaustive.",
+                "A coroutine can suspend at a suspension point without blocking its thread.",
+                "Tail recursion lets the compiler turn a recursive call into a loop.",
+                "Generics let a function work with many types while keeping type safety.",
+                "Collections come in read-only and mutable variants."};
+        StringBuilder sb = new StringBuilder(chars + 1024);
+        for (int i = 0; sb.length() < chars; i++) {
+            int t = i % topics.length;
+            sb.append("## ").append(topics[t]).append(" part ").append(i / topics.length + 1).append("\n\n");
+            for (int p = 0; p < 4; p++) {
+                sb.append(prose[t]).append(" Example ").append(i).append('.').append(p)
+                        .append(" shows it in a small program and explains each step in detail. ")
+                        .append("The rest of the paragraph adds background and common mistakes.\n\n");
+            }
+            sb.append("```kotlin\nfun example").append(i).append("() = println(\"")
+                    .append(topics[t]).append("\")\n```\n\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.growth_hungry.load;
+
+import UsersTest.GeminiStubServer;
+import com.example.growth_hungry.model.Course;
+import com.example.growth_hungry.model.Section;
+import com.example.growth_hungry.repository.CourseRepository;
+import com.example.growth_hungry.repository.SectionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end load test: the real application (HTTP, security, JPA, the whole AiClient chain)
+ * with {@link GeminiStubServer} in place of Gemini, so no quota is spent.
+ *
+ * Virtual users register and log in through {@code /api/auth}, then loop over a mix of course
+ * reads and chat turns until the time is up. Requests in the warm-up are not recorded; the
+ * report has p50/p95/p99 and throughput per endpoint.
+ *
+ * Uses the same database as the other {@code @SpringBootTest} classes; the users, course and
+ * section it creates (prefixed "load-") are left in place. Opt-in:
+ *
+ * <pre>
+ * mvn test -Dtest=ChatLoadTest -Dloadtest=true \
+ *     -Dload.users=50 -Dload.seconds=60 -Dload.warmupSeconds=10 \
+ *     -Dload.latency.median=800 -Dload.latency.p99=4000 -Dload.errorRate=0.01 -Dload.responseChars=1500
+ * </pre>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class ChatLoadTest {
+
+    private static final int USERS = Integer.getInteger("load.users", 50);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 60);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmupSeconds", 10);
+
+    private static GeminiStubServer stub;
+
+    @LocalServerPort int port;
+    @Autowired CourseRepository courseRepository;
+    @Autowired SectionRepository sectionRepository;
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    @DynamicPropertySource
+    static void stubGemini(DynamicPropertyRegistry registry) throws IOException {
+        stub = new GeminiStubServer();
+        stub.latency(GeminiStubServer.logNormal(Long.getLong("load.latency.median", 800),
+                Long.getLong("load.latency.p99", 4_000)));
+        stub.errorRate(Double.parseDouble(System.getProperty("load.errorRate", "0.01")), 503);
+        int chars = Integer.getInteger("load.responseChars", 1_500);
+        stub.responseSize(() -> ThreadLocalRandom.current().nextInt(chars / 2, chars * 3 / 2 + 1));
+
+        registry.add("ai.base-url", stub::baseUrl);
+        registry.add("ai.api-key", () -> "load-test");
+        // measuring capacity, not the per-user quota
+        registry.add("ai.rate-limit.enabled", () -> "false");
+        // SQL and request DEBUG logging would dominate the numbers
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("logging.level.org.springframework.web", () -> "WARN");
+        registry.add("logging.level.org.springframework.security", () -> "WARN");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        if (stub != null) stub.close();
+    }
+
+    @Test
+    void chatAndCourses_underLoad() throws Exception {
+        Course course = courseRepository.save(new Course(null, "load-" + UUID.randomUUID(), "load test", new HashSet<>()));
+        Section section = sectionRepository.save(new Section(
+                "Closures capture variables from the enclosing scope. ".repeat(40), course));
+
+        LoadStats stats = new LoadStats();
+        long warmupEnd = System.nanoTime() + Duration.ofSeconds(WARMUP_SECONDS).toNanos();
+        long end = warmupEnd + Duration.ofSeconds(SECONDS).toNanos();
+
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < USERS; i++) {
+                running.add(users.submit(() -> {
+                    String token = login(stats);
+                    while (System.nanoTime() < end) {
+                        step(token, course.getId(), section.getId(), System.nanoTime() >= warmupEnd ? stats : null);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> user : running) user.get();
+        }
+
+        System.out.printf("%nLoad test: %d users, %d s (after %d s warm-up), stub p50 %s ms / p99 %s ms, "
+                        + "%d injected provider errors%n%s%n",
+                USERS, SECONDS, WARMUP_SECONDS,
+                System.getProperty("load.latency.median", "800"), System.getProperty("load.latency.p99", "4000"),
+                stub.injectedErrorCount(), stats.report(SECONDS));
+        assertThat(stats.successCount()).isPositive();
+    }
+
+    // one request of the mix: mostly reads, a third chat turns
+    private void step(String token, Long courseId, Long sectionId, LoadStats stats) throws Exception {
+        int dice = ThreadLocalRandom.current().nextInt(100);
+        if (dice < 30) {
+            send("courses", get("/api/courses", token), stats);
+        } else if (dice < 50) {
+            send("sections", get("/api/courses/" + courseId + "/sections", token), stats);
+        } else if (dice < 70) {
+            send("sectionChat", post("/api/chat/sections/" + sectionId + "/messages", token,
+                    Map.of("message", "What does a closure capture? #" + dice)), stats);
+        } else if (dice < 80) {
+            send("sectionHistory", get("/api/chat/sections/" + sectionId, token), stats);
+        } else {
+            send("chat", post("/api/chat", token, Map.of("message", "Explain recursion briefly. #" + dice)), stats);
+        }
+    }
+
+    private String login(LoadStats stats) throws Exception {
+        String name = "load-" + UUID.randomUUID();
+        String email = name + "@load.test";
+        HttpResponse<String> registered = send("register", post("/api/auth/register", null,
+                Map.of("username", name, "email", email, "password", "load-password")), stats);
+        assertThat(registered.statusCode()).isEqualTo(201);
+
+        HttpResponse<String> login = send("login", post("/api/auth/login", null,
+                Map.of("email", email, "password", "load-password")), stats);
+        assertThat(login.statusCode()).isEqualTo(200);
+        return json.readTree(login.body()).get("accessToken").asText();
+    }
+
+    private HttpResponse<String> send(String operation, HttpRequest request, LoadStats stats) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (stats != null) stats.record(operation, System.nanoTime() - start, response.statusCode());
+        return response;
+    }
+
+    private HttpRequest get(String path, String token) {
+        return request(path, token).GET().build();
+    }
+
+    private HttpRequest post(String path, String token, Map<String, String> body) throws IOException {
+        return request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json.writeValueAsString(body)))
+                .build();
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(90));
+        if (token != null) builder.header("Authorization", "Bearer " + token);
+        return builder;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.growth_hungry.load;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latencies and status codes per operation. Every sample is kept (a run is at most a few
+ * hundred thousand requests), so the percentiles are exact rather than bucketed.
+ */
+class LoadStats {
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+    void record(String operation, long nanos, int status) {
+        operations.computeIfAbsent(operation, k -> new Operation()).add(nanos, status);
+    }
+
+    long successCount() {
+        return operations.values().stream().mapToLong(Operation::successCount).sum();
+    }
+
+    /** p50/p95/p99/max in ms and requests per second over {@code seconds}. */
+    String report(double seconds) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-14s %8s %8s %9s %9s %9s %9s %9s  %s%n",
+                "operation", "count", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "statuses"));
+        Operation total = new Operation();
+        new TreeMap<>(operations).forEach((name, op) -> {
+            sb.append(op.line(name, seconds));
+            total.addAll(op);
+        });
+        sb.append(total.line("TOTAL", seconds));
+        return sb.toString();
+    }
+
+    private static final class Operation {
+        private long[] samples = new long[1024];
+        private int count;
+        private int errors;
+        private final Map<Integer, Integer> statuses = new TreeMap<>();
+
+        synchronized void add(long nanos, int status) {
+            addSample(nanos);
+            if (status < 200 || status >= 300) errors++;
+            statuses.merge(status, 1, Integer::sum);
+        }
+
+        synchronized void addAll(Operation other) {
+            synchronized (other) {
+                for (int i = 0; i < other.count; i++) addSample(other.samples[i]);
+                errors += other.errors;
+                other.statuses.forEach((status, n) -> statuses.merge(status, n, Integer::sum));
+            }
+        }
+
+        private void addSample(long nanos) {
+            if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+            samples[count++] = nanos;
+        }
+
+        synchronized long successCount() {
+            return count - errors;
+        }
+
+        synchronized String line(String name, double seconds) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return String.format(Locale.ROOT, "%-14s %8d %8d %9.1f %9.1f %9.1f %9.1f %9.1f  %s%n",
+                    name, count, errors, count / seconds,
+                    millis(sorted, 0.50), millis(sorted, 0.95), millis(sorted, 0.99), millis(sorted, 1.0),
+                    statuses);
+        }
+
+        private static double millis(long[] sorted, double quantile) {
+            if (sorted.length == 0) return 0;
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}